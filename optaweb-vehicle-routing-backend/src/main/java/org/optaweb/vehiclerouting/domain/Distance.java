@@ -9,6 +9,10 @@ public class Distance {
      * Zero distance, for example the distance from a location to itself.
      */
     public static final Distance ZERO = Distance.ofMillis(0);
+    /**
+     * Longest distance that can be stored {@link #toIntMillis(long) compactly} (a little over 24 days).
+     */
+    public static final long MAX_INT_MILLIS = Integer.MAX_VALUE;
 
     private final long millis;
 
@@ -22,6 +26,22 @@ public class Distance {
         return new Distance(millis);
     }
 
+    /**
+     * Convert milliseconds to an {@code int} so that distances can be stored in half the memory.
+     * The conversion is lossless; widening the result gives back the original milliseconds.
+     *
+     * @param millis milliseconds, from zero to {@link #MAX_INT_MILLIS}
+     * @return the same milliseconds as an int
+     * @throws IllegalArgumentException if the milliseconds don't fit
+     */
+    public static int toIntMillis(long millis) {
+        if (millis < 0 || millis > MAX_INT_MILLIS) {
+            throw new IllegalArgumentException("Milliseconds (" + millis + ") must be between 0 and "
+                    + MAX_INT_MILLIS + " (" + new Distance(MAX_INT_MILLIS) + ") to be stored compactly.");
+        }
+        return (int) millis;
+    }
+
     private Distance(long millis) {
         if (millis < 0) {
             throw new IllegalArgumentException("Milliseconds (" + millis + ") must not be negative.");
@@ -1,7 +1,16 @@
 package org.optaweb.vehiclerouting.plugin.persistence;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Stream;
+
 import javax.enterprise.context.ApplicationScoped;
 
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import io.quarkus.panache.common.Parameters;
 
@@ -11,9 +20,84 @@ import io.quarkus.panache.common.Parameters;
 @ApplicationScoped
 public class DistanceCrudRepository implements PanacheRepositoryBase<DistanceEntity, DistanceKey> {
 
+    // Hibernate's default naming strategy maps entity and field names to table and column names as they are.
+    private static final String INSERT_SQL = "INSERT INTO DistanceEntity (fromId, toId, distance) VALUES (?, ?, ?)";
+    static final int BATCH_SIZE = 1000;
+    // Checked once, so that the H2 distribution, which doesn't include the PostgreSQL driver, never loads the class
+    // that links to it.
+    private static final boolean POSTGRESQL_DRIVER_PRESENT = isClassPresent("org.postgresql.PGConnection");
+
     void deleteByFromIdOrToId(long deletedLocationId) {
         delete(
                 "fromId = :deletedLocationId or toId = :deletedLocationId",
                 Parameters.with("deletedLocationId", deletedLocationId));
     }
+
+    /**
+     * Stream all distances ordered by their origin. The distances are read by a projection, so they are not loaded
+     * into the persistence context and the stream can be bigger than the heap.
+     * The stream must be consumed in a transaction and closed.
+     *
+     * @param fetchSize number of distances fetched from the database at once
+     * @return all distances, unmanaged
+     */
+    Stream<DistanceEntity> streamOrderedByFromId(int fetchSize) {
+        return getEntityManager()
+                .createQuery(
+                        "select d.key.fromId, d.key.toId, d.distance from DistanceEntity d order by d.key.fromId",
+                        Object[].class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream()
+                .map(row -> new DistanceEntity(new DistanceKey((Long) row[0], (Long) row[1]), (Long) row[2]));
+    }
+
+    /**
+     * Insert many distances at once, bypassing the persistence context. PostgreSQL gets the distances in a single
+     * {@code COPY} stream. Other databases get batched {@code INSERT} statements.
+     * <p>
+     * The inserted entities are not managed, so they must not be modified in the same transaction.
+     *
+     * @param distances new distances
+     */
+    void insertAll(List<DistanceEntity> distances) {
+        if (distances.isEmpty()) {
+            return;
+        }
+        // Use the connection of the current transaction.
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            if (POSTGRESQL_DRIVER_PRESENT && PostgresDistanceCopy.supports(connection)) {
+                PostgresDistanceCopy.copy(connection, distances, BATCH_SIZE);
+            } else {
+                batchInsert(connection, distances);
+            }
+        });
+    }
+
+    private static boolean isClassPresent(String className) {
+        try {
+            Class.forName(className, false, DistanceCrudRepository.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void batchInsert(Connection connection, List<DistanceEntity> distances) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            int batched = 0;
+            for (DistanceEntity distance : distances) {
+                statement.setLong(1, distance.getKey().getFromId());
+                statement.setLong(2, distance.getKey().getToId());
+                statement.setLong(3, distance.getDistance());
+                statement.addBatch();
+                if (++batched == BATCH_SIZE) {
+                    statement.executeBatch();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import io.smallrye.config.ConfigMapping;
+
+@ConfigMapping(prefix = "app.persistence.distances")
+public interface DistancePersistenceProperties {
+
+    /**
+     * How distances are laid out in the database.
+     */
+    DistanceLayout layout();
+
+    enum DistanceLayout {
+        /**
+         * One database row per matrix cell.
+         */
+        CELLS,
+        /**
+         * One compressed binary row per location.
+         */
+        ROWS
+    }
+}
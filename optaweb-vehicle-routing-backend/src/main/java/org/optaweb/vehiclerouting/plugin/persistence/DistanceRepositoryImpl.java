@@ -1,17 +1,33 @@
 package org.optaweb.vehiclerouting.plugin.persistence;
 
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.transaction.Transactional;
 
 import org.optaweb.vehiclerouting.domain.Distance;
 import org.optaweb.vehiclerouting.domain.Location;
 import org.optaweb.vehiclerouting.service.distance.DistanceRepository;
 
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.narayana.jta.runtime.TransactionConfiguration;
+
 @ApplicationScoped
+@IfBuildProperty(name = "app.persistence.distances.layout", stringValue = "CELLS", enableIfMissing = true)
 class DistanceRepositoryImpl implements DistanceRepository {
 
+    static final int FETCH_SIZE = 10_000;
+    // Loading millions of distances takes longer than the default transaction timeout.
+    static final int LOAD_TIMEOUT_SECONDS = 3600;
+
     private final DistanceCrudRepository distanceRepository;
 
     @Inject
@@ -25,6 +41,19 @@ class DistanceRepositoryImpl implements DistanceRepository {
         distanceRepository.persist(distanceEntity);
     }
 
+    // Joins the caller's transaction or starts one when distances are saved by a background refinement.
+    @Override
+    @Transactional
+    public void saveDistances(Location location, Map<Location, Distance> distancesTo,
+            Map<Location, Distance> distancesFrom) {
+        List<DistanceEntity> distanceEntities = new ArrayList<>(distancesTo.size() + distancesFrom.size());
+        distancesTo.forEach((to, distance) -> distanceEntities.add(
+                new DistanceEntity(new DistanceKey(location.id(), to.id()), distance.millis())));
+        distancesFrom.forEach((from, distance) -> distanceEntities.add(
+                new DistanceEntity(new DistanceKey(from.id(), location.id()), distance.millis())));
+        distanceRepository.insertAll(distanceEntities);
+    }
+
     @Override
     public Optional<Distance> getDistance(Location from, Location to) {
         return distanceRepository.findByIdOptional(new DistanceKey(from.id(), to.id()))
@@ -32,6 +61,27 @@ class DistanceRepositoryImpl implements DistanceRepository {
                 .map(Distance::ofMillis);
     }
 
+    @Override
+    @Transactional
+    @TransactionConfiguration(timeout = LOAD_TIMEOUT_SECONDS)
+    public void loadDistances(List<Location> locations, DistanceConsumer consumer) {
+        Map<Long, Location> locationsById = locations.stream().collect(toMap(Location::id, identity()));
+        try (Stream<DistanceEntity> distances = distanceRepository.streamOrderedByFromId(FETCH_SIZE)) {
+            distances.forEach(distanceEntity -> {
+                Location from = locationsById.get(distanceEntity.getKey().getFromId());
+                Location to = locationsById.get(distanceEntity.getKey().getToId());
+                if (from != null && to != null) {
+                    consumer.accept(from, to, Distance.ofMillis(distanceEntity.getDistance()));
+                }
+            });
+        }
+    }
+
+    @Override
+    public long countDistances() {
+        return distanceRepository.count();
+    }
+
     @Override
     public void deleteDistances(Location location) {
         distanceRepository.deleteByFromIdOrToId(location.id());
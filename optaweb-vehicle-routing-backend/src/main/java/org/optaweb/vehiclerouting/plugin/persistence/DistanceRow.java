@@ -0,0 +1,285 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.optaweb.vehiclerouting.domain.Distance;
+
+/**
+ * Distances between one location and other locations, in both directions, in a compact binary form.
+ * <p>
+ * Entries are sorted by the other location's ID. IDs are delta-encoded and all numbers are written as varints
+ * before the whole row is deflated. A distance that isn't known in one of the directions is {@link #MISSING}.
+ * <p>
+ * Known distances are kept as {@link Distance#toIntMillis(long) int milliseconds}, which halves the memory needed
+ * to load a row. Varints of such distances take at most 5 bytes.
+ */
+final class DistanceRow {
+
+    static final long MISSING = -1;
+    static final DistanceRow EMPTY = new DistanceRow(new long[0], new long[0], new long[0]);
+
+    private static final int FORMAT = 1;
+
+    private final long[] otherIds;
+    private final int[] millisTo;
+    private final int[] millisFrom;
+
+    /**
+     * Create a row.
+     *
+     * @param otherIds IDs of other locations, must be unique
+     * @param millisTo distances from the row's location to other locations or {@link #MISSING}
+     * @param millisFrom distances from other locations to the row's location or {@link #MISSING}
+     * @throws IllegalArgumentException if a distance is negative or longer than {@link Distance#MAX_INT_MILLIS}
+     */
+    DistanceRow(long[] otherIds, long[] millisTo, long[] millisFrom) {
+        if (otherIds.length != millisTo.length || otherIds.length != millisFrom.length) {
+            throw new IllegalArgumentException("Arrays must have the same length (" + otherIds.length + ", "
+                    + millisTo.length + ", " + millisFrom.length + ")");
+        }
+        int[] order = IntStream.range(0, otherIds.length)
+                .boxed()
+                .sorted((a, b) -> Long.compare(otherIds[a], otherIds[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.otherIds = new long[order.length];
+        this.millisTo = new int[order.length];
+        this.millisFrom = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            this.otherIds[i] = otherIds[order[i]];
+            this.millisTo[i] = toIntMillis(millisTo[order[i]]);
+            this.millisFrom[i] = toIntMillis(millisFrom[order[i]]);
+            if (i > 0 && this.otherIds[i] == this.otherIds[i - 1]) {
+                throw new IllegalArgumentException("Duplicate location ID (" + this.otherIds[i] + ")");
+            }
+        }
+    }
+
+    /**
+     * Create a row from entries that are already sorted and validated.
+     */
+    private DistanceRow(long[] otherIds, int[] millisTo, int[] millisFrom) {
+        this.otherIds = otherIds;
+        this.millisTo = millisTo;
+        this.millisFrom = millisFrom;
+    }
+
+    private static int toIntMillis(long millis) {
+        return millis == MISSING ? (int) MISSING : Distance.toIntMillis(millis);
+    }
+
+    int size() {
+        return otherIds.length;
+    }
+
+    long otherId(int index) {
+        return otherIds[index];
+    }
+
+    long millisTo(int index) {
+        return millisTo[index];
+    }
+
+    long millisFrom(int index) {
+        return millisFrom[index];
+    }
+
+    /**
+     * Number of distances in the row. Each entry holds up to two distances, one in each direction.
+     *
+     * @return number of distances that aren't {@link #MISSING}
+     */
+    int distanceCount() {
+        int count = 0;
+        for (int i = 0; i < size(); i++) {
+            if (millisTo[i] != MISSING) {
+                count++;
+            }
+            if (millisFrom[i] != MISSING) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Distance from the row's location to the other location.
+     *
+     * @param otherId other location's ID
+     * @return distance in milliseconds or {@link #MISSING}
+     */
+    long millisTo(long otherId) {
+        int index = Arrays.binarySearch(otherIds, otherId);
+        return index < 0 ? MISSING : millisTo[index];
+    }
+
+    /**
+     * Distance from the other location to the row's location.
+     *
+     * @param otherId other location's ID
+     * @return distance in milliseconds or {@link #MISSING}
+     */
+    long millisFrom(long otherId) {
+        int index = Arrays.binarySearch(otherIds, otherId);
+        return index < 0 ? MISSING : millisFrom[index];
+    }
+
+    /**
+     * Merge another row into this one. Known distances of the other row win.
+     *
+     * @param update row with new distances
+     * @return merged row
+     */
+    DistanceRow with(DistanceRow update) {
+        long[] ids = new long[size() + update.size()];
+        int[] to = new int[ids.length];
+        int[] from = new int[ids.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size() || j < update.size()) {
+            if (j == update.size() || (i < size() && otherIds[i] < update.otherIds[j])) {
+                ids[count] = otherIds[i];
+                to[count] = millisTo[i];
+                from[count] = millisFrom[i];
+                i++;
+            } else if (i == size() || update.otherIds[j] < otherIds[i]) {
+                ids[count] = update.otherIds[j];
+                to[count] = update.millisTo[j];
+                from[count] = update.millisFrom[j];
+                j++;
+            } else {
+                ids[count] = otherIds[i];
+                to[count] = update.millisTo[j] == MISSING ? millisTo[i] : update.millisTo[j];
+                from[count] = update.millisFrom[j] == MISSING ? millisFrom[i] : update.millisFrom[j];
+                i++;
+                j++;
+            }
+            count++;
+        }
+        return new DistanceRow(Arrays.copyOf(ids, count), Arrays.copyOf(to, count), Arrays.copyOf(from, count));
+    }
+
+    /**
+     * Keep only entries of the given locations.
+     *
+     * @param keep decides which location IDs are kept
+     * @return this row if all entries are kept, a smaller row otherwise
+     */
+    DistanceRow retain(LongPredicate keep) {
+        int[] kept = IntStream.range(0, size()).filter(i -> keep.test(otherIds[i])).toArray();
+        if (kept.length == size()) {
+            return this;
+        }
+        return new DistanceRow(
+                Arrays.stream(kept).mapToLong(i -> otherIds[i]).toArray(),
+                Arrays.stream(kept).map(i -> millisTo[i]).toArray(),
+                Arrays.stream(kept).map(i -> millisFrom[i]).toArray());
+    }
+
+    byte[] encode() {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(otherIds.length * 8 + 8);
+        writeVarint(raw, otherIds.length);
+        long previousId = 0;
+        for (int i = 0; i < otherIds.length; i++) {
+            long delta = otherIds[i] - previousId;
+            previousId = otherIds[i];
+            writeVarint(raw, (delta << 1) ^ (delta >> 63)); // zigzag, the first ID may be negative
+            writeVarint(raw, millisTo[i] + 1L); // MISSING becomes 0
+            writeVarint(raw, millisFrom[i] + 1L);
+        }
+        byte[] rawBytes = raw.toByteArray();
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(rawBytes);
+            deflater.finish();
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(rawBytes.length / 2 + 16);
+            encoded.write(FORMAT);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                encoded.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return encoded.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static DistanceRow decode(byte[] encoded) {
+        if (encoded.length == 0 || encoded[0] != FORMAT) {
+            throw new IllegalStateException("Unknown distance row format");
+        }
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(encoded.length * 3);
+        try {
+            inflater.setInput(encoded, 1, encoded.length - 1);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated distance row");
+                }
+                raw.write(buffer, 0, inflated);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted distance row", e);
+        } finally {
+            inflater.end();
+        }
+
+        VarintReader reader = new VarintReader(raw.toByteArray());
+        int size = (int) reader.next();
+        long[] ids = new long[size];
+        long[] to = new long[size];
+        long[] from = new long[size];
+        long previousId = 0;
+        for (int i = 0; i < size; i++) {
+            long zigzag = reader.next();
+            previousId += (zigzag >>> 1) ^ -(zigzag & 1);
+            ids[i] = previousId;
+            to[i] = reader.next() - 1;
+            from[i] = reader.next() - 1;
+        }
+        return new DistanceRow(ids, to, from);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static final class VarintReader {
+
+        private final byte[] bytes;
+        private int position;
+
+        private VarintReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private long next() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position == bytes.length) {
+                    throw new IllegalStateException("Truncated distance row");
+                }
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Corrupted distance row");
+        }
+    }
+}
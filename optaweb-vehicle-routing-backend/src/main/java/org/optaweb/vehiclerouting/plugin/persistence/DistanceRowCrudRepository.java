@@ -0,0 +1,50 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.hibernate.jpa.QueryHints;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
+
+@ApplicationScoped
+public class DistanceRowCrudRepository implements PanacheRepositoryBase<DistanceRowEntity, Long> {
+
+    /**
+     * Stream all rows. The rows are read by a projection, so they are not loaded into the persistence context and
+     * the stream can be bigger than the heap. The stream must be consumed in a transaction and closed.
+     *
+     * @param fetchSize number of rows fetched from the database at once
+     * @return all rows, unmanaged
+     */
+    Stream<DistanceRowEntity> streamRows(int fetchSize) {
+        return getEntityManager()
+                .createQuery("select r.locationId, r.distances, r.distanceCount from DistanceRowEntity r", Object[].class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream()
+                .map(row -> new DistanceRowEntity((Long) row[0], (byte[]) row[1], (Integer) row[2]));
+    }
+
+    /**
+     * Replace the distances of a row without loading it into the persistence context.
+     *
+     * @param locationId row ID
+     * @param row new distances
+     */
+    void updateDistances(long locationId, DistanceRow row) {
+        update("distances = ?1, distanceCount = ?2 where locationId = ?3", row.encode(), row.distanceCount(), locationId);
+    }
+
+    /**
+     * Count distances in all rows without reading them.
+     *
+     * @return number of distances
+     */
+    long countDistances() {
+        Long sum = getEntityManager()
+                .createQuery("select sum(r.distanceCount) from DistanceRowEntity r", Long.class)
+                .getSingleResult();
+        return sum == null ? 0 : sum;
+    }
+}
@@ -0,0 +1,58 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Distances between a location and other locations encoded as a {@link DistanceRow}.
+ */
+@Entity
+class DistanceRowEntity {
+
+    // Plenty for a row with a million locations. Not a LOB so that it maps to bytea on PostgreSQL.
+    static final int MAX_BYTES = 64 * 1024 * 1024;
+
+    @Id
+    private long locationId;
+
+    @Column(nullable = false, length = MAX_BYTES)
+    private byte[] distances;
+
+    // Number of distances in the row, so that they can be counted without decoding rows.
+    @Column(nullable = false)
+    private int distanceCount;
+
+    protected DistanceRowEntity() {
+        // for JPA
+    }
+
+    DistanceRowEntity(long locationId, DistanceRow row) {
+        this(locationId, row.encode(), row.distanceCount());
+    }
+
+    DistanceRowEntity(long locationId, byte[] distances, int distanceCount) {
+        this.locationId = locationId;
+        this.distances = Objects.requireNonNull(distances);
+        this.distanceCount = distanceCount;
+    }
+
+    long getLocationId() {
+        return locationId;
+    }
+
+    byte[] getDistances() {
+        return distances;
+    }
+
+    int getDistanceCount() {
+        return distanceCount;
+    }
+
+    void setDistances(DistanceRow row) {
+        this.distances = row.encode();
+        this.distanceCount = row.distanceCount();
+    }
+}
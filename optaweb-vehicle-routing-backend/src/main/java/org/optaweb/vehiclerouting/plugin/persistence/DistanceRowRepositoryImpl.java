@@ -0,0 +1,196 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.distance.DistanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.narayana.jta.runtime.TransactionConfiguration;
+
+/**
+ * Stores distances of each location in a single {@link DistanceRowEntity}.
+ * <p>
+ * A new location's row holds distances to and from all locations that existed when it was added, so adding
+ * a location writes one row and existing rows are never touched. A distance between two locations is therefore found
+ * in either of their rows. Removing a location deletes its row. Entries of removed locations left in other rows
+ * are dropped the next time the rows are loaded.
+ * <p>
+ * Distances saved in the {@link DistanceEntity cell layout} are migrated when they're loaded for the first time.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "app.persistence.distances.layout", stringValue = "ROWS")
+class DistanceRowRepositoryImpl implements DistanceRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(DistanceRowRepositoryImpl.class);
+    // A row holds distances to all other locations, so rows are fetched a few at a time.
+    static final int ROW_FETCH_SIZE = 16;
+
+    private final DistanceRowCrudRepository rowRepository;
+    private final DistanceCrudRepository cellRepository;
+
+    @Inject
+    DistanceRowRepositoryImpl(DistanceRowCrudRepository rowRepository, DistanceCrudRepository cellRepository) {
+        this.rowRepository = rowRepository;
+        this.cellRepository = cellRepository;
+    }
+
+    @Override
+    public void saveDistance(Location from, Location to, Distance distance) {
+        save(from.id(), new DistanceRow(
+                new long[] { to.id() },
+                new long[] { distance.millis() },
+                new long[] { DistanceRow.MISSING }));
+    }
+
+    // Joins the caller's transaction or starts one when distances are saved by a background refinement.
+    @Override
+    @Transactional
+    public void saveDistances(Location location, Map<Location, Distance> distancesTo,
+            Map<Location, Distance> distancesFrom) {
+        Set<Location> others = new LinkedHashSet<>(distancesTo.keySet());
+        others.addAll(distancesFrom.keySet());
+        long[] otherIds = new long[others.size()];
+        long[] millisTo = new long[others.size()];
+        long[] millisFrom = new long[others.size()];
+        int i = 0;
+        for (Location other : others) {
+            otherIds[i] = other.id();
+            millisTo[i] = millis(distancesTo.get(other));
+            millisFrom[i] = millis(distancesFrom.get(other));
+            i++;
+        }
+        save(location.id(), new DistanceRow(otherIds, millisTo, millisFrom));
+    }
+
+    private void save(long locationId, DistanceRow row) {
+        Optional<DistanceRowEntity> existing = rowRepository.findByIdOptional(locationId);
+        if (existing.isPresent()) {
+            DistanceRowEntity rowEntity = existing.get();
+            rowEntity.setDistances(DistanceRow.decode(rowEntity.getDistances()).with(row));
+        } else {
+            rowRepository.persist(new DistanceRowEntity(locationId, row));
+        }
+    }
+
+    @Override
+    public Optional<Distance> getDistance(Location from, Location to) {
+        long millis = row(from.id()).millisTo(to.id());
+        if (millis == DistanceRow.MISSING) {
+            millis = row(to.id()).millisFrom(from.id());
+        }
+        return millis == DistanceRow.MISSING ? Optional.empty() : Optional.of(Distance.ofMillis(millis));
+    }
+
+    private DistanceRow row(long locationId) {
+        return rowRepository.findByIdOptional(locationId)
+                .map(rowEntity -> DistanceRow.decode(rowEntity.getDistances()))
+                .orElse(DistanceRow.EMPTY);
+    }
+
+    @Override
+    @Transactional
+    @TransactionConfiguration(timeout = DistanceRepositoryImpl.LOAD_TIMEOUT_SECONDS)
+    public void loadDistances(List<Location> locations, DistanceConsumer consumer) {
+        if (rowRepository.count() == 0 && cellRepository.count() > 0) {
+            migrateCells();
+        }
+        Map<Long, Location> locationsById = locations.stream().collect(toMap(Location::id, identity()));
+        try (Stream<DistanceRowEntity> rowEntities = rowRepository.streamRows(ROW_FETCH_SIZE)) {
+            rowEntities.forEach(rowEntity -> {
+                Location location = locationsById.get(rowEntity.getLocationId());
+                if (location == null) {
+                    return;
+                }
+                DistanceRow storedRow = DistanceRow.decode(rowEntity.getDistances());
+                DistanceRow row = storedRow.retain(locationsById::containsKey);
+                for (int i = 0; i < row.size(); i++) {
+                    Location other = locationsById.get(row.otherId(i));
+                    if (other.equals(location)) {
+                        continue;
+                    }
+                    if (row.millisTo(i) != DistanceRow.MISSING) {
+                        consumer.accept(location, other, Distance.ofMillis(row.millisTo(i)));
+                    }
+                    if (row.millisFrom(i) != DistanceRow.MISSING) {
+                        consumer.accept(other, location, Distance.ofMillis(row.millisFrom(i)));
+                    }
+                }
+                if (row.size() < storedRow.size()) {
+                    // Drop distances to removed locations.
+                    rowRepository.updateDistances(location.id(), row);
+                }
+            });
+        }
+    }
+
+    @Override
+    public long countDistances() {
+        // Cells that haven't been migrated yet are loaded too.
+        return rowRepository.countDistances() + cellRepository.count();
+    }
+
+    /**
+     * Convert each row of the distance matrix stored in the cell layout to a distance row and delete the cells.
+     */
+    private void migrateCells() {
+        logger.info("Migrating distances to the row layout");
+        int rows = 0;
+        try (Stream<DistanceEntity> cells = cellRepository.streamOrderedByFromId(DistanceRepositoryImpl.FETCH_SIZE)) {
+            Iterator<DistanceEntity> iterator = cells.iterator();
+            DistanceEntity cell = iterator.hasNext() ? iterator.next() : null;
+            while (cell != null) {
+                long fromId = cell.getKey().getFromId();
+                LongStream.Builder toIds = LongStream.builder();
+                LongStream.Builder millis = LongStream.builder();
+                while (cell != null && cell.getKey().getFromId() == fromId) {
+                    toIds.add(cell.getKey().getToId());
+                    millis.add(cell.getDistance());
+                    cell = iterator.hasNext() ? iterator.next() : null;
+                }
+                long[] otherIds = toIds.build().toArray();
+                long[] missing = LongStream.generate(() -> DistanceRow.MISSING).limit(otherIds.length).toArray();
+                rowRepository.persist(new DistanceRowEntity(fromId, new DistanceRow(otherIds, millis.build().toArray(),
+                        missing)));
+                rowRepository.flush();
+                rowRepository.getEntityManager().clear();
+                rows++;
+            }
+        }
+        long deletedCells = cellRepository.deleteAll();
+        logger.info("Migrated {} distances to {} rows", deletedCells, rows);
+    }
+
+    @Override
+    public void deleteDistances(Location location) {
+        rowRepository.deleteById(location.id());
+    }
+
+    @Override
+    public void deleteAll() {
+        rowRepository.deleteAll();
+        // Distances that haven't been migrated yet would otherwise come back on the next load.
+        cellRepository.deleteAll();
+    }
+
+    private static long millis(Distance distance) {
+        return distance == null ? DistanceRow.MISSING : distance.millis();
+    }
+}
@@ -0,0 +1,76 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Inserts distances with PostgreSQL's {@code COPY ... FROM STDIN}.
+ * <p>
+ * This is the only class that links to the PostgreSQL driver. The driver is an optional dependency that the H2
+ * distribution doesn't include, so this class must only be loaded when the driver is on the classpath.
+ */
+final class PostgresDistanceCopy {
+
+    // Hibernate's default naming strategy maps entity and field names to table and column names as they are.
+    private static final String COPY_SQL = "COPY DistanceEntity (fromId, toId, distance) FROM STDIN WITH (FORMAT csv)";
+
+    private PostgresDistanceCopy() {
+        throw new AssertionError("Utility class");
+    }
+
+    /**
+     * Whether the connection is a PostgreSQL connection that can copy distances.
+     *
+     * @param connection JDBC connection
+     * @return true if the connection supports {@code COPY}
+     * @throws SQLException if the connection can't be inspected
+     */
+    static boolean supports(Connection connection) throws SQLException {
+        return connection.isWrapperFor(PGConnection.class);
+    }
+
+    /**
+     * Insert all distances in a single {@code COPY} stream.
+     *
+     * @param connection PostgreSQL connection, see {@link #supports(Connection)}
+     * @param distances new distances
+     * @param bufferedRows number of rows buffered before they are written to the stream
+     * @throws SQLException if the copy fails
+     */
+    static void copy(Connection connection, List<DistanceEntity> distances, int bufferedRows) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+        try {
+            StringBuilder rows = new StringBuilder(bufferedRows * 32);
+            int buffered = 0;
+            for (DistanceEntity distance : distances) {
+                rows.append(distance.getKey().getFromId())
+                        .append(',').append(distance.getKey().getToId())
+                        .append(',').append(distance.getDistance())
+                        .append('\n');
+                if (++buffered == bufferedRows) {
+                    writeToCopy(copyIn, rows);
+                    buffered = 0;
+                }
+            }
+            writeToCopy(copyIn, rows);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        if (rows.length() > 0) {
+            byte[] bytes = rows.toString().getBytes(StandardCharsets.US_ASCII);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            rows.setLength(0);
+        }
+    }
+}
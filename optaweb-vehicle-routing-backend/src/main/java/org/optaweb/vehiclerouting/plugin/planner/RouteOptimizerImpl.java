@@ -154,6 +154,24 @@ class RouteOptimizerImpl implements LocationPlanner, VehiclePlanner {
         publishSolution();
     }
 
+    @Override
+    public void updateDistanceMatrix(Runnable update) {
+        if (vehicles.isEmpty() || visits.isEmpty()) { // solver is not running
+            update.run();
+        } else {
+            solverManager.updateDistanceMatrix(update);
+        }
+    }
+
+    @Override
+    public void refineDistances(Location location, Runnable update) {
+        if (vehicles.isEmpty() || visits.isEmpty()) { // solver is not running
+            update.run();
+        } else {
+            solverManager.refineDistances(location.id(), update);
+        }
+    }
+
     private void publishSolution() {
         routeChangedEventPublisher.publishSolution(SolutionFactory.solutionFromVisits(vehicles, depot, visits));
     }
@@ -14,8 +14,10 @@ import org.optaplanner.core.api.solver.event.SolverEventListener;
 import org.optaweb.vehiclerouting.plugin.planner.change.AddVehicle;
 import org.optaweb.vehiclerouting.plugin.planner.change.AddVisit;
 import org.optaweb.vehiclerouting.plugin.planner.change.ChangeVehicleCapacity;
+import org.optaweb.vehiclerouting.plugin.planner.change.RefineDistances;
 import org.optaweb.vehiclerouting.plugin.planner.change.RemoveVehicle;
 import org.optaweb.vehiclerouting.plugin.planner.change.RemoveVisit;
+import org.optaweb.vehiclerouting.plugin.planner.change.UpdateDistanceMatrix;
 import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVehicle;
 import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVisit;
 import org.optaweb.vehiclerouting.plugin.planner.domain.VehicleRoutingSolution;
@@ -178,6 +180,16 @@ class SolverManager implements SolverEventListener<VehicleRoutingSolution> {
         solver.addProblemChange(new ChangeVehicleCapacity(vehicle));
     }
 
+    void updateDistanceMatrix(Runnable update) {
+        assertSolverIsAlive();
+        solver.addProblemChange(new UpdateDistanceMatrix(update));
+    }
+
+    void refineDistances(long locationId, Runnable update) {
+        assertSolverIsAlive();
+        solver.addProblemChange(new RefineDistances(locationId, update));
+    }
+
     /**
      * An alias interface that fixates the Callable's type parameter. This avoids unchecked warnings in tests.
      */
@@ -0,0 +1,54 @@
+package org.optaweb.vehiclerouting.plugin.planner.change;
+
+import java.util.Objects;
+
+import org.optaplanner.core.api.solver.change.ProblemChange;
+import org.optaplanner.core.api.solver.change.ProblemChangeDirector;
+import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVisit;
+import org.optaweb.vehiclerouting.plugin.planner.domain.VehicleRoutingSolution;
+
+/**
+ * Runs a distance matrix update that changes distances from and to one location in the working solution.
+ * <p>
+ * Distances are read through the visits' locations, which are not planning entities. Only the visits that read
+ * a distance from or to the refined location are reported as changed so that their score is re-evaluated
+ * with the new distances.
+ */
+public class RefineDistances implements ProblemChange<VehicleRoutingSolution> {
+
+    private final long locationId;
+    private final Runnable update;
+
+    public RefineDistances(long locationId, Runnable update) {
+        this.locationId = locationId;
+        this.update = Objects.requireNonNull(update);
+    }
+
+    @Override
+    public void doChange(VehicleRoutingSolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        update.run();
+        for (PlanningVisit visit : workingSolution.getVisitList()) {
+            if (readsRefinedDistance(visit)) {
+                problemChangeDirector.changeProblemProperty(visit, workingVisit -> {
+                    // Nothing to change, the visit's distances have changed.
+                });
+            }
+        }
+    }
+
+    /**
+     * A visit reads the distance from its previous standstill and, if it's the last visit, the distance back to
+     * the depot.
+     */
+    private boolean readsRefinedDistance(PlanningVisit visit) {
+        if (visit.getLocation().getId() == locationId) {
+            return true;
+        }
+        if (visit.getPreviousStandstill() != null && visit.getPreviousStandstill().getLocation().getId() == locationId) {
+            return true;
+        }
+        return visit.isLast()
+                && visit.getVehicle() != null
+                && visit.getVehicle().getLocation().getId() == locationId;
+    }
+}
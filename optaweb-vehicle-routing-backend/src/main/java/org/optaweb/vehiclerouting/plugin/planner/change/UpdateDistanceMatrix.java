@@ -0,0 +1,31 @@
+package org.optaweb.vehiclerouting.plugin.planner.change;
+
+import java.util.Objects;
+
+import org.optaplanner.core.api.solver.change.ProblemChange;
+import org.optaplanner.core.api.solver.change.ProblemChangeDirector;
+import org.optaweb.vehiclerouting.plugin.planner.domain.VehicleRoutingSolution;
+
+/**
+ * Runs a distance matrix update between two solver steps, so that the solver never reads a distance row
+ * while it is being replaced.
+ * <p>
+ * The update must not change distances between locations in the working solution. It may only drop distances
+ * to locations that have already been removed from it. Thanks to that, no entity or fact needs to be reported
+ * as changed and the score stays valid.
+ */
+public class UpdateDistanceMatrix implements ProblemChange<VehicleRoutingSolution> {
+
+    private final Runnable update;
+
+    public UpdateDistanceMatrix(Runnable update) {
+        this.update = Objects.requireNonNull(update);
+    }
+
+    @Override
+    public void doChange(VehicleRoutingSolution workingSolution, ProblemChangeDirector problemChangeDirector) {
+        // Problem changes are processed in the order they were submitted, so the removed visits are no longer
+        // in the working solution at this point.
+        update.run();
+    }
+}
@@ -0,0 +1,12 @@
+package org.optaweb.vehiclerouting.plugin.rest;
+
+import io.smallrye.config.ConfigMapping;
+
+@ConfigMapping(prefix = "app.route-events")
+public interface RouteEventProperties {
+
+    /**
+     * Number of decimal places of route tracks sent as encoded polylines.
+     */
+    int polylinePrecision();
+}
@@ -1,12 +1,20 @@
 package org.optaweb.vehiclerouting.plugin.rest;
 
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.sse.OutboundSseEvent;
@@ -17,6 +25,7 @@ import javax.ws.rs.sse.SseEventSink;
 import org.optaweb.vehiclerouting.domain.RoutingPlan;
 import org.optaweb.vehiclerouting.plugin.rest.model.PortableErrorMessage;
 import org.optaweb.vehiclerouting.plugin.rest.model.PortableRoutingPlanFactory;
+import org.optaweb.vehiclerouting.plugin.rest.model.TrackFormat;
 import org.optaweb.vehiclerouting.service.error.ErrorMessage;
 import org.optaweb.vehiclerouting.service.route.RouteListener;
 import org.slf4j.Logger;
@@ -28,60 +37,142 @@ public class RouteEventResource {
 
     private static final Logger logger = LoggerFactory.getLogger(RouteEventResource.class);
 
+    static final int MAX_ZOOM = 22;
+    // Half the width of a 256-pixel Web Mercator tile pixel at the equator at zoom 0. Pixels cover fewer meters
+    // farther from the equator, so a removed point is at most about a pixel off the track up to 60 degrees latitude.
+    private static final double TOLERANCE_METERS_AT_ZOOM_0 = 156_543.03 / 2;
+
     // TODO repository, not listener (service)
     private final RouteListener routeListener;
+    private final int polylinePrecision;
 
-    private SseBroadcaster sseBroadcaster;
+    // Clients that asked for the same track format and zoom level share a broadcaster, so each route update is only
+    // serialized once per format and zoom level.
+    private final Map<TrackView, SseBroadcaster> sseBroadcasters = new ConcurrentHashMap<>();
+    private Sse sse;
     private OutboundSseEvent.Builder eventBuilder;
 
     @Inject
-    public RouteEventResource(RouteListener routeListener) {
+    public RouteEventResource(RouteListener routeListener, RouteEventProperties routeEventProperties) {
         this.routeListener = routeListener;
+        this.polylinePrecision = routeEventProperties.polylinePrecision();
+        PortableRoutingPlanFactory.checkPolylinePrecision(polylinePrecision);
     }
 
     // Handy during development.
     @PreDestroy
     public void closeBroadcaster() {
-        if (sseBroadcaster != null) {
+        if (!sseBroadcasters.isEmpty()) {
             logger.debug("Closing Server-Sent Events broadcaster.");
-            sseBroadcaster.close();
+            sseBroadcasters.values().forEach(SseBroadcaster::close);
         }
     }
 
     public void observeRoute(@Observes RoutingPlan event) {
-        if (sseBroadcaster != null) {
-            sseBroadcaster.broadcast(eventBuilder
-                    .data(PortableRoutingPlanFactory.fromRoutingPlan(event))
-                    .name("route")
-                    .comment("route update")
-                    .build());
-        }
+        sseBroadcasters.forEach((trackView, sseBroadcaster) -> sseBroadcaster.broadcast(eventBuilder
+                .data(PortableRoutingPlanFactory.fromRoutingPlan(
+                        event,
+                        trackView.format,
+                        polylinePrecision,
+                        trackView.toleranceMeters))
+                .name("route")
+                .comment("route update")
+                .build()));
     }
 
     public void observeError(@Observes ErrorMessage event) {
-        if (sseBroadcaster != null) {
-            sseBroadcaster.broadcast(eventBuilder
-                    .data(PortableErrorMessage.fromMessage(event))
-                    .name("errorMessage")
-                    .comment("error message")
-                    .build());
-        }
+        sseBroadcasters.values().forEach(sseBroadcaster -> sseBroadcaster.broadcast(eventBuilder
+                .data(PortableErrorMessage.fromMessage(event))
+                .name("errorMessage")
+                .comment("error message")
+                .build()));
     }
 
+    /**
+     * Subscribe to route updates and error messages.
+     *
+     * @param sse SSE context
+     * @param eventSink client's event sink
+     * @param trackFormat format of route tracks, either {@code coordinates} or {@code polyline}
+     * @param zoom zoom level of the client's map between 0 and {@value #MAX_ZOOM}. Tracks are simplified so that
+     *        removed points aren't visible at this zoom level. Tracks are sent as they are if it's not given.
+     */
     @GET
     @Produces(MediaType.SERVER_SENT_EVENTS)
-    public void sse(@Context Sse sse, @Context SseEventSink eventSink) {
-        if (sseBroadcaster == null) {
-            sseBroadcaster = sse.newBroadcaster();
+    public void sse(
+            @Context Sse sse,
+            @Context SseEventSink eventSink,
+            @QueryParam("track-format") @DefaultValue("coordinates") String trackFormat,
+            @QueryParam("zoom") Integer zoom) {
+        TrackView trackView = new TrackView(parseTrackFormat(trackFormat), zoom == null ? 0 : toleranceMeters(zoom));
+        if (eventBuilder == null) {
+            this.sse = sse;
             eventBuilder = sse.newEventBuilder()
                     .mediaType(MediaType.APPLICATION_JSON_TYPE)
                     .reconnectDelay(3000);
         }
         OutboundSseEvent sseEvent = eventBuilder
-                .data(PortableRoutingPlanFactory.fromRoutingPlan(routeListener.getBestRoutingPlan()))
+                .data(PortableRoutingPlanFactory.fromRoutingPlan(
+                        routeListener.getBestRoutingPlan(),
+                        trackView.format,
+                        polylinePrecision,
+                        trackView.toleranceMeters))
                 .comment("best route")
                 .build();
         eventSink.send(sseEvent);
-        sseBroadcaster.register(eventSink);
+        sseBroadcasters.computeIfAbsent(trackView, unused -> this.sse.newBroadcaster()).register(eventSink);
+    }
+
+    /**
+     * Track simplification tolerance at the given zoom level.
+     *
+     * @param zoom zoom level
+     * @return tolerance in meters
+     * @throws BadRequestException if the zoom level is out of range
+     */
+    static double toleranceMeters(int zoom) {
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            throw new BadRequestException("Zoom (" + zoom + ") must be between 0 and " + MAX_ZOOM);
+        }
+        return TOLERANCE_METERS_AT_ZOOM_0 / (1 << zoom);
+    }
+
+    private static TrackFormat parseTrackFormat(String trackFormat) {
+        try {
+            return TrackFormat.valueOf(trackFormat.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown track format (" + trackFormat + ")", e);
+        }
+    }
+
+    /**
+     * How clients want to receive route tracks.
+     */
+    private static final class TrackView {
+
+        private final TrackFormat format;
+        private final double toleranceMeters;
+
+        private TrackView(TrackFormat format, double toleranceMeters) {
+            this.format = format;
+            this.toleranceMeters = toleranceMeters;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            TrackView trackView = (TrackView) o;
+            return format == trackView.format && Double.compare(toleranceMeters, trackView.toleranceMeters) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(format, toleranceMeters);
+        }
     }
 }
@@ -0,0 +1,64 @@
+package org.optaweb.vehiclerouting.plugin.rest.model;
+
+import java.util.List;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+/**
+ * Encodes a sequence of coordinates in the
+ * <a href="https://developers.google.com/maps/documentation/utilities/polylinealgorithm">encoded polyline</a> format.
+ * <p>
+ * Each coordinate is rounded to the given number of decimal places and stored as a difference from the previous point,
+ * so a typical road point takes 4 to 8 ASCII characters.
+ */
+final class PolylineEncoder {
+
+    static final int MIN_PRECISION = 1;
+    static final int MAX_PRECISION = 7;
+
+    private PolylineEncoder() {
+        throw new AssertionError("Utility class");
+    }
+
+    /**
+     * Encode points as a polyline.
+     *
+     * @param points points of the polyline
+     * @param precision number of decimal places (5 is used by Google Maps, 6 by OSRM and Valhalla)
+     * @return encoded polyline
+     * @throws IllegalArgumentException if the precision is out of range
+     */
+    static String encode(List<Coordinates> points, int precision) {
+        checkPrecision(precision);
+        double factor = Math.pow(10, precision);
+        StringBuilder encoded = new StringBuilder(points.size() * 8);
+        long previousLatitude = 0;
+        long previousLongitude = 0;
+        for (Coordinates point : points) {
+            long latitude = Math.round(point.latitude().doubleValue() * factor);
+            long longitude = Math.round(point.longitude().doubleValue() * factor);
+            encodeValue(latitude - previousLatitude, encoded);
+            encodeValue(longitude - previousLongitude, encoded);
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+        }
+        return encoded.toString();
+    }
+
+    static void checkPrecision(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Polyline precision (" + precision + ") must be between "
+                    + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+    }
+
+    private static void encodeValue(long value, StringBuilder encoded) {
+        // Zig-zag encoding moves the sign to the lowest bit.
+        long bits = value < 0 ? ~(value << 1) : value << 1;
+        while (bits >= 0x20) {
+            encoded.append((char) ((0x20 | (bits & 0x1f)) + 63));
+            bits >>= 5;
+        }
+        encoded.append((char) (bits + 63));
+    }
+}
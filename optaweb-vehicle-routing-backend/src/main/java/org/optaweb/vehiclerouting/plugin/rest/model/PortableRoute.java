@@ -6,6 +6,7 @@ import java.util.Objects;
 import org.optaweb.vehiclerouting.domain.Route;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 /**
  * Vehicle {@link Route route} representation convenient for marshalling.
@@ -15,18 +16,49 @@ class PortableRoute {
     private final PortableVehicle vehicle;
     private final PortableLocation depot;
     private final List<PortableLocation> visits;
+    // Exactly one of the tracks is present, depending on the requested track format.
     @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private final List<List<PortableCoordinates>> track;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final List<String> encodedTrack;
 
     PortableRoute(
             PortableVehicle vehicle,
             PortableLocation depot,
             List<PortableLocation> visits,
             List<List<PortableCoordinates>> track) {
+        this(vehicle, depot, visits, Objects.requireNonNull(track), null);
+    }
+
+    private PortableRoute(
+            PortableVehicle vehicle,
+            PortableLocation depot,
+            List<PortableLocation> visits,
+            List<List<PortableCoordinates>> track,
+            List<String> encodedTrack) {
         this.vehicle = Objects.requireNonNull(vehicle);
         this.depot = Objects.requireNonNull(depot);
         this.visits = Objects.requireNonNull(visits);
-        this.track = Objects.requireNonNull(track);
+        this.track = track;
+        this.encodedTrack = encodedTrack;
+    }
+
+    /**
+     * Create a route whose track segments are {@link TrackFormat#POLYLINE encoded polylines}.
+     *
+     * @param vehicle vehicle
+     * @param depot depot
+     * @param visits visits
+     * @param encodedTrack encoded track segments
+     * @return route with an encoded track
+     */
+    static PortableRoute withEncodedTrack(
+            PortableVehicle vehicle,
+            PortableLocation depot,
+            List<PortableLocation> visits,
+            List<String> encodedTrack) {
+        return new PortableRoute(vehicle, depot, visits, null, Objects.requireNonNull(encodedTrack));
     }
 
     public PortableVehicle getVehicle() {
@@ -44,4 +76,8 @@ class PortableRoute {
     public List<List<PortableCoordinates>> getTrack() {
         return track;
     }
+
+    public List<String> getEncodedTrack() {
+        return encodedTrack;
+    }
 }
@@ -9,6 +9,7 @@ import org.optaweb.vehiclerouting.domain.Coordinates;
 import org.optaweb.vehiclerouting.domain.Location;
 import org.optaweb.vehiclerouting.domain.RoutingPlan;
 import org.optaweb.vehiclerouting.domain.Vehicle;
+import org.optaweb.vehiclerouting.service.route.TrackSimplifier;
 
 /**
  * Creates instances of {@link PortableRoutingPlan}.
@@ -20,20 +21,84 @@ public class PortableRoutingPlanFactory {
     }
 
     public static PortableRoutingPlan fromRoutingPlan(RoutingPlan routingPlan) {
+        return fromRoutingPlan(routingPlan, TrackFormat.COORDINATES, 0);
+    }
+
+    /**
+     * Create a portable routing plan with tracks in the given format.
+     *
+     * @param routingPlan routing plan
+     * @param trackFormat format of route tracks
+     * @param polylinePrecision number of decimal places of {@link TrackFormat#POLYLINE polyline} tracks,
+     *        ignored with other formats
+     * @return portable routing plan
+     */
+    public static PortableRoutingPlan fromRoutingPlan(
+            RoutingPlan routingPlan,
+            TrackFormat trackFormat,
+            int polylinePrecision) {
+        return fromRoutingPlan(routingPlan, trackFormat, polylinePrecision, 0);
+    }
+
+    /**
+     * Create a portable routing plan with tracks in the given format, simplified further for a client that doesn't
+     * need all points of the tracks.
+     *
+     * @param routingPlan routing plan
+     * @param trackFormat format of route tracks
+     * @param polylinePrecision number of decimal places of {@link TrackFormat#POLYLINE polyline} tracks,
+     *        ignored with other formats
+     * @param toleranceMeters maximum distance of a removed track point from the simplified track, zero keeps
+     *        the tracks as they are
+     * @return portable routing plan
+     */
+    public static PortableRoutingPlan fromRoutingPlan(
+            RoutingPlan routingPlan,
+            TrackFormat trackFormat,
+            int polylinePrecision,
+            double toleranceMeters) {
+        if (trackFormat == TrackFormat.POLYLINE) {
+            checkPolylinePrecision(polylinePrecision);
+        }
         PortableDistance distance = PortableDistance.fromDistance(routingPlan.distance());
         List<PortableVehicle> vehicles = portableVehicles(routingPlan.vehicles());
         PortableLocation depot = routingPlan.depot().map(PortableLocation::fromLocation).orElse(null);
         List<PortableLocation> visits = portableVisits(routingPlan.visits());
         List<PortableRoute> routes = routingPlan.routes().stream()
-                .map(routeWithTrack -> new PortableRoute(
-                        PortableVehicle.fromVehicle(routeWithTrack.vehicle()),
-                        depot,
-                        portableVisits(routeWithTrack.visits()),
-                        portableTrack(routeWithTrack.track())))
+                .map(routeWithTrack -> trackFormat == TrackFormat.POLYLINE
+                        ? PortableRoute.withEncodedTrack(
+                                PortableVehicle.fromVehicle(routeWithTrack.vehicle()),
+                                depot,
+                                portableVisits(routeWithTrack.visits()),
+                                encodedTrack(simplified(routeWithTrack.track(), toleranceMeters), polylinePrecision))
+                        : new PortableRoute(
+                                PortableVehicle.fromVehicle(routeWithTrack.vehicle()),
+                                depot,
+                                portableVisits(routeWithTrack.visits()),
+                                portableTrack(simplified(routeWithTrack.track(), toleranceMeters))))
                 .collect(toList());
         return new PortableRoutingPlan(distance, vehicles, depot, visits, routes);
     }
 
+    /**
+     * Check that the number of decimal places is supported by {@link TrackFormat#POLYLINE polyline} tracks.
+     *
+     * @param polylinePrecision number of decimal places
+     * @throws IllegalArgumentException if the precision is out of range
+     */
+    public static void checkPolylinePrecision(int polylinePrecision) {
+        PolylineEncoder.checkPrecision(polylinePrecision);
+    }
+
+    private static List<List<Coordinates>> simplified(List<List<Coordinates>> track, double toleranceMeters) {
+        if (toleranceMeters == 0) {
+            return track;
+        }
+        return track.stream()
+                .map(segment -> TrackSimplifier.simplify(segment, toleranceMeters))
+                .collect(toList());
+    }
+
     private static List<List<PortableCoordinates>> portableTrack(List<List<Coordinates>> track) {
         ArrayList<List<PortableCoordinates>> portableTrack = new ArrayList<>();
         for (List<Coordinates> segment : track) {
@@ -45,6 +110,14 @@ public class PortableRoutingPlanFactory {
         return portableTrack;
     }
 
+    private static List<String> encodedTrack(List<List<Coordinates>> track, int precision) {
+        List<String> encodedTrack = new ArrayList<>(track.size());
+        for (List<Coordinates> segment : track) {
+            encodedTrack.add(PolylineEncoder.encode(segment, precision));
+        }
+        return encodedTrack;
+    }
+
     private static List<PortableLocation> portableVisits(List<Location> visits) {
         return visits.stream()
                 .map(PortableLocation::fromLocation)
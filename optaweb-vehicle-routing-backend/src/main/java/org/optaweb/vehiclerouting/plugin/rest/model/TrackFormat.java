@@ -0,0 +1,17 @@
+package org.optaweb.vehiclerouting.plugin.rest.model;
+
+/**
+ * How route tracks are represented in a {@link PortableRoutingPlan}.
+ */
+public enum TrackFormat {
+    /**
+     * Each track segment is an array of {@code [latitude, longitude]} pairs.
+     */
+    COORDINATES,
+    /**
+     * Each track segment is a string in the
+     * <a href="https://developers.google.com/maps/documentation/utilities/polylinealgorithm">encoded polyline</a>
+     * format. This is several times smaller than {@link #COORDINATES}.
+     */
+    POLYLINE
+}
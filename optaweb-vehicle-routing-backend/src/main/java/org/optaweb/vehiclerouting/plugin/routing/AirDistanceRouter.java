@@ -1,36 +1,86 @@
 package org.optaweb.vehiclerouting.plugin.routing;
 
-import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
 import org.optaweb.vehiclerouting.domain.Coordinates;
 import org.optaweb.vehiclerouting.service.distance.DistanceCalculator;
+import org.optaweb.vehiclerouting.service.distance.GreatCircleDistance;
 import org.optaweb.vehiclerouting.service.region.BoundingBox;
 import org.optaweb.vehiclerouting.service.region.Region;
 import org.optaweb.vehiclerouting.service.route.Router;
 
 import io.quarkus.arc.properties.IfBuildProperty;
 
+/**
+ * Estimates travel times from the great-circle distance without a road network.
+ * <p>
+ * The distance is calculated with the haversine formula on primitive doubles. Batch calls convert the destinations
+ * to radians once and then fill the row in a tight loop that doesn't allocate.
+ */
 @ApplicationScoped
 @IfBuildProperty(name = "app.routing.engine", stringValue = "AIR")
 public class AirDistanceRouter implements Router, DistanceCalculator, Region {
 
-    protected static final int TRAVEL_SPEED_KPH = 60;
-    // Approximate Metric Equivalents for Degrees. At the equator for longitude and for latitude anywhere,
-    // the following approximations are valid: 1° = 111 km (or 60 nautical miles) 0.1° = 11.1 km.
-    protected static final double KILOMETERS_PER_DEGREE = 111;
-    protected static final long MILLIS_IN_ONE_HOUR = TimeUnit.MILLISECONDS.convert(1, TimeUnit.HOURS);
+    static final long MILLIS_IN_ONE_HOUR = TimeUnit.MILLISECONDS.convert(1, TimeUnit.HOURS);
+
+    private final double millisPerMeter;
+
+    @Inject
+    AirDistanceRouter(RoutingProperties routingProperties) {
+        this(routingProperties.air().speedKph(), routingProperties.air().detourFactor());
+    }
+
+    AirDistanceRouter(double speedKph, double detourFactor) {
+        if (speedKph <= 0) {
+            throw new IllegalArgumentException("Speed (" + speedKph + " km/h) must be positive");
+        }
+        if (detourFactor < 1) {
+            throw new IllegalArgumentException("Detour factor (" + detourFactor + ") must be at least 1");
+        }
+        this.millisPerMeter = detourFactor * MILLIS_IN_ONE_HOUR / (speedKph * 1000);
+    }
 
     @Override
     public long travelTimeMillis(Coordinates from, Coordinates to) {
-        BigDecimal latDiff = to.latitude().subtract(from.latitude());
-        BigDecimal lngDiff = to.longitude().subtract(from.longitude());
-        double distanceKilometers = Math.sqrt(latDiff.pow(2).add(lngDiff.pow(2)).doubleValue()) * KILOMETERS_PER_DEGREE;
-        return (long) Math.floor(distanceKilometers / TRAVEL_SPEED_KPH * MILLIS_IN_ONE_HOUR);
+        return (long) (GreatCircleDistance.meters(from, to) * millisPerMeter);
+    }
+
+    @Override
+    public long[] travelTimesMillis(Coordinates from, List<Coordinates> to) {
+        Points points = new Points(to);
+        long[] row = new long[points.size()];
+        double latitude = Math.toRadians(from.latitude().doubleValue());
+        fillRow(latitude, Math.cos(latitude), Math.toRadians(from.longitude().doubleValue()), points, row);
+        return row;
+    }
+
+    @Override
+    public long[] travelTimesMillis(List<Coordinates> from, Coordinates to) {
+        // The great-circle distance is symmetric.
+        return travelTimesMillis(to, from);
+    }
+
+    /**
+     * Fill a row of travel times from one point to many points.
+     *
+     * @param latitude latitude of the origin in radians
+     * @param cosLatitude cosine of the origin's latitude
+     * @param longitude longitude of the origin in radians
+     * @param to destinations
+     * @param row receives travel times in milliseconds, in the order of destinations
+     */
+    void fillRow(double latitude, double cosLatitude, double longitude, Points to, long[] row) {
+        for (int i = 0; i < to.size; i++) {
+            double meters = GreatCircleDistance.meters(
+                    latitude, cosLatitude, longitude,
+                    to.latitudes[i], to.cosLatitudes[i], to.longitudes[i]);
+            row[i] = (long) (meters * millisPerMeter);
+        }
     }
 
     @Override
@@ -38,8 +88,41 @@ public class AirDistanceRouter implements Router, DistanceCalculator, Region {
         return Arrays.asList(from, to);
     }
 
+    @Override
+    public void forget(Coordinates coordinates) {
+        // Nothing is cached.
+    }
+
     @Override
     public BoundingBox getBounds() {
         return new BoundingBox(Coordinates.of(-90, -180), Coordinates.of(90, 180));
     }
+
+    /**
+     * Points converted to radians, with cosines of latitudes precomputed. Stored as a structure of arrays.
+     */
+    static final class Points {
+
+        private final int size;
+        private final double[] latitudes;
+        private final double[] cosLatitudes;
+        private final double[] longitudes;
+
+        Points(List<Coordinates> coordinates) {
+            size = coordinates.size();
+            latitudes = new double[size];
+            cosLatitudes = new double[size];
+            longitudes = new double[size];
+            for (int i = 0; i < size; i++) {
+                Coordinates point = coordinates.get(i);
+                latitudes[i] = Math.toRadians(point.latitude().doubleValue());
+                cosLatitudes[i] = Math.cos(latitudes[i]);
+                longitudes[i] = Math.toRadians(point.longitude().doubleValue());
+            }
+        }
+
+        int size() {
+            return size;
+        }
+    }
 }
@@ -0,0 +1,207 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.optaweb.vehiclerouting.service.distance.GreatCircleDistance.METERS_PER_DEGREE;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.StringJoiner;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.service.region.BoundingBox;
+
+/**
+ * Area that the OSM import is restricted to. It's a polygon (a bounding box is a polygon with 4 vertices) plus
+ * a buffer around it, so that routes between points near the border of the area can leave the area for a while.
+ * <p>
+ * Distances to the polygon edges are calculated on an equirectangular projection, which is precise enough
+ * for a buffer of a few kilometers.
+ */
+final class CropArea {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double bufferMeters;
+    // Bounding box of the polygon.
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+    // Bounding box of the polygon including the buffer. Anything outside can be rejected quickly.
+    private final double bufferedMinLatitude;
+    private final double bufferedMinLongitude;
+    private final double bufferedMaxLatitude;
+    private final double bufferedMaxLongitude;
+
+    private CropArea(double[] latitudes, double[] longitudes, double bufferKm) {
+        if (latitudes.length < 3) {
+            throw new IllegalArgumentException("The crop polygon must have at least 3 vertices");
+        }
+        if (bufferKm < 0) {
+            throw new IllegalArgumentException("The crop buffer (" + bufferKm + " km) must not be negative");
+        }
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.bufferMeters = bufferKm * 1000;
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < latitudes.length; i++) {
+            minLat = Math.min(minLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+        }
+        minLatitude = minLat;
+        minLongitude = minLon;
+        maxLatitude = maxLat;
+        maxLongitude = maxLon;
+        double bufferLatitude = bufferMeters / METERS_PER_DEGREE;
+        // Longitude degrees are shortest at the latitude farthest from the equator.
+        double cosLatitude = Math.cos(Math.toRadians(Math.min(Math.max(Math.abs(minLat), Math.abs(maxLat)), 89)));
+        double bufferLongitude = bufferLatitude / cosLatitude;
+        bufferedMinLatitude = minLat - bufferLatitude;
+        bufferedMinLongitude = minLon - bufferLongitude;
+        bufferedMaxLatitude = maxLat + bufferLatitude;
+        bufferedMaxLongitude = maxLon + bufferLongitude;
+    }
+
+    /**
+     * Create the crop area from configuration. At most one of bounding box and polygon can be set.
+     *
+     * @param boundingBox {@code south,west,north,east} in degrees
+     * @param polygon vertices of the polygon as {@code latitude longitude} pairs separated by commas
+     * @param bufferKm width of the buffer around the area in kilometers
+     * @return crop area or empty if neither bounding box nor polygon is set
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    static Optional<CropArea> parse(Optional<String> boundingBox, Optional<String> polygon, double bufferKm) {
+        Optional<String> box = boundingBox.map(String::trim).filter(value -> !value.isEmpty());
+        Optional<String> vertices = polygon.map(String::trim).filter(value -> !value.isEmpty());
+        if (box.isPresent() && vertices.isPresent()) {
+            throw new IllegalArgumentException("Set either the crop bounding box or the crop polygon, not both");
+        }
+        if (box.isPresent()) {
+            String[] values = box.get().split(",");
+            if (values.length != 4) {
+                throw new IllegalArgumentException(
+                        "Expected the crop bounding box as south,west,north,east but got: " + box.get());
+            }
+            double south = Double.parseDouble(values[0].trim());
+            double west = Double.parseDouble(values[1].trim());
+            double north = Double.parseDouble(values[2].trim());
+            double east = Double.parseDouble(values[3].trim());
+            // Fails fast if the corners are swapped.
+            new BoundingBox(Coordinates.of(south, west), Coordinates.of(north, east));
+            return Optional.of(new CropArea(
+                    new double[] { south, south, north, north },
+                    new double[] { west, east, east, west },
+                    bufferKm));
+        }
+        if (vertices.isPresent()) {
+            String[] pairs = vertices.get().split(",");
+            double[] latitudes = new double[pairs.length];
+            double[] longitudes = new double[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                String[] values = pairs[i].trim().split("\\s+");
+                if (values.length != 2) {
+                    throw new IllegalArgumentException(
+                            "Expected a crop polygon vertex as latitude longitude but got: " + pairs[i]);
+                }
+                latitudes[i] = Double.parseDouble(values[0]);
+                longitudes[i] = Double.parseDouble(values[1]);
+            }
+            return Optional.of(new CropArea(latitudes, longitudes, bufferKm));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Create the crop area from the routing configuration.
+     *
+     * @param crop crop configuration
+     * @return crop area or empty if cropping isn't configured
+     */
+    static Optional<CropArea> of(RoutingProperties.Crop crop) {
+        return parse(crop.boundingBox(), crop.polygon(), crop.bufferKm());
+    }
+
+    /**
+     * Decide whether a point is inside the polygon or within the buffer around it.
+     *
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @return true if the point should be imported
+     */
+    boolean contains(double latitude, double longitude) {
+        if (latitude < bufferedMinLatitude || latitude > bufferedMaxLatitude
+                || longitude < bufferedMinLongitude || longitude > bufferedMaxLongitude) {
+            return false;
+        }
+        return insidePolygon(latitude, longitude) || withinBuffer(latitude, longitude);
+    }
+
+    private boolean insidePolygon(double latitude, double longitude) {
+        // Ray casting: count crossings of the polygon edges by a ray going east from the point.
+        boolean inside = false;
+        for (int i = 0, j = latitudes.length - 1; i < latitudes.length; j = i++) {
+            if ((latitudes[i] > latitude) != (latitudes[j] > latitude)) {
+                double crossingLongitude = longitudes[i] + (latitude - latitudes[i])
+                        * (longitudes[j] - longitudes[i]) / (latitudes[j] - latitudes[i]);
+                if (longitude < crossingLongitude) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    private boolean withinBuffer(double latitude, double longitude) {
+        if (bufferMeters == 0) {
+            return false;
+        }
+        double metersPerLongitudeDegree = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        double bufferSquared = bufferMeters * bufferMeters;
+        for (int i = 0, j = latitudes.length - 1; i < latitudes.length; j = i++) {
+            // Edge from vertex j to vertex i relative to the point, in meters.
+            double ax = (longitudes[j] - longitude) * metersPerLongitudeDegree;
+            double ay = (latitudes[j] - latitude) * METERS_PER_DEGREE;
+            double bx = (longitudes[i] - longitude) * metersPerLongitudeDegree;
+            double by = (latitudes[i] - latitude) * METERS_PER_DEGREE;
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double x = ax + t * dx;
+            double y = ay + t * dy;
+            if (x * x + y * y <= bufferSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bounding box of the polygon without the buffer. That's the area of interest.
+     *
+     * @return bounding box of the crop polygon
+     */
+    BoundingBox bounds() {
+        return new BoundingBox(
+                Coordinates.of(minLatitude, minLongitude),
+                Coordinates.of(maxLatitude, maxLongitude));
+    }
+
+    /**
+     * Describe the crop area for the {@link GraphKey graph key}.
+     *
+     * @return canonical description of the polygon and the buffer
+     */
+    String settings() {
+        StringJoiner polygon = new StringJoiner(" ");
+        for (int i = 0; i < latitudes.length; i++) {
+            polygon.add(latitudes[i] + "/" + longitudes[i]);
+        }
+        return String.format(Locale.ROOT, "crop=%s;buffer=%.3fkm", polygon, bufferMeters / 1000);
+    }
+}
@@ -2,7 +2,13 @@ package org.optaweb.vehiclerouting.plugin.routing;
 
 import static java.util.stream.Collectors.toList;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.StreamSupport;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -15,13 +21,34 @@ import org.optaweb.vehiclerouting.service.region.BoundingBox;
 import org.optaweb.vehiclerouting.service.region.Region;
 import org.optaweb.vehiclerouting.service.route.Router;
 
-import com.graphhopper.GHRequest;
-import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
-import com.graphhopper.ResponsePath;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.ch.CHRoutingAlgorithmFactory;
+import com.graphhopper.routing.ev.Subnetwork;
+import com.graphhopper.routing.lm.LMRoutingAlgorithmFactory;
+import com.graphhopper.routing.lm.LandmarkStorage;
+import com.graphhopper.routing.querygraph.QueryGraph;
+import com.graphhopper.routing.util.DefaultSnapFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.weighting.Weighting;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.storage.index.Snap;
+import com.graphhopper.util.DistanceCalcEarth;
+import com.graphhopper.util.PMap;
+import com.graphhopper.util.Parameters;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
+import com.graphhopper.util.shapes.GHPoint;
+import com.graphhopper.util.shapes.GHPoint3D;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.arc.properties.IfBuildProperty;
 
 /**
@@ -31,43 +58,336 @@ import io.quarkus.arc.properties.IfBuildProperty;
 @IfBuildProperty(name = "app.routing.engine", stringValue = "GRAPHHOPPER", enableIfMissing = true)
 class GraphHopperRouter implements Router, DistanceCalculator, Region {
 
+    static final String TRAVEL_TIME_CACHE = "travel-times";
+    static final String SNAP_CACHE = "snaps";
+    /**
+     * Locations are snapped once and their snaps are removed with them, so the limit is only reached by coordinates
+     * that are queried without becoming locations. The least recently used snaps are evicted.
+     */
+    static final int MAX_SNAPS = 100_000;
+
     private final GraphHopper graphHopper;
+    private final TravelTimeCache travelTimeCache;
+    private final Counter travelTimeCacheHits;
+    private final Counter travelTimeCacheMisses;
+    // Snaps by the cache key of the queried coordinates in access order. Entries are removed when a location is
+    // removed. Creating a query graph modifies snaps, so only copies are handed out. Guarded by itself.
+    private final LinkedHashMap<Long, Snap> snapCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter snapCacheHits;
+    private final Counter snapCacheMisses;
+    private final Optional<BoundingBox> cropBounds;
+    private final double maxSnapDistanceMeters;
 
     @Inject
-    GraphHopperRouter(GraphHopper graphHopper) {
+    GraphHopperRouter(
+            GraphHopper graphHopper,
+            TravelTimeCache travelTimeCache,
+            MeterRegistry meterRegistry,
+            RoutingProperties routingProperties) {
+        this(
+                graphHopper,
+                travelTimeCache,
+                meterRegistry,
+                CropArea.of(routingProperties.crop()),
+                routingProperties.maxSnapDistanceMeters());
+    }
+
+    GraphHopperRouter(GraphHopper graphHopper, TravelTimeCache travelTimeCache, MeterRegistry meterRegistry) {
+        this(graphHopper, travelTimeCache, meterRegistry, Optional.empty(), Double.POSITIVE_INFINITY);
+    }
+
+    GraphHopperRouter(
+            GraphHopper graphHopper,
+            TravelTimeCache travelTimeCache,
+            MeterRegistry meterRegistry,
+            Optional<CropArea> cropArea,
+            double maxSnapDistanceMeters) {
         this.graphHopper = graphHopper;
+        this.travelTimeCache = travelTimeCache;
+        this.cropBounds = cropArea.map(CropArea::bounds);
+        this.maxSnapDistanceMeters = maxSnapDistanceMeters;
+        // Follows Micrometer's cache metrics naming.
+        travelTimeCacheHits = Counter.builder("cache.gets")
+                .tag("cache", TRAVEL_TIME_CACHE)
+                .tag("result", "hit")
+                .description("Travel times found in the cache")
+                .register(meterRegistry);
+        travelTimeCacheMisses = Counter.builder("cache.gets")
+                .tag("cache", TRAVEL_TIME_CACHE)
+                .tag("result", "miss")
+                .description("Travel times calculated by the router because they weren't in the cache")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", travelTimeCache, TravelTimeCache::size)
+                .tag("cache", TRAVEL_TIME_CACHE)
+                .description("Number of cached travel times")
+                .register(meterRegistry);
+        snapCacheHits = Counter.builder("cache.gets")
+                .tag("cache", SNAP_CACHE)
+                .tag("result", "hit")
+                .description("Coordinates whose position on the road network was found in the cache")
+                .register(meterRegistry);
+        snapCacheMisses = Counter.builder("cache.gets")
+                .tag("cache", SNAP_CACHE)
+                .tag("result", "miss")
+                .description("Coordinates snapped to the road network because they weren't in the cache")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, GraphHopperRouter::snapCacheSize)
+                .tag("cache", SNAP_CACHE)
+                .description("Number of cached snaps")
+                .register(meterRegistry);
     }
 
+    /**
+     * Get the path between two points.
+     * <p>
+     * Both points are snapped using the snap cache and the path is found with the same algorithms as travel times.
+     * The path geometry isn't simplified.
+     */
     @Override
     public List<Coordinates> getPath(Coordinates from, Coordinates to) {
-        PointList points = getBestRoute(from, to).getPoints();
+        RoutingCHGraph chGraph = graphHopper.getCHGraphs().get(Constants.GRAPHHOPPER_PROFILE);
+        Weighting weighting = weighting(chGraph);
+        EdgeFilter snapFilter = snapFilter(weighting);
+        Snap fromSnap = snap(from, snapFilter);
+        Snap toSnap = snap(to, snapFilter);
+        QueryGraph queryGraph = QueryGraph.create(graphHopper.getBaseGraph(), fromSnap, toSnap);
+        Path path = algorithms(chGraph, weighting, queryGraph).get()
+                .calcPath(fromSnap.getClosestNode(), toSnap.getClosestNode());
+        if (!path.isFound()) {
+            throw new RoutingException("No route from (" + from + ") to (" + to + ")");
+        }
+        PointList points = path.calcPoints();
         return StreamSupport.stream(points.spliterator(), false)
                 .map(ghPoint3D -> Coordinates.of(ghPoint3D.lat, ghPoint3D.lon))
                 .collect(toList());
     }
 
+    /**
+     * Calculate the travel time between two points without building a full route. Unlike
+     * {@link GraphHopper#route}, no point list, instructions or path details are created.
+     */
     @Override
     public long travelTimeMillis(Coordinates from, Coordinates to) {
-        return getBestRoute(from, to).getTime();
+        return travelTimes(from, Collections.singletonList(to), false)[0];
+    }
+
+    @Override
+    public long[] travelTimesMillis(Coordinates from, List<Coordinates> to) {
+        return travelTimes(from, to, false);
+    }
+
+    @Override
+    public long[] travelTimesMillis(List<Coordinates> from, Coordinates to) {
+        return travelTimes(to, from, true);
+    }
+
+    /**
+     * Calculate travel times between one fixed point and many other points.
+     * <p>
+     * All points are snapped to the road network first, reusing cached snaps. Travel times between snapped points
+     * are looked up in the travel time cache. The remaining points share one query graph and each pair is
+     * a bidirectional search using the fastest prepared technique (CH, then LM, then plain A*). Only the travel time
+     * is extracted from the resulting paths, no geometry or instructions.
+     *
+     * @param fixed the point common to all pairs
+     * @param others the other points
+     * @param toFixed whether the fixed point is the destination (true) or the origin (false) of each pair
+     * @return travel times in milliseconds, in the order of the other points
+     */
+    private long[] travelTimes(Coordinates fixed, List<Coordinates> others, boolean toFixed) {
+        if (others.isEmpty()) {
+            return new long[0];
+        }
+        RoutingCHGraph chGraph = graphHopper.getCHGraphs().get(Constants.GRAPHHOPPER_PROFILE);
+        Weighting weighting = weighting(chGraph);
+        EdgeFilter snapFilter = snapFilter(weighting);
+        List<Snap> snaps = new ArrayList<>(others.size() + 1);
+        snaps.add(snap(fixed, snapFilter));
+        for (Coordinates other : others) {
+            snaps.add(snap(other, snapFilter));
+        }
+
+        long[] keys = new long[snaps.size()];
+        for (int i = 0; i < keys.length; i++) {
+            GHPoint3D snappedPoint = snaps.get(i).getSnappedPoint();
+            keys[i] = TravelTimeCache.key(snappedPoint.lat, snappedPoint.lon);
+        }
+        long[] travelTimes = new long[others.size()];
+        int misses = 0;
+        for (int i = 0; i < travelTimes.length; i++) {
+            travelTimes[i] = toFixed
+                    ? travelTimeCache.get(keys[i + 1], keys[0])
+                    : travelTimeCache.get(keys[0], keys[i + 1]);
+            if (travelTimes[i] == TravelTimeCache.MISS) {
+                misses++;
+            }
+        }
+        travelTimeCacheHits.increment(travelTimes.length - misses);
+        travelTimeCacheMisses.increment(misses);
+        if (misses == 0) {
+            return travelTimes;
+        }
+
+        // Creating the query graph replaces the closest nodes of snaps with virtual nodes where needed.
+        QueryGraph queryGraph = QueryGraph.create(graphHopper.getBaseGraph(), snaps);
+        Supplier<RoutingAlgorithm> algorithms = algorithms(chGraph, weighting, queryGraph);
+        int fixedNode = snaps.get(0).getClosestNode();
+
+        for (int i = 0; i < travelTimes.length; i++) {
+            if (travelTimes[i] != TravelTimeCache.MISS) {
+                continue;
+            }
+            int otherNode = snaps.get(i + 1).getClosestNode();
+            // Algorithm instances can't be reused.
+            RoutingAlgorithm algorithm = algorithms.get();
+            Path path = toFixed ? algorithm.calcPath(otherNode, fixedNode) : algorithm.calcPath(fixedNode, otherNode);
+            if (!path.isFound()) {
+                Coordinates from = toFixed ? others.get(i) : fixed;
+                Coordinates to = toFixed ? fixed : others.get(i);
+                throw new RoutingException("No route from (" + from + ") to (" + to + ")");
+            }
+            travelTimes[i] = path.getTime();
+            if (toFixed) {
+                travelTimeCache.put(keys[i + 1], keys[0], travelTimes[i]);
+            } else {
+                travelTimeCache.put(keys[0], keys[i + 1], travelTimes[i]);
+            }
+        }
+        return travelTimes;
+    }
+
+    private Weighting weighting(RoutingCHGraph chGraph) {
+        return chGraph != null
+                ? chGraph.getWeighting()
+                : graphHopper.createWeighting(graphHopper.getProfile(Constants.GRAPHHOPPER_PROFILE), new PMap());
+    }
+
+    private EdgeFilter snapFilter(Weighting weighting) {
+        return new DefaultSnapFilter(
+                weighting,
+                graphHopper.getEncodingManager().getBooleanEncodedValue(Subnetwork.key(Constants.GRAPHHOPPER_PROFILE)));
+    }
+
+    /**
+     * Create algorithms on the query graph using the fastest technique prepared for the profile.
+     */
+    private Supplier<RoutingAlgorithm> algorithms(RoutingCHGraph chGraph, Weighting weighting, QueryGraph queryGraph) {
+        if (chGraph != null) {
+            CHRoutingAlgorithmFactory factory = new CHRoutingAlgorithmFactory(chGraph, queryGraph);
+            return () -> factory.createAlgo(new PMap());
+        }
+        Weighting queryWeighting = queryGraph.wrapWeighting(weighting);
+        AlgorithmOptions options = new AlgorithmOptions()
+                .setAlgorithm(Parameters.Algorithms.ASTAR_BI)
+                .setTraversalMode(TraversalMode.NODE_BASED);
+        LandmarkStorage landmarks = graphHopper.getLandmarks().get(Constants.GRAPHHOPPER_PROFILE);
+        RoutingAlgorithmFactory factory = landmarks != null
+                ? new LMRoutingAlgorithmFactory(landmarks)
+                : new RoutingAlgorithmFactorySimple();
+        return () -> factory.createAlgo(queryGraph, queryWeighting, options);
+    }
+
+    /**
+     * Snap coordinates to the road network. The location index is only searched if the coordinates haven't been
+     * snapped before.
+     *
+     * @return a new snap that can be used to create a query graph
+     */
+    private Snap snap(Coordinates coordinates, EdgeFilter snapFilter) {
+        double latitude = coordinates.latitude().doubleValue();
+        double longitude = coordinates.longitude().doubleValue();
+        long key = TravelTimeCache.key(latitude, longitude);
+        Snap cached;
+        synchronized (snapCache) {
+            cached = snapCache.get(key);
+        }
+        if (cached != null) {
+            snapCacheHits.increment();
+            return copy(cached);
+        }
+        snapCacheMisses.increment();
+        Snap snap = graphHopper.getLocationIndex().findClosest(latitude, longitude, snapFilter);
+        if (!snap.isValid()) {
+            throw new RoutingException("Cannot find a road near (" + coordinates + ")");
+        }
+        Snap copy = copy(snap);
+        synchronized (snapCache) {
+            snapCache.put(key, copy);
+            if (snapCache.size() > MAX_SNAPS) {
+                Iterator<Long> eldest = snapCache.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return snap;
     }
 
-    private ResponsePath getBestRoute(Coordinates from, Coordinates to) {
-        GHRequest request = new GHRequest(
-                from.latitude().doubleValue(),
-                from.longitude().doubleValue(),
-                to.latitude().doubleValue(),
-                to.longitude().doubleValue()).setProfile(Constants.GRAPHHOPPER_PROFILE);
-        GHResponse response = graphHopper.route(request);
-        // TODO return wrapper that can hold both the result and error explanation instead of throwing exception
-        if (response.hasErrors()) {
-            throw new RoutingException("No route from (" + from + ") to (" + to + ")", response.getErrors().get(0));
+    private static Snap copy(Snap snap) {
+        GHPoint queryPoint = snap.getQueryPoint();
+        Snap copy = new Snap(queryPoint.lat, queryPoint.lon);
+        copy.setClosestEdge(snap.getClosestEdge());
+        copy.setClosestNode(snap.getClosestNode());
+        copy.setQueryDistance(snap.getQueryDistance());
+        copy.setWayIndex(snap.getWayIndex());
+        copy.setSnappedPosition(snap.getSnappedPosition());
+        copy.calcSnappedPoint(DistanceCalcEarth.DIST_EARTH);
+        return copy;
+    }
+
+    /**
+     * A location is available if there's a road within the maximum snap distance that's not in a small subnetwork.
+     * Edges in subnetworks that are too small to route between (islands, private roads, one-way traps) are already
+     * excluded by the snap filter. The snap is a location index lookup, which doesn't depend on the number of
+     * locations. It's cached, so the travel times calculated next don't snap the coordinates again.
+     */
+    @Override
+    public boolean isLocationAvailable(Coordinates coordinates) {
+        RoutingCHGraph chGraph = graphHopper.getCHGraphs().get(Constants.GRAPHHOPPER_PROFILE);
+        Snap snap;
+        try {
+            snap = snap(coordinates, snapFilter(weighting(chGraph)));
+        } catch (RoutingException e) {
+            return false;
+        }
+        if (snap.getQueryDistance() > maxSnapDistanceMeters) {
+            // Don't keep the snap of a location that won't be created.
+            forget(coordinates);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void forget(Coordinates coordinates) {
+        long key = TravelTimeCache.key(coordinates.latitude().doubleValue(), coordinates.longitude().doubleValue());
+        synchronized (snapCache) {
+            snapCache.remove(key);
+        }
+    }
+
+    private int snapCacheSize() {
+        synchronized (snapCache) {
+            return snapCache.size();
         }
-        return response.getBest();
     }
 
+    /**
+     * Get the bounds of the graph. A cropped graph also contains the buffer around the crop area and roads crossing
+     * its border, so the bounds are limited to the crop area.
+     */
     @Override
     public BoundingBox getBounds() {
         BBox bounds = graphHopper.getBaseGraph().getBounds();
+        if (cropBounds.isPresent()) {
+            double minLat = Math.max(bounds.minLat, cropBounds.get().getSouthWest().latitude().doubleValue());
+            double minLon = Math.max(bounds.minLon, cropBounds.get().getSouthWest().longitude().doubleValue());
+            double maxLat = Math.min(bounds.maxLat, cropBounds.get().getNorthEast().latitude().doubleValue());
+            double maxLon = Math.min(bounds.maxLon, cropBounds.get().getNorthEast().longitude().doubleValue());
+            // The crop area may not overlap the graph if the graph is mocked or the crop area is misconfigured.
+            if (minLat < maxLat && minLon < maxLon) {
+                return new BoundingBox(Coordinates.of(minLat, minLon), Coordinates.of(maxLat, maxLon));
+            }
+        }
         return new BoundingBox(
                 Coordinates.of(bounds.minLat, bounds.minLon),
                 Coordinates.of(bounds.maxLat, bounds.maxLon));
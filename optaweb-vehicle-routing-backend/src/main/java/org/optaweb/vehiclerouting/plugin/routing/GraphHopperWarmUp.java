@@ -0,0 +1,277 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.service.distance.RoutingException;
+import org.optaweb.vehiclerouting.service.region.BoundingBox;
+import org.optaweb.vehiclerouting.service.region.RegionService;
+import org.optaweb.vehiclerouting.service.route.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.storage.BaseGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RoutingCHEdgeExplorer;
+import com.graphhopper.storage.RoutingCHEdgeIterator;
+import com.graphhopper.storage.RoutingCHGraph;
+import com.graphhopper.util.FetchMode;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.arc.properties.IfBuildProperty;
+import io.quarkus.runtime.StartupEvent;
+
+/**
+ * Warms up GraphHopper after the graph is loaded and reports readiness when it's done.
+ * <p>
+ * The first queries after loading are slow because routing code hasn't been compiled by the JIT yet and
+ * a memory-mapped graph hasn't been paged in. The warm-up reads the whole graph once, including the speed-up
+ * techniques of the routing mode, and then asks for travel times and paths between random points in the working
+ * region. That's the code the application runs when locations are added and routes are shown. It runs in
+ * the background, so the application starts as usual, but the readiness check stays down until the warm-up is
+ * finished.
+ * <p>
+ * The random points are routed by a {@link GraphHopperRouter} of its own, so their paths don't fill the path cache
+ * of the application's {@link Router} and don't count in the cache metrics. The router is dropped after the warm-up
+ * together with the snaps of the points. Their travel times stay in the persistent travel time cache. The points are
+ * the same on every start, so later starts find the travel times in the cache and only the paths are routed again.
+ */
+@ApplicationScoped
+@Readiness
+@IfBuildProperty(name = "app.routing.engine", stringValue = "GRAPHHOPPER", enableIfMissing = true)
+class GraphHopperWarmUp implements HealthCheck {
+
+    static final String NAME = "GraphHopper warm-up";
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphHopperWarmUp.class);
+
+    private final GraphHopper graphHopper;
+    private final Supplier<GraphHopperRouter> routerFactory;
+    private final RegionService regionService;
+    private final GraphStorage graphStorage;
+    private final int queries;
+    private final boolean touchGraph;
+    private volatile boolean done;
+    private volatile int touchedEdges;
+    private volatile int touchedShortcuts;
+    private volatile long touchedLandmarkBytes;
+    private volatile int completedQueries;
+
+    @Inject
+    GraphHopperWarmUp(
+            GraphHopper graphHopper,
+            Provider<TravelTimeCache> travelTimeCache,
+            RegionService regionService,
+            RoutingProperties routingProperties) {
+        this(
+                graphHopper,
+                // Created when the warm-up runs. A disabled warm-up doesn't need the travel time cache.
+                () -> new GraphHopperRouter(
+                        graphHopper,
+                        travelTimeCache.get(),
+                        new SimpleMeterRegistry(),
+                        CropArea.of(routingProperties.crop()),
+                        routingProperties.maxSnapDistanceMeters()),
+                regionService,
+                routingProperties.graphStorage(),
+                routingProperties.warmUp().queries(),
+                routingProperties.warmUp().touchGraph());
+    }
+
+    GraphHopperWarmUp(
+            GraphHopper graphHopper,
+            Supplier<GraphHopperRouter> routerFactory,
+            RegionService regionService,
+            GraphStorage graphStorage,
+            int queries,
+            boolean touchGraph) {
+        if (queries < 0) {
+            throw new IllegalArgumentException("Warm-up queries (" + queries + ") must not be negative");
+        }
+        this.graphHopper = graphHopper;
+        this.routerFactory = routerFactory;
+        this.regionService = regionService;
+        this.graphStorage = graphStorage;
+        this.queries = queries;
+        this.touchGraph = touchGraph;
+        this.done = queries == 0 && !touchGraph;
+    }
+
+    void onStart(@Observes StartupEvent startupEvent) {
+        if (done) {
+            return;
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(this::warmUp);
+        // Lets the warm-up finish and then releases the thread.
+        executor.shutdown();
+    }
+
+    void warmUp() {
+        long start = System.nanoTime();
+        try {
+            if (touchGraph) {
+                touchGraph();
+                touchShortcuts();
+                touchLandmarks();
+            }
+            routeRandomQueries();
+            logger.info(
+                    "GraphHopper warm-up finished in {} ms"
+                            + " ({} edges, {} shortcuts and {} landmark bytes read, {} queries)",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    touchedEdges, touchedShortcuts, touchedLandmarkBytes, completedQueries);
+        } catch (RuntimeException e) {
+            // A failed warm-up only makes the first queries slower. It mustn't keep the application unready.
+            logger.warn("GraphHopper warm-up failed", e);
+        } finally {
+            done = true;
+        }
+    }
+
+    private void touchGraph() {
+        BaseGraph graph = graphHopper.getBaseGraph();
+        NodeAccess nodeAccess = graph.getNodeAccess();
+        double checksum = 0;
+        for (int node = 0; node < graph.getNodes(); node++) {
+            checksum += nodeAccess.getLat(node);
+        }
+        AllEdgesIterator edges = graph.getAllEdges();
+        int edgeCount = 0;
+        while (edges.next()) {
+            checksum += edges.getDistance() + edges.fetchWayGeometry(FetchMode.PILLAR_ONLY).size();
+            if (++edgeCount % 100_000 == 0) {
+                touchedEdges = edgeCount;
+            }
+        }
+        touchedEdges = edgeCount;
+        logger.debug("Graph checksum: {}", checksum);
+    }
+
+    /**
+     * Read the node levels and all edges of the contraction hierarchies, the way a CH query reads them.
+     */
+    private void touchShortcuts() {
+        RoutingCHGraph chGraph = graphHopper.getCHGraphs().get(Constants.GRAPHHOPPER_PROFILE);
+        if (chGraph == null) {
+            return;
+        }
+        RoutingCHEdgeExplorer explorer = chGraph.createOutEdgeExplorer();
+        double checksum = 0;
+        int edgeCount = 0;
+        for (int node = 0; node < chGraph.getNodes(); node++) {
+            checksum += chGraph.getLevel(node);
+            RoutingCHEdgeIterator edges = explorer.setBaseNode(node);
+            while (edges.next()) {
+                checksum += edges.getWeight(false);
+                if (edges.isShortcut() && ++edgeCount % 100_000 == 0) {
+                    touchedShortcuts = edgeCount;
+                }
+            }
+        }
+        touchedShortcuts = edgeCount;
+        logger.debug("Shortcut checksum: {}", checksum);
+    }
+
+    /**
+     * Page in the landmark weights. GraphHopper has no public API to read them, so the files of the landmark storage
+     * are read instead. The OS keeps them in the page cache that the memory-mapped storage uses. Landmarks stored in
+     * the heap are already loaded.
+     */
+    private void touchLandmarks() {
+        if (graphStorage == GraphStorage.RAM || graphHopper.getLandmarks().isEmpty()) {
+            return;
+        }
+        Path graphDir = Paths.get(graphHopper.getGraphHopperLocation());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long bytes = 0;
+        try (DirectoryStream<Path> landmarkFiles = Files.newDirectoryStream(graphDir, "landmarks_*")) {
+            for (Path landmarkFile : landmarkFiles) {
+                try (FileChannel channel = FileChannel.open(landmarkFile)) {
+                    for (int read = channel.read(buffer); read >= 0; read = channel.read(buffer)) {
+                        bytes += read;
+                        buffer.clear();
+                        touchedLandmarkBytes = bytes;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot read landmarks in " + graphDir, e);
+        }
+    }
+
+    private void routeRandomQueries() {
+        if (queries == 0) {
+            return;
+        }
+        BoundingBox bounds = regionService.boundingBox();
+        double minLatitude = bounds.getSouthWest().latitude().doubleValue();
+        double minLongitude = bounds.getSouthWest().longitude().doubleValue();
+        double latitudeSpan = bounds.getNorthEast().latitude().doubleValue() - minLatitude;
+        double longitudeSpan = bounds.getNorthEast().longitude().doubleValue() - minLongitude;
+        GraphHopperRouter router = routerFactory.get();
+        // Fixed seed so that the warm-up is the same on every start.
+        Random random = new Random(0);
+        for (int i = 0; i < queries; i++) {
+            Coordinates from = Coordinates.of(
+                    minLatitude + random.nextDouble() * latitudeSpan,
+                    minLongitude + random.nextDouble() * longitudeSpan);
+            Coordinates to = Coordinates.of(
+                    minLatitude + random.nextDouble() * latitudeSpan,
+                    minLongitude + random.nextDouble() * longitudeSpan);
+            route(router, from, to);
+            completedQueries = i + 1;
+        }
+    }
+
+    /**
+     * Route between two points like the application routes between two new locations.
+     */
+    private static void route(GraphHopperRouter router, Coordinates from, Coordinates to) {
+        // Points off the road network are expected. They still warm up snapping.
+        if (!router.isLocationAvailable(from) || !router.isLocationAvailable(to)) {
+            return;
+        }
+        try {
+            router.travelTimesMillis(from, Collections.singletonList(to));
+            router.travelTimesMillis(Collections.singletonList(from), to);
+            router.getPath(from, to);
+        } catch (RoutingException e) {
+            // Points on different islands are expected too.
+        }
+    }
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named(NAME)
+                .status(done)
+                .withData("touchedEdges", touchedEdges)
+                .withData("touchedShortcuts", touchedShortcuts)
+                .withData("touchedLandmarkBytes", touchedLandmarkBytes)
+                .withData("queries", completedQueries)
+                .build();
+    }
+}
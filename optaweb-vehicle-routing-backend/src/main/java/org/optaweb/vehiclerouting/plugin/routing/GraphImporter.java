@@ -0,0 +1,170 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.graphhopper.GraphHopper;
+
+/**
+ * Imports a GraphHopper graph from an OSM file ahead of time, so that the application can be started with
+ * {@code app.routing.graph-import=OFFLINE} and only loads the graph.
+ * <p>
+ * The graph is imported into the same directory the application uses ({@code <graph hopper dir>/<region>}), together
+ * with a {@link GraphKey graph key}. Nothing is imported if the existing graph was imported from the same OSM file
+ * content with the same settings and routing mode. Otherwise, the graph is imported into a temporary directory first
+ * and replaces the existing graph only when the import succeeds. Run it on the classpath of the built application, for
+ * example:
+ *
+ * <pre>
+ * java -cp "target/quarkus-app/lib/main/*:target/quarkus-app/app/*" \
+ *     org.optaweb.vehiclerouting.plugin.routing.GraphImporter \
+ *     local/openstreetmap/belgium-latest.osm.pbf local/graphhopper [CH] \
+ *     [--crop-bounding-box=50.75,4.25,50.95,4.50 | --crop-polygon="50.8 4.3,50.9 4.3,50.9 4.5"] \
+ *     [--crop-buffer-km=5]
+ * </pre>
+ *
+ * The crop options must match the {@code app.routing.crop} properties of the application, otherwise the application
+ * refuses the graph.
+ */
+public class GraphImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphImporter.class);
+    private static final String USAGE = "Usage: GraphImporter <OSM file> <graph hopper dir> [routing mode]"
+            + " [--crop-bounding-box=<south,west,north,east> | --crop-polygon=<lat lon,lat lon,...>]"
+            + " [--crop-buffer-km=<km>]";
+    private static final double DEFAULT_CROP_BUFFER_KM = 5;
+
+    private GraphImporter() {
+        throw new AssertionError("Utility class");
+    }
+
+    public static void main(String[] args) {
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                positional.add(arg);
+            }
+        }
+        Set<String> unknownOptions = new HashSet<>(options.keySet());
+        unknownOptions.removeAll(Set.of("crop-bounding-box", "crop-polygon", "crop-buffer-km"));
+        if (positional.size() < 2 || positional.size() > 3 || !unknownOptions.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        Path osmFile = Paths.get(positional.get(0)).toAbsolutePath();
+        Path graphDir = RoutingConfig.graphDir(Paths.get(positional.get(1)), osmFile.getFileName().toString());
+        RoutingMode routingMode = positional.size() == 3 ? RoutingMode.valueOf(positional.get(2)) : RoutingMode.CH;
+        Optional<CropArea> cropArea = CropArea.parse(
+                Optional.ofNullable(options.get("crop-bounding-box")),
+                Optional.ofNullable(options.get("crop-polygon")),
+                options.containsKey("crop-buffer-km")
+                        ? Double.parseDouble(options.get("crop-buffer-km"))
+                        : DEFAULT_CROP_BUFFER_KM);
+        if (Files.notExists(osmFile)) {
+            throw new IllegalStateException("The OSM file (" + osmFile + ") does not exist");
+        }
+        importGraph(osmFile, graphDir, routingMode, cropArea);
+    }
+
+    /**
+     * Import the graph unless the graph directory already contains a graph imported from the same OSM file content
+     * with the same settings and prepared for the same routing mode.
+     *
+     * @param osmFile OSM file
+     * @param graphDir graph directory
+     * @param routingMode routing mode to prepare the graph for
+     * @param cropArea area that the import is restricted to
+     * @return true if the graph has been imported, false if it was up to date
+     */
+    static boolean importGraph(Path osmFile, Path graphDir, RoutingMode routingMode, Optional<CropArea> cropArea) {
+        String settings = GraphKey.settings(graphHopper(graphDir, routingMode).getProfiles(), cropArea);
+        Optional<GraphKey> existingKey = Files.isDirectory(graphDir) ? GraphKey.read(graphDir) : Optional.empty();
+        if (existingKey.isPresent()
+                && existingKey.get().staleReason(osmFile, settings).isEmpty()
+                && existingKey.get().isPreparedFor(routingMode)) {
+            logger.info("The graph in {} is up to date ({})", graphDir, existingKey.get());
+            return false;
+        }
+
+        GraphKey graphKey = GraphKey.of(osmFile, settings, routingMode);
+        Path importDir = graphDir.resolveSibling(graphDir.getFileName() + ".import");
+        deleteRecursively(importDir);
+        logger.info("Importing OSM file {} into {} ({} routing mode)", osmFile, importDir, routingMode);
+        long start = System.nanoTime();
+        GraphHopper graphHopper = graphHopper(importDir, routingMode);
+        try {
+            RoutingConfig.importGraph(graphHopper, osmFile, cropArea);
+        } finally {
+            graphHopper.close();
+        }
+        graphKey.write(importDir);
+        logger.info("Import finished in {} s", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+
+        replace(graphDir, importDir);
+        logger.info("The graph in {} has been replaced ({})", graphDir, graphKey);
+        return true;
+    }
+
+    private static GraphHopper graphHopper(Path graphDir, RoutingMode routingMode) {
+        GraphHopper graphHopper = new GraphHopper();
+        RoutingConfig.configureGraphStorage(graphHopper, graphDir, GraphStorage.RAM);
+        RoutingConfig.configureProfiles(graphHopper);
+        RoutingConfig.configureRoutingMode(graphHopper, routingMode);
+        return graphHopper;
+    }
+
+    /**
+     * Replace the graph directory with the imported graph. Renaming a directory is atomic but it can't replace
+     * a non-empty directory, so the old graph is moved away first.
+     */
+    private static void replace(Path graphDir, Path importDir) {
+        Path oldDir = graphDir.resolveSibling(graphDir.getFileName() + ".old");
+        try {
+            deleteRecursively(oldDir);
+            if (Files.exists(graphDir)) {
+                Files.move(graphDir, oldDir);
+            }
+            Files.move(importDir, graphDir);
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot move the imported graph to " + graphDir, e);
+        }
+        deleteRecursively(oldDir);
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (Files.notExists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            // Children before parents.
+            List<Path> filesToDelete = files.sorted(Comparator.reverseOrder()).collect(toList());
+            for (Path file : filesToDelete) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot delete " + dir, e);
+        }
+    }
+}
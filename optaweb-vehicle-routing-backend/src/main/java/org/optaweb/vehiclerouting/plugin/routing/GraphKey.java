@@ -0,0 +1,245 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static java.util.stream.Collectors.joining;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+
+import com.graphhopper.config.Profile;
+
+/**
+ * Identifies what a GraphHopper graph was imported from: the content hash of the OSM file and the import settings
+ * (routing profiles and crop area). It's stored in the graph directory so that a graph that doesn't match the current
+ * OSM file or configuration is refused instead of silently giving wrong routes.
+ * <p>
+ * The key also records the routing mode that the graph has been prepared for. A different routing mode doesn't make
+ * the graph stale because the missing preparation can be added to the graph, but only by a process that can write it.
+ * <p>
+ * Hashing a country-sized OSM file takes seconds, so the size and modification time of the OSM file are stored too.
+ * The file is only hashed again when they change.
+ */
+final class GraphKey {
+
+    static final String FILE_NAME = "graph-key.properties";
+
+    private static final String OSM_SHA256 = "osm.sha256";
+    private static final String OSM_SIZE = "osm.size";
+    private static final String OSM_LAST_MODIFIED = "osm.last-modified";
+    private static final String SETTINGS = "settings";
+    private static final String ROUTING_MODE = "routing-mode";
+
+    private final String osmSha256;
+    private final long osmSize;
+    private final long osmLastModified;
+    private final String settings;
+    // Empty for graphs imported before the routing mode was recorded.
+    private final Optional<RoutingMode> routingMode;
+
+    private GraphKey(
+            String osmSha256,
+            long osmSize,
+            long osmLastModified,
+            String settings,
+            Optional<RoutingMode> routingMode) {
+        this.osmSha256 = Objects.requireNonNull(osmSha256);
+        this.osmSize = osmSize;
+        this.osmLastModified = osmLastModified;
+        this.settings = Objects.requireNonNull(settings);
+        this.routingMode = Objects.requireNonNull(routingMode);
+    }
+
+    /**
+     * Create the key of a graph imported from the given OSM file with the given settings.
+     *
+     * @param osmFile OSM file
+     * @param settings import settings, see {@link #settings(List, Optional)}
+     * @param routingMode routing mode that the graph is prepared for
+     * @return graph key
+     * @throws RoutingEngineException if the OSM file cannot be read
+     */
+    static GraphKey of(Path osmFile, String settings, RoutingMode routingMode) {
+        try {
+            return new GraphKey(
+                    sha256(osmFile),
+                    Files.size(osmFile),
+                    Files.getLastModifiedTime(osmFile).toMillis(),
+                    settings,
+                    Optional.of(routingMode));
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot read OSM file (" + osmFile + ")", e);
+        }
+    }
+
+    /**
+     * Describe import settings that change the graph.
+     *
+     * @param profiles routing profiles
+     * @param cropArea area that the import is restricted to
+     * @return import settings
+     */
+    static String settings(List<Profile> profiles, Optional<CropArea> cropArea) {
+        String profileSettings = profiles.stream()
+                .map(profile -> profile.getName() + ":" + profile.getVehicle() + ":" + profile.getWeighting())
+                .collect(joining(","));
+        return cropArea.map(area -> profileSettings + ";" + area.settings()).orElse(profileSettings);
+    }
+
+    /**
+     * Read the key of the graph in the given directory.
+     *
+     * @param graphDir graph directory
+     * @return graph key or empty if the graph doesn't have a key
+     * @throws RoutingEngineException if the key cannot be read
+     */
+    static Optional<GraphKey> read(Path graphDir) {
+        Path file = graphDir.resolve(FILE_NAME);
+        if (Files.notExists(file)) {
+            return Optional.empty();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            return Optional.of(new GraphKey(
+                    properties.getProperty(OSM_SHA256),
+                    Long.parseLong(properties.getProperty(OSM_SIZE)),
+                    Long.parseLong(properties.getProperty(OSM_LAST_MODIFIED)),
+                    properties.getProperty(SETTINGS),
+                    Optional.ofNullable(properties.getProperty(ROUTING_MODE)).map(RoutingMode::valueOf)));
+        } catch (IOException | RuntimeException e) {
+            throw new RoutingEngineException("Cannot read graph key (" + file + ")", e);
+        }
+    }
+
+    /**
+     * Store the key in the given graph directory.
+     *
+     * @param graphDir graph directory
+     * @throws RoutingEngineException if the key cannot be written
+     */
+    void write(Path graphDir) {
+        Properties properties = new Properties();
+        properties.setProperty(OSM_SHA256, osmSha256);
+        properties.setProperty(OSM_SIZE, Long.toString(osmSize));
+        properties.setProperty(OSM_LAST_MODIFIED, Long.toString(osmLastModified));
+        properties.setProperty(SETTINGS, settings);
+        routingMode.ifPresent(mode -> properties.setProperty(ROUTING_MODE, mode.name()));
+        Path file = graphDir.resolve(FILE_NAME);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Written by the graph import. Don't edit.");
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot write graph key (" + file + ")", e);
+        }
+    }
+
+    /**
+     * Find out why a graph with this key can't be used with the given OSM file and settings.
+     * The OSM file is only checked if it exists, so that a prebuilt graph can be used without the OSM file.
+     *
+     * @param osmFile OSM file that the graph should be imported from
+     * @param settings current import settings
+     * @return reason why the graph is stale or empty if it's up to date
+     * @throws RoutingEngineException if the OSM file cannot be read
+     */
+    Optional<String> staleReason(Path osmFile, String settings) {
+        if (!this.settings.equals(settings)) {
+            return Optional.of("it was imported with settings (" + this.settings
+                    + ") that differ from the current settings (" + settings + ")");
+        }
+        if (Files.notExists(osmFile)) {
+            return Optional.empty();
+        }
+        try {
+            if (Files.size(osmFile) == osmSize && Files.getLastModifiedTime(osmFile).toMillis() == osmLastModified) {
+                return Optional.empty();
+            }
+            return sha256(osmFile).equals(osmSha256)
+                    ? Optional.empty()
+                    : Optional.of("it was imported from a different version of " + osmFile.getFileName());
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot read OSM file (" + osmFile + ")", e);
+        }
+    }
+
+    /**
+     * Whether the graph has been prepared for the given routing mode.
+     *
+     * @param routingMode routing mode
+     * @return true if the graph has the speed-up techniques of exactly that routing mode
+     */
+    boolean isPreparedFor(RoutingMode routingMode) {
+        return this.routingMode.equals(Optional.of(routingMode));
+    }
+
+    /**
+     * Key of the same graph after it has been prepared for another routing mode.
+     *
+     * @param routingMode routing mode that the graph has been prepared for
+     * @return graph key
+     */
+    GraphKey withRoutingMode(RoutingMode routingMode) {
+        return new GraphKey(osmSha256, osmSize, osmLastModified, settings, Optional.of(routingMode));
+    }
+
+    String osmSha256() {
+        return osmSha256;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform must support SHA-256", e);
+        }
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        GraphKey graphKey = (GraphKey) o;
+        return osmSha256.equals(graphKey.osmSha256)
+                && settings.equals(graphKey.settings)
+                && routingMode.equals(graphKey.routingMode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(osmSha256, settings, routingMode);
+    }
+
+    @Override
+    public String toString() {
+        return "GraphKey{osmSha256=" + osmSha256
+                + ", settings=" + settings
+                + ", routingMode=" + routingMode.map(RoutingMode::name).orElse("unknown") + '}';
+    }
+}
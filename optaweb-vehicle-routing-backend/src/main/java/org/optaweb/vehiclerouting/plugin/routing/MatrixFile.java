@@ -0,0 +1,269 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.service.distance.DistanceCalculator;
+import org.optaweb.vehiclerouting.service.region.BoundingBox;
+import org.optaweb.vehiclerouting.service.route.Router;
+
+/**
+ * Precomputed travel times (and optionally paths) between a fixed set of points, stored in a memory-mapped file.
+ * <p>
+ * File layout, big-endian:
+ * <ol>
+ * <li>header: magic and format version, number of points, flags, bounding box (4 doubles), position of path
+ * offsets</li>
+ * <li>points: latitude and longitude of each point (2 doubles)</li>
+ * <li>matrix: travel time in milliseconds from each point to each point (int), row by row, padded to 8 bytes</li>
+ * <li>path points (only with {@link #FLAG_PATHS}): latitude and longitude of each path point (2 doubles)</li>
+ * <li>path offsets (only with {@link #FLAG_PATHS}): index of the first path point of each matrix cell (long),
+ * followed by the total number of path points</li>
+ * </ol>
+ * The file may be bigger than the 2 GB limit of one mapped buffer, so it's mapped in segments. All values are
+ * aligned to their size, so no value crosses a segment boundary.
+ */
+final class MatrixFile {
+
+    static final int FLAG_PATHS = 1;
+
+    private static final long MAGIC = 0x4f57_5652_4d46_0001L; // "OWVRMF" + format version
+    private static final int HEADER_BYTES = 64;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final int size;
+    private final boolean hasPaths;
+    private final BoundingBox bounds;
+    private final long matrixPosition;
+    private final long pathPointsPosition;
+    private final long pathOffsetsPosition;
+    // Index of each point by TravelTimeCache key of its coordinates.
+    private final Map<Long, Integer> indexes;
+
+    private MatrixFile(MappedByteBuffer[] segments) {
+        this.segments = segments;
+        if (getLong(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a matrix file or an unsupported format version");
+        }
+        size = getInt(8);
+        hasPaths = (getInt(12) & FLAG_PATHS) != 0;
+        bounds = new BoundingBox(
+                Coordinates.of(getDouble(16), getDouble(24)),
+                Coordinates.of(getDouble(32), getDouble(40)));
+        pathOffsetsPosition = getLong(48);
+        matrixPosition = HEADER_BYTES + 16L * size;
+        pathPointsPosition = align(matrixPosition + 4L * size * size);
+        indexes = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            indexes.putIfAbsent(TravelTimeCache.key(latitude(i), longitude(i)), i);
+        }
+    }
+
+    /**
+     * Map a matrix file into memory.
+     *
+     * @param file matrix file
+     * @return matrix file
+     * @throws RoutingEngineException if the file cannot be read or isn't a matrix file
+     */
+    static MatrixFile open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IllegalArgumentException("The file is too small (" + fileSize + " bytes)");
+            }
+            int segmentCount = (int) ((fileSize + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                // The mapping stays valid after the channel is closed.
+                segments[i] = channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        position,
+                        Math.min(fileSize - position, 1L << SEGMENT_SHIFT));
+            }
+            return new MatrixFile(segments);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new RoutingEngineException("Cannot open matrix file (" + file + ")", e);
+        }
+    }
+
+    /**
+     * Calculate travel times (and optionally paths) between all points and write them to a matrix file.
+     * Rows are calculated and written one by one, so only path offsets are kept in memory.
+     *
+     * @param file file to write
+     * @param points points of the matrix
+     * @param bounds bounding box reported by the matrix file
+     * @param distanceCalculator calculates travel times
+     * @param router calculates paths, may be {@code null} to omit paths
+     * @throws RoutingEngineException if the file cannot be written
+     */
+    static void write(
+            Path file,
+            List<Coordinates> points,
+            BoundingBox bounds,
+            DistanceCalculator distanceCalculator,
+            Router router) {
+        int size = points.size();
+        long[] pathOffsets = router == null ? null : new long[Math.multiplyExact(size, size) + 1];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeLong(MAGIC);
+            out.writeInt(size);
+            out.writeInt(router == null ? 0 : FLAG_PATHS);
+            out.writeDouble(bounds.getSouthWest().latitude().doubleValue());
+            out.writeDouble(bounds.getSouthWest().longitude().doubleValue());
+            out.writeDouble(bounds.getNorthEast().latitude().doubleValue());
+            out.writeDouble(bounds.getNorthEast().longitude().doubleValue());
+            // Position of path offsets. It's known when the paths have been written.
+            out.writeLong(0);
+            out.write(new byte[HEADER_BYTES - 56]);
+            for (Coordinates point : points) {
+                writePoint(out, point);
+            }
+            for (Coordinates from : points) {
+                for (long millis : distanceCalculator.travelTimesMillis(from, points)) {
+                    out.writeInt(Distance.toIntMillis(millis));
+                }
+            }
+            long matrixEnd = HEADER_BYTES + 16L * size + 4L * size * size;
+            out.write(new byte[(int) (align(matrixEnd) - matrixEnd)]);
+            if (router == null) {
+                return;
+            }
+            long pathPoints = 0;
+            for (int from = 0; from < size; from++) {
+                for (int to = 0; to < size; to++) {
+                    pathOffsets[from * size + to] = pathPoints;
+                    for (Coordinates pathPoint : router.getPath(points.get(from), points.get(to))) {
+                        writePoint(out, pathPoint);
+                        pathPoints++;
+                    }
+                }
+            }
+            pathOffsets[size * size] = pathPoints;
+            for (long pathOffset : pathOffsets) {
+                out.writeLong(pathOffset);
+            }
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot write matrix file (" + file + ")", e);
+        }
+        if (router != null) {
+            long pathOffsetsPosition = align(HEADER_BYTES + 16L * size + 4L * size * size)
+                    + 16 * pathOffsets[size * size];
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(8).putLong(pathOffsetsPosition).flip(), 48);
+            } catch (IOException e) {
+                throw new RoutingEngineException("Cannot write matrix file (" + file + ")", e);
+            }
+        }
+    }
+
+    private static void writePoint(DataOutputStream out, Coordinates point) throws IOException {
+        out.writeDouble(point.latitude().doubleValue());
+        out.writeDouble(point.longitude().doubleValue());
+    }
+
+    /**
+     * Number of points.
+     *
+     * @return number of points
+     */
+    int size() {
+        return size;
+    }
+
+    boolean hasPaths() {
+        return hasPaths;
+    }
+
+    BoundingBox bounds() {
+        return bounds;
+    }
+
+    /**
+     * Index of the point with the given coordinates.
+     *
+     * @param coordinates coordinates
+     * @return index of the point or -1 if there is no point with these coordinates
+     */
+    int indexOf(Coordinates coordinates) {
+        Integer index = indexes.get(TravelTimeCache.key(
+                coordinates.latitude().doubleValue(),
+                coordinates.longitude().doubleValue()));
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Travel time between two points.
+     *
+     * @param from index of the origin
+     * @param to index of the destination
+     * @return travel time in milliseconds
+     */
+    long travelTimeMillis(int from, int to) {
+        return getInt(matrixPosition + 4 * ((long) from * size + to));
+    }
+
+    /**
+     * Path between two points.
+     *
+     * @param from index of the origin
+     * @param to index of the destination
+     * @return path points
+     * @throws IllegalStateException if the file doesn't have paths
+     */
+    List<Coordinates> path(int from, int to) {
+        if (!hasPaths) {
+            throw new IllegalStateException("The matrix file doesn't have paths");
+        }
+        long cell = (long) from * size + to;
+        long first = getLong(pathOffsetsPosition + 8 * cell);
+        long end = getLong(pathOffsetsPosition + 8 * (cell + 1));
+        List<Coordinates> path = new ArrayList<>((int) (end - first));
+        for (long point = first; point < end; point++) {
+            long position = pathPointsPosition + 16 * point;
+            path.add(Coordinates.of(getDouble(position), getDouble(position + 8)));
+        }
+        return path;
+    }
+
+    private double latitude(int index) {
+        return getDouble(HEADER_BYTES + 16L * index);
+    }
+
+    private double longitude(int index) {
+        return getDouble(HEADER_BYTES + 16L * index + 8);
+    }
+
+    private int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & SEGMENT_MASK));
+    }
+
+    private long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & SEGMENT_MASK));
+    }
+
+    private double getDouble(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getDouble((int) (position & SEGMENT_MASK));
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
@@ -0,0 +1,108 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Exports travel times (and optionally paths) between given points to a {@link MatrixFile matrix file}
+ * for the {@link MatrixFileRouter matrix file routing engine}.
+ * <p>
+ * Routes with a GraphHopper graph that has been imported and prepared for the {@link RoutingMode#CH CH} routing mode
+ * by the application before. The graph is opened read-only. Points are read from a CSV file
+ * with one {@code latitude,longitude} pair per line. Empty lines and lines starting with {@code #} are ignored.
+ * Run it on the classpath of the built application, for example:
+ *
+ * <pre>
+ * java -cp "target/quarkus-app/lib/main/*:target/quarkus-app/app/*" \
+ *     org.optaweb.vehiclerouting.plugin.routing.MatrixFileExporter \
+ *     local/graphhopper/belgium-latest points.csv belgium.matrix [--paths]
+ * </pre>
+ */
+public class MatrixFileExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatrixFileExporter.class);
+
+    private MatrixFileExporter() {
+        throw new AssertionError("Utility class");
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 4 || (args.length == 4 && !args[3].equals("--paths"))) {
+            System.err.println("Usage: MatrixFileExporter <graph dir> <points CSV> <matrix file> [--paths]");
+            System.exit(1);
+        }
+        Path graphDir = Paths.get(args[0]);
+        List<Coordinates> points = readPoints(Paths.get(args[1]));
+        Path matrixFile = Paths.get(args[2]);
+        boolean paths = args.length == 4;
+
+        GraphHopper graphHopper = new GraphHopper();
+        RoutingConfig.configureGraphStorage(graphHopper, graphDir, GraphStorage.MMAP_RO);
+        graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
+        RoutingConfig.configureRoutingMode(graphHopper, RoutingMode.CH);
+        if (!graphHopper.load()) {
+            throw new IllegalStateException("There is no GraphHopper graph in " + graphDir.toAbsolutePath());
+        }
+
+        Path travelTimeCacheFile = matrixFile.resolveSibling(matrixFile.getFileName() + ".travel-times.tmp");
+        try (TravelTimeCache travelTimeCache = TravelTimeCache.open(travelTimeCacheFile)) {
+            GraphHopperRouter router = new GraphHopperRouter(graphHopper, travelTimeCache, new SimpleMeterRegistry());
+            logger.info(
+                    "Exporting travel times{} between {} points to {}",
+                    paths ? " and paths" : "", points.size(), matrixFile);
+            long start = System.nanoTime();
+            MatrixFile.write(matrixFile, points, router.getBounds(), router, paths ? router : null);
+            logger.info("Export finished in {} s", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        } finally {
+            graphHopper.close();
+            deleteQuietly(travelTimeCacheFile);
+            deleteQuietly(TravelTimeCache.lockFile(travelTimeCacheFile));
+        }
+    }
+
+    static List<Coordinates> readPoints(Path csvFile) {
+        try (Stream<String> lines = Files.lines(csvFile)) {
+            return lines
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(line -> {
+                        String[] values = line.split(",");
+                        if (values.length != 2) {
+                            throw new IllegalArgumentException("Expected latitude,longitude but got: " + line);
+                        }
+                        return Coordinates.of(
+                                Double.parseDouble(values[0].trim()),
+                                Double.parseDouble(values[1].trim()));
+                    })
+                    .collect(toList());
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot read points (" + csvFile + ")", e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Cannot delete {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.service.distance.DistanceCalculator;
+import org.optaweb.vehiclerouting.service.distance.RoutingException;
+import org.optaweb.vehiclerouting.service.region.BoundingBox;
+import org.optaweb.vehiclerouting.service.region.Region;
+import org.optaweb.vehiclerouting.service.route.Router;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+
+/**
+ * Reads travel times and paths from a precomputed {@link MatrixFile matrix file} instead of routing.
+ * <p>
+ * Only the points stored in the file can be routed between. That makes the engine suitable for reproducible solver
+ * and load benchmarks on real road data without loading a road network graph. The file is created by
+ * {@link MatrixFileExporter}.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "app.routing.engine", stringValue = "MATRIX_FILE")
+class MatrixFileRouter implements Router, DistanceCalculator, Region {
+
+    private final MatrixFile matrixFile;
+
+    @Inject
+    MatrixFileRouter(RoutingProperties routingProperties) {
+        this(MatrixFile.open(Paths.get(routingProperties.matrixFile().orElseThrow(() -> new IllegalStateException(
+                "The matrix file routing engine needs the app.routing.matrix-file property.")))));
+    }
+
+    MatrixFileRouter(MatrixFile matrixFile) {
+        this.matrixFile = matrixFile;
+    }
+
+    @Override
+    public long travelTimeMillis(Coordinates from, Coordinates to) {
+        return matrixFile.travelTimeMillis(indexOf(from), indexOf(to));
+    }
+
+    @Override
+    public long[] travelTimesMillis(Coordinates from, List<Coordinates> to) {
+        int fromIndex = indexOf(from);
+        long[] travelTimes = new long[to.size()];
+        for (int i = 0; i < travelTimes.length; i++) {
+            travelTimes[i] = matrixFile.travelTimeMillis(fromIndex, indexOf(to.get(i)));
+        }
+        return travelTimes;
+    }
+
+    @Override
+    public long[] travelTimesMillis(List<Coordinates> from, Coordinates to) {
+        int toIndex = indexOf(to);
+        long[] travelTimes = new long[from.size()];
+        for (int i = 0; i < travelTimes.length; i++) {
+            travelTimes[i] = matrixFile.travelTimeMillis(indexOf(from.get(i)), toIndex);
+        }
+        return travelTimes;
+    }
+
+    /**
+     * Get the path stored in the matrix file. Files without paths give a straight line.
+     */
+    @Override
+    public List<Coordinates> getPath(Coordinates from, Coordinates to) {
+        if (!matrixFile.hasPaths()) {
+            return Arrays.asList(from, to);
+        }
+        return matrixFile.path(indexOf(from), indexOf(to));
+    }
+
+    /**
+     * Only the points stored in the matrix file are available.
+     */
+    @Override
+    public boolean isLocationAvailable(Coordinates coordinates) {
+        return matrixFile.indexOf(coordinates) >= 0;
+    }
+
+    @Override
+    public void forget(Coordinates coordinates) {
+        // Nothing is cached.
+    }
+
+    @Override
+    public BoundingBox getBounds() {
+        return matrixFile.bounds();
+    }
+
+    private int indexOf(Coordinates coordinates) {
+        int index = matrixFile.indexOf(coordinates);
+        if (index < 0) {
+            throw new RoutingException("(" + coordinates + ") isn't one of the points in the matrix file");
+        }
+        return index;
+    }
+}
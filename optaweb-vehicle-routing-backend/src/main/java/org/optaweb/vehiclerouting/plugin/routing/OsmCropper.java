@@ -0,0 +1,166 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.carrotsearch.hppc.LongArrayList;
+import com.carrotsearch.hppc.LongHashSet;
+import com.graphhopper.reader.ReaderElement;
+import com.graphhopper.reader.ReaderNode;
+import com.graphhopper.reader.ReaderRelation;
+import com.graphhopper.reader.ReaderWay;
+import com.graphhopper.reader.osm.OSMInputFile;
+
+/**
+ * Writes the part of an OSM file that lies in a {@link CropArea crop area} to an OSM XML file that GraphHopper
+ * imports instead of the whole file.
+ * <p>
+ * Ways that have at least one node in the crop area are kept complete, including their nodes outside the area,
+ * so that roads crossing the border aren't cut into pieces. Relations (turn restrictions) are kept if they have
+ * a kept way member. The OSM file is read twice: the first pass selects nodes and ways, the second pass writes them.
+ * Only IDs are kept in memory.
+ */
+final class OsmCropper {
+
+    private static final Logger logger = LoggerFactory.getLogger(OsmCropper.class);
+
+    private OsmCropper() {
+        throw new AssertionError("Utility class");
+    }
+
+    /**
+     * Crop the OSM file.
+     *
+     * @param osmFile OSM file (PBF or XML)
+     * @param cropArea crop area
+     * @param croppedFile OSM XML file to write
+     * @throws RoutingEngineException if the OSM file cannot be read or the cropped file cannot be written
+     */
+    static void crop(Path osmFile, CropArea cropArea, Path croppedFile) {
+        logger.info("Cropping OSM file {} to {}", osmFile, croppedFile);
+        long start = System.nanoTime();
+        LongHashSet nodesInArea = new LongHashSet();
+        LongHashSet keptNodes = new LongHashSet();
+        LongHashSet keptWays = new LongHashSet();
+        // OSM files list nodes before ways, so the coordinates of way nodes are known when the way is read.
+        read(osmFile, element -> {
+            if (element instanceof ReaderNode) {
+                ReaderNode node = (ReaderNode) element;
+                if (cropArea.contains(node.getLat(), node.getLon())) {
+                    nodesInArea.add(node.getId());
+                }
+            } else if (element instanceof ReaderWay) {
+                LongArrayList nodes = ((ReaderWay) element).getNodes();
+                for (int i = 0; i < nodes.size(); i++) {
+                    if (nodesInArea.contains(nodes.get(i))) {
+                        keptWays.add(element.getId());
+                        keptNodes.addAll(nodes);
+                        break;
+                    }
+                }
+            }
+        });
+        nodesInArea.release();
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(croppedFile))) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("osm");
+            writer.writeAttribute("version", "0.6");
+            writer.writeAttribute("generator", "optaweb-vehicle-routing");
+            read(osmFile, element -> {
+                if (element instanceof ReaderNode && keptNodes.contains(element.getId())) {
+                    writeNode(writer, (ReaderNode) element);
+                } else if (element instanceof ReaderWay && keptWays.contains(element.getId())) {
+                    writeWay(writer, (ReaderWay) element);
+                } else if (element instanceof ReaderRelation && hasKeptWay((ReaderRelation) element, keptWays)) {
+                    writeRelation(writer, (ReaderRelation) element);
+                }
+            });
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (IOException | XMLStreamException e) {
+            throw new RoutingEngineException("Cannot write cropped OSM file (" + croppedFile + ")", e);
+        }
+        logger.info(
+                "OSM file cropped to {} ways and {} nodes in {} s",
+                keptWays.size(), keptNodes.size(), TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+    }
+
+    private static boolean hasKeptWay(ReaderRelation relation, LongHashSet keptWays) {
+        return relation.getMembers().stream()
+                .anyMatch(member -> member.getType() == ReaderElement.Type.WAY && keptWays.contains(member.getRef()));
+    }
+
+    private static void writeNode(XMLStreamWriter writer, ReaderNode node) throws XMLStreamException {
+        writer.writeStartElement("node");
+        writer.writeAttribute("id", Long.toString(node.getId()));
+        writer.writeAttribute("lat", Double.toString(node.getLat()));
+        writer.writeAttribute("lon", Double.toString(node.getLon()));
+        writeTags(writer, node);
+        writer.writeEndElement();
+    }
+
+    private static void writeWay(XMLStreamWriter writer, ReaderWay way) throws XMLStreamException {
+        writer.writeStartElement("way");
+        writer.writeAttribute("id", Long.toString(way.getId()));
+        LongArrayList nodes = way.getNodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            writer.writeEmptyElement("nd");
+            writer.writeAttribute("ref", Long.toString(nodes.get(i)));
+        }
+        writeTags(writer, way);
+        writer.writeEndElement();
+    }
+
+    private static void writeRelation(XMLStreamWriter writer, ReaderRelation relation) throws XMLStreamException {
+        writer.writeStartElement("relation");
+        writer.writeAttribute("id", Long.toString(relation.getId()));
+        for (ReaderRelation.Member member : relation.getMembers()) {
+            writer.writeEmptyElement("member");
+            writer.writeAttribute("type", member.getType().name().toLowerCase(Locale.ROOT));
+            writer.writeAttribute("ref", Long.toString(member.getRef()));
+            writer.writeAttribute("role", member.getRole());
+        }
+        writeTags(writer, relation);
+        writer.writeEndElement();
+    }
+
+    private static void writeTags(XMLStreamWriter writer, ReaderElement element) throws XMLStreamException {
+        for (Map.Entry<String, Object> tag : element.getTags().entrySet()) {
+            writer.writeEmptyElement("tag");
+            writer.writeAttribute("k", tag.getKey());
+            writer.writeAttribute("v", String.valueOf(tag.getValue()));
+        }
+    }
+
+    private static void read(Path osmFile, ElementHandler handler) {
+        try (OSMInputFile input = new OSMInputFile(osmFile.toFile()).setWorkerThreads(2).open()) {
+            for (ReaderElement element = input.getNext(); element != null; element = input.getNext()) {
+                handler.handle(element);
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new RoutingEngineException("Cannot read OSM file (" + osmFile + ")", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ElementHandler {
+
+        void handle(ReaderElement element) throws XMLStreamException;
+    }
+}
@@ -12,16 +12,24 @@ import java.util.Optional;
 import java.util.stream.Stream;
 
 import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Disposes;
 import javax.enterprise.inject.Produces;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import org.optaweb.vehiclerouting.Profiles;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphImport;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.GraphHopperConfig;
 import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.LMProfile;
 import com.graphhopper.config.Profile;
+import com.graphhopper.storage.BaseGraph;
 
 import io.quarkus.arc.DefaultBean;
 import io.quarkus.arc.profile.UnlessBuildProfile;
@@ -41,6 +49,11 @@ class RoutingConfig {
     private final Optional<String> osmDownloadUrl;
     private final Path graphHopperDir;
     private final Path graphDir;
+    private final Optional<Path> travelTimeCacheDir;
+    private final RoutingMode routingMode;
+    private final GraphStorage graphStorage;
+    private final GraphImport graphImport;
+    private final Optional<CropArea> cropArea;
 
     @Inject
     RoutingConfig(RoutingProperties routingProperties) {
@@ -48,8 +61,24 @@ class RoutingConfig {
         osmFile = osmDir.resolve(routingProperties.osmFile()).toAbsolutePath();
         osmDownloadUrl = routingProperties.osmDownloadUrl();
         graphHopperDir = Paths.get(routingProperties.ghDir());
-        String regionName = routingProperties.osmFile().replaceFirst("\\.osm\\.pbf$", "");
-        graphDir = graphHopperDir.resolve(regionName).toAbsolutePath();
+        graphDir = graphDir(graphHopperDir, routingProperties.osmFile());
+        travelTimeCacheDir = routingProperties.travelTimeCacheDir().map(dir -> Paths.get(dir).toAbsolutePath());
+        routingMode = routingProperties.mode();
+        graphStorage = routingProperties.graphStorage();
+        graphImport = routingProperties.graphImport();
+        cropArea = CropArea.of(routingProperties.crop());
+    }
+
+    /**
+     * Directory of the graph imported from the given OSM file.
+     *
+     * @param graphHopperDir directory where GraphHopper graphs are stored
+     * @param osmFileName OSM file name
+     * @return graph directory
+     */
+    static Path graphDir(Path graphHopperDir, String osmFileName) {
+        String regionName = osmFileName.replaceFirst("\\.osm\\.pbf$", "");
+        return graphHopperDir.resolve(regionName).toAbsolutePath();
     }
 
     /**
@@ -63,11 +92,32 @@ class RoutingConfig {
     @DefaultBean
     GraphHopper graphHopper() {
         GraphHopper graphHopper = new GraphHopper();
-        graphHopper.setGraphHopperLocation(graphDir.toString());
+        configureGraphStorage(graphHopper, graphDir, graphStorage);
+        configureProfiles(graphHopper);
+        configureRoutingMode(graphHopper, routingMode);
+        String importSettings = GraphKey.settings(graphHopper.getProfiles(), cropArea);
 
         if (graphDirIsNotEmpty()) {
-            logger.info("Loading existing GraphHopper graph from: {}", graphDir);
+            Optional<GraphKey> graphKey = verifyGraphKey(importSettings);
+            logger.info("Loading existing GraphHopper graph from: {} ({} storage)", graphDir, graphStorage);
+            // Prepares the speed-up techniques of the routing mode if the graph doesn't have them yet.
+            graphHopper.importOrLoad();
+            if (graphKey.isPresent() && !graphKey.get().isPreparedFor(routingMode)) {
+                graphKey.get().withRoutingMode(routingMode).write(graphDir);
+            }
         } else {
+            if (graphImport == GraphImport.OFFLINE) {
+                throw new IllegalStateException(
+                        "The graph directory (" + graphDir + ") is empty"
+                                + " and app.routing.graph-import is OFFLINE.\n"
+                                + "Import the graph with " + GraphImporter.class.getName() + " first.");
+            }
+            if (graphStorage == GraphStorage.MMAP_RO) {
+                throw new IllegalStateException(
+                        "The graph directory (" + graphDir + ") is empty"
+                                + " and a read-only graph storage can't import the OSM file.\n"
+                                + "Import the graph with app.routing.graph-storage=MMAP or RAM first.");
+            }
             if (Files.notExists(osmFile)) {
                 initDirs();
 
@@ -82,39 +132,195 @@ class RoutingConfig {
                 downloadOsmFile(osmDownloadUrl.get(), osmFile);
             }
             logger.info("Importing OSM file: {}", osmFile);
+            importGraph(graphHopper, osmFile, cropArea);
+            GraphKey.of(osmFile, importSettings, routingMode).write(graphDir);
+        }
+        logger.info("GraphHopper graph loaded ({} routing mode)", routingMode);
+        return graphHopper;
+    }
+
+    /**
+     * Import the OSM file into the graph directory of the given GraphHopper. If there's a crop area, only the part
+     * of the OSM file in the crop area is imported. It's extracted to a temporary OSM file next to the graph directory.
+     *
+     * @param graphHopper configured GraphHopper
+     * @param osmFile OSM file
+     * @param cropArea area that the import is restricted to
+     */
+    static void importGraph(GraphHopper graphHopper, Path osmFile, Optional<CropArea> cropArea) {
+        if (cropArea.isEmpty()) {
             graphHopper.setOSMFile(osmFile.toString());
+            graphHopper.importOrLoad();
+            return;
         }
+        Path croppedFile = Paths.get(graphHopper.getGraphHopperLocation() + ".cropped.osm");
+        try {
+            Files.createDirectories(croppedFile.getParent());
+            OsmCropper.crop(osmFile, cropArea.get(), croppedFile);
+            graphHopper.setOSMFile(croppedFile.toString());
+            graphHopper.importOrLoad();
+        } catch (IOException e) {
+            throw new RoutingEngineException("Can't create directory for the cropped OSM file", e);
+        } finally {
+            try {
+                Files.deleteIfExists(croppedFile);
+            } catch (IOException e) {
+                logger.warn("Cannot delete {}", croppedFile, e);
+            }
+        }
+    }
 
+    /**
+     * Define a profile for each type of request that's going to be made at runtime.
+     *
+     * @param graphHopper GraphHopper that hasn't been loaded yet
+     */
+    static void configureProfiles(GraphHopper graphHopper) {
         /*
-         * Define a profile for each type of request that's going to be made at runtime. We're only going to ask for the fastest
-         * route for a car, so we only need one profile.
+         * We're only going to ask for the fastest route for a car, so we only need one profile.
          *
-         * Change the weighting to "shortest" (and delete the graph directory to re-import it) to optimize for shortest routes.
+         * Change the weighting to "shortest" (and delete the graph directory to re-import it) to optimize for shortest
+         * routes.
          *
-         * Add a second profile with "shortest" weighting (and delete the graph directory) to be able to change travel cost
-         * optimization goal at runtime.
+         * Add a second profile with "shortest" weighting (and delete the graph directory) to be able to change travel
+         * cost optimization goal at runtime.
          */
         graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
-        /*
-         * Quick overview of routing modes:
-         *
-         * Flexible mode:
-         * - Dijkstra or A*
-         * - able to change requirements per request
-         * Speed mode:
-         * - "Contraction Hierarchies" algorithm (CH)
-         * - still Dijkstra but on a "shortcut graph"
-         * Hybrid mode
-         * - landmark algorithm
-         * - flexible and fast
-         *
-         * See https://www.graphhopper.com/blog/2017/08/14/flexible-routing-15-times-faster/.
-         */
-        // Use CH for the only profile we have.
-        graphHopper.getCHPreparationHandler().setCHProfiles(new CHProfile(Constants.GRAPHHOPPER_PROFILE));
-        graphHopper.importOrLoad();
-        logger.info("GraphHopper graph loaded");
-        return graphHopper;
+    }
+
+    /**
+     * Refuse a graph that was imported from a different OSM file or with different settings.
+     * Graphs imported before graph keys were introduced don't have a key. They are only accepted when the graph
+     * is imported on startup.
+     * <p>
+     * A graph prepared for a different routing mode is only accepted if the missing preparation can be done on
+     * startup. It takes minutes for a country-sized graph and it writes the graph, so it's refused with
+     * {@link GraphImport#OFFLINE} import and with {@link GraphStorage#MMAP_RO} storage.
+     *
+     * @return key of the graph or empty if the graph doesn't have a key
+     */
+    private Optional<GraphKey> verifyGraphKey(String importSettings) {
+        Optional<GraphKey> graphKey = GraphKey.read(graphDir);
+        if (graphKey.isEmpty()) {
+            if (graphImport == GraphImport.OFFLINE) {
+                throw new IllegalStateException(
+                        "The graph in " + graphDir + " has no " + GraphKey.FILE_NAME + "."
+                                + " Import it with " + GraphImporter.class.getName() + ".");
+            }
+            logger.warn("The graph in {} has no {}, it can't be checked for being stale", graphDir, GraphKey.FILE_NAME);
+            return graphKey;
+        }
+        graphKey.get().staleReason(osmFile, importSettings).ifPresent(reason -> {
+            throw new IllegalStateException(
+                    "The graph in " + graphDir + " is stale because " + reason + ".\n"
+                            + "Delete the graph directory or import the graph again with "
+                            + GraphImporter.class.getName() + ".");
+        });
+        if (!graphKey.get().isPreparedFor(routingMode)) {
+            if (graphImport == GraphImport.OFFLINE || graphStorage == GraphStorage.MMAP_RO) {
+                throw new IllegalStateException(
+                        "The graph in " + graphDir + " hasn't been prepared for the " + routingMode + " routing mode ("
+                                + graphKey.get() + ").\n"
+                                + "Import the graph again with " + GraphImporter.class.getName()
+                                + " and the " + routingMode + " routing mode.");
+            }
+            logger.info("The graph in {} will be prepared for the {} routing mode", graphDir, routingMode);
+        }
+        return graphKey;
+    }
+
+    /**
+     * Set the graph directory and select how GraphHopper accesses the graph. Must be called before anything else is
+     * configured because it re-initializes GraphHopper, including its profiles.
+     * <p>
+     * With {@link GraphStorage#RAM} the graph is copied into the heap, which makes the heap several GB bigger
+     * for a country-sized graph. Memory-mapped graphs are paged in by the OS on demand. They keep the heap small and
+     * GC pauses short but the resident set size of the process still includes the pages that have been touched.
+     * Read-only mapped pages are shared by all processes that map the same graph files.
+     *
+     * @param graphHopper new GraphHopper instance
+     * @param graphDir graph directory
+     * @param graphStorage graph storage
+     */
+    static void configureGraphStorage(GraphHopper graphHopper, Path graphDir, GraphStorage graphStorage) {
+        // Names of GraphHopper's DAType.
+        String dataAccessType;
+        switch (graphStorage) {
+            case MMAP:
+                dataAccessType = "MMAP";
+                break;
+            case MMAP_RO:
+                dataAccessType = "MMAP_RO";
+                break;
+            default:
+                dataAccessType = "RAM_STORE";
+        }
+        graphHopper.init(new GraphHopperConfig()
+                .putObject("graph.location", graphDir.toString())
+                .putObject("graph.dataaccess.default_type", dataAccessType));
+    }
+
+    /**
+     * Prepare the speed-up techniques of the given routing mode for the only profile we have.
+     * <p>
+     * Quick overview of routing modes:
+     * <ul>
+     * <li>Flexible mode: Dijkstra or A*, able to change requirements per request.</li>
+     * <li>Speed mode: "Contraction Hierarchies" algorithm (CH), still Dijkstra but on a "shortcut graph".</li>
+     * <li>Hybrid mode: landmark algorithm (LM), flexible and fast.</li>
+     * </ul>
+     * Preparations that are missing in an existing graph are done when the graph is loaded, so changing the mode
+     * doesn't require re-importing the OSM file. Unless the graph can't be written on startup because it's imported
+     * offline or the graph storage is read-only.
+     *
+     * @param graphHopper GraphHopper that hasn't been loaded yet
+     * @param routingMode routing mode
+     * @see <a href="https://www.graphhopper.com/blog/2017/08/14/flexible-routing-15-times-faster/">
+     *      Flexible routing 15 times faster</a>
+     */
+    static void configureRoutingMode(GraphHopper graphHopper, RoutingMode routingMode) {
+        if (routingMode == RoutingMode.CH || routingMode == RoutingMode.CH_AND_LM) {
+            graphHopper.getCHPreparationHandler().setCHProfiles(new CHProfile(Constants.GRAPHHOPPER_PROFILE));
+        }
+        if (routingMode == RoutingMode.LM || routingMode == RoutingMode.CH_AND_LM) {
+            graphHopper.getLMPreparationHandler().setLMProfiles(new LMProfile(Constants.GRAPHHOPPER_PROFILE));
+        }
+    }
+
+    /**
+     * Opens the travel time cache of the graph. The cache file is named after the size of the graph, so that travel
+     * times cached for a graph that has been re-imported since aren't used. If the cache directory can't be used,
+     * for example because it isn't writable or another process has the cache open, travel times are only cached
+     * in memory.
+     *
+     * @param graphHopper GraphHopper with a loaded graph
+     * @return travel time cache
+     */
+    @IfBuildProperty(name = "app.routing.engine", stringValue = "GRAPHHOPPER", enableIfMissing = true)
+    @Produces
+    @Singleton
+    TravelTimeCache travelTimeCache(GraphHopper graphHopper) {
+        if (!travelTimeCacheDir.isPresent()) {
+            logger.info("Travel times are cached in memory");
+            return TravelTimeCache.inMemory();
+        }
+        BaseGraph graph = graphHopper.getBaseGraph();
+        Path cacheFile = travelTimeCacheDir.get()
+                .resolve(graphDir.getFileName())
+                .resolve("travel-times-" + Constants.GRAPHHOPPER_PROFILE
+                        + "-" + graph.getNodes() + "-" + graph.getEdges() + ".bin");
+        try {
+            TravelTimeCache travelTimeCache = TravelTimeCache.open(cacheFile);
+            logger.info("Travel time cache opened: {} ({} travel times)", cacheFile, travelTimeCache.size());
+            return travelTimeCache;
+        } catch (RoutingEngineException e) {
+            logger.warn("Travel times are cached in memory because the travel time cache can't be opened", e);
+            return TravelTimeCache.inMemory();
+        }
+    }
+
+    void closeTravelTimeCache(@Disposes TravelTimeCache travelTimeCache) {
+        travelTimeCache.close();
     }
 
     /**
@@ -2,6 +2,10 @@ package org.optaweb.vehiclerouting.plugin.routing;
 
 public class RoutingEngineException extends RuntimeException {
 
+    RoutingEngineException(String message) {
+        super(message);
+    }
+
     RoutingEngineException(String message, Throwable cause) {
         super(message, cause);
     }
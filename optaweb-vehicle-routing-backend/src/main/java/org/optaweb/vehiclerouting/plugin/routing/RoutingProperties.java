@@ -17,6 +17,12 @@ public interface RoutingProperties {
      */
     String ghDir();
 
+    /**
+     * Directory where travel times are cached across restarts. Processes must not share it. Travel times are only
+     * cached in memory if it's not set or if it can't be written.
+     */
+    Optional<String> travelTimeCacheDir();
+
     /**
      * OpenStreetMap file name.
      */
@@ -32,8 +38,145 @@ public interface RoutingProperties {
      */
     RoutingEngine engine();
 
+    /**
+     * Matrix file read by the {@link RoutingEngine#MATRIX_FILE matrix file} engine.
+     */
+    Optional<String> matrixFile();
+
+    /**
+     * Which speed-up techniques GraphHopper prepares for the routing profile.
+     */
+    RoutingMode mode();
+
+    /**
+     * How the GraphHopper graph is accessed.
+     */
+    GraphStorage graphStorage();
+
+    /**
+     * Where the GraphHopper graph is imported from the OSM file.
+     */
+    GraphImport graphImport();
+
+    /**
+     * Area that the OSM import is restricted to.
+     */
+    Crop crop();
+
+    /**
+     * Maximum distance of a new location from the nearest road. Locations farther away are rejected.
+     */
+    double maxSnapDistanceMeters();
+
+    /**
+     * Settings of the {@link RoutingEngine#AIR air distance} engine.
+     */
+    Air air();
+
+    /**
+     * Warm-up of the GraphHopper graph after it's loaded.
+     */
+    WarmUp warmUp();
+
     enum RoutingEngine {
         AIR,
-        GRAPHHOPPER
+        GRAPHHOPPER,
+        /**
+         * Travel times and paths between fixed points are read from a precomputed file.
+         */
+        MATRIX_FILE
+    }
+
+    enum RoutingMode {
+        /**
+         * No preparation. Bidirectional A* on the road graph. Slowest queries but instant startup and least memory.
+         */
+        FLEXIBLE,
+        /**
+         * Contraction hierarchies. Fastest queries, slow preparation.
+         */
+        CH,
+        /**
+         * Landmarks. Faster than flexible, cheaper to prepare than CH.
+         */
+        LM,
+        /**
+         * Both contraction hierarchies and landmarks. CH is used for queries, landmarks make it possible to switch
+         * to flexible queries without another preparation.
+         */
+        CH_AND_LM
+    }
+
+    enum GraphStorage {
+        /**
+         * The graph is loaded into the heap.
+         */
+        RAM,
+        /**
+         * The graph files are memory-mapped. The graph lives in the OS page cache instead of the heap.
+         */
+        MMAP,
+        /**
+         * Like {@link #MMAP} but read-only, so that several processes can share the pages. The graph must have
+         * been imported before.
+         */
+        MMAP_RO
+    }
+
+    enum GraphImport {
+        /**
+         * The graph is imported when the application starts and the graph directory is empty.
+         */
+        STARTUP,
+        /**
+         * The graph must have been imported by {@link GraphImporter} before. The application refuses to start
+         * without it.
+         */
+        OFFLINE
+    }
+
+    interface Crop {
+
+        /**
+         * Crop bounding box as {@code south,west,north,east}.
+         */
+        Optional<String> boundingBox();
+
+        /**
+         * Crop polygon vertices as {@code latitude longitude} pairs separated by commas.
+         */
+        Optional<String> polygon();
+
+        /**
+         * Width of the area around the crop area that's imported too.
+         */
+        double bufferKm();
+    }
+
+    interface Air {
+
+        /**
+         * Average travel speed.
+         */
+        double speedKph();
+
+        /**
+         * Ratio of the road distance to the great-circle distance. Roads are rarely straight, so it's usually more
+         * than 1.
+         */
+        double detourFactor();
+    }
+
+    interface WarmUp {
+
+        /**
+         * Number of routing queries between random points in the working region. Zero disables the queries.
+         */
+        int queries();
+
+        /**
+         * Whether all nodes and edges of the graph are read once so that memory-mapped graph storage is paged in.
+         */
+        boolean touchGraph();
     }
 }
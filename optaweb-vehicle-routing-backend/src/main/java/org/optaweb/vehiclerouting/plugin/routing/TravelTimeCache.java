@@ -0,0 +1,326 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.graphhopper.storage.MMapDataAccess;
+
+/**
+ * Persistent cache of travel times between points on the road network.
+ * <p>
+ * Points are identified by their snapped coordinates, so the cache doesn't depend on location IDs and survives
+ * clearing the locations. Travel times are kept in an open-addressing hash table in a memory-mapped file, or on the
+ * heap if the cache doesn't need to survive a restart. The file must belong to a single graph and routing profile.
+ * It's locked while the cache is open because it's rewritten when the table grows, so it can't be shared by processes.
+ */
+class TravelTimeCache implements Closeable {
+
+    static final long MISS = -1;
+
+    private static final long MAGIC = 0x4f57_5654_5443_0001L; // "OWVTTC" + format version
+    private static final int HEADER_BYTES = 32; // magic, capacity, size, reserved
+    private static final int SLOT_BYTES = 24; // from key, to key, travel time + 1 (0 marks an empty slot)
+    private static final int INITIAL_CAPACITY = 1 << 16;
+    // Keeps the file under the 2 GB limit of a single mapped buffer.
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    // Both null if the cache is only kept in memory.
+    private final Path file;
+    private final FileLock lock;
+    // Guarded by this. Null after the cache is closed.
+    private ByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    private TravelTimeCache(Path file, FileLock lock) {
+        this.file = file;
+        this.lock = lock;
+    }
+
+    /**
+     * Open the cache file. A new file is created if it doesn't exist or if it isn't a valid cache file.
+     *
+     * @param file cache file
+     * @return the cache
+     * @throws RoutingEngineException if the file cannot be opened or if it's used by another cache
+     */
+    static TravelTimeCache open(Path file) {
+        FileLock lock = lock(file);
+        TravelTimeCache cache = new TravelTimeCache(file, lock);
+        try {
+            cache.load();
+        } catch (IOException e) {
+            release(lock);
+            throw new RoutingEngineException("Cannot open travel time cache (" + file + ")", e);
+        }
+        return cache;
+    }
+
+    /**
+     * Create an empty cache that lives on the heap and is lost when the application stops.
+     *
+     * @return the cache
+     */
+    static TravelTimeCache inMemory() {
+        TravelTimeCache cache = new TravelTimeCache(null, null);
+        cache.buffer = emptyTable(ByteBuffer.allocate(Math.toIntExact(fileSize(INITIAL_CAPACITY))), INITIAL_CAPACITY);
+        cache.capacity = INITIAL_CAPACITY;
+        return cache;
+    }
+
+    /**
+     * Encode a point into a cache key. Coordinates are rounded to 6 decimal places (about 10 cm).
+     *
+     * @param latitude latitude
+     * @param longitude longitude
+     * @return key of the point
+     */
+    static long key(double latitude, double longitude) {
+        long lat = Math.round(latitude * 1e6);
+        long lon = Math.round(longitude * 1e6);
+        return (lat << 32) | (lon & 0xFFFF_FFFFL);
+    }
+
+    /**
+     * Travel time between two points.
+     *
+     * @param from key of the origin
+     * @param to key of the destination
+     * @return travel time in milliseconds or {@link #MISS} if it isn't cached
+     */
+    synchronized long get(long from, long to) {
+        int slot = find(buffer, capacity, from, to);
+        long value = buffer.getLong(offset(slot) + 16);
+        return value == 0 ? MISS : value - 1;
+    }
+
+    /**
+     * Cache travel time between two points.
+     *
+     * @param from key of the origin
+     * @param to key of the destination
+     * @param millis travel time in milliseconds
+     */
+    synchronized void put(long from, long to, long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Travel time (" + millis + ") must not be negative");
+        }
+        if ((size + 1) * 2L > capacity) {
+            if (capacity == MAX_CAPACITY) {
+                // Full. Keep serving what's cached.
+                return;
+            }
+            grow();
+        }
+        if (write(buffer, capacity, from, to, millis)) {
+            size++;
+            buffer.putInt(12, size);
+        }
+    }
+
+    /**
+     * Number of cached travel times.
+     *
+     * @return number of cached travel times
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Write the cached travel times to the file and release it. The cache must not be used after it's closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (buffer == null) {
+            return;
+        }
+        if (file != null) {
+            ((MappedByteBuffer) buffer).force();
+            MMapDataAccess.cleanMappedByteBuffer(buffer);
+            release(lock);
+        }
+        buffer = null;
+    }
+
+    private void load() throws IOException {
+        if (Files.exists(file) && Files.size(file) >= HEADER_BYTES) {
+            MappedByteBuffer existing = map(file, Files.size(file));
+            int existingCapacity = existing.getInt(8);
+            if (existing.getLong(0) == MAGIC
+                    && Integer.bitCount(existingCapacity) == 1
+                    && Files.size(file) == fileSize(existingCapacity)) {
+                buffer = existing;
+                capacity = existingCapacity;
+                size = existing.getInt(12);
+                return;
+            }
+            MMapDataAccess.cleanMappedByteBuffer(existing);
+        }
+        buffer = allocate(INITIAL_CAPACITY, file);
+        capacity = INITIAL_CAPACITY;
+        size = 0;
+    }
+
+    private void grow() {
+        int newCapacity = capacity * 2;
+        try {
+            ByteBuffer newBuffer = allocate(newCapacity, file == null ? null : newFile());
+            for (int slot = 0; slot < capacity; slot++) {
+                long value = buffer.getLong(offset(slot) + 16);
+                if (value != 0) {
+                    write(newBuffer, newCapacity, buffer.getLong(offset(slot)), buffer.getLong(offset(slot) + 8), value - 1);
+                }
+            }
+            newBuffer.putInt(12, size);
+            if (file != null) {
+                ((MappedByteBuffer) newBuffer).force();
+                Files.move(newFile(), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                // Otherwise the old mapping keeps the pages of the replaced file until it's garbage collected.
+                MMapDataAccess.cleanMappedByteBuffer(buffer);
+            }
+            buffer = newBuffer;
+            capacity = newCapacity;
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot grow travel time cache (" + file + ")", e);
+        }
+    }
+
+    /**
+     * Allocate an empty table on the heap or, if a file is given, in a new memory-mapped file.
+     */
+    private static ByteBuffer allocate(int capacity, Path mappedFile) throws IOException {
+        if (mappedFile == null) {
+            return emptyTable(ByteBuffer.allocate(Math.toIntExact(fileSize(capacity))), capacity);
+        }
+        Files.deleteIfExists(mappedFile);
+        return emptyTable(map(mappedFile, fileSize(capacity)), capacity);
+    }
+
+    private static ByteBuffer emptyTable(ByteBuffer buffer, int capacity) {
+        buffer.putLong(0, MAGIC);
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, 0);
+        return buffer;
+    }
+
+    private Path newFile() {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Lock the cache file, so that other processes don't use it while it's open. The lock is taken on a separate
+     * file because the cache file is replaced when it grows.
+     */
+    private static FileLock lock(Path file) {
+        Path lockFile = lockFile(file);
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Locked by another cache in this JVM.
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new RoutingEngineException("Cannot lock travel time cache (" + file + ")", e);
+        }
+        closeQuietly(channel);
+        throw new RoutingEngineException("Travel time cache (" + file + ") is used by another process");
+    }
+
+    /**
+     * File that's locked while the cache file is open. It's left behind when the cache is closed.
+     *
+     * @param file cache file
+     * @return lock file
+     */
+    static Path lockFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".lock");
+    }
+
+    private static void release(FileLock lock) {
+        try {
+            // Closing the channel releases the lock.
+            lock.acquiredBy().close();
+        } catch (IOException e) {
+            throw new RoutingEngineException("Cannot unlock travel time cache", e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing left to release.
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed. Mapping beyond the end of the file extends
+            // the file with zeros, which marks all slots empty.
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Write a travel time into the slot of the given key.
+     *
+     * @return true if the key is new
+     */
+    private static boolean write(ByteBuffer buffer, int capacity, long from, long to, long millis) {
+        int offset = offset(find(buffer, capacity, from, to));
+        boolean isNew = buffer.getLong(offset + 16) == 0;
+        buffer.putLong(offset, from);
+        buffer.putLong(offset + 8, to);
+        // Written last so that a slot never looks occupied with a half-written key.
+        buffer.putLong(offset + 16, millis + 1);
+        return isNew;
+    }
+
+    /**
+     * Find the slot that holds the given key, or the empty slot where it should be written.
+     */
+    private static int find(ByteBuffer buffer, int capacity, long from, long to) {
+        int mask = capacity - 1;
+        for (int slot = hash(from, to) & mask;; slot = (slot + 1) & mask) {
+            int offset = offset(slot);
+            if (buffer.getLong(offset + 16) == 0
+                    || (buffer.getLong(offset) == from && buffer.getLong(offset + 8) == to)) {
+                return slot;
+            }
+        }
+    }
+
+    private static int hash(long from, long to) {
+        long h = (from * 0x9E3779B97F4A7C15L) ^ Long.rotateLeft(to * 0xC2B2AE3D27D4EB4FL, 31);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_BYTES + (long) capacity * SLOT_BYTES;
+    }
+}
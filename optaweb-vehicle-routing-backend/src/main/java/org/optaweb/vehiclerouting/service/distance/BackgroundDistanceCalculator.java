@@ -0,0 +1,118 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.service.distance.DistanceMatrixProperties.MatrixStorage;
+
+/**
+ * Calculates travel times in a thread pool so that a new location doesn't have to wait for them.
+ * Until they are ready, travel times are estimated from the great-circle distance.
+ */
+@ApplicationScoped
+public class BackgroundDistanceCalculator {
+
+    private final DistanceCalculator distanceCalculator;
+    private final boolean enabled;
+    private final double millisPerMeter;
+    // Null when disabled.
+    private final ExecutorService executor;
+
+    @Inject
+    BackgroundDistanceCalculator(DistanceCalculator distanceCalculator, DistanceMatrixProperties properties) {
+        this(distanceCalculator,
+                properties.progressive().enabled() && properties.storage() != MatrixStorage.SPARSE,
+                properties.progressive().threads(),
+                properties.progressive().estimateSpeedKph());
+    }
+
+    BackgroundDistanceCalculator(DistanceCalculator distanceCalculator, boolean enabled, int threads,
+            double estimateSpeedKph) {
+        if (estimateSpeedKph <= 0) {
+            throw new IllegalArgumentException("Estimate speed (" + estimateSpeedKph + " km/h) must be positive");
+        }
+        this.distanceCalculator = distanceCalculator;
+        this.enabled = enabled;
+        this.millisPerMeter = 3600.0 / estimateSpeedKph;
+        this.executor = enabled ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    /**
+     * Whether new locations should be added with estimated distances. This is never enabled with a
+     * {@link MatrixStorage#SPARSE sparse} matrix, which already limits the number of
+     * travel times calculated for a new location.
+     *
+     * @return true if distances should be calculated in the background
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Estimate travel time without routing.
+     *
+     * @param from origin
+     * @param to destination
+     * @return estimated travel time in milliseconds
+     */
+    public long estimateMillis(Coordinates from, Coordinates to) {
+        return Math.round(GreatCircleDistance.meters(from, to) * millisPerMeter);
+    }
+
+    /**
+     * Calculate travel times between a location and other locations in the background.
+     *
+     * @param location new location
+     * @param others other locations
+     * @return travel times that complete exceptionally with {@link RoutingException} if any of them cannot be
+     *         calculated
+     * @throws IllegalStateException if background calculation isn't enabled
+     */
+    public CompletableFuture<TravelTimes> calculate(Coordinates location, List<Coordinates> others) {
+        if (!enabled) {
+            throw new IllegalStateException("Background distance calculation is disabled");
+        }
+        return CompletableFuture.supplyAsync(() -> others.isEmpty()
+                ? new TravelTimes(new long[0], new long[0])
+                : new TravelTimes(
+                        distanceCalculator.travelTimesMillis(location, others),
+                        distanceCalculator.travelTimesMillis(others, location)),
+                executor);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Travel times between a location and other locations, in the order of the other locations.
+     */
+    public static final class TravelTimes {
+
+        private final long[] toOthers;
+        private final long[] fromOthers;
+
+        public TravelTimes(long[] toOthers, long[] fromOthers) {
+            this.toOthers = toOthers;
+            this.fromOthers = fromOthers;
+        }
+
+        public long[] toOthers() {
+            return toOthers;
+        }
+
+        public long[] fromOthers() {
+            return fromOthers;
+        }
+    }
+}
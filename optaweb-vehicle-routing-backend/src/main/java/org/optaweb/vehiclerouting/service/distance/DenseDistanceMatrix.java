@@ -0,0 +1,320 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrix;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrixRow;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+
+/**
+ * Distance matrix that keeps travel times in primitive arrays.
+ * <p>
+ * Each location gets a compact index when it enters the matrix. The index addresses both the location's row and its
+ * column, so a cell costs 4 bytes instead of a boxed key, a {@link Distance} and a hash map node
+ * (see {@link DistanceMatrixImpl}). Looking up a distance is a hash probe followed by an array access.
+ * <p>
+ * Cells hold {@link Distance#toIntMillis(long) int milliseconds}, so a travel time longer than
+ * {@link Distance#MAX_INT_MILLIS} is rejected.
+ * <p>
+ * Removed locations keep their index until their columns are reclaimed. Reclaiming re-indexes the remaining locations
+ * and publishes a new version of every row.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "app.distance-matrix.storage", stringValue = "DENSE")
+class DenseDistanceMatrix implements DistanceMatrix {
+
+    /**
+     * Marks a cell whose distance hasn't been recorded. Distances are never negative.
+     */
+    static final long UNKNOWN = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final DistanceCalculator distanceCalculator;
+    // All fields below are guarded by this. Columns are reclaimed on the solver thread while locations are added
+    // on a request thread.
+    private LocationIndex index = new LocationIndex();
+    // Rows by location index. Rows of removed locations are null.
+    private Row[] rows = new Row[INITIAL_CAPACITY];
+    // Indexes of removed locations whose columns haven't been reclaimed yet.
+    private BitSet removedColumns = new BitSet();
+    private int dimension;
+    private long version;
+
+    @Inject
+    DenseDistanceMatrix(DistanceCalculator distanceCalculator) {
+        this.distanceCalculator = distanceCalculator;
+    }
+
+    @Override
+    public synchronized DistanceMatrixRow addLocation(Location newLocation) {
+        Row existingRow = row(newLocation);
+        if (existingRow != null) {
+            return existingRow;
+        }
+
+        // Calculate everything first so that a routing failure leaves the matrix untouched.
+        List<Row> others = liveRows();
+        int[] distancesToOthers = new int[0];
+        int[] distancesFromOthers = new int[0];
+        if (!others.isEmpty()) {
+            List<Coordinates> otherCoordinates = others.stream()
+                    .map(other -> other.location.coordinates())
+                    .collect(toList());
+            distancesToOthers = toIntMillis(
+                    distanceCalculator.travelTimesMillis(newLocation.coordinates(), otherCoordinates));
+            distancesFromOthers = toIntMillis(
+                    distanceCalculator.travelTimesMillis(otherCoordinates, newLocation.coordinates()));
+        }
+
+        Row newRow = createRow(newLocation);
+        newRow.set(newRow.index, 0);
+        for (int i = 0; i < others.size(); i++) {
+            Row other = others.get(i);
+            newRow.set(other.index, distancesToOthers[i]);
+            other.set(newRow.index, distancesFromOthers[i]);
+        }
+        return newRow;
+    }
+
+    @Override
+    public synchronized Distance distance(Location from, Location to) {
+        Row row = row(from);
+        if (row == null) {
+            throw new IllegalArgumentException("Unknown 'from' location (" + from + ")");
+        }
+        long millis = row.millisTo(to.id());
+        if (millis == UNKNOWN) {
+            throw new IllegalArgumentException("Unknown 'to' location (" + to + ")");
+        }
+        return Distance.ofMillis(millis);
+    }
+
+    @Override
+    public synchronized void put(Location from, Location to, Distance distance) {
+        int millis = Distance.toIntMillis(distance.millis());
+        Row fromRow = row(from);
+        if (fromRow == null) {
+            fromRow = createRow(from);
+        }
+        int toIndex = index.indexOf(to.id());
+        if (toIndex == LocationIndex.NOT_FOUND) {
+            toIndex = index.add(to.id());
+        }
+        fromRow.set(toIndex, millis);
+    }
+
+    @Override
+    public synchronized void update(Location from, Location to, Distance distance) {
+        Row fromRow = row(from);
+        int toIndex = index.indexOf(to.id());
+        if (fromRow != null && toIndex != LocationIndex.NOT_FOUND && !removedColumns.get(toIndex)
+                && fromRow.millisTo(to.id()) != UNKNOWN) {
+            fromRow.set(toIndex, Distance.toIntMillis(distance.millis()));
+        }
+    }
+
+    @Override
+    public synchronized void removeLocation(Location location) {
+        int removedIndex = index.indexOf(location.id());
+        if (removedIndex != LocationIndex.NOT_FOUND && removedIndex < rows.length && rows[removedIndex] != null) {
+            // Remove the row. The location keeps its index, so the column stays readable by the solver
+            // until it processes the removal.
+            rows[removedIndex] = null;
+            distanceCalculator.forget(location.coordinates());
+            removedColumns.set(removedIndex);
+            dimension--;
+        }
+    }
+
+    @Override
+    public synchronized void reclaimRemovedColumns() {
+        int removedCount = removedColumns.cardinality();
+        if (removedCount == 0 || removedCount * DistanceMatrixImpl.RECLAIM_RATIO < dimension) {
+            return;
+        }
+        // Give new indexes to all locations that haven't been removed. That includes locations that have a column
+        // but no row yet (their distances are being put during reload).
+        LocationIndex newIndex = new LocationIndex();
+        int[] newColumns = new int[index.size()];
+        for (int oldColumn = 0; oldColumn < newColumns.length; oldColumn++) {
+            newColumns[oldColumn] = removedColumns.get(oldColumn)
+                    ? LocationIndex.NOT_FOUND
+                    : newIndex.add(index.locationId(oldColumn));
+        }
+
+        version++;
+        Row[] newRows = new Row[Math.max(INITIAL_CAPACITY, newIndex.size())];
+        for (Row row : liveRows()) {
+            int[] oldCells = row.snapshot.cells;
+            int[] newCells = newCells(newIndex.size());
+            for (int oldColumn = 0; oldColumn < Math.min(oldCells.length, newColumns.length); oldColumn++) {
+                if (newColumns[oldColumn] != LocationIndex.NOT_FOUND) {
+                    newCells[newColumns[oldColumn]] = oldCells[oldColumn];
+                }
+            }
+            row.index = newColumns[row.index];
+            // Readers either see the old row version or the new one, never a half-removed column.
+            row.snapshot = new Snapshot(newIndex, newCells, version);
+            newRows[row.index] = row;
+        }
+        index = newIndex;
+        rows = newRows;
+        removedColumns = new BitSet();
+    }
+
+    @Override
+    public synchronized void clear() {
+        liveRows().forEach(row -> distanceCalculator.forget(row.location.coordinates()));
+        // Rows handed out before clearing keep the old index, so they can't see locations added after clearing.
+        index = new LocationIndex();
+        rows = new Row[INITIAL_CAPACITY];
+        removedColumns = new BitSet();
+        dimension = 0;
+    }
+
+    /**
+     * Number of rows in the matrix.
+     *
+     * @return number of rows
+     */
+    public synchronized int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Number of columns, including columns of removed locations that haven't been reclaimed yet.
+     *
+     * @return number of columns
+     */
+    synchronized int columns() {
+        return index.size();
+    }
+
+    private Row row(Location location) {
+        int rowIndex = index.indexOf(location.id());
+        return rowIndex == LocationIndex.NOT_FOUND || rowIndex >= rows.length ? null : rows[rowIndex];
+    }
+
+    private Row createRow(Location location) {
+        int rowIndex = index.indexOf(location.id());
+        if (rowIndex == LocationIndex.NOT_FOUND) {
+            rowIndex = index.add(location.id());
+        }
+        if (rowIndex >= rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(rowIndex + 1, rows.length * 2));
+        }
+        Row row = new Row(location, rowIndex, new Snapshot(index, newCells(INITIAL_CAPACITY), version));
+        rows[rowIndex] = row;
+        // The location may be coming back before its column has been reclaimed.
+        removedColumns.clear(rowIndex);
+        dimension++;
+        return row;
+    }
+
+    private List<Row> liveRows() {
+        List<Row> liveRows = new ArrayList<>(dimension);
+        for (Row row : rows) {
+            if (row != null) {
+                liveRows.add(row);
+            }
+        }
+        return liveRows;
+    }
+
+    private static int[] newCells(int capacity) {
+        int[] cells = new int[capacity];
+        Arrays.fill(cells, (int) UNKNOWN);
+        return cells;
+    }
+
+    static int[] toIntMillis(long[] millis) {
+        int[] intMillis = new int[millis.length];
+        for (int i = 0; i < millis.length; i++) {
+            intMillis[i] = Distance.toIntMillis(millis[i]);
+        }
+        return intMillis;
+    }
+
+    /**
+     * Handle of a distance row given to the planner. Distances are stored in a growable array addressed by column
+     * index. The array and the column index are replaced by a new version when columns are reclaimed.
+     */
+    static final class Row implements DistanceMatrixRow {
+
+        private final Location location;
+        private int index;
+        // Volatile, so that the solver thread sees cells written by the thread that adds locations.
+        private volatile Snapshot snapshot;
+
+        private Row(Location location, int index, Snapshot snapshot) {
+            this.location = location;
+            this.index = index;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public Distance distanceTo(long locationId) {
+            long millis = millisTo(locationId);
+            if (millis == UNKNOWN) {
+                throw new IllegalArgumentException(
+                        "Distance from " + location
+                                + " to " + locationId
+                                + " hasn't been recorded.");
+            }
+            return Distance.ofMillis(millis);
+        }
+
+        long millisTo(long locationId) {
+            Snapshot current = snapshot;
+            int column = current.columns.indexOf(locationId);
+            return column == LocationIndex.NOT_FOUND || column >= current.cells.length
+                    ? UNKNOWN
+                    : current.cells[column];
+        }
+
+        long version() {
+            return snapshot.version;
+        }
+
+        private void set(int column, int millis) {
+            Snapshot current = snapshot;
+            if (column >= current.cells.length) {
+                int oldLength = current.cells.length;
+                int[] grownCells = Arrays.copyOf(current.cells, Math.max(column + 1, oldLength + (oldLength >> 1)));
+                Arrays.fill(grownCells, oldLength, grownCells.length, (int) UNKNOWN);
+                current = new Snapshot(current.columns, grownCells, current.version);
+            }
+            current.cells[column] = millis;
+            // Publish the write (and the grown array).
+            snapshot = current;
+        }
+    }
+
+    /**
+     * Version of a row. New columns are written into the current version. Reclaiming columns creates a new version.
+     */
+    private static final class Snapshot {
+
+        private final LocationIndex columns;
+        private final int[] cells;
+        private final long version;
+
+        private Snapshot(LocationIndex columns, int[] cells, long version) {
+            this.columns = columns;
+            this.cells = cells;
+            this.version = version;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.optaweb.vehiclerouting.service.distance;
 
+import java.util.List;
+
 import org.optaweb.vehiclerouting.domain.Coordinates;
 
 /**
@@ -16,4 +18,66 @@ public interface DistanceCalculator {
      * @throws RoutingException when the distance between given coordinates cannot be calculated
      */
     long travelTimeMillis(Coordinates from, Coordinates to);
+
+    /**
+     * Calculate travel times from one origin to many destinations.
+     * <p>
+     * Implementations should override this if they can share work between the destinations.
+     *
+     * @param from origin
+     * @param to destinations
+     * @return travel times in milliseconds, in the order of destinations
+     * @throws RoutingException when the distance to any of the destinations cannot be calculated
+     */
+    default long[] travelTimesMillis(Coordinates from, List<Coordinates> to) {
+        long[] travelTimes = new long[to.size()];
+        for (int i = 0; i < travelTimes.length; i++) {
+            travelTimes[i] = travelTimeMillis(from, to.get(i));
+        }
+        return travelTimes;
+    }
+
+    /**
+     * Calculate travel times from many origins to one destination.
+     * <p>
+     * Implementations should override this if they can share work between the origins.
+     *
+     * @param from origins
+     * @param to destination
+     * @return travel times in milliseconds, in the order of origins
+     * @throws RoutingException when the distance from any of the origins cannot be calculated
+     */
+    default long[] travelTimesMillis(List<Coordinates> from, Coordinates to) {
+        long[] travelTimes = new long[from.size()];
+        for (int i = 0; i < travelTimes.length; i++) {
+            travelTimes[i] = travelTimeMillis(from.get(i), to);
+        }
+        return travelTimes;
+    }
+
+    /**
+     * Decide cheaply whether travel times to and from the given coordinates can be calculated, so that a location
+     * that can't be routed is rejected before it's stored and before any travel times are calculated.
+     * <p>
+     * Implementations should override this if they can tell without routing. It's not a guarantee that all
+     * travel times will be found.
+     *
+     * @param coordinates coordinates of a new location
+     * @return false if travel times to and from the coordinates certainly can't be calculated
+     */
+    default boolean isLocationAvailable(Coordinates coordinates) {
+        return true;
+    }
+
+    /**
+     * Drop anything cached about the given coordinates because the location there has been removed.
+     * <p>
+     * Implementations that cache per-coordinate state should override this. It's not an error to forget
+     * coordinates that haven't been seen.
+     *
+     * @param coordinates coordinates of a removed location
+     */
+    default void forget(Coordinates coordinates) {
+        // Nothing is cached by default.
+    }
 }
@@ -1,22 +1,40 @@
 package org.optaweb.vehiclerouting.service.distance;
 
+import static java.util.stream.Collectors.toList;
+
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import org.optaweb.vehiclerouting.domain.Coordinates;
 import org.optaweb.vehiclerouting.domain.Distance;
 import org.optaweb.vehiclerouting.domain.Location;
 import org.optaweb.vehiclerouting.service.location.DistanceMatrix;
 import org.optaweb.vehiclerouting.service.location.DistanceMatrixRow;
 
+import io.quarkus.arc.properties.IfBuildProperty;
+
 @ApplicationScoped
+@IfBuildProperty(name = "app.distance-matrix.storage", stringValue = "MAP", enableIfMissing = true)
 class DistanceMatrixImpl implements DistanceMatrix {
 
+    /**
+     * Columns are reclaimed once there is one removed column per this many rows. Reclaiming copies every row,
+     * so doing it after each removal would make removing locations quadratic.
+     */
+    static final int RECLAIM_RATIO = 4;
+
     private final DistanceCalculator distanceCalculator;
-    private final Map<Location, Map<Long, Distance>> matrix = new HashMap<>();
+    // Guarded by this. Columns are reclaimed on the solver thread while locations are added on a request thread.
+    private final Map<Location, Row> matrix = new HashMap<>();
+    private final Set<Long> removedColumns = new HashSet<>();
+    private long version;
 
     @Inject
     DistanceMatrixImpl(DistanceCalculator distanceCalculator) {
@@ -25,58 +43,69 @@ class DistanceMatrixImpl implements DistanceMatrix {
 
     @Override
     public DistanceMatrixRow addLocation(Location newLocation) {
-        Map<Long, Distance> distancesToOthers = updateMatrixLazily(newLocation);
-        return locationId -> distancesToOthers.computeIfAbsent(locationId, wrongId -> {
-            throw new IllegalArgumentException(
-                    "Distance from " + newLocation
-                            + " to " + wrongId
-                            + " hasn't been recorded.\n"
-                            + "We only know distances to " + distancesToOthers.keySet());
-        });
-    }
-
-    private Map<Long, Distance> updateMatrixLazily(Location location) {
         // Matrix == distance rows.
         // We're adding a whole new row with distances from the new location to existing ones.
         // We're also creating a new column by "appending" a new cell to each existing row.
         // This new column contains distances from each existing location to the new one.
 
-        return matrix.computeIfAbsent(location, newLocation -> {
-            // The map must be thread-safe because:
-            // - we're updating it from the parallel stream below
-            // - it is accessed from solver thread!
-            Map<Long, Distance> distancesToOthers = new ConcurrentHashMap<>(); // the new row
-
-            // distance to self is 0
-            distancesToOthers.put(newLocation.id(), Distance.ZERO);
-
-            // For all entries (rows) in the matrix:
-            matrix.entrySet().stream().parallel().forEach(distanceRow -> {
-                // Entry key is the existing (other) location.
-                Location other = distanceRow.getKey();
-                // Entry value is the data (cells) in the row (distances from the entry key location to any other).
-                Map<Long, Distance> distancesFromOther = distanceRow.getValue();
-                // Add a new cell to the row with the distance from the entry key location to the new location
-                // (results in a new column at the end of the loop).
-                distancesFromOther.put(newLocation.id(), calculateDistance(other, newLocation));
-                // Add a cell to the new distance's row.
-                distancesToOthers.put(other.id(), calculateDistance(newLocation, other));
-            });
-
-            return distancesToOthers;
-        });
+        // Routing takes long, so it runs without holding the lock that the solver thread needs to reclaim columns.
+        // Locations added in the meantime are routed in another round. Distances to locations removed in the meantime
+        // are dropped. A routing failure leaves the matrix untouched.
+        Map<Location, Distance> distancesToOthers = new HashMap<>();
+        Map<Location, Distance> distancesFromOthers = new HashMap<>();
+        while (true) {
+            List<Location> others;
+            synchronized (this) {
+                Row existingRow = matrix.get(newLocation);
+                if (existingRow != null) {
+                    return existingRow;
+                }
+                others = matrix.keySet().stream()
+                        .filter(other -> !distancesToOthers.containsKey(other))
+                        .collect(toList());
+                if (others.isEmpty()) {
+                    return publishRow(newLocation, distancesToOthers, distancesFromOthers);
+                }
+            }
+            List<Coordinates> otherCoordinates = others.stream().map(Location::coordinates).collect(toList());
+            long[] toOthers = distanceCalculator.travelTimesMillis(newLocation.coordinates(), otherCoordinates);
+            long[] fromOthers = distanceCalculator.travelTimesMillis(otherCoordinates, newLocation.coordinates());
+            for (int i = 0; i < others.size(); i++) {
+                distancesToOthers.put(others.get(i), Distance.ofMillis(toOthers[i]));
+                distancesFromOthers.put(others.get(i), Distance.ofMillis(fromOthers[i]));
+            }
+        }
     }
 
-    private Distance calculateDistance(Location from, Location to) {
-        return Distance.ofMillis(distanceCalculator.travelTimeMillis(from.coordinates(), to.coordinates()));
+    private Row publishRow(
+            Location newLocation,
+            Map<Location, Distance> distancesToOthers,
+            Map<Location, Distance> distancesFromOthers) {
+        // The map must be thread-safe because it is accessed from solver thread!
+        Map<Long, Distance> newCells = new ConcurrentHashMap<>(); // the new row
+
+        // distance to self is 0
+        newCells.put(newLocation.id(), Distance.ZERO);
+
+        for (Row other : matrix.values()) {
+            // Add a new cell to each existing row with the distance from the existing location to the new location
+            // (results in a new column at the end of the loop).
+            other.snapshot.cells.put(newLocation.id(), distancesFromOthers.get(other.location));
+            // Add a cell to the new location's row.
+            newCells.put(other.location.id(), distancesToOthers.get(other.location));
+        }
+
+        Row newRow = new Row(newLocation, new Snapshot(version, newCells));
+        matrix.put(newLocation, newRow);
+        return newRow;
     }
 
     @Override
-    public Distance distance(Location from, Location to) {
+    public synchronized Distance distance(Location from, Location to) {
         if (!matrix.containsKey(from)) {
             throw new IllegalArgumentException("Unknown 'from' location (" + from + ")");
         }
-        Map<Long, Distance> distanceRow = matrix.get(from);
+        Map<Long, Distance> distanceRow = matrix.get(from).snapshot.cells;
         if (!distanceRow.containsKey(to.id())) {
             throw new IllegalArgumentException("Unknown 'to' location (" + to + ")");
         }
@@ -84,23 +113,51 @@ class DistanceMatrixImpl implements DistanceMatrix {
     }
 
     @Override
-    public void put(Location from, Location to, Distance distance) {
-        matrix.computeIfAbsent(from, location -> new ConcurrentHashMap<>()).put(to.id(), distance);
+    public synchronized void put(Location from, Location to, Distance distance) {
+        matrix.computeIfAbsent(from,
+                location -> new Row(location, new Snapshot(version, new ConcurrentHashMap<>()))).snapshot.cells
+                .put(to.id(), distance);
     }
 
     @Override
-    public void removeLocation(Location location) {
+    public synchronized void update(Location from, Location to, Distance distance) {
+        Row row = matrix.get(from);
+        if (row != null && !removedColumns.contains(to.id())) {
+            row.snapshot.cells.replace(to.id(), distance);
+        }
+    }
+
+    @Override
+    public synchronized void removeLocation(Location location) {
         // Remove the distance matrix row (distances from the removed location to others).
-        matrix.remove(location);
-        // TODO also remove the "column" of the matrix (distances from others to the removed location) to avoid memory
-        //  leak.
-        //  But this probably requires making DistanceMatrixRow immutable (otherwise there's a risk of NPEs in solver)
-        //  and update PlanningLocations' distance maps through problem fact changes.
+        if (matrix.remove(location) != null) {
+            distanceCalculator.forget(location.coordinates());
+            // The column (distances from others to the removed location) stays until it is reclaimed because
+            // the solver may read it until it processes the removal.
+            removedColumns.add(location.id());
+        }
     }
 
     @Override
-    public void clear() {
+    public synchronized void reclaimRemovedColumns() {
+        if (removedColumns.isEmpty() || removedColumns.size() * RECLAIM_RATIO < matrix.size()) {
+            return;
+        }
+        version++;
+        for (Row row : matrix.values()) {
+            Map<Long, Distance> cells = new ConcurrentHashMap<>(row.snapshot.cells);
+            cells.keySet().removeAll(removedColumns);
+            // Readers either see the old row version or the new one, never a half-removed column.
+            row.snapshot = new Snapshot(version, cells);
+        }
+        removedColumns.clear();
+    }
+
+    @Override
+    public synchronized void clear() {
+        matrix.keySet().forEach(location -> distanceCalculator.forget(location.coordinates()));
         matrix.clear();
+        removedColumns.clear();
     }
 
     /**
@@ -108,7 +165,61 @@ class DistanceMatrixImpl implements DistanceMatrix {
      *
      * @return number of rows
      */
-    public int dimension() {
+    public synchronized int dimension() {
         return matrix.size();
     }
+
+    /**
+     * Number of columns of removed locations that haven't been reclaimed yet.
+     *
+     * @return number of removed columns
+     */
+    synchronized int removedColumns() {
+        return removedColumns.size();
+    }
+
+    /**
+     * Handle of a distance row given to the planner. Its cells are replaced by a new version when columns
+     * are reclaimed.
+     */
+    static final class Row implements DistanceMatrixRow {
+
+        private final Location location;
+        private volatile Snapshot snapshot;
+
+        private Row(Location location, Snapshot snapshot) {
+            this.location = location;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public Distance distanceTo(long locationId) {
+            Map<Long, Distance> distancesToOthers = snapshot.cells;
+            return distancesToOthers.computeIfAbsent(locationId, wrongId -> {
+                throw new IllegalArgumentException(
+                        "Distance from " + location
+                                + " to " + wrongId
+                                + " hasn't been recorded.\n"
+                                + "We only know distances to " + distancesToOthers.keySet());
+            });
+        }
+
+        long version() {
+            return snapshot.version;
+        }
+    }
+
+    /**
+     * Version of a row. New columns are appended to the current version. Removing columns creates a new version.
+     */
+    private static final class Snapshot {
+
+        private final long version;
+        private final Map<Long, Distance> cells;
+
+        private Snapshot(long version, Map<Long, Distance> cells) {
+            this.version = version;
+            this.cells = cells;
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import io.smallrye.config.ConfigMapping;
+
+@ConfigMapping(prefix = "app.distance-matrix")
+public interface DistanceMatrixProperties {
+
+    /**
+     * How the distance matrix is stored in memory.
+     */
+    MatrixStorage storage();
+
+    /**
+     * Settings of the {@link MatrixStorage#SPARSE sparse} matrix.
+     */
+    Sparse sparse();
+
+    /**
+     * Settings of adding locations with estimated distances that are calculated in the background.
+     */
+    Progressive progressive();
+
+    enum MatrixStorage {
+        /**
+         * Map of maps with boxed values. Flexible but memory-hungry.
+         */
+        MAP,
+        /**
+         * Primitive arrays addressed by compact location indexes.
+         */
+        DENSE,
+        /**
+         * Calculated distances only between near locations once the matrix gets big. Other distances are estimated.
+         */
+        SPARSE
+    }
+
+    interface Sparse {
+
+        /**
+         * Number of nearest locations to which distances from a new location are calculated.
+         */
+        int neighbours();
+
+        /**
+         * Number of locations after which distances are only calculated to nearest locations.
+         */
+        int threshold();
+    }
+
+    interface Progressive {
+
+        /**
+         * Whether a new location is added with estimated distances, which are replaced by calculated distances
+         * when they are ready.
+         */
+        boolean enabled();
+
+        /**
+         * Number of threads calculating distances in the background.
+         */
+        int threads();
+
+        /**
+         * Speed along the straight line between two locations used to estimate the travel time.
+         */
+        double estimateSpeedKph();
+    }
+}
@@ -1,5 +1,7 @@
 package org.optaweb.vehiclerouting.service.distance;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.optaweb.vehiclerouting.domain.Distance;
@@ -12,9 +14,44 @@ public interface DistanceRepository {
 
     void saveDistance(Location from, Location to, Distance distance);
 
+    /**
+     * Save distances between a location and other locations in both directions. Use this rather than
+     * {@link #saveDistance(Location, Location, Distance)} when adding a location to a big matrix. All distances are
+     * written in bulk.
+     *
+     * @param location location whose row and column are saved
+     * @param distancesTo distances from the location to other locations
+     * @param distancesFrom distances from other locations to the location
+     */
+    void saveDistances(Location location, Map<Location, Distance> distancesTo, Map<Location, Distance> distancesFrom);
+
     Optional<Distance> getDistance(Location from, Location to);
 
+    /**
+     * Read all saved distances between the given locations. Distances involving other locations are skipped.
+     *
+     * @param locations locations whose distances are read
+     * @param consumer receives each distance
+     */
+    void loadDistances(List<Location> locations, DistanceConsumer consumer);
+
+    /**
+     * Count all saved distances, including distances of removed locations that haven't been dropped yet.
+     *
+     * @return number of saved distances
+     */
+    long countDistances();
+
     void deleteDistances(Location location);
 
     void deleteAll();
+
+    /**
+     * Receives distances loaded from the repository.
+     */
+    @FunctionalInterface
+    interface DistanceConsumer {
+
+        void accept(Location from, Location to, Distance distance);
+    }
 }
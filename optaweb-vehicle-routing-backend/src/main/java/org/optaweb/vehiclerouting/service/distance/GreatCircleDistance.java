@@ -0,0 +1,79 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+/**
+ * Great-circle distance on a spherical Earth, calculated with the haversine formula.
+ * <p>
+ * Hot loops pass positions in radians together with the cosine of the latitude, so that the trigonometry of a point
+ * is done once per point, not once per pair.
+ */
+public final class GreatCircleDistance {
+
+    /**
+     * Mean Earth radius.
+     */
+    public static final double EARTH_RADIUS_METERS = 6_371_000;
+    /**
+     * Length of one degree of latitude (or longitude on the equator).
+     */
+    public static final double METERS_PER_DEGREE = Math.toRadians(EARTH_RADIUS_METERS);
+
+    private GreatCircleDistance() {
+        throw new AssertionError("Utility class");
+    }
+
+    /**
+     * Great-circle distance between two coordinates.
+     *
+     * @param from first point
+     * @param to second point
+     * @return distance in meters
+     */
+    public static double meters(Coordinates from, Coordinates to) {
+        double fromLatitude = Math.toRadians(from.latitude().doubleValue());
+        double toLatitude = Math.toRadians(to.latitude().doubleValue());
+        return meters(
+                fromLatitude, Math.cos(fromLatitude), Math.toRadians(from.longitude().doubleValue()),
+                toLatitude, Math.cos(toLatitude), Math.toRadians(to.longitude().doubleValue()));
+    }
+
+    /**
+     * Great-circle distance between two points given in radians.
+     *
+     * @param fromLatitude latitude of the first point in radians
+     * @param fromCosLatitude cosine of the first point's latitude
+     * @param fromLongitude longitude of the first point in radians
+     * @param toLatitude latitude of the second point in radians
+     * @param toCosLatitude cosine of the second point's latitude
+     * @param toLongitude longitude of the second point in radians
+     * @return distance in meters
+     */
+    public static double meters(
+            double fromLatitude, double fromCosLatitude, double fromLongitude,
+            double toLatitude, double toCosLatitude, double toLongitude) {
+        double a = haversine(fromLatitude, fromCosLatitude, fromLongitude, toLatitude, toCosLatitude, toLongitude);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * The haversine of the central angle between two points. It grows with the distance, so it can be used to
+     * compare distances without the rest of the formula.
+     *
+     * @param fromLatitude latitude of the first point in radians
+     * @param fromCosLatitude cosine of the first point's latitude
+     * @param fromLongitude longitude of the first point in radians
+     * @param toLatitude latitude of the second point in radians
+     * @param toCosLatitude cosine of the second point's latitude
+     * @param toLongitude longitude of the second point in radians
+     * @return haversine of the central angle, between 0 and 1
+     */
+    public static double haversine(
+            double fromLatitude, double fromCosLatitude, double fromLongitude,
+            double toLatitude, double toCosLatitude, double toLongitude) {
+        double sinHalfLatitudeDiff = Math.sin((toLatitude - fromLatitude) / 2);
+        double sinHalfLongitudeDiff = Math.sin((toLongitude - fromLongitude) / 2);
+        return sinHalfLatitudeDiff * sinHalfLatitudeDiff
+                + fromCosLatitude * toCosLatitude * sinHalfLongitudeDiff * sinHalfLongitudeDiff;
+    }
+}
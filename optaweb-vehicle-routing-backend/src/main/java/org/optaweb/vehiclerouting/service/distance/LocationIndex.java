@@ -0,0 +1,140 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import java.util.Arrays;
+
+/**
+ * Assigns compact, consecutive indexes to location IDs so that distances can be stored in primitive arrays.
+ * <p>
+ * Lookups are lock-free and don't allocate, so they can be done from the solver thread while the index is being
+ * modified. New entries are written in place, the value last because it marks the slot as occupied. The table is
+ * only copied when it grows. The index must only be modified by one thread at a time.
+ */
+final class LocationIndex {
+
+    static final int NOT_FOUND = -1;
+
+    private volatile Table table = new Table(16);
+    // Only read by the thread that modifies the index.
+    private long[] locationIds = new long[16];
+    private int size;
+
+    /**
+     * Index of the given location.
+     *
+     * @param locationId location ID
+     * @return index of the location or {@link #NOT_FOUND} if the location has no index
+     */
+    int indexOf(long locationId) {
+        return table.get(locationId);
+    }
+
+    /**
+     * Assign the next free index to the given location.
+     *
+     * @param locationId location ID
+     * @return the new index
+     * @throws IllegalArgumentException if the location already has an index
+     */
+    int add(long locationId) {
+        if (indexOf(locationId) != NOT_FOUND) {
+            throw new IllegalArgumentException("Location {id=" + locationId + "} already has an index");
+        }
+        int index = size;
+        Table current = table;
+        if (!current.hasCapacityFor(size + 1)) {
+            current = current.copyWithCapacityFor(size + 1);
+        }
+        current.put(locationId, index);
+        // Publish the write (and the grown table).
+        table = current;
+        if (index == locationIds.length) {
+            locationIds = Arrays.copyOf(locationIds, index * 2);
+        }
+        locationIds[index] = locationId;
+        size++;
+        return index;
+    }
+
+    /**
+     * ID of the location with the given index.
+     *
+     * @param index location index
+     * @return location ID
+     * @throws IndexOutOfBoundsException if the index hasn't been assigned
+     */
+    long locationId(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index (" + index + ") is out of range [0, " + size + ")");
+        }
+        return locationIds[index];
+    }
+
+    /**
+     * Number of indexes assigned so far.
+     *
+     * @return number of indexes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Open-addressing hash table. Entries are never removed, so a slot that a reader has seen occupied stays
+     * occupied.
+     */
+    private static final class Table {
+
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, NOT_FOUND);
+            mask = capacity - 1;
+        }
+
+        int get(long key) {
+            for (int slot = slot(key);; slot = (slot + 1) & mask) {
+                int value = values[slot];
+                if (value == NOT_FOUND || keys[slot] == key) {
+                    return value;
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            int slot = slot(key);
+            while (values[slot] != NOT_FOUND) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        boolean hasCapacityFor(int size) {
+            // Keep the load factor at or below 0.5 to keep the probe sequences short.
+            return size * 2 <= keys.length;
+        }
+
+        Table copyWithCapacityFor(int size) {
+            int capacity = keys.length;
+            while (capacity < size * 2) {
+                capacity *= 2;
+            }
+            Table copy = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != NOT_FOUND) {
+                    copy.put(keys[i], values[i]);
+                }
+            }
+            return copy;
+        }
+
+        private int slot(long key) {
+            // Fibonacci hashing spreads sequential IDs generated by the database.
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 33) & mask;
+        }
+    }
+}
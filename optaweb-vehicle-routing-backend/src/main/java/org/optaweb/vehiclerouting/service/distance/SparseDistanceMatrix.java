@@ -0,0 +1,522 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrix;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrixRow;
+
+import io.quarkus.arc.properties.IfBuildProperty;
+
+/**
+ * Distance matrix that calculates only distances between near locations once it gets big.
+ * <p>
+ * Until the matrix reaches the threshold dimension, all distances are calculated. After that, distances from and to
+ * a new location are only calculated for its k nearest neighbours (by great-circle distance). Other distances are
+ * estimated as the great-circle distance multiplied by a rate calibrated on the calculated distances. The rate
+ * combines the detour of road routes and the average speed in the region. Every location remembers the rate
+ * calibrated when it was added, and an estimate uses the rate of the newer of its two locations. So the rate keeps
+ * improving for new locations, but an estimate never changes while the solver is running.
+ */
+@ApplicationScoped
+@IfBuildProperty(name = "app.distance-matrix.storage", stringValue = "SPARSE")
+class SparseDistanceMatrix implements DistanceMatrix {
+
+    static final long UNKNOWN = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    // Used if nothing has been calculated yet: 30 % detour at 50 km/h.
+    static final double DEFAULT_MILLIS_PER_METER = 1.3 / (50 / 3.6) * 1000;
+
+    private final DistanceCalculator distanceCalculator;
+    private final int neighbours;
+    private final int threshold;
+    // All fields below are guarded by this.
+    private Space space = new Space(INITIAL_CAPACITY);
+    // Rows by location index. Rows of removed locations are null.
+    private Row[] rows = new Row[INITIAL_CAPACITY];
+    // Indexes of removed locations whose cells in other rows haven't been reclaimed yet.
+    private BitSet removedColumns = new BitSet();
+    private int dimension;
+    // Sums over all calculated distances, used to calibrate the rate of new locations.
+    private double calculatedMillis;
+    private double calculatedMeters;
+
+    @Inject
+    SparseDistanceMatrix(DistanceCalculator distanceCalculator, DistanceMatrixProperties properties) {
+        this(distanceCalculator, properties.sparse().neighbours(), properties.sparse().threshold());
+    }
+
+    SparseDistanceMatrix(DistanceCalculator distanceCalculator, int neighbours, int threshold) {
+        if (neighbours < 1) {
+            throw new IllegalArgumentException("Number of neighbours (" + neighbours + ") must be positive");
+        }
+        this.distanceCalculator = distanceCalculator;
+        this.neighbours = neighbours;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized DistanceMatrixRow addLocation(Location newLocation) {
+        Row existingRow = row(newLocation);
+        if (existingRow != null) {
+            return existingRow;
+        }
+
+        // Calculate everything first so that a routing failure leaves the matrix untouched.
+        List<Row> others = liveRows();
+        if (dimension >= threshold) {
+            others = nearest(newLocation.coordinates(), others);
+        }
+        int[] distancesToOthers = new int[0];
+        int[] distancesFromOthers = new int[0];
+        if (!others.isEmpty()) {
+            List<Coordinates> otherCoordinates = others.stream()
+                    .map(other -> other.location.coordinates())
+                    .collect(toList());
+            distancesToOthers = DenseDistanceMatrix.toIntMillis(
+                    distanceCalculator.travelTimesMillis(newLocation.coordinates(), otherCoordinates));
+            distancesFromOthers = DenseDistanceMatrix.toIntMillis(
+                    distanceCalculator.travelTimesMillis(otherCoordinates, newLocation.coordinates()));
+        }
+
+        Row newRow = createRow(newLocation);
+        newRow.set(newLocation.id(), 0);
+        for (int i = 0; i < others.size(); i++) {
+            Row other = others.get(i);
+            newRow.set(other.location.id(), distancesToOthers[i]);
+            other.set(newLocation.id(), distancesFromOthers[i]);
+            calibrate(newRow.index, other.index, distancesToOthers[i]);
+            calibrate(other.index, newRow.index, distancesFromOthers[i]);
+        }
+        return newRow;
+    }
+
+    private List<Row> nearest(Coordinates coordinates, List<Row> candidates) {
+        double latitude = Math.toRadians(coordinates.latitude().doubleValue());
+        double cosLatitude = Math.cos(latitude);
+        double longitude = Math.toRadians(coordinates.longitude().doubleValue());
+        Points points = space.points;
+        // Binary max-heap of the k nearest candidates found so far, keyed by the haversine term, which grows with
+        // the distance, so the trigonometry in the rest of the formula can be skipped.
+        int k = Math.min(neighbours, candidates.size());
+        double[] heapKeys = new double[k];
+        int[] heapCandidates = new int[k];
+        int heapSize = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int candidate = candidates.get(i).index;
+            double key = GreatCircleDistance.haversine(
+                    latitude, cosLatitude, longitude,
+                    points.latitudes[candidate], points.cosLatitudes[candidate], points.longitudes[candidate]);
+            int slot;
+            if (heapSize < k) {
+                // Sift up.
+                slot = heapSize++;
+                while (slot > 0 && heapKeys[(slot - 1) / 2] < key) {
+                    heapKeys[slot] = heapKeys[(slot - 1) / 2];
+                    heapCandidates[slot] = heapCandidates[(slot - 1) / 2];
+                    slot = (slot - 1) / 2;
+                }
+            } else if (key < heapKeys[0]) {
+                // Replace the farthest and sift down.
+                slot = 0;
+                for (int child = 1; child < k; child = 2 * slot + 1) {
+                    if (child + 1 < k && heapKeys[child + 1] > heapKeys[child]) {
+                        child++;
+                    }
+                    if (heapKeys[child] <= key) {
+                        break;
+                    }
+                    heapKeys[slot] = heapKeys[child];
+                    heapCandidates[slot] = heapCandidates[child];
+                    slot = child;
+                }
+            } else {
+                continue;
+            }
+            heapKeys[slot] = key;
+            heapCandidates[slot] = i;
+        }
+        List<Row> nearest = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            nearest.add(candidates.get(heapCandidates[i]));
+        }
+        return nearest;
+    }
+
+    @Override
+    public synchronized Distance distance(Location from, Location to) {
+        Row row = row(from);
+        if (row == null) {
+            throw new IllegalArgumentException("Unknown 'from' location (" + from + ")");
+        }
+        if (space.index.indexOf(to.id()) == LocationIndex.NOT_FOUND) {
+            throw new IllegalArgumentException("Unknown 'to' location (" + to + ")");
+        }
+        return row.distanceTo(to.id());
+    }
+
+    @Override
+    public synchronized boolean isCalculated(Location from, Location to) {
+        Row row = row(from);
+        return row != null && row.cells.get(to.id()) != UNKNOWN;
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public synchronized void put(Location from, Location to, Distance distance) {
+        int millis = Distance.toIntMillis(distance.millis());
+        Row fromRow = row(from);
+        if (fromRow == null) {
+            fromRow = createRow(from);
+        }
+        int toIndex = space.register(to, millisPerMeter());
+        fromRow.set(to.id(), millis);
+        calibrate(fromRow.index, toIndex, millis);
+    }
+
+    @Override
+    public synchronized void update(Location from, Location to, Distance distance) {
+        Row fromRow = row(from);
+        int toIndex = space.index.indexOf(to.id());
+        if (fromRow != null && toIndex != LocationIndex.NOT_FOUND && !removedColumns.get(toIndex)) {
+            fromRow.set(to.id(), Distance.toIntMillis(distance.millis()));
+        }
+    }
+
+    @Override
+    public synchronized void removeLocation(Location location) {
+        int removedIndex = space.index.indexOf(location.id());
+        if (removedIndex != LocationIndex.NOT_FOUND && removedIndex < rows.length && rows[removedIndex] != null) {
+            // The location keeps its index and coordinates, so the solver can still get distances to it
+            // until it processes the removal.
+            rows[removedIndex] = null;
+            distanceCalculator.forget(location.coordinates());
+            removedColumns.set(removedIndex);
+            dimension--;
+        }
+    }
+
+    @Override
+    public synchronized void reclaimRemovedColumns() {
+        int removedCount = removedColumns.cardinality();
+        if (removedCount == 0 || removedCount * DistanceMatrixImpl.RECLAIM_RATIO < dimension) {
+            return;
+        }
+        // Move all locations that haven't been removed to a new space. That includes locations that have a column
+        // but no row yet (their distances are being put during reload). They keep their order, so the newer of two
+        // locations still has the higher index.
+        Space oldSpace = space;
+        Space newSpace = new Space(Math.max(INITIAL_CAPACITY, oldSpace.index.size() - removedCount));
+        for (int oldIndex = 0; oldIndex < oldSpace.index.size(); oldIndex++) {
+            if (!removedColumns.get(oldIndex)) {
+                newSpace.copy(oldSpace, oldIndex);
+            }
+        }
+        LongPredicate isLive = locationId -> newSpace.index.indexOf(locationId) != LocationIndex.NOT_FOUND;
+        Row[] newRows = new Row[Math.max(INITIAL_CAPACITY, newSpace.index.size())];
+        for (Row row : liveRows()) {
+            row.index = newSpace.index.indexOf(row.location.id());
+            row.space = newSpace;
+            // Written last, so that readers that see the new cells also see the new space and index.
+            row.cells = row.cells.copy(isLive);
+            newRows[row.index] = row;
+        }
+        space = newSpace;
+        rows = newRows;
+        removedColumns = new BitSet();
+    }
+
+    @Override
+    public synchronized void clear() {
+        liveRows().forEach(row -> distanceCalculator.forget(row.location.coordinates()));
+        // Rows handed out before clearing keep the old space, so their estimates don't change.
+        space = new Space(INITIAL_CAPACITY);
+        rows = new Row[INITIAL_CAPACITY];
+        removedColumns = new BitSet();
+        dimension = 0;
+        calculatedMillis = 0;
+        calculatedMeters = 0;
+    }
+
+    /**
+     * Number of rows in the matrix.
+     *
+     * @return number of rows
+     */
+    public synchronized int dimension() {
+        return dimension;
+    }
+
+    private Row row(Location location) {
+        int rowIndex = space.index.indexOf(location.id());
+        return rowIndex == LocationIndex.NOT_FOUND || rowIndex >= rows.length ? null : rows[rowIndex];
+    }
+
+    private Row createRow(Location location) {
+        int rowIndex = space.register(location, millisPerMeter());
+        if (rowIndex >= rows.length) {
+            rows = Arrays.copyOf(rows, Math.max(rowIndex + 1, rows.length * 2));
+        }
+        Row row = new Row(location, rowIndex, space);
+        rows[rowIndex] = row;
+        // The location may be coming back before its cells have been reclaimed.
+        removedColumns.clear(rowIndex);
+        dimension++;
+        return row;
+    }
+
+    private void calibrate(int from, int to, long millis) {
+        calculatedMillis += millis;
+        calculatedMeters += space.meters(from, to);
+    }
+
+    /**
+     * Rate calibrated on all distances calculated so far.
+     */
+    private double millisPerMeter() {
+        return calculatedMeters > 0 ? calculatedMillis / calculatedMeters : DEFAULT_MILLIS_PER_METER;
+    }
+
+    private List<Row> liveRows() {
+        List<Row> liveRows = new ArrayList<>(dimension);
+        for (Row row : rows) {
+            if (row != null) {
+                liveRows.add(row);
+            }
+        }
+        return liveRows;
+    }
+
+    /**
+     * Positions and rates of all locations known to the matrix. Lookups are lock-free so that rows can estimate
+     * distances on the solver thread. Modified only under the matrix lock.
+     */
+    private static final class Space {
+
+        private final LocationIndex index = new LocationIndex();
+        // Replaced when it grows. Positions are written before the location is added to the index.
+        private volatile Points points;
+
+        private Space(int capacity) {
+            points = new Points(capacity);
+        }
+
+        /**
+         * Give the location an index if it doesn't have one.
+         */
+        int register(Location location, double millisPerMeter) {
+            int locationIndex = index.indexOf(location.id());
+            if (locationIndex != LocationIndex.NOT_FOUND) {
+                return locationIndex;
+            }
+            int newIndex = index.size();
+            pointsWithRoomFor(newIndex).set(newIndex, location.coordinates(), millisPerMeter);
+            return index.add(location.id());
+        }
+
+        /**
+         * Give the next index to a location of another space, keeping its position and rate.
+         */
+        void copy(Space other, int otherIndex) {
+            int newIndex = index.size();
+            pointsWithRoomFor(newIndex).copy(newIndex, other.points, otherIndex);
+            index.add(other.index.locationId(otherIndex));
+        }
+
+        private Points pointsWithRoomFor(int newIndex) {
+            Points current = points;
+            if (newIndex == current.latitudes.length) {
+                current = current.grow();
+                points = current;
+            }
+            return current;
+        }
+
+        long estimateMillis(int from, int to) {
+            Points current = points;
+            // The newer location has the higher index.
+            return Math.round(meters(current, from, to) * current.millisPerMeter[Math.max(from, to)]);
+        }
+
+        double meters(int from, int to) {
+            return meters(points, from, to);
+        }
+
+        private static double meters(Points points, int from, int to) {
+            return GreatCircleDistance.meters(
+                    points.latitudes[from], points.cosLatitudes[from], points.longitudes[from],
+                    points.latitudes[to], points.cosLatitudes[to], points.longitudes[to]);
+        }
+    }
+
+    /**
+     * Positions in radians and rates by location index.
+     */
+    private static final class Points {
+
+        private final double[] latitudes;
+        private final double[] cosLatitudes;
+        private final double[] longitudes;
+        private final double[] millisPerMeter;
+
+        private Points(int capacity) {
+            this(new double[capacity], new double[capacity], new double[capacity], new double[capacity]);
+        }
+
+        private Points(double[] latitudes, double[] cosLatitudes, double[] longitudes, double[] millisPerMeter) {
+            this.latitudes = latitudes;
+            this.cosLatitudes = cosLatitudes;
+            this.longitudes = longitudes;
+            this.millisPerMeter = millisPerMeter;
+        }
+
+        private void set(int index, Coordinates coordinates, double rate) {
+            latitudes[index] = Math.toRadians(coordinates.latitude().doubleValue());
+            cosLatitudes[index] = Math.cos(latitudes[index]);
+            longitudes[index] = Math.toRadians(coordinates.longitude().doubleValue());
+            millisPerMeter[index] = rate;
+        }
+
+        private void copy(int index, Points other, int otherIndex) {
+            latitudes[index] = other.latitudes[otherIndex];
+            cosLatitudes[index] = other.cosLatitudes[otherIndex];
+            longitudes[index] = other.longitudes[otherIndex];
+            millisPerMeter[index] = other.millisPerMeter[otherIndex];
+        }
+
+        private Points grow() {
+            int capacity = latitudes.length * 2;
+            return new Points(
+                    Arrays.copyOf(latitudes, capacity),
+                    Arrays.copyOf(cosLatitudes, capacity),
+                    Arrays.copyOf(longitudes, capacity),
+                    Arrays.copyOf(millisPerMeter, capacity));
+        }
+    }
+
+    /**
+     * Handle of a distance row given to the planner. Calculated distances are kept in a hash table. Other distances
+     * are estimated.
+     */
+    static final class Row implements DistanceMatrixRow {
+
+        private final Location location;
+        // Index and space change when removed columns are reclaimed. They are written before the cells, which are
+        // read first.
+        private int index;
+        private Space space;
+        // Volatile, so that the solver thread sees cells written by the thread that adds locations.
+        private volatile Cells cells = new Cells(INITIAL_CAPACITY);
+
+        private Row(Location location, int index, Space space) {
+            this.location = location;
+            this.index = index;
+            this.space = space;
+        }
+
+        @Override
+        public Distance distanceTo(long locationId) {
+            long millis = cells.get(locationId);
+            if (millis != UNKNOWN) {
+                return Distance.ofMillis(millis);
+            }
+            int otherIndex = space.index.indexOf(locationId);
+            if (otherIndex == LocationIndex.NOT_FOUND) {
+                throw new IllegalArgumentException(
+                        "Distance from " + location
+                                + " to " + locationId
+                                + " hasn't been recorded.");
+            }
+            return Distance.ofMillis(space.estimateMillis(index, otherIndex));
+        }
+
+        private void set(long locationId, int millis) {
+            Cells current = cells;
+            if ((current.size + 1) * 2 > current.keys.length) {
+                current = current.copy(id -> true);
+            }
+            current.put(locationId, millis);
+            // Publish the write (and the grown table).
+            cells = current;
+        }
+    }
+
+    /**
+     * Open-addressing hash table from location IDs to calculated distances. A slot is empty while its value is
+     * {@link #UNKNOWN}. Entries are never removed from a published table. Removing entries creates a new table.
+     */
+    private static final class Cells {
+
+        private final long[] keys;
+        // Int milliseconds (see Distance.toIntMillis()).
+        private final int[] values;
+        private final int mask;
+        private int size;
+
+        private Cells(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, (int) UNKNOWN);
+            mask = capacity - 1;
+        }
+
+        private long get(long key) {
+            for (int slot = slot(key);; slot = (slot + 1) & mask) {
+                int value = values[slot];
+                if (value == UNKNOWN || keys[slot] == key) {
+                    return value;
+                }
+            }
+        }
+
+        private void put(long key, int value) {
+            int slot = slot(key);
+            while (values[slot] != UNKNOWN && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == UNKNOWN) {
+                size++;
+            }
+            // The value is written last because it marks the slot as occupied.
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        /**
+         * Copy entries with the given keys to a new table that has room for one more entry.
+         */
+        private Cells copy(LongPredicate keep) {
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < (size + 1) * 2) {
+                capacity *= 2;
+            }
+            Cells copy = new Cells(capacity);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (values[slot] != UNKNOWN && keep.test(keys[slot])) {
+                    copy.put(keys[slot], values[slot]);
+                }
+            }
+            return copy;
+        }
+
+        private int slot(long key) {
+            // Fibonacci hashing spreads sequential IDs generated by the database.
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 33) & mask;
+        }
+    }
+}
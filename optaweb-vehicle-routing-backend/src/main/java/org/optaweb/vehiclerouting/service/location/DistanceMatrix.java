@@ -5,16 +5,65 @@ import org.optaweb.vehiclerouting.domain.Location;
 
 /**
  * Holds distances between every pair of locations.
+ * <p>
+ * A {@link #isSparse() sparse} matrix only calculates some of the distances and estimates the rest.
  */
 public interface DistanceMatrix {
 
     DistanceMatrixRow addLocation(Location location);
 
+    /**
+     * Remove location's row. The location's column (distances from other locations to it) is kept
+     * until {@link #reclaimRemovedColumns() reclaimed} because the solver may still read it.
+     *
+     * @param location removed location
+     */
     void removeLocation(Location location);
 
+    /**
+     * Free memory held by columns of removed locations once there are enough of them. This publishes a new version
+     * of each remaining row, so it must run while the solver isn't reading distances
+     * (see {@link LocationPlanner#updateDistanceMatrix(Runnable)}).
+     */
+    void reclaimRemovedColumns();
+
     void clear();
 
     Distance distance(Location from, Location to);
 
     void put(Location from, Location to, Distance distance);
+
+    /**
+     * Replace a distance that is already in the matrix, for example an estimate with a calculated distance.
+     * Does nothing if either location has been removed in the meantime.
+     * <p>
+     * This changes distances the planner may be reading, so it must run where the planner expects distance changes
+     * (see {@link LocationPlanner#refineDistances(Runnable)}).
+     *
+     * @param from origin
+     * @param to destination
+     * @param distance new distance
+     */
+    void update(Location from, Location to, Distance distance);
+
+    /**
+     * Whether the matrix may estimate some distances instead of calculating them.
+     *
+     * @return true if not all distances are calculated
+     */
+    default boolean isSparse() {
+        return false;
+    }
+
+    /**
+     * Whether the distance between the given locations has been calculated (or put) rather than estimated.
+     * Only calculated distances need to be persisted.
+     *
+     * @param from origin
+     * @param to destination
+     * @return true if the distance is known exactly
+     */
+    default boolean isCalculated(Location from, Location to) {
+        return true;
+    }
 }
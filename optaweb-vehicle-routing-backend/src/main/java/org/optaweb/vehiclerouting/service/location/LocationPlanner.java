@@ -12,4 +12,23 @@ public interface LocationPlanner {
     void removeLocation(Location location);
 
     void removeAllLocations();
+
+    /**
+     * Run a distance matrix update at a point where the planner isn't reading distances. If the solver is running,
+     * the update happens on the solver thread between two steps. Otherwise it happens immediately.
+     *
+     * @param update distance matrix update that doesn't change distances between planned locations
+     */
+    void updateDistanceMatrix(Runnable update);
+
+    /**
+     * Run a distance matrix update that changes distances from and to a planned location, for example replaces
+     * estimates with calculated distances. If the solver is running, the update happens on the solver thread
+     * between two steps and the solver re-evaluates the score of the visits that use the changed distances.
+     * Otherwise it happens immediately.
+     *
+     * @param location location whose distances are changed
+     * @param update distance matrix update that only changes distances from and to the location
+     */
+    void refineDistances(Location location, Runnable update);
 }
@@ -1,10 +1,19 @@
 package org.optaweb.vehiclerouting.service.location;
 
 import static java.util.Comparator.comparingLong;
+import static java.util.stream.Collectors.toList;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongConsumer;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
@@ -12,25 +21,41 @@ import javax.inject.Inject;
 import javax.transaction.Transactional;
 
 import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
 import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.distance.BackgroundDistanceCalculator;
+import org.optaweb.vehiclerouting.service.distance.BackgroundDistanceCalculator.TravelTimes;
+import org.optaweb.vehiclerouting.service.distance.DistanceCalculator;
 import org.optaweb.vehiclerouting.service.distance.DistanceRepository;
 import org.optaweb.vehiclerouting.service.error.ErrorEvent;
+import org.optaweb.vehiclerouting.service.route.Router;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
+
 /**
  * Performs location-related use cases.
  */
 @ApplicationScoped
 public class LocationService {
 
+    static final int PROGRESS_INTERVAL = 100_000;
+
     private static final Logger logger = LoggerFactory.getLogger(LocationService.class);
 
     private final LocationRepository repository;
     private final DistanceRepository distanceRepository;
     private final LocationPlanner planner; // TODO move to RoutingPlanService (SRP)
     private final DistanceMatrix distanceMatrix;
+    private final BackgroundDistanceCalculator backgroundDistanceCalculator;
+    private final DistanceCalculator distanceCalculator;
+    private final Router router;
     private final Event<ErrorEvent> errorEvent;
+    // Guarded by this. Locations whose distances are still estimated.
+    private final Map<Long, CompletableFuture<?>> pendingRefinements = new HashMap<>();
+    // Guarded by this. Locations removed while distances were being calculated, which must not get distances back.
+    private final Set<Long> removedDuringRefinement = new HashSet<>();
 
     @Inject
     LocationService(
@@ -38,11 +63,17 @@ public class LocationService {
             DistanceRepository distanceRepository,
             LocationPlanner planner,
             DistanceMatrix distanceMatrix,
+            BackgroundDistanceCalculator backgroundDistanceCalculator,
+            DistanceCalculator distanceCalculator,
+            Router router,
             Event<ErrorEvent> errorEvent) {
         this.repository = repository;
         this.distanceRepository = distanceRepository;
         this.planner = planner;
         this.distanceMatrix = distanceMatrix;
+        this.backgroundDistanceCalculator = backgroundDistanceCalculator;
+        this.distanceCalculator = distanceCalculator;
+        this.router = router;
         this.errorEvent = errorEvent;
     }
 
@@ -56,8 +87,22 @@ public class LocationService {
     public synchronized Optional<Location> createLocation(Coordinates coordinates, String description) {
         Objects.requireNonNull(coordinates);
         Objects.requireNonNull(description);
-        // TODO if (router.isLocationAvailable(coordinates))
+        if (!distanceCalculator.isLocationAvailable(coordinates)) {
+            logger.warn("No road found near {}, location {} will not be created", coordinates, description);
+            errorEvent.fire(new ErrorEvent(
+                    this,
+                    "No road found near " + coordinates + ", location " + description + " will not be created."));
+            return Optional.empty();
+        }
         Location location = repository.createLocation(coordinates, description);
+        if (backgroundDistanceCalculator.isEnabled()) {
+            List<Location> others = repository.locations().stream()
+                    .filter(existingLocation -> !existingLocation.equals(location))
+                    .collect(toList());
+            planner.addLocation(location, addEstimatesToMatrix(location, others));
+            refineDistances(location, others);
+            return Optional.of(location);
+        }
         Optional<DistanceMatrixRow> distanceMatrixRow = addToMatrix(location);
         if (distanceMatrixRow.isPresent()) {
             planner.addLocation(location, distanceMatrixRow.get());
@@ -71,14 +116,22 @@ public class LocationService {
     private Optional<DistanceMatrixRow> addToMatrix(Location location) {
         try {
             DistanceMatrixRow distanceMatrixRow = distanceMatrix.addLocation(location);
+            Map<Location, Distance> distancesTo = new HashMap<>();
+            Map<Location, Distance> distancesFrom = new HashMap<>();
+            // Only a sparse matrix has estimated distances. They aren't persisted, they are estimated again
+            // after reload.
+            boolean sparse = distanceMatrix.isSparse();
             repository.locations().stream()
                     .filter(existingLocation -> !existingLocation.equals(location))
                     .forEach(existingLocation -> {
-                        distanceRepository.saveDistance(location, existingLocation,
-                                distanceMatrixRow.distanceTo(existingLocation.id()));
-                        distanceRepository.saveDistance(existingLocation, location,
-                                distanceMatrix.distance(existingLocation, location));
+                        if (!sparse || distanceMatrix.isCalculated(location, existingLocation)) {
+                            distancesTo.put(existingLocation, distanceMatrixRow.distanceTo(existingLocation.id()));
+                        }
+                        if (!sparse || distanceMatrix.isCalculated(existingLocation, location)) {
+                            distancesFrom.put(existingLocation, distanceMatrix.distance(existingLocation, location));
+                        }
                     });
+            distanceRepository.saveDistances(location, distancesTo, distancesFrom);
             return Optional.of(distanceMatrixRow);
         } catch (Exception e) {
             logger.error(
@@ -92,6 +145,84 @@ public class LocationService {
         }
     }
 
+    private DistanceMatrixRow addEstimatesToMatrix(Location location, List<Location> others) {
+        distanceMatrix.put(location, location, Distance.ZERO);
+        putEstimates(location, others);
+        // Returns the row created by putting the estimates.
+        return distanceMatrix.addLocation(location);
+    }
+
+    private void putEstimates(Location location, List<Location> others) {
+        for (Location other : others) {
+            distanceMatrix.put(location, other, Distance.ofMillis(
+                    backgroundDistanceCalculator.estimateMillis(location.coordinates(), other.coordinates())));
+            distanceMatrix.put(other, location, Distance.ofMillis(
+                    backgroundDistanceCalculator.estimateMillis(other.coordinates(), location.coordinates())));
+        }
+    }
+
+    private void refineDistances(Location location, List<Location> others) {
+        CompletableFuture<TravelTimes> refinement = backgroundDistanceCalculator.calculate(
+                location.coordinates(),
+                others.stream().map(Location::coordinates).collect(toList()));
+        pendingRefinements.put(location.id(), refinement);
+        refinement.whenComplete((travelTimes, failure) -> {
+            if (failure == null) {
+                completeRefinement(location, others, travelTimes);
+            } else {
+                discardUnrefinedLocation(location, failure);
+            }
+        });
+    }
+
+    private synchronized void completeRefinement(Location location, List<Location> others, TravelTimes travelTimes) {
+        if (pendingRefinements.remove(location.id()) == null) {
+            // The location has been removed.
+            return;
+        }
+        Map<Location, Distance> distancesTo = new HashMap<>();
+        Map<Location, Distance> distancesFrom = new HashMap<>();
+        for (int i = 0; i < others.size(); i++) {
+            Location other = others.get(i);
+            if (!removedDuringRefinement.contains(other.id())) {
+                distancesTo.put(other, Distance.ofMillis(travelTimes.toOthers()[i]));
+                distancesFrom.put(other, Distance.ofMillis(travelTimes.fromOthers()[i]));
+            }
+        }
+        if (pendingRefinements.isEmpty()) {
+            removedDuringRefinement.clear();
+        }
+        planner.refineDistances(location, () -> {
+            distancesTo.forEach((other, distance) -> distanceMatrix.update(location, other, distance));
+            distancesFrom.forEach((other, distance) -> distanceMatrix.update(other, location, distance));
+        });
+        try {
+            distanceRepository.saveDistances(location, distancesTo, distancesFrom);
+        } catch (RuntimeException e) {
+            logger.error("Failed to save distances of location {}", location.fullDescription(), e);
+            errorEvent.fire(new ErrorEvent(
+                    this,
+                    "Failed to save distances of location " + location.fullDescription() + ".\n" + e.toString()));
+        }
+    }
+
+    private synchronized void discardUnrefinedLocation(Location location, Throwable failure) {
+        if (pendingRefinements.remove(location.id()) == null) {
+            // The location has been removed.
+            return;
+        }
+        Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+        logger.error(
+                "Failed to calculate distances for location {}, it will be discarded",
+                location.fullDescription(), cause);
+        errorEvent.fire(new ErrorEvent(
+                this,
+                "Failed to calculate distances for location " + location.fullDescription()
+                        + ", it will be discarded.\n" + cause.toString()));
+        // This usually runs on a background thread without a transaction.
+        QuarkusTransaction.joiningExisting().run(() -> removeLocation(location.id()));
+    }
+
     @Transactional
     public synchronized void removeLocation(long id) {
         Optional<Location> optionalLocation = repository.find(id);
@@ -115,23 +246,97 @@ public class LocationService {
         planner.removeLocation(removedLocation);
         repository.removeLocation(id);
         distanceMatrix.removeLocation(removedLocation);
+        planner.updateDistanceMatrix(distanceMatrix::reclaimRemovedColumns);
         distanceRepository.deleteDistances(removedLocation);
+        router.forget(removedLocation.coordinates());
+        CompletableFuture<?> refinement = pendingRefinements.remove(id);
+        if (refinement != null) {
+            refinement.cancel(false);
+        }
+        if (!pendingRefinements.isEmpty()) {
+            removedDuringRefinement.add(id);
+        }
     }
 
     @Transactional
     public synchronized void removeAll() {
+        List<Location> removedLocations = repository.locations();
         planner.removeAllLocations();
         repository.removeAll();
+        removedLocations.forEach(location -> router.forget(location.coordinates()));
         distanceMatrix.clear();
         distanceRepository.deleteAll();
+        List<CompletableFuture<?>> refinements = List.copyOf(pendingRefinements.values());
+        pendingRefinements.clear();
+        removedDuringRefinement.clear();
+        refinements.forEach(refinement -> refinement.cancel(false));
+    }
+
+    /**
+     * Fill the distance matrix with distances between all locations in the repository.
+     * <p>
+     * Distances of locations whose refinement didn't finish before the application stopped are missing. They are
+     * estimated and refined again.
+     *
+     * @param progress receives the number of distances loaded so far, every {@value #PROGRESS_INTERVAL} distances
+     *        and when all distances have been loaded
+     * @throws IllegalStateException if some distances are missing in the distance repository
+     */
+    public synchronized void populateDistanceMatrix(LongConsumer progress) {
+        List<Location> locations = repository.locations();
+        long oldestId = locations.stream().mapToLong(Location::id).min().orElse(-1);
+        Set<Long> reachedFromOldest = new HashSet<>();
+        long[] loadedDistances = { 0 };
+        distanceRepository.loadDistances(locations, (from, to, distance) -> {
+            distanceMatrix.put(from, to, distance);
+            if (from.id() == oldestId) {
+                reachedFromOldest.add(to.id());
+            }
+            if (++loadedDistances[0] % PROGRESS_INTERVAL == 0) {
+                progress.accept(loadedDistances[0]);
+            }
+        });
+        progress.accept(loadedDistances[0]);
+        long expectedDistances = (long) locations.size() * (locations.size() - 1);
+        // A sparse matrix estimates distances that haven't been calculated.
+        if (distanceMatrix.isSparse() || loadedDistances[0] >= expectedDistances) {
+            return;
+        }
+        /*
+         * A refinement saves all distances between the new location and older locations at once. Distances between
+         * a location and newer locations are saved by the refinements of the newer locations. Location IDs increase
+         * in creation order, so an unrefined location is missing exactly its distances to older locations, including
+         * the distance from the oldest location.
+         */
+        List<Location> unrefinedLocations = new ArrayList<>();
+        long missingDistances = 0;
+        if (backgroundDistanceCalculator.isEnabled()) {
+            for (Location location : locations) {
+                if (location.id() != oldestId && !reachedFromOldest.contains(location.id())) {
+                    unrefinedLocations.add(location);
+                    missingDistances += 2L * olderLocations(locations, location).size();
+                }
+            }
+        }
+        if (loadedDistances[0] + missingDistances < expectedDistances) {
+            throw new IllegalStateException("Only " + loadedDistances[0] + " out of " + expectedDistances
+                    + " distances between " + locations.size() + " locations were found in the distance repository."
+                    + " This should not happen.");
+        }
+        logger.warn(
+                "Distances of {} locations were not calculated before the application stopped,"
+                        + " they will be estimated and calculated again",
+                unrefinedLocations.size());
+        for (Location location : unrefinedLocations) {
+            List<Location> olderLocations = olderLocations(locations, location);
+            putEstimates(location, olderLocations);
+            refineDistances(location, olderLocations);
+        }
     }
 
-    public void populateDistanceMatrix() {
-        repository.locations()
-                .forEach(from -> repository.locations().stream()
-                        .filter(to -> !to.equals(from))
-                        .forEach(to -> distanceMatrix.put(from, to, distanceRepository.getDistance(from, to)
-                                .orElseThrow(() -> new IllegalStateException("Distance from: [" + from + "] to: [" + to
-                                        + "] is missing in the distance repository. This should not happen.")))));
+    private static List<Location> olderLocations(List<Location> locations, Location location) {
+        return locations.stream()
+                .filter(other -> other.id() < location.id())
+                .collect(toList());
     }
 }
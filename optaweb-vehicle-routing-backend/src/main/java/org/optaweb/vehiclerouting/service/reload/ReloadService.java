@@ -1,14 +1,25 @@
 package org.optaweb.vehiclerouting.service.reload;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.distance.DistanceRepository;
 import org.optaweb.vehiclerouting.service.location.LocationRepository;
 import org.optaweb.vehiclerouting.service.location.LocationService;
 import org.optaweb.vehiclerouting.service.vehicle.VehicleRepository;
 import org.optaweb.vehiclerouting.service.vehicle.VehicleService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.runtime.StartupEvent;
 
 /**
@@ -17,26 +28,63 @@ import io.quarkus.runtime.StartupEvent;
 @ApplicationScoped
 public class ReloadService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ReloadService.class);
+
     private final VehicleRepository vehicleRepository;
     private final VehicleService vehicleService;
     private final LocationRepository locationRepository;
     private final LocationService locationService;
+    private final DistanceRepository distanceRepository;
+    private final AtomicLong expectedDistances = new AtomicLong();
+    private final AtomicLong loadedDistances = new AtomicLong();
+    private final Timer reloadTimer;
 
     @Inject
     ReloadService(
             VehicleRepository vehicleRepository,
             VehicleService vehicleService,
             LocationRepository locationRepository,
-            LocationService locationService) {
+            LocationService locationService,
+            DistanceRepository distanceRepository,
+            MeterRegistry meterRegistry) {
         this.vehicleRepository = vehicleRepository;
         this.vehicleService = vehicleService;
         this.locationRepository = locationRepository;
         this.locationService = locationService;
+        this.distanceRepository = distanceRepository;
+        Gauge.builder("optaweb.reload.distances.expected", expectedDistances, AtomicLong::get)
+                .description("Number of distances to be loaded into the distance matrix")
+                .register(meterRegistry);
+        Gauge.builder("optaweb.reload.distances.loaded", loadedDistances, AtomicLong::get)
+                .description("Number of distances loaded into the distance matrix so far")
+                .register(meterRegistry);
+        reloadTimer = Timer.builder("optaweb.reload.duration")
+                .description("Time spent reloading vehicles, locations and distances")
+                .register(meterRegistry);
     }
 
     public void reload(@Observes StartupEvent startupEvent) {
+        long start = System.nanoTime();
         vehicleRepository.vehicles().forEach(vehicleService::addVehicle);
-        locationService.populateDistanceMatrix();
-        locationRepository.locations().forEach(locationService::addLocation);
+
+        List<Location> locations = locationRepository.locations();
+        // The matrix may be incomplete (sparse or not refined yet), so N * (N - 1) would overestimate the progress.
+        long expected = distanceRepository.countDistances();
+        expectedDistances.set(expected);
+        logger.info("Loading {} distances between {} locations", expectedDistances.get(), locations.size());
+        int[] loggedPercent = { 0 };
+        locationService.populateDistanceMatrix(loaded -> {
+            loadedDistances.set(loaded);
+            int percent = (int) (loaded * 100 / Math.max(expected, 1));
+            if (percent >= loggedPercent[0] + 10) {
+                loggedPercent[0] = percent;
+                logger.info("Loaded {} % of distances", percent);
+            }
+        });
+
+        locations.forEach(locationService::addLocation);
+        long nanos = System.nanoTime() - start;
+        reloadTimer.record(nanos, TimeUnit.NANOSECONDS);
+        logger.info("Reload finished in {} ms", TimeUnit.NANOSECONDS.toMillis(nanos));
     }
 }
@@ -0,0 +1,233 @@
+package org.optaweb.vehiclerouting.service.route;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Priority;
+import javax.decorator.Decorator;
+import javax.decorator.Delegate;
+import javax.inject.Inject;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Decorates the {@link Router} with a bounded cache of paths between locations.
+ * <p>
+ * Most legs of a new best route are the same as the legs of the previous one, so their paths are served from the cache
+ * instead of asking the routing engine again. Paths are keyed by their coordinates. The router has a single routing
+ * profile, so a path between two points never changes. Paths from and to a removed location are dropped when the
+ * location is {@link #forget(Coordinates) forgotten}.
+ * <p>
+ * Paths are {@link TrackSimplifier simplified} before they are cached, so points that wouldn't be visible on the map
+ * take neither memory nor bandwidth.
+ * <p>
+ * The cache is bounded both by the number of paths and by the total number of points. The least recently used paths
+ * are evicted first.
+ */
+@Decorator
+@Priority(1)
+public class CachingRouter implements Router {
+
+    static final String TRACK_CACHE = "tracks";
+    /**
+     * Estimated heap footprint of a cached point: a {@link Coordinates} with two {@link java.math.BigDecimal}s
+     * and a list reference.
+     */
+    static final int BYTES_PER_POINT = 112;
+
+    private final Router router;
+    private final double toleranceMeters;
+    private final int maxEntries;
+    private final long maxPoints;
+    // Guarded by this. Iterates from the least recently used path.
+    private final LinkedHashMap<Endpoints, List<Coordinates>> paths = new LinkedHashMap<>(16, 0.75f, true);
+    // Guarded by this. Keys of the cached paths by their origin and destination, so that the paths of a location can be
+    // dropped without scanning the whole cache.
+    private final Map<Coordinates, Set<Endpoints>> pathsByPoint = new HashMap<>();
+    private long points;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter evictedBytes;
+
+    @Inject
+    CachingRouter(@Delegate Router router, RouteProperties routeProperties, MeterRegistry meterRegistry) {
+        this(router,
+                routeProperties.trackToleranceMeters(),
+                routeProperties.trackCache().maxEntries(),
+                routeProperties.trackCache().maxPoints(),
+                meterRegistry);
+    }
+
+    CachingRouter(Router router, double toleranceMeters, int maxEntries, long maxPoints, MeterRegistry meterRegistry) {
+        if (toleranceMeters < 0) {
+            throw new IllegalArgumentException("Track tolerance (" + toleranceMeters + " m) must not be negative");
+        }
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Max entries (" + maxEntries + ") must not be negative");
+        }
+        if (maxPoints < 0) {
+            throw new IllegalArgumentException("Max points (" + maxPoints + ") must not be negative");
+        }
+        this.router = router;
+        this.toleranceMeters = toleranceMeters;
+        this.maxEntries = maxEntries;
+        this.maxPoints = maxPoints;
+        // Follows Micrometer's cache metrics naming.
+        hits = Counter.builder("cache.gets")
+                .tag("cache", TRACK_CACHE)
+                .tag("result", "hit")
+                .description("Paths found in the cache")
+                .register(meterRegistry);
+        misses = Counter.builder("cache.gets")
+                .tag("cache", TRACK_CACHE)
+                .tag("result", "miss")
+                .description("Paths calculated by the router because they weren't in the cache")
+                .register(meterRegistry);
+        evictions = Counter.builder("cache.evictions")
+                .tag("cache", TRACK_CACHE)
+                .description("Paths evicted from the cache to stay within its bounds")
+                .register(meterRegistry);
+        evictedBytes = Counter.builder("cache.evicted")
+                .tag("cache", TRACK_CACHE)
+                .baseUnit("bytes")
+                .description("Estimated heap freed by evicting paths from the cache")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, CachingRouter::size)
+                .tag("cache", TRACK_CACHE)
+                .description("Number of cached paths")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Simplified path between two points.
+     */
+    @Override
+    public List<Coordinates> getPath(Coordinates from, Coordinates to) {
+        Endpoints endpoints = new Endpoints(from, to);
+        synchronized (this) {
+            List<Coordinates> path = paths.get(endpoints);
+            if (path != null) {
+                hits.increment();
+                return path;
+            }
+        }
+        misses.increment();
+        // Don't hold the lock while routing.
+        List<Coordinates> path = TrackSimplifier.simplify(router.getPath(from, to), toleranceMeters);
+        put(endpoints, path);
+        return path;
+    }
+
+    /**
+     * Drop paths from and to the given coordinates and let the decorated router forget them too.
+     */
+    @Override
+    public void forget(Coordinates coordinates) {
+        synchronized (this) {
+            Set<Endpoints> forgotten = pathsByPoint.get(coordinates);
+            if (forgotten != null) {
+                for (Endpoints endpoints : List.copyOf(forgotten)) {
+                    points -= paths.remove(endpoints).size();
+                    unindex(endpoints);
+                }
+            }
+        }
+        router.forget(coordinates);
+    }
+
+    /**
+     * Number of cached paths.
+     *
+     * @return number of cached paths
+     */
+    synchronized int size() {
+        return paths.size();
+    }
+
+    /**
+     * Number of points of all cached paths.
+     *
+     * @return number of cached points
+     */
+    synchronized long points() {
+        return points;
+    }
+
+    private synchronized void put(Endpoints endpoints, List<Coordinates> path) {
+        if (maxEntries == 0 || path.size() > maxPoints) {
+            return;
+        }
+        List<Coordinates> previous = paths.put(endpoints, path);
+        if (previous != null) {
+            // Calculated concurrently by another thread.
+            points -= previous.size();
+        } else {
+            pathsByPoint.computeIfAbsent(endpoints.from, point -> new HashSet<>()).add(endpoints);
+            pathsByPoint.computeIfAbsent(endpoints.to, point -> new HashSet<>()).add(endpoints);
+        }
+        points += path.size();
+        Iterator<Map.Entry<Endpoints, List<Coordinates>>> leastRecentlyUsed = paths.entrySet().iterator();
+        while (paths.size() > maxEntries || points > maxPoints) {
+            Map.Entry<Endpoints, List<Coordinates>> evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            unindex(evicted.getKey());
+            points -= evicted.getValue().size();
+            evictions.increment();
+            evictedBytes.increment((double) evicted.getValue().size() * BYTES_PER_POINT);
+        }
+    }
+
+    private void unindex(Endpoints endpoints) {
+        unindex(endpoints.from, endpoints);
+        unindex(endpoints.to, endpoints);
+    }
+
+    private void unindex(Coordinates point, Endpoints endpoints) {
+        Set<Endpoints> pointPaths = pathsByPoint.get(point);
+        if (pointPaths != null && pointPaths.remove(endpoints) && pointPaths.isEmpty()) {
+            pathsByPoint.remove(point);
+        }
+    }
+
+    /**
+     * Origin and destination of a cached path.
+     */
+    private static final class Endpoints {
+
+        private final Coordinates from;
+        private final Coordinates to;
+
+        private Endpoints(Coordinates from, Coordinates to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Endpoints endpoints = (Endpoints) o;
+            return from.equals(endpoints.from) && to.equals(endpoints.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, to);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.optaweb.vehiclerouting.service.route;
+
+import java.util.Objects;
+
+/**
+ * Pair of locations connected by a path.
+ */
+final class Leg {
+
+    final long from;
+    final long to;
+
+    Leg(long from, long to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Leg leg = (Leg) o;
+        return from == leg.from && to == leg.to;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return "Leg{" + from + " -> " + to + '}';
+    }
+}
@@ -5,9 +5,19 @@ import static java.util.stream.Collectors.toMap;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
@@ -36,29 +46,62 @@ public class RouteListener {
 
     private static final Logger logger = LoggerFactory.getLogger(RouteListener.class);
 
+    /**
+     * Capacity of the executor's queue per thread. Once the queue is full, the publishing thread calculates paths too.
+     */
+    static final int QUEUED_LEGS_PER_THREAD = 64;
+
     private final Router router;
     private final VehicleRepository vehicleRepository;
     private final LocationRepository locationRepository;
     private final Event<RoutingPlan> routingPlanEvent;
+    // Null when paths are calculated on the publishing thread.
+    private final ExecutorService executor;
+    // Incremented by each event. Work started for an older event is cancelled.
+    private final AtomicLong latestEvent = new AtomicLong();
 
     // TODO maybe remove state from the service and get best route from a repository
-    private RoutingPlan bestRoutingPlan;
+    // Written while holding this. Events come from the solver thread and from request threads when the solver
+    // isn't running.
+    private volatile RoutingPlan bestRoutingPlan;
 
     @Inject
     RouteListener(
             Router router,
             VehicleRepository vehicleRepository,
             LocationRepository locationRepository,
-            Event<RoutingPlan> routingPlanEvent) {
+            Event<RoutingPlan> routingPlanEvent,
+            RouteProperties routeProperties) {
+        this(router, vehicleRepository, locationRepository, routingPlanEvent, routeProperties.trackThreads());
+    }
+
+    RouteListener(
+            Router router,
+            VehicleRepository vehicleRepository,
+            LocationRepository locationRepository,
+            Event<RoutingPlan> routingPlanEvent,
+            int trackThreads) {
+        if (trackThreads < 0) {
+            throw new IllegalArgumentException("Track threads (" + trackThreads + ") must not be negative");
+        }
         this.router = router;
         this.vehicleRepository = vehicleRepository;
         this.locationRepository = locationRepository;
         this.routingPlanEvent = routingPlanEvent;
+        this.executor = trackThreads == 0 ? null
+                : new ThreadPoolExecutor(
+                        trackThreads,
+                        trackThreads,
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(trackThreads * QUEUED_LEGS_PER_THREAD),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
         bestRoutingPlan = RoutingPlan.empty();
     }
 
     // TODO maybe @ObservesAsync?
     public void onApplicationEvent(@Observes RouteChangedEvent event) {
+        long eventNumber = latestEvent.incrementAndGet();
         // TODO persist the best solution
         Location depot = event.depotId().flatMap(locationRepository::find).orElse(null);
         try {
@@ -70,7 +113,7 @@ public class RouteListener {
             Map<Long, Location> visitMap = event.visitIds().stream()
                     .collect(toMap(visitId -> visitId, this::findLocationById));
 
-            List<RouteWithTrack> routes = event.routes().stream()
+            List<Route> routes = event.routes().stream()
                     // list of deep locations
                     .map(shallowRoute -> new Route(
                             vehicleMap.get(shallowRoute.vehicleId),
@@ -78,18 +121,51 @@ public class RouteListener {
                             shallowRoute.visitIds.stream()
                                     .map(visitMap::get)
                                     .collect(toList())))
-                    // add tracks
-                    .map(route -> new RouteWithTrack(route, track(route.depot(), route.visits())))
                     .collect(toList());
-            bestRoutingPlan = new RoutingPlan(
-                    event.distance(),
-                    new ArrayList<>(vehicleMap.values()),
-                    depot,
-                    new ArrayList<>(visitMap.values()),
-                    routes);
-            routingPlanEvent.fire(bestRoutingPlan);
+            // add tracks
+            Map<Leg, List<Coordinates>> previousPaths = paths(bestRoutingPlan);
+            List<List<CompletableFuture<List<Coordinates>>>> tracks = routes.stream()
+                    .map(route -> track(route.depot(), route.visits(), previousPaths, eventNumber))
+                    .collect(toList());
+            CompletableFuture.allOf(tracks.stream().flatMap(List::stream).toArray(CompletableFuture[]::new)).join();
+            List<RouteWithTrack> routesWithTracks = new ArrayList<>(routes.size());
+            for (int i = 0; i < routes.size(); i++) {
+                routesWithTracks.add(new RouteWithTrack(routes.get(i), tracks.get(i).stream()
+                        .map(CompletableFuture::join)
+                        .collect(toList())));
+            }
+            synchronized (this) {
+                if (eventNumber != latestEvent.get()) {
+                    logger.debug("Discarding a routing plan superseded by a newer one");
+                    return;
+                }
+                bestRoutingPlan = new RoutingPlan(
+                        event.distance(),
+                        new ArrayList<>(vehicleMap.values()),
+                        depot,
+                        new ArrayList<>(visitMap.values()),
+                        routesWithTracks);
+                routingPlanEvent.fire(bestRoutingPlan);
+            }
+        } catch (CancellationException e) {
+            logger.debug("Discarding a routing plan superseded by a newer one");
         } catch (IllegalStateException e) {
             logger.warn("Discarding an outdated routing plan: {}", e.toString());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                logger.debug("Discarding a routing plan superseded by a newer one");
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
         }
     }
 
@@ -103,20 +179,58 @@ public class RouteListener {
                 "Location {id=" + id + "} not found in the repository"));
     }
 
-    private List<List<Coordinates>> track(Location depot, List<Location> route) {
-        if (route.isEmpty()) {
-            return Collections.emptyList();
+    /**
+     * Paths of all legs of the given plan. Most legs don't change between two consecutive plans, so their paths
+     * can be reused instead of routing them again.
+     */
+    private static Map<Leg, List<Coordinates>> paths(RoutingPlan plan) {
+        Map<Leg, List<Coordinates>> paths = new HashMap<>();
+        for (RouteWithTrack route : plan.routes()) {
+            List<Location> itinerary = itinerary(route.depot(), route.visits());
+            List<List<Coordinates>> track = route.track();
+            for (int i = 0; i < track.size(); i++) {
+                paths.put(new Leg(itinerary.get(i).id(), itinerary.get(i + 1).id()), track.get(i));
+            }
         }
-        ArrayList<Location> itinerary = new ArrayList<>();
+        return paths;
+    }
+
+    private static List<Location> itinerary(Location depot, List<Location> route) {
+        ArrayList<Location> itinerary = new ArrayList<>(route.size() + 2);
         itinerary.add(depot);
         itinerary.addAll(route);
         itinerary.add(depot);
-        List<List<Coordinates>> paths = new ArrayList<>();
+        return itinerary;
+    }
+
+    private List<CompletableFuture<List<Coordinates>>> track(
+            Location depot,
+            List<Location> route,
+            Map<Leg, List<Coordinates>> previousPaths,
+            long eventNumber) {
+        if (route.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Location> itinerary = itinerary(depot, route);
+        List<CompletableFuture<List<Coordinates>>> paths = new ArrayList<>();
         for (int i = 0; i < itinerary.size() - 1; i++) {
             Location fromLocation = itinerary.get(i);
             Location toLocation = itinerary.get(i + 1);
-            List<Coordinates> path = router.getPath(fromLocation.coordinates(), toLocation.coordinates());
-            paths.add(path);
+            List<Coordinates> path = previousPaths.get(new Leg(fromLocation.id(), toLocation.id()));
+            if (path != null) {
+                paths.add(CompletableFuture.completedFuture(path));
+            } else if (executor == null) {
+                paths.add(CompletableFuture
+                        .completedFuture(router.getPath(fromLocation.coordinates(), toLocation.coordinates())));
+            } else {
+                paths.add(CompletableFuture.supplyAsync(() -> {
+                    if (eventNumber != latestEvent.get()) {
+                        // Don't route legs of a plan that won't be published.
+                        throw new CancellationException("Superseded by a newer routing plan");
+                    }
+                    return router.getPath(fromLocation.coordinates(), toLocation.coordinates());
+                }, executor));
+            }
         }
         return paths;
     }
@@ -0,0 +1,35 @@
+package org.optaweb.vehiclerouting.service.route;
+
+import io.smallrye.config.ConfigMapping;
+
+@ConfigMapping(prefix = "app.route")
+public interface RouteProperties {
+
+    /**
+     * Number of threads calculating paths of route legs. Zero calculates them on the thread that publishes the route.
+     */
+    int trackThreads();
+
+    /**
+     * How far a point of a route track may be from the simplified track. Zero disables simplification.
+     */
+    double trackToleranceMeters();
+
+    /**
+     * Settings of the cache of paths between locations.
+     */
+    TrackCache trackCache();
+
+    interface TrackCache {
+
+        /**
+         * Maximum number of cached paths. Zero disables the cache.
+         */
+        int maxEntries();
+
+        /**
+         * Maximum number of points of all cached paths together.
+         */
+        long maxPoints();
+    }
+}
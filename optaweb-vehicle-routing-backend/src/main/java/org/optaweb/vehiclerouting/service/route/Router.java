@@ -17,4 +17,16 @@ public interface Router {
      * @return list of coordinates describing the path between given locations.
      */
     List<Coordinates> getPath(Coordinates from, Coordinates to);
+
+    /**
+     * Drop anything cached about the given coordinates because the location there has been removed.
+     * <p>
+     * Implementations that cache per-coordinate state should override this. It's not an error to forget
+     * coordinates that haven't been seen.
+     *
+     * @param coordinates coordinates of a removed location
+     */
+    default void forget(Coordinates coordinates) {
+        // Nothing is cached by default.
+    }
 }
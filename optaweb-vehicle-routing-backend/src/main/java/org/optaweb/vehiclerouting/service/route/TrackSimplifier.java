@@ -0,0 +1,104 @@
+package org.optaweb.vehiclerouting.service.route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.service.distance.GreatCircleDistance;
+
+/**
+ * Removes points of a path that don't change its shape by more than a tolerance, using the
+ * <a href="https://en.wikipedia.org/wiki/Ramer%E2%80%93Douglas%E2%80%93Peucker_algorithm">Douglas-Peucker</a>
+ * algorithm.
+ * <p>
+ * Routing engines return every road vertex, most of which are too close to each other or too close to a straight line
+ * to be visible on the map.
+ */
+public final class TrackSimplifier {
+
+    private TrackSimplifier() {
+        throw new AssertionError("Utility class");
+    }
+
+    /**
+     * Simplify a path. The first and the last point are always kept.
+     *
+     * @param path path to simplify
+     * @param toleranceMeters maximum distance of a removed point from the simplified path, zero keeps all points
+     * @return simplified path
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public static List<Coordinates> simplify(List<Coordinates> path, double toleranceMeters) {
+        if (toleranceMeters < 0) {
+            throw new IllegalArgumentException("Tolerance (" + toleranceMeters + " m) must not be negative");
+        }
+        int size = path.size();
+        if (toleranceMeters == 0 || size < 3) {
+            return path;
+        }
+
+        // Project to a plane in meters. A path is short enough for an equirectangular projection.
+        double metersPerDegree = GreatCircleDistance.METERS_PER_DEGREE;
+        double metersPerDegreeOfLongitude =
+                metersPerDegree * Math.cos(Math.toRadians(path.get(0).latitude().doubleValue()));
+        double[] x = new double[size];
+        double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = path.get(i).longitude().doubleValue() * metersPerDegreeOfLongitude;
+            y[i] = path.get(i).latitude().doubleValue() * metersPerDegree;
+        }
+
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        double toleranceSquared = toleranceMeters * toleranceMeters;
+        // Ranges waiting to be simplified as (first, last) pairs. Iterative, so that a long path can't overflow
+        // the stack.
+        int[] stack = new int[2 * size];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = -1;
+            double farthestDistanceSquared = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double distanceSquared = segmentDistanceSquared(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distanceSquared > farthestDistanceSquared) {
+                    farthest = i;
+                    farthestDistanceSquared = distanceSquared;
+                }
+            }
+            if (farthest != -1) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        List<Coordinates> simplified = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                simplified.add(path.get(i));
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * Squared distance of point P from segment AB.
+     */
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - (ax + t * dx);
+        double ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+}
@@ -27,6 +27,22 @@ class DistanceTest {
         assertThatCode(() -> Distance.ofMillis(0)).doesNotThrowAnyException();
     }
 
+    @Test
+    void int_millis_should_be_lossless() {
+        for (long millis : new long[] { 0, 1, 123_999, 3600_000L * 24 * 24, Distance.MAX_INT_MILLIS }) {
+            assertThat((long) Distance.toIntMillis(millis)).isEqualTo(millis);
+        }
+    }
+
+    @Test
+    void int_millis_should_not_overflow() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> Distance.toIntMillis(Distance.MAX_INT_MILLIS + 1))
+                .withMessageContaining("(" + (Distance.MAX_INT_MILLIS + 1) + ")");
+        assertThatIllegalArgumentException().isThrownBy(() -> Distance.toIntMillis(-1));
+        assertThatIllegalArgumentException().isThrownBy(() -> Distance.toIntMillis(Long.MAX_VALUE));
+    }
+
     @Test
     void equals_hashCode() {
         long millis = 37;
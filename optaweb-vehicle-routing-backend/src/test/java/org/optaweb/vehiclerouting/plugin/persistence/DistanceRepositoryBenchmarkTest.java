@@ -0,0 +1,98 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.util.junit.Benchmark;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+
+/**
+ * Measures how fast distances of a new location are saved when it's added to an existing matrix.
+ * <p>
+ * Run with {@code -Dbenchmark=true}. Runs against the test database (in-memory H2). Run it with
+ * {@code -Dquarkus.test.profile=postgresql} and a running PostgreSQL database to measure {@code COPY}.
+ */
+@QuarkusTest
+class DistanceRepositoryBenchmarkTest {
+
+    private static final int[] LOCATION_COUNTS = { 1_000, 5_000, 10_000 };
+    private static final int NEW_LOCATIONS = 5;
+
+    @Inject
+    DistanceCrudRepository crudRepository;
+    @Inject
+    EntityManager entityManager;
+
+    @AfterEach
+    void deleteDistances() {
+        QuarkusTransaction.requiringNew().run(() -> crudRepository.deleteAll());
+    }
+
+    @Benchmark
+    void persist_one_by_one() {
+        DistanceRepositoryImpl repository = new DistanceRepositoryImpl(crudRepository);
+        run("persist", (row) -> row.distancesTo.forEach((to, distance) -> {
+            repository.saveDistance(row.location, to, distance);
+            repository.saveDistance(to, row.location, row.distancesFrom.get(to));
+        }));
+    }
+
+    @Benchmark
+    void bulk_insert() {
+        DistanceRepositoryImpl repository = new DistanceRepositoryImpl(crudRepository);
+        run("bulk", (row) -> repository.saveDistances(row.location, row.distancesTo, row.distancesFrom));
+    }
+
+    private void run(String name, Consumer<Row> saveRow) {
+        for (int locationCount : LOCATION_COUNTS) {
+            long inserts = 0;
+            long nanos = 0;
+            for (int i = 0; i < NEW_LOCATIONS; i++) {
+                Row row = new Row(locationCount + i, locationCount);
+                long start = System.nanoTime();
+                // Each location is added in its own transaction, like LocationService does.
+                QuarkusTransaction.requiringNew().run(() -> {
+                    saveRow.accept(row);
+                    entityManager.flush();
+                });
+                nanos += System.nanoTime() - start;
+                inserts += row.distancesTo.size() * 2L;
+            }
+            System.out.printf("%s, %d locations: %.0f inserts/s%n", name, locationCount, inserts * 1e9 / nanos);
+            assertThat(QuarkusTransaction.requiringNew().call(() -> crudRepository.count())).isEqualTo(inserts);
+            QuarkusTransaction.requiringNew().run(() -> crudRepository.deleteAll());
+        }
+    }
+
+    /**
+     * Distances between a new location and all existing locations.
+     */
+    private static final class Row {
+
+        private final Location location;
+        private final Map<Location, Distance> distancesTo = new HashMap<>();
+        private final Map<Location, Distance> distancesFrom = new HashMap<>();
+
+        private Row(long newLocationId, int existingLocations) {
+            location = new Location(newLocationId, Coordinates.of(0, 0));
+            // Existing locations get IDs that don't collide with new locations.
+            for (int i = 0; i < existingLocations; i++) {
+                Location existing = new Location(-i - 1, Coordinates.of(0, 0));
+                distancesTo.put(existing, Distance.ofMillis(i));
+                distancesFrom.put(existing, Distance.ofMillis(i + 1));
+            }
+        }
+    }
+}
@@ -5,6 +5,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
@@ -27,6 +29,8 @@ class DistanceRepositoryImplTest {
     private DistanceRepositoryImpl repository;
     @Captor
     private ArgumentCaptor<DistanceEntity> distanceEntityArgumentCaptor;
+    @Captor
+    private ArgumentCaptor<List<DistanceEntity>> distancesCaptor;
 
     private final Location from = new Location(1, Coordinates.of(7, -4.0));
     private final Location to = new Location(2, Coordinates.of(5, 9.0));
@@ -42,6 +46,21 @@ class DistanceRepositoryImplTest {
         assertThat(distanceEntity.getKey().getToId()).isEqualTo(to.id());
     }
 
+    @Test
+    void should_save_row_and_column_in_bulk() {
+        Location other = new Location(3, Coordinates.of(1, 1));
+        repository.saveDistances(
+                from,
+                Map.of(to, Distance.ofMillis(12), other, Distance.ofMillis(13)),
+                Map.of(to, Distance.ofMillis(21), other, Distance.ofMillis(31)));
+        verify(crudRepository).insertAll(distancesCaptor.capture());
+        assertThat(distancesCaptor.getValue()).containsExactlyInAnyOrder(
+                new DistanceEntity(new DistanceKey(1, 2), 12L),
+                new DistanceEntity(new DistanceKey(1, 3), 13L),
+                new DistanceEntity(new DistanceKey(2, 1), 21L),
+                new DistanceEntity(new DistanceKey(3, 1), 31L));
+    }
+
     @Test
     void should_return_distance_when_entity_is_found() {
         DistanceKey distanceKey = new DistanceKey(from.id(), to.id());
@@ -57,6 +76,12 @@ class DistanceRepositoryImplTest {
         assertThat(repository.getDistance(from, to)).isEmpty();
     }
 
+    @Test
+    void should_count_distances() {
+        when(crudRepository.count()).thenReturn(7L);
+        assertThat(repository.countDistances()).isEqualTo(7);
+    }
+
     @Test
     void should_delete_distance_by_location_id() {
         repository.deleteDistances(from);
@@ -2,6 +2,10 @@ package org.optaweb.vehiclerouting.plugin.persistence;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import javax.inject.Inject;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -75,6 +79,55 @@ class DistanceRepositoryIntegrationTest {
         assertThat(repository.getDistance(location1, location2)).contains(distance);
     }
 
+    @Test
+    @TestTransaction
+    void should_insert_distances_in_bulk() {
+        int count = DistanceCrudRepository.BATCH_SIZE * 2 + 1;
+        List<DistanceEntity> distances = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            distances.add(new DistanceEntity(new DistanceKey(1, i + 2), (long) i));
+        }
+
+        crudRepository.insertAll(distances);
+
+        assertThat(crudRepository.count()).isEqualTo(count);
+        assertThat(crudRepository.findById(new DistanceKey(1, count + 1))).isEqualTo(distances.get(count - 1));
+    }
+
+    @Test
+    @TestTransaction
+    void should_return_saved_row_and_column() {
+        Location location1 = new Location(1, Coordinates.of(7, -4.0));
+        Location location2 = new Location(2, Coordinates.of(5, 9.0));
+        Location location3 = new Location(3, Coordinates.of(6, 2.0));
+
+        repository.saveDistances(
+                location1,
+                Map.of(location2, Distance.ofMillis(12), location3, Distance.ofMillis(13)),
+                Map.of(location2, Distance.ofMillis(21), location3, Distance.ofMillis(31)));
+
+        assertThat(repository.getDistance(location1, location3)).contains(Distance.ofMillis(13));
+        assertThat(repository.getDistance(location3, location1)).contains(Distance.ofMillis(31));
+        assertThat(repository.getDistance(location2, location3)).isEmpty();
+    }
+
+    @Test
+    @TestTransaction
+    void should_load_distances_between_given_locations() {
+        Location location1 = new Location(1, Coordinates.of(7, -4.0));
+        Location location2 = new Location(2, Coordinates.of(5, 9.0));
+        crudRepository.persist(distance(1, 2));
+        crudRepository.persist(distance(2, 1));
+        crudRepository.persist(distance(1, 3));
+
+        List<String> loaded = new ArrayList<>();
+        repository.loadDistances(
+                List.of(location1, location2),
+                (from, to, distance) -> loaded.add(from.id() + "->" + to.id() + "=" + distance.millis()));
+
+        assertThat(loaded).containsExactlyInAnyOrder("1->2=1", "2->1=1");
+    }
+
     @Test
     void should_return_negative_number_when_distance_not_found() {
         Location location1 = new Location(1, Coordinates.of(7, -4.0));
@@ -0,0 +1,113 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+
+@ExtendWith(MockitoExtension.class)
+class DistanceRowRepositoryImplTest {
+
+    @Mock
+    private DistanceRowCrudRepository rowRepository;
+    @Mock
+    private DistanceCrudRepository cellRepository;
+    @InjectMocks
+    private DistanceRowRepositoryImpl repository;
+    @Captor
+    private ArgumentCaptor<DistanceRowEntity> rowEntityCaptor;
+
+    private final Location location1 = new Location(1, Coordinates.of(7, -4.0));
+    private final Location location2 = new Location(2, Coordinates.of(5, 9.0));
+    private final Location location3 = new Location(3, Coordinates.of(6, 2.0));
+
+    @Test
+    void should_save_row_and_column_of_new_location_in_one_row() {
+        when(rowRepository.findByIdOptional(anyLong())).thenReturn(Optional.empty());
+
+        repository.saveDistances(
+                location3,
+                Map.of(location1, Distance.ofMillis(31), location2, Distance.ofMillis(32)),
+                Map.of(location1, Distance.ofMillis(13), location2, Distance.ofMillis(23)));
+
+        verify(rowRepository).persist(rowEntityCaptor.capture());
+        DistanceRowEntity rowEntity = rowEntityCaptor.getValue();
+        assertThat(rowEntity.getLocationId()).isEqualTo(location3.id());
+        DistanceRow row = DistanceRow.decode(rowEntity.getDistances());
+        assertThat(row.millisTo(location1.id())).isEqualTo(31);
+        assertThat(row.millisFrom(location1.id())).isEqualTo(13);
+        assertThat(row.millisTo(location2.id())).isEqualTo(32);
+        assertThat(row.millisFrom(location2.id())).isEqualTo(23);
+    }
+
+    @Test
+    void should_merge_distance_into_existing_row() {
+        DistanceRowEntity rowEntity = new DistanceRowEntity(location1.id(), new DistanceRow(
+                new long[] { location2.id() },
+                new long[] { 12 },
+                new long[] { 21 }));
+        when(rowRepository.findByIdOptional(location1.id())).thenReturn(Optional.of(rowEntity));
+
+        repository.saveDistance(location1, location3, Distance.ofMillis(13));
+
+        DistanceRow row = DistanceRow.decode(rowEntity.getDistances());
+        assertThat(row.millisTo(location2.id())).isEqualTo(12);
+        assertThat(row.millisFrom(location2.id())).isEqualTo(21);
+        assertThat(row.millisTo(location3.id())).isEqualTo(13);
+        assertThat(rowEntity.getDistanceCount()).isEqualTo(3);
+    }
+
+    @Test
+    void should_find_distance_in_either_row() {
+        DistanceRowEntity rowEntity = new DistanceRowEntity(location2.id(), new DistanceRow(
+                new long[] { location1.id() },
+                new long[] { 21 },
+                new long[] { 12 }));
+        when(rowRepository.findByIdOptional(location1.id())).thenReturn(Optional.empty());
+        when(rowRepository.findByIdOptional(location2.id())).thenReturn(Optional.of(rowEntity));
+
+        assertThat(repository.getDistance(location2, location1)).contains(Distance.ofMillis(21));
+        assertThat(repository.getDistance(location1, location2)).contains(Distance.ofMillis(12));
+    }
+
+    @Test
+    void should_return_empty_when_distance_not_found() {
+        when(rowRepository.findByIdOptional(any())).thenReturn(Optional.empty());
+        assertThat(repository.getDistance(location1, location2)).isEmpty();
+    }
+
+    @Test
+    void should_count_distances_in_rows_and_cells_not_migrated_yet() {
+        when(rowRepository.countDistances()).thenReturn(6L);
+        when(cellRepository.count()).thenReturn(2L);
+        assertThat(repository.countDistances()).isEqualTo(8);
+    }
+
+    @Test
+    void should_delete_only_the_row_of_removed_location() {
+        repository.deleteDistances(location1);
+        verify(rowRepository).deleteById(location1.id());
+    }
+
+    @Test
+    void should_delete_rows_and_cells() {
+        repository.deleteAll();
+        verify(rowRepository).deleteAll();
+        verify(cellRepository).deleteAll();
+    }
+}
@@ -0,0 +1,104 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+
+import io.quarkus.test.TestTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+
+@QuarkusTest
+class DistanceRowRepositoryIntegrationTest {
+
+    @Inject
+    DistanceRowCrudRepository rowRepository;
+    @Inject
+    DistanceCrudRepository cellRepository;
+
+    private DistanceRowRepositoryImpl repository;
+
+    private final Location location1 = new Location(1, Coordinates.of(7, -4.0));
+    private final Location location2 = new Location(2, Coordinates.of(5, 9.0));
+    private final Location location3 = new Location(3, Coordinates.of(6, 2.0));
+
+    @BeforeEach
+    void setUp() {
+        repository = new DistanceRowRepositoryImpl(rowRepository, cellRepository);
+    }
+
+    @Test
+    @TestTransaction
+    void adding_location_should_write_one_row() {
+        repository.saveDistances(location2, Map.of(location1, Distance.ofMillis(21)),
+                Map.of(location1, Distance.ofMillis(12)));
+        repository.saveDistances(location3,
+                Map.of(location1, Distance.ofMillis(31), location2, Distance.ofMillis(32)),
+                Map.of(location1, Distance.ofMillis(13), location2, Distance.ofMillis(23)));
+
+        assertThat(rowRepository.count()).isEqualTo(2);
+        assertThat(repository.countDistances()).isEqualTo(6);
+        assertThat(repository.getDistance(location1, location2)).contains(Distance.ofMillis(12));
+        assertThat(repository.getDistance(location3, location2)).contains(Distance.ofMillis(32));
+        assertThat(repository.getDistance(location2, location3)).contains(Distance.ofMillis(23));
+    }
+
+    @Test
+    @TestTransaction
+    void should_load_distances_of_remaining_locations_after_removal() {
+        repository.saveDistances(location2, Map.of(location1, Distance.ofMillis(21)),
+                Map.of(location1, Distance.ofMillis(12)));
+        repository.saveDistances(location3,
+                Map.of(location1, Distance.ofMillis(31), location2, Distance.ofMillis(32)),
+                Map.of(location1, Distance.ofMillis(13), location2, Distance.ofMillis(23)));
+
+        repository.deleteDistances(location2);
+        assertThat(rowRepository.count()).isOne();
+        // Until the rows are loaded, distances to the removed location are still counted.
+        assertThat(repository.countDistances()).isEqualTo(4);
+
+        assertThat(load(location1, location3)).containsExactlyInAnyOrder("1->3=13", "3->1=31");
+        assertThat(repository.countDistances()).isEqualTo(2);
+        // Distances to the removed location have been dropped from the remaining row.
+        rowRepository.getEntityManager().clear();
+        DistanceRow row = DistanceRow.decode(rowRepository.findById(location3.id()).getDistances());
+        assertThat(row.size()).isOne();
+    }
+
+    @Test
+    @TestTransaction
+    void should_migrate_cells_to_rows() {
+        cellRepository.persist(new DistanceEntity(new DistanceKey(1, 2), 12L));
+        cellRepository.persist(new DistanceEntity(new DistanceKey(2, 1), 21L));
+        cellRepository.persist(new DistanceEntity(new DistanceKey(1, 3), 13L));
+        cellRepository.persist(new DistanceEntity(new DistanceKey(3, 1), 31L));
+        cellRepository.persist(new DistanceEntity(new DistanceKey(2, 3), 23L));
+        cellRepository.persist(new DistanceEntity(new DistanceKey(3, 2), 32L));
+        cellRepository.flush();
+        assertThat(repository.countDistances()).isEqualTo(6);
+
+        assertThat(load(location1, location2, location3)).containsExactlyInAnyOrder(
+                "1->2=12", "2->1=21", "1->3=13", "3->1=31", "2->3=23", "3->2=32");
+        assertThat(cellRepository.count()).isZero();
+        assertThat(rowRepository.count()).isEqualTo(3);
+        assertThat(repository.countDistances()).isEqualTo(6);
+        assertThat(repository.getDistance(location3, location2)).contains(Distance.ofMillis(32));
+    }
+
+    private List<String> load(Location... locations) {
+        List<String> loaded = new ArrayList<>();
+        repository.loadDistances(
+                List.of(locations),
+                (from, to, distance) -> loaded.add(from.id() + "->" + to.id() + "=" + distance.millis()));
+        return loaded;
+    }
+}
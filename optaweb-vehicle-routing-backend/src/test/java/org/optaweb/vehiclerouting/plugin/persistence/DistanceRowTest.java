@@ -0,0 +1,143 @@
+package org.optaweb.vehiclerouting.plugin.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Distance;
+
+class DistanceRowTest {
+
+    private static final long MISSING = DistanceRow.MISSING;
+
+    @Test
+    void should_survive_encoding() {
+        DistanceRow row = new DistanceRow(
+                new long[] { 7, -3, Long.MAX_VALUE, 0 },
+                new long[] { 700, 300, MISSING, 0 },
+                new long[] { 7000, MISSING, Distance.MAX_INT_MILLIS, 0 });
+
+        DistanceRow decoded = DistanceRow.decode(row.encode());
+
+        assertThat(decoded.size()).isEqualTo(4);
+        assertThat(decoded.millisTo(7L)).isEqualTo(700);
+        assertThat(decoded.millisFrom(7L)).isEqualTo(7000);
+        assertThat(decoded.millisTo(-3L)).isEqualTo(300);
+        assertThat(decoded.millisFrom(-3L)).isEqualTo(MISSING);
+        assertThat(decoded.millisTo(Long.MAX_VALUE)).isEqualTo(MISSING);
+        assertThat(decoded.millisFrom(Long.MAX_VALUE)).isEqualTo(Distance.MAX_INT_MILLIS);
+        assertThat(decoded.millisTo(0L)).isZero();
+        assertThat(decoded.millisTo(1L)).isEqualTo(MISSING);
+        // Entries are sorted by ID.
+        assertThat(decoded.otherId(0)).isEqualTo(-3);
+        assertThat(decoded.otherId(3)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void should_count_known_distances_in_both_directions() {
+        DistanceRow row = new DistanceRow(
+                new long[] { 1, 2, 3 },
+                new long[] { 10, MISSING, 30 },
+                new long[] { MISSING, MISSING, 0 });
+
+        assertThat(row.distanceCount()).isEqualTo(3);
+        assertThat(DistanceRow.EMPTY.distanceCount()).isZero();
+    }
+
+    @Test
+    void empty_row_should_survive_encoding() {
+        assertThat(DistanceRow.decode(DistanceRow.EMPTY.encode()).size()).isZero();
+    }
+
+    @Test
+    void encoded_row_should_be_much_smaller_than_a_table_row_per_distance() {
+        int size = 10_000;
+        long[] ids = new long[size];
+        long[] to = new long[size];
+        long[] from = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i * 3 + 1000;
+            to[i] = 1_000_000 + (i * 7919L) % 3_000_000;
+            from[i] = 1_000_000 + (i * 104729L) % 3_000_000;
+        }
+        byte[] encoded = new DistanceRow(ids, to, from).encode();
+        // IDs and distances as 3 longs would take 24 bytes per entry.
+        assertThat(encoded.length).isLessThan(size * 10);
+        DistanceRow decoded = DistanceRow.decode(encoded);
+        assertThat(decoded.millisTo(ids[1234])).isEqualTo(to[1234]);
+        assertThat(decoded.millisFrom(ids[size - 1])).isEqualTo(from[size - 1]);
+    }
+
+    @Test
+    void merge_should_prefer_known_distances_of_update() {
+        DistanceRow row = new DistanceRow(new long[] { 1, 2, 4 }, new long[] { 10, 20, 40 }, new long[] { 1, 2, 4 });
+        DistanceRow update = new DistanceRow(new long[] { 3, 2 }, new long[] { 30, 22 }, new long[] { MISSING, MISSING });
+
+        DistanceRow merged = row.with(update);
+
+        assertThat(merged.size()).isEqualTo(4);
+        assertThat(merged.millisTo(2L)).isEqualTo(22);
+        assertThat(merged.millisFrom(2L)).isEqualTo(2);
+        assertThat(merged.millisTo(3L)).isEqualTo(30);
+        assertThat(merged.millisFrom(3L)).isEqualTo(MISSING);
+        assertThat(merged.millisTo(4L)).isEqualTo(40);
+    }
+
+    @Test
+    void retain_should_drop_other_locations() {
+        DistanceRow row = new DistanceRow(new long[] { 1, 2, 3 }, new long[] { 10, 20, 30 }, new long[] { 1, 2, 3 });
+
+        assertThat(row.retain(id -> true)).isSameAs(row);
+        DistanceRow retained = row.retain(id -> id != 2);
+        assertThat(retained.size()).isEqualTo(2);
+        assertThat(retained.millisTo(2L)).isEqualTo(MISSING);
+        assertThat(retained.millisTo(3L)).isEqualTo(30);
+    }
+
+    @Test
+    void should_reject_invalid_rows() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new DistanceRow(new long[] { 1 }, new long[0], new long[0]));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new DistanceRow(new long[] { 1, 1 }, new long[] { 1, 1 }, new long[] { 1, 1 }));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new DistanceRow(new long[] { 1 }, new long[] { -2 }, new long[] { 1 }));
+        assertThatIllegalArgumentException().isThrownBy(() -> new DistanceRow(
+                new long[] { 1 }, new long[] { 1 }, new long[] { Distance.MAX_INT_MILLIS + 1 }));
+    }
+
+    @Test
+    void compact_distances_should_match_long_distances() {
+        long[] millis = {
+                0, 1, 999, 3_600_000, 86_400_000L * 24, Distance.MAX_INT_MILLIS - 1, Distance.MAX_INT_MILLIS };
+        long[] ids = new long[millis.length];
+        long[] reversed = new long[millis.length];
+        for (int i = 0; i < millis.length; i++) {
+            ids[i] = i;
+            reversed[i] = millis[millis.length - 1 - i];
+        }
+        DistanceRow row = new DistanceRow(ids, millis, reversed);
+
+        DistanceRow merged = DistanceRow.EMPTY.with(row).retain(id -> true);
+        DistanceRow decoded = DistanceRow.decode(row.encode());
+
+        for (int i = 0; i < millis.length; i++) {
+            assertThat(row.millisTo(ids[i])).isEqualTo(millis[i]);
+            assertThat(merged.millisTo(ids[i])).isEqualTo(millis[i]);
+            assertThat(decoded.millisTo(ids[i])).isEqualTo(millis[i]);
+            assertThat(decoded.millisFrom(ids[i])).isEqualTo(reversed[i]);
+        }
+    }
+
+    @Test
+    void should_reject_corrupted_data() {
+        byte[] encoded = new DistanceRow(new long[] { 1, 2 }, new long[] { 10, 20 }, new long[] { 1, 2 }).encode();
+        assertThatIllegalStateException().isThrownBy(() -> DistanceRow.decode(new byte[0]));
+        assertThatIllegalStateException().isThrownBy(() -> DistanceRow.decode(new byte[] { 99 }));
+        assertThatIllegalStateException()
+                .isThrownBy(() -> DistanceRow.decode(Arrays.copyOf(encoded, encoded.length - 3)));
+    }
+}
@@ -3,6 +3,7 @@ package org.optaweb.vehiclerouting.plugin.planner;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import org.mockito.Mockito;
@@ -67,4 +68,8 @@ public class MockSolver<Solution_> {
     public void verifyProblemPropertyChanged(Object entityOrFact) {
         verify(changeDirector).changeProblemProperty(same(entityOrFact), any());
     }
+
+    public void verifyProblemPropertyNotChanged(Object entityOrFact) {
+        verify(changeDirector, never()).changeProblemProperty(same(entityOrFact), any());
+    }
 }
@@ -5,6 +5,7 @@ import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -427,6 +428,55 @@ class RouteOptimizerImplTest {
         verify(solverManager).changeCapacity(any(PlanningVehicle.class));
     }
 
+    @Test
+    void distance_matrix_update_should_run_immediately_when_solver_is_not_running(@Mock Runnable update) {
+        routeOptimizer.addVehicle(testVehicle(1));
+        routeOptimizer.addLocation(location1, matrixRow);
+
+        routeOptimizer.updateDistanceMatrix(update);
+
+        verify(update).run();
+        verify(solverManager, never()).updateDistanceMatrix(any());
+    }
+
+    @Test
+    void distance_matrix_update_must_happen_through_problem_fact_change_when_solver_is_running(
+            @Mock Runnable update) {
+        routeOptimizer.addVehicle(testVehicle(1));
+        routeOptimizer.addLocation(location1, matrixRow);
+        routeOptimizer.addLocation(location2, matrixRow);
+        verify(solverManager).startSolver(any(VehicleRoutingSolution.class));
+
+        routeOptimizer.updateDistanceMatrix(update);
+
+        verify(solverManager).updateDistanceMatrix(update);
+        verifyNoInteractions(update);
+    }
+
+    @Test
+    void distance_refinement_should_run_immediately_when_solver_is_not_running(@Mock Runnable update) {
+        routeOptimizer.addLocation(location1, matrixRow);
+        routeOptimizer.addLocation(location2, matrixRow);
+
+        routeOptimizer.refineDistances(location1, update);
+
+        verify(update).run();
+        verify(solverManager, never()).refineDistances(anyLong(), any());
+    }
+
+    @Test
+    void distance_refinement_must_happen_through_problem_change_when_solver_is_running(@Mock Runnable update) {
+        routeOptimizer.addVehicle(testVehicle(1));
+        routeOptimizer.addLocation(location1, matrixRow);
+        routeOptimizer.addLocation(location2, matrixRow);
+        verify(solverManager).startSolver(any(VehicleRoutingSolution.class));
+
+        routeOptimizer.refineDistances(location1, update);
+
+        verify(solverManager).refineDistances(location1.id(), update);
+        verifyNoInteractions(update);
+    }
+
     @Test
     void changing_vehicle_capacity_must_fail_fast_if_the_vehicle_does_not_exist() {
         // 1 vehicle, 1 depot, 1 visit
@@ -26,8 +26,10 @@ import org.optaplanner.core.api.solver.event.BestSolutionChangedEvent;
 import org.optaweb.vehiclerouting.plugin.planner.change.AddVehicle;
 import org.optaweb.vehiclerouting.plugin.planner.change.AddVisit;
 import org.optaweb.vehiclerouting.plugin.planner.change.ChangeVehicleCapacity;
+import org.optaweb.vehiclerouting.plugin.planner.change.RefineDistances;
 import org.optaweb.vehiclerouting.plugin.planner.change.RemoveVehicle;
 import org.optaweb.vehiclerouting.plugin.planner.change.RemoveVisit;
+import org.optaweb.vehiclerouting.plugin.planner.change.UpdateDistanceMatrix;
 import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVehicle;
 import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVehicleFactory;
 import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVisit;
@@ -162,6 +164,14 @@ class SolverManagerTest {
         assertThatIllegalStateException()
                 .isThrownBy(() -> solverManager.removeVisit(testVisit))
                 .withMessageContaining("started");
+        assertThatIllegalStateException()
+                .isThrownBy(() -> solverManager.updateDistanceMatrix(() -> {
+                }))
+                .withMessageContaining("started");
+        assertThatIllegalStateException()
+                .isThrownBy(() -> solverManager.refineDistances(testVisit.getId(), () -> {
+                }))
+                .withMessageContaining("started");
     }
 
     @Test
@@ -186,6 +196,14 @@ class SolverManagerTest {
         assertThatExceptionOfType(RuntimeException.class)
                 .isThrownBy(() -> solverManager.removeVisit(testVisit))
                 .withMessageContaining("died");
+        assertThatExceptionOfType(RuntimeException.class)
+                .isThrownBy(() -> solverManager.updateDistanceMatrix(() -> {
+                }))
+                .withMessageContaining("died");
+        assertThatExceptionOfType(RuntimeException.class)
+                .isThrownBy(() -> solverManager.refineDistances(testVisit.getId(), () -> {
+                }))
+                .withMessageContaining("died");
     }
 
     @Test
@@ -208,5 +226,13 @@ class SolverManagerTest {
 
         solverManager.removeVisit(testVisit);
         verify(solver).addProblemChange(any(RemoveVisit.class));
+
+        solverManager.updateDistanceMatrix(() -> {
+        });
+        verify(solver).addProblemChange(any(UpdateDistanceMatrix.class));
+
+        solverManager.refineDistances(testVisit.getId(), () -> {
+        });
+        verify(solver).addProblemChange(any(RefineDistances.class));
     }
 }
@@ -0,0 +1,86 @@
+package org.optaweb.vehiclerouting.plugin.planner.change;
+
+import static org.assertj.core.api.Assertions.assertThatNullPointerException;
+import static org.mockito.Mockito.verify;
+import static org.optaweb.vehiclerouting.plugin.planner.domain.PlanningLocationFactory.testLocation;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.optaweb.vehiclerouting.plugin.planner.MockSolver;
+import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningDepot;
+import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVehicle;
+import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVehicleFactory;
+import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVisit;
+import org.optaweb.vehiclerouting.plugin.planner.domain.PlanningVisitFactory;
+import org.optaweb.vehiclerouting.plugin.planner.domain.SolutionFactory;
+import org.optaweb.vehiclerouting.plugin.planner.domain.Standstill;
+import org.optaweb.vehiclerouting.plugin.planner.domain.VehicleRoutingSolution;
+
+@ExtendWith(MockitoExtension.class)
+class RefineDistancesTest {
+
+    private final PlanningVehicle vehicle = PlanningVehicleFactory.testVehicle(1);
+    private final PlanningVisit visit2 = PlanningVisitFactory.testVisit(2);
+    private final PlanningVisit visit3 = PlanningVisitFactory.testVisit(3);
+    private final PlanningVisit visit4 = PlanningVisitFactory.testVisit(4);
+    private final PlanningVisit unassignedVisit = PlanningVisitFactory.testVisit(5);
+    private MockSolver<VehicleRoutingSolution> mockSolver;
+
+    @BeforeEach
+    void setUp() {
+        // depot(1) -> 2 -> 3 -> 4 -> depot(1), 5 is not assigned yet.
+        vehicle.setDepot(new PlanningDepot(testLocation(1)));
+        Standstill previousStandstill = vehicle;
+        for (PlanningVisit visit : List.of(visit2, visit3, visit4)) {
+            visit.setVehicle(vehicle);
+            visit.setPreviousStandstill(previousStandstill);
+            previousStandstill.setNextVisit(visit);
+            previousStandstill = visit;
+        }
+        VehicleRoutingSolution solution = SolutionFactory.emptySolution();
+        solution.setVisitList(List.of(visit2, visit3, visit4, unassignedVisit));
+        mockSolver = MockSolver.build(solution);
+    }
+
+    @Test
+    void constructor_should_validate_arguments() {
+        assertThatNullPointerException().isThrownBy(() -> new RefineDistances(1, null));
+    }
+
+    @Test
+    void visit_at_refined_location_and_the_next_visit_should_be_reported_as_changed(@Mock Runnable update) {
+        mockSolver.addProblemChange(new RefineDistances(3, update));
+
+        verify(update).run();
+        mockSolver.verifyProblemPropertyChanged(visit3);
+        mockSolver.verifyProblemPropertyChanged(visit4);
+        mockSolver.verifyProblemPropertyNotChanged(visit2);
+        mockSolver.verifyProblemPropertyNotChanged(unassignedVisit);
+    }
+
+    @Test
+    void first_and_last_visits_should_be_reported_as_changed_when_depot_is_refined(@Mock Runnable update) {
+        mockSolver.addProblemChange(new RefineDistances(1, update));
+
+        verify(update).run();
+        mockSolver.verifyProblemPropertyChanged(visit2);
+        mockSolver.verifyProblemPropertyChanged(visit4);
+        mockSolver.verifyProblemPropertyNotChanged(visit3);
+        mockSolver.verifyProblemPropertyNotChanged(unassignedVisit);
+    }
+
+    @Test
+    void unassigned_visit_at_refined_location_should_be_reported_as_changed(@Mock Runnable update) {
+        mockSolver.addProblemChange(new RefineDistances(5, update));
+
+        mockSolver.verifyProblemPropertyChanged(unassignedVisit);
+        mockSolver.verifyProblemPropertyNotChanged(visit2);
+        mockSolver.verifyProblemPropertyNotChanged(visit3);
+        mockSolver.verifyProblemPropertyNotChanged(visit4);
+    }
+}
@@ -0,0 +1,30 @@
+package org.optaweb.vehiclerouting.plugin.planner.change;
+
+import static org.assertj.core.api.Assertions.assertThatNullPointerException;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.optaweb.vehiclerouting.plugin.planner.MockSolver;
+import org.optaweb.vehiclerouting.plugin.planner.domain.SolutionFactory;
+import org.optaweb.vehiclerouting.plugin.planner.domain.VehicleRoutingSolution;
+
+@ExtendWith(MockitoExtension.class)
+class UpdateDistanceMatrixTest {
+
+    @Test
+    void constructor_should_validate_arguments() {
+        assertThatNullPointerException().isThrownBy(() -> new UpdateDistanceMatrix(null));
+    }
+
+    @Test
+    void update_should_run_when_change_is_processed(@Mock Runnable update) {
+        MockSolver<VehicleRoutingSolution> mockSolver = MockSolver.build(SolutionFactory.emptySolution());
+
+        mockSolver.addProblemChange(new UpdateDistanceMatrix(update));
+
+        verify(update).run();
+    }
+}
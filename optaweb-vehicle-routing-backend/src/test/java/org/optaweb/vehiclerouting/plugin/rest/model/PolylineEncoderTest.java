@@ -0,0 +1,43 @@
+package org.optaweb.vehiclerouting.plugin.rest.model;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+class PolylineEncoderTest {
+
+    @Test
+    void should_encode_reference_polyline() {
+        // https://developers.google.com/maps/documentation/utilities/polylinealgorithm
+        assertThat(PolylineEncoder.encode(
+                asList(
+                        Coordinates.of(38.5, -120.2),
+                        Coordinates.of(40.7, -120.95),
+                        Coordinates.of(43.252, -126.453)),
+                5))
+                .isEqualTo("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+    }
+
+    @Test
+    void should_round_to_precision() {
+        assertThat(PolylineEncoder.encode(asList(Coordinates.of(0.123456789, -0.5)), 6))
+                .isEqualTo(PolylineEncoder.encode(asList(Coordinates.of(0.123457, -0.5)), 6));
+        assertThat(PolylineEncoder.encode(asList(Coordinates.of(0.123456789, -0.5)), 6))
+                .isNotEqualTo(PolylineEncoder.encode(asList(Coordinates.of(0.123456789, -0.5)), 7));
+    }
+
+    @Test
+    void should_encode_empty_polyline() {
+        assertThat(PolylineEncoder.encode(emptyList(), 5)).isEmpty();
+    }
+
+    @Test
+    void should_reject_unsupported_precision() {
+        assertThatIllegalArgumentException().isThrownBy(() -> PolylineEncoder.encode(emptyList(), 0));
+        assertThatIllegalArgumentException().isThrownBy(() -> PolylineEncoder.encode(emptyList(), 8));
+    }
+}
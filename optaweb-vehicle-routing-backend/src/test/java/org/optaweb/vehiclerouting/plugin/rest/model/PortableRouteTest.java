@@ -33,6 +33,20 @@ class PortableRouteTest {
         JacksonAssertions.assertThat(portableRoute).serializedIsEqualToJson(expectedJson);
     }
 
+    @Test
+    void marshal_to_json_with_encoded_track(@FileContent("portable-route-encoded.json") String expectedJson) {
+        PortableVehicle vehicle = new PortableVehicle(13, "Vehicle", 45317);
+        PortableLocation depot = visit(8, 42.6501218, -71.8835449, "Test depot");
+        PortableLocation visit1 = visit(100, 42.7066596, -72.4934873, "Visit 1");
+
+        PortableRoute portableRoute = PortableRoute.withEncodedTrack(
+                vehicle,
+                depot,
+                asList(visit1),
+                asList("yaicGrawuLNH", "caicGpbwuL?H"));
+        JacksonAssertions.assertThat(portableRoute).serializedIsEqualToJson(expectedJson);
+    }
+
     private static PortableLocation visit(long id, double latitude, double longitude, String description) {
         return fromLocation(new Location(id, Coordinates.of(latitude, longitude), description));
     }
@@ -0,0 +1,117 @@
+package org.optaweb.vehiclerouting.plugin.rest.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.domain.Route;
+import org.optaweb.vehiclerouting.domain.RouteWithTrack;
+import org.optaweb.vehiclerouting.domain.RoutingPlan;
+import org.optaweb.vehiclerouting.domain.Vehicle;
+import org.optaweb.vehiclerouting.domain.VehicleFactory;
+import org.optaweb.vehiclerouting.util.junit.Benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares payload size and serialization time of the route track formats.
+ * <p>
+ * Run with {@code -Dbenchmark=true}. The number of vehicles can be changed with {@code -Dbenchmark.vehicles=N}.
+ */
+class PortableRoutingPlanBenchmarkTest {
+
+    private static final int VEHICLES = Integer.getInteger("benchmark.vehicles", 300);
+    private static final int VISITS_PER_VEHICLE = 10;
+    private static final int POINTS_PER_LEG = 100;
+    private static final int ROUNDS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    void coordinates_track() throws JsonProcessingException {
+        run(TrackFormat.COORDINATES, 0);
+    }
+
+    @Benchmark
+    void polyline_track() throws JsonProcessingException {
+        run(TrackFormat.POLYLINE, 5);
+    }
+
+    private void run(TrackFormat trackFormat, int precision) throws JsonProcessingException {
+        RoutingPlan routingPlan = routingPlan();
+        // Warm up.
+        String json = objectMapper.writeValueAsString(
+                PortableRoutingPlanFactory.fromRoutingPlan(routingPlan, trackFormat, precision));
+
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            json = objectMapper.writeValueAsString(
+                    PortableRoutingPlanFactory.fromRoutingPlan(routingPlan, trackFormat, precision));
+        }
+        long nanosPerRound = (System.nanoTime() - start) / ROUNDS;
+
+        System.out.printf(
+                "%s track, %d vehicles, %d points: %d kB per event, %d ms per event%n",
+                trackFormat,
+                VEHICLES,
+                (long) VEHICLES * (VISITS_PER_VEHICLE + 1) * POINTS_PER_LEG,
+                json.length() / 1024,
+                nanosPerRound / 1_000_000);
+        assertThat(json).isNotEmpty();
+    }
+
+    private static RoutingPlan routingPlan() {
+        Random random = new Random(37);
+        Location depot = new Location(0, Coordinates.of(50.85, 4.35));
+        List<Vehicle> vehicles = new ArrayList<>(VEHICLES);
+        List<Location> visits = new ArrayList<>();
+        List<RouteWithTrack> routes = new ArrayList<>(VEHICLES);
+        for (int v = 0; v < VEHICLES; v++) {
+            Vehicle vehicle = VehicleFactory.createVehicle(v, "Vehicle " + v, 100);
+            vehicles.add(vehicle);
+            List<Location> routeVisits = new ArrayList<>(VISITS_PER_VEHICLE);
+            for (int i = 0; i < VISITS_PER_VEHICLE; i++) {
+                Location visit = new Location(
+                        visits.size() + 1L,
+                        Coordinates.of(50.5 + random.nextDouble(), 4.0 + random.nextDouble()));
+                routeVisits.add(visit);
+                visits.add(visit);
+            }
+            List<Location> itinerary = new ArrayList<>(routeVisits);
+            itinerary.add(0, depot);
+            itinerary.add(depot);
+            List<List<Coordinates>> track = new ArrayList<>();
+            for (int i = 0; i < itinerary.size() - 1; i++) {
+                track.add(leg(itinerary.get(i).coordinates(), itinerary.get(i + 1).coordinates(), random));
+            }
+            routes.add(new RouteWithTrack(new Route(vehicle, depot, routeVisits), track));
+        }
+        return new RoutingPlan(Distance.ofMillis(1), vehicles, depot, visits, routes);
+    }
+
+    /**
+     * Wiggly line between two points that resembles a road.
+     */
+    private static List<Coordinates> leg(Coordinates from, Coordinates to, Random random) {
+        List<Coordinates> leg = new ArrayList<>(POINTS_PER_LEG);
+        double fromLatitude = from.latitude().doubleValue();
+        double fromLongitude = from.longitude().doubleValue();
+        double toLatitude = to.latitude().doubleValue();
+        double toLongitude = to.longitude().doubleValue();
+        for (int i = 0; i < POINTS_PER_LEG; i++) {
+            double t = i / (POINTS_PER_LEG - 1.0);
+            double noise = i == 0 || i == POINTS_PER_LEG - 1 ? 0 : (random.nextDouble() - 0.5) * 1e-3;
+            // GraphHopper returns points with 7 decimal places at most.
+            leg.add(Coordinates.of(
+                    Math.round((fromLatitude + t * (toLatitude - fromLatitude) + noise) * 1e7) / 1e7,
+                    Math.round((fromLongitude + t * (toLongitude - fromLongitude) + noise) * 1e7) / 1e7));
+        }
+        return leg;
+    }
+}
@@ -3,6 +3,7 @@ package org.optaweb.vehiclerouting.plugin.rest.model;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 
 import java.util.List;
 
@@ -117,4 +118,71 @@ class PortableRoutingPlanFactoryTest {
                 PortableCoordinates.fromCoordinates(checkpoint31),
                 PortableCoordinates.fromCoordinates(location1.coordinates()));
     }
+
+    @Test
+    void portable_routing_plan_with_polyline_tracks() {
+        final Location depot = new Location(1, Coordinates.of(42.65005, -71.88522));
+        final Location visit = new Location(2, Coordinates.of(42.64994, -71.88542));
+        final Vehicle vehicle = VehicleFactory.createVehicle(1, "Vehicle 1", 100);
+        List<Coordinates> there = asList(depot.coordinates(), Coordinates.of(42.64997, -71.88527), visit.coordinates());
+        List<Coordinates> back = asList(visit.coordinates(), depot.coordinates());
+        RoutingPlan routingPlan = new RoutingPlan(
+                Distance.ofMillis(5),
+                singletonList(vehicle),
+                depot,
+                singletonList(visit),
+                singletonList(new RouteWithTrack(
+                        new Route(vehicle, depot, singletonList(visit)),
+                        asList(there, back))));
+
+        PortableRoutingPlan portableRoutingPlan =
+                PortableRoutingPlanFactory.fromRoutingPlan(routingPlan, TrackFormat.POLYLINE, 5);
+
+        PortableRoute portableRoute = portableRoutingPlan.getRoutes().get(0);
+        assertThat(portableRoute.getTrack()).isNull();
+        assertThat(portableRoute.getEncodedTrack()).containsExactly(
+                PolylineEncoder.encode(there, 5),
+                PolylineEncoder.encode(back, 5));
+        assertThat(portableRoute.getVisits()).containsExactly(PortableLocation.fromLocation(visit));
+    }
+
+    @Test
+    void tracks_should_be_simplified_with_the_given_tolerance() {
+        final Location depot = new Location(1, Coordinates.of(50.0, 4.0));
+        final Location visit = new Location(2, Coordinates.of(50.0, 4.1));
+        final Vehicle vehicle = VehicleFactory.createVehicle(1, "Vehicle 1", 100);
+        // About 11 m off the straight line between the depot and the visit.
+        List<Coordinates> there = asList(depot.coordinates(), Coordinates.of(50.0001, 4.05), visit.coordinates());
+        RoutingPlan routingPlan = new RoutingPlan(
+                Distance.ofMillis(5),
+                singletonList(vehicle),
+                depot,
+                singletonList(visit),
+                singletonList(new RouteWithTrack(
+                        new Route(vehicle, depot, singletonList(visit)),
+                        singletonList(there))));
+
+        assertThat(PortableRoutingPlanFactory.fromRoutingPlan(routingPlan, TrackFormat.COORDINATES, 0, 10)
+                .getRoutes().get(0).getTrack().get(0)).hasSize(3);
+        assertThat(PortableRoutingPlanFactory.fromRoutingPlan(routingPlan, TrackFormat.COORDINATES, 0, 20)
+                .getRoutes().get(0).getTrack().get(0)).containsExactly(
+                        PortableCoordinates.fromCoordinates(depot.coordinates()),
+                        PortableCoordinates.fromCoordinates(visit.coordinates()));
+        assertThat(PortableRoutingPlanFactory.fromRoutingPlan(routingPlan, TrackFormat.POLYLINE, 5, 20)
+                .getRoutes().get(0).getEncodedTrack())
+                .containsExactly(PolylineEncoder.encode(asList(depot.coordinates(), visit.coordinates()), 5));
+    }
+
+    @Test
+    void coordinates_track_format_should_not_encode_track() {
+        PortableRoutingPlan portableRoutingPlan =
+                PortableRoutingPlanFactory.fromRoutingPlan(RoutingPlan.empty(), TrackFormat.COORDINATES, 0);
+        assertThat(portableRoutingPlan.getRoutes()).isEmpty();
+    }
+
+    @Test
+    void should_reject_unsupported_polyline_precision() {
+        assertThatIllegalArgumentException().isThrownBy(
+                () -> PortableRoutingPlanFactory.fromRoutingPlan(RoutingPlan.empty(), TrackFormat.POLYLINE, 0));
+    }
 }
@@ -0,0 +1,118 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.util.junit.Benchmark;
+
+/**
+ * Compares the throughput of filling distance matrix rows with the air distance router.
+ * <p>
+ * Run with {@code -Dbenchmark=true}. The number of points can be changed with {@code -Dbenchmark.points=N}.
+ * The baseline is the previous implementation, which used the Euclidean distance of degrees in {@link BigDecimal}.
+ */
+class AirDistanceRouterBenchmarkTest {
+
+    private static final int POINTS = Integer.getInteger("benchmark.points", 5000);
+    private static final int ROWS = 500;
+    private static final int WARM_UP_ROUNDS = 3;
+
+    private final List<Coordinates> points = randomPoints();
+    private final AirDistanceRouter router = new AirDistanceRouter(60, 1);
+
+    @Benchmark
+    void big_decimal_euclidean() {
+        run("BigDecimal Euclidean", from -> {
+            long[] row = new long[points.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = bigDecimalTravelTimeMillis(from, points.get(i));
+            }
+            return row;
+        });
+    }
+
+    @Benchmark
+    void haversine_single() {
+        run("haversine single", from -> {
+            long[] row = new long[points.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = router.travelTimeMillis(from, points.get(i));
+            }
+            return row;
+        });
+    }
+
+    @Benchmark
+    void haversine_batch() {
+        run("haversine batch", from -> router.travelTimesMillis(from, points));
+    }
+
+    @Benchmark
+    void haversine_batch_preconverted() {
+        AirDistanceRouter.Points preconverted = new AirDistanceRouter.Points(points);
+        long[] row = new long[points.size()];
+        run("haversine batch, points converted once", from -> {
+            double latitude = Math.toRadians(from.latitude().doubleValue());
+            router.fillRow(latitude, Math.cos(latitude), Math.toRadians(from.longitude().doubleValue()),
+                    preconverted, row);
+            return row;
+        });
+    }
+
+    private void run(String name, RowCalculator rowCalculator) {
+        long checksum = 0;
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            checksum += fillRows(rowCalculator);
+        }
+        long start = System.nanoTime();
+        checksum += fillRows(rowCalculator);
+        long nanos = System.nanoTime() - start;
+        long cells = (long) ROWS * points.size();
+        System.out.printf(
+                "%s, %d points: %d ms for %d rows, %.1f M cells/s%n",
+                name,
+                points.size(),
+                nanos / 1_000_000,
+                ROWS,
+                cells * 1000.0 / nanos);
+        // Use the checksum so that the calculation isn't eliminated.
+        assertThat(checksum).isPositive();
+    }
+
+    private long fillRows(RowCalculator rowCalculator) {
+        long checksum = 0;
+        for (int i = 0; i < ROWS; i++) {
+            long[] row = rowCalculator.row(points.get(i));
+            checksum += row[row.length - 1 - i];
+        }
+        return checksum;
+    }
+
+    private static long bigDecimalTravelTimeMillis(Coordinates from, Coordinates to) {
+        BigDecimal latDiff = to.latitude().subtract(from.latitude());
+        BigDecimal lngDiff = to.longitude().subtract(from.longitude());
+        double distanceKilometers = Math.sqrt(latDiff.pow(2).add(lngDiff.pow(2)).doubleValue()) * 111;
+        return (long) Math.floor(distanceKilometers / 60 * AirDistanceRouter.MILLIS_IN_ONE_HOUR);
+    }
+
+    private static List<Coordinates> randomPoints() {
+        // Belgium-sized area.
+        Random random = new Random(37);
+        List<Coordinates> points = new ArrayList<>(POINTS);
+        for (int i = 0; i < POINTS; i++) {
+            points.add(Coordinates.of(49.5 + random.nextDouble() * 2, 2.5 + random.nextDouble() * 4));
+        }
+        return points;
+    }
+
+    @FunctionalInterface
+    private interface RowCalculator {
+
+        long[] row(Coordinates from);
+    }
+}
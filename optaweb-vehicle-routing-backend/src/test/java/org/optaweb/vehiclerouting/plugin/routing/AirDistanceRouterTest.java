@@ -1,6 +1,10 @@
 package org.optaweb.vehiclerouting.plugin.routing;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.optaweb.vehiclerouting.domain.Coordinates;
@@ -8,28 +12,73 @@ import org.optaweb.vehiclerouting.service.region.BoundingBox;
 
 class AirDistanceRouterTest {
 
+    // π × 6371 km / 180
+    private static final double METERS_PER_DEGREE = 111_194.93;
+
     @Test
-    void travel_time_should_be_distance_divided_by_speed() {
-        AirDistanceRouter router = new AirDistanceRouter();
+    void travel_time_should_be_great_circle_distance_divided_by_speed() {
+        AirDistanceRouter router = new AirDistanceRouter(60, 1);
         Coordinates from = Coordinates.of(0, 0);
-        Coordinates to = Coordinates.of(3, 4); // √(3² + 4²) = 5
+        Coordinates to = Coordinates.of(1, 0); // One degree along a meridian.
         long travelTimeMillis = router.travelTimeMillis(from, to);
-        assertThat(travelTimeMillis).isEqualTo((long) (5
-                * AirDistanceRouter.KILOMETERS_PER_DEGREE
-                / AirDistanceRouter.TRAVEL_SPEED_KPH
-                * AirDistanceRouter.MILLIS_IN_ONE_HOUR));
+        assertThat((double) travelTimeMillis)
+                .isCloseTo(METERS_PER_DEGREE / 60_000 * AirDistanceRouter.MILLIS_IN_ONE_HOUR, within(10.0));
+    }
+
+    @Test
+    void longitude_degrees_should_shrink_towards_the_poles() {
+        AirDistanceRouter router = new AirDistanceRouter(60, 1);
+        long alongEquator = router.travelTimeMillis(Coordinates.of(0, 0), Coordinates.of(0, 1));
+        long alongParallel60 = router.travelTimeMillis(Coordinates.of(60, 0), Coordinates.of(60, 1));
+        // cos(60°) = 0.5
+        assertThat((double) alongParallel60).isCloseTo(alongEquator / 2.0, within(alongEquator * 0.001));
+    }
+
+    @Test
+    void travel_time_should_grow_with_detour_factor() {
+        Coordinates from = Coordinates.of(50, 4);
+        Coordinates to = Coordinates.of(51, 5);
+        long straight = new AirDistanceRouter(60, 1).travelTimeMillis(from, to);
+        long detour = new AirDistanceRouter(60, 1.5).travelTimeMillis(from, to);
+        assertThat((double) detour).isCloseTo(straight * 1.5, within(1.0));
+    }
+
+    @Test
+    void batch_travel_times_should_match_single_travel_times() {
+        AirDistanceRouter router = new AirDistanceRouter(50, 1.3);
+        Coordinates center = Coordinates.of(50.85, 4.35);
+        List<Coordinates> others = List.of(
+                Coordinates.of(51.22, 4.40),
+                Coordinates.of(-33.87, 151.21),
+                Coordinates.of(50.85, -175.65),
+                center);
+
+        long[] fromCenter = router.travelTimesMillis(center, others);
+        long[] toCenter = router.travelTimesMillis(others, center);
+
+        for (int i = 0; i < others.size(); i++) {
+            assertThat(fromCenter[i]).isEqualTo(router.travelTimeMillis(center, others.get(i)));
+            assertThat(toCenter[i]).isEqualTo(router.travelTimeMillis(others.get(i), center));
+        }
+        assertThat(fromCenter[3]).isZero();
+    }
+
+    @Test
+    void should_reject_invalid_settings() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new AirDistanceRouter(0, 1));
+        assertThatIllegalArgumentException().isThrownBy(() -> new AirDistanceRouter(60, 0.9));
     }
 
     @Test
     void bounding_box_is_the_whole_globe() {
-        BoundingBox bounds = new AirDistanceRouter().getBounds();
+        BoundingBox bounds = new AirDistanceRouter(60, 1).getBounds();
         assertThat(bounds.getSouthWest()).isEqualTo(Coordinates.of(-90, -180));
         assertThat(bounds.getNorthEast()).isEqualTo(Coordinates.of(90, 180));
     }
 
     @Test
     void path_from_a_to_b_should_be_the_line_ab() {
-        AirDistanceRouter router = new AirDistanceRouter();
+        AirDistanceRouter router = new AirDistanceRouter(60, 1);
         Coordinates from = Coordinates.of(0, 0);
         Coordinates to = Coordinates.of(3, 4);
         assertThat(router.getPath(from, to)).containsExactly(from, to);
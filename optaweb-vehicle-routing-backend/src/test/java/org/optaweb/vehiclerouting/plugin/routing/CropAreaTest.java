@@ -0,0 +1,78 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.service.region.BoundingBox;
+
+class CropAreaTest {
+
+    @Test
+    void bounding_box_should_contain_points_inside_and_within_buffer() {
+        CropArea cropArea = CropArea.parse(Optional.of("50.75, 4.25, 50.95, 4.5"), Optional.empty(), 5).get();
+
+        assertThat(cropArea.contains(50.85, 4.35)).isTrue();
+        // 0.04° of latitude is about 4.4 km.
+        assertThat(cropArea.contains(50.99, 4.35)).isTrue();
+        assertThat(cropArea.contains(51.0, 4.35)).isFalse();
+        // 0.06° of longitude is about 4.2 km at this latitude.
+        assertThat(cropArea.contains(50.85, 4.19)).isTrue();
+        assertThat(cropArea.contains(50.85, 4.16)).isFalse();
+        // Diagonally off the corner, about 6.1 km from it.
+        assertThat(cropArea.contains(50.99, 4.19)).isFalse();
+
+        BoundingBox bounds = cropArea.bounds();
+        assertThat(bounds.getSouthWest()).isEqualTo(Coordinates.of(50.75, 4.25));
+        assertThat(bounds.getNorthEast()).isEqualTo(Coordinates.of(50.95, 4.5));
+    }
+
+    @Test
+    void polygon_should_contain_points_inside() {
+        // Triangle with the right angle in the south-west.
+        CropArea cropArea = CropArea.parse(Optional.empty(), Optional.of("50 4, 51 4, 50 5"), 0).get();
+
+        assertThat(cropArea.contains(50.2, 4.2)).isTrue();
+        assertThat(cropArea.contains(50.8, 4.8)).isFalse();
+        assertThat(cropArea.contains(49.9, 4.5)).isFalse();
+
+        BoundingBox bounds = cropArea.bounds();
+        assertThat(bounds.getSouthWest()).isEqualTo(Coordinates.of(50, 4));
+        assertThat(bounds.getNorthEast()).isEqualTo(Coordinates.of(51, 5));
+    }
+
+    @Test
+    void no_crop_area_when_not_configured() {
+        assertThat(CropArea.parse(Optional.empty(), Optional.empty(), 5)).isEmpty();
+        assertThat(CropArea.parse(Optional.of(" "), Optional.empty(), 5)).isEmpty();
+    }
+
+    @Test
+    void invalid_configuration_should_fail() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> CropArea.parse(Optional.of("50,4,51,5"), Optional.of("50 4, 51 4, 50 5"), 5));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> CropArea.parse(Optional.of("50,4,51"), Optional.empty(), 5));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> CropArea.parse(Optional.of("51,4,50,5"), Optional.empty(), 5));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> CropArea.parse(Optional.empty(), Optional.of("50 4, 51 4"), 5));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> CropArea.parse(Optional.of("50,4,51,5"), Optional.empty(), -1));
+    }
+
+    @Test
+    void settings_should_change_with_crop_area() {
+        String settings = CropArea.parse(Optional.of("50,4,51,5"), Optional.empty(), 5).get().settings();
+
+        assertThat(CropArea.parse(Optional.of("50.0, 4.0, 51.0, 5.0"), Optional.empty(), 5).get().settings())
+                .isEqualTo(settings);
+        assertThat(CropArea.parse(Optional.of("50,4,51,5"), Optional.empty(), 10).get().settings())
+                .isNotEqualTo(settings);
+        assertThat(CropArea.parse(Optional.of("50,4,51,6"), Optional.empty(), 5).get().settings())
+                .isNotEqualTo(settings);
+    }
+}
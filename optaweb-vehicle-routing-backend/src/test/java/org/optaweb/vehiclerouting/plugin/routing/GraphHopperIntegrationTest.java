@@ -1,14 +1,27 @@
 package org.optaweb.vehiclerouting.plugin.routing;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
 
+import com.graphhopper.GHRequest;
 import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
 import com.graphhopper.config.Profile;
+import com.graphhopper.util.Parameters;
+import com.graphhopper.util.PointList;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 class GraphHopperIntegrationTest {
 
@@ -23,4 +36,234 @@ class GraphHopperIntegrationTest {
         graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
         assertThatCode(graphHopper::importOrLoad).doesNotThrowAnyException();
     }
+
+    @Test
+    void batch_travel_times_should_match_single_routes(@TempDir Path tempDir) {
+        GraphHopper graphHopper = new GraphHopper();
+        graphHopper.setGraphHopperLocation(tempDir.resolve("graphhopper").toString());
+        graphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+        graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
+        graphHopper.getCHPreparationHandler().setCHProfiles(new CHProfile(Constants.GRAPHHOPPER_PROFILE));
+        graphHopper.importOrLoad();
+        GraphHopperRouter router = new GraphHopperRouter(
+                graphHopper,
+                TravelTimeCache.open(tempDir.resolve("travel-times.bin")),
+                new SimpleMeterRegistry());
+
+        Coordinates center = Coordinates.of(53.035, 12.065);
+        List<Coordinates> others = List.of(
+                Coordinates.of(53.022, 12.041),
+                Coordinates.of(53.045, 12.095),
+                Coordinates.of(53.028, 12.090),
+                center);
+
+        long[] fromCenter = router.travelTimesMillis(center, others);
+        long[] toCenter = router.travelTimesMillis(others, center);
+
+        for (int i = 0; i < others.size(); i++) {
+            assertThat(fromCenter[i]).isEqualTo(routeTimeMillis(graphHopper, center, others.get(i)));
+            assertThat(toCenter[i]).isEqualTo(routeTimeMillis(graphHopper, others.get(i), center));
+        }
+        assertThat(fromCenter[3]).isZero();
+    }
+
+    @Test
+    void single_travel_time_should_match_graphhopper_route(@TempDir Path tempDir) {
+        GraphHopper graphHopper = graphHopper(tempDir.resolve("graphhopper"), GraphStorage.RAM);
+        graphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+        graphHopper.importOrLoad();
+        GraphHopperRouter router = router(graphHopper);
+        Coordinates from = Coordinates.of(53.035, 12.065);
+        Coordinates to = Coordinates.of(53.022, 12.041);
+
+        assertThat(router.travelTimeMillis(from, to)).isEqualTo(routeTimeMillis(graphHopper, from, to));
+        assertThat(router.travelTimeMillis(to, from)).isEqualTo(routeTimeMillis(graphHopper, to, from));
+    }
+
+    @Test
+    void batch_travel_times_should_be_the_same_in_all_routing_modes(@TempDir Path tempDir) {
+        Coordinates center = Coordinates.of(53.035, 12.065);
+        List<Coordinates> others = List.of(
+                Coordinates.of(53.022, 12.041),
+                Coordinates.of(53.045, 12.095),
+                Coordinates.of(53.028, 12.090));
+        long[] expected = null;
+        for (RoutingMode routingMode : RoutingMode.values()) {
+            GraphHopper graphHopper = new GraphHopper();
+            graphHopper.setGraphHopperLocation(tempDir.resolve(routingMode.name()).toString());
+            graphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+            graphHopper.setProfiles(
+                    new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
+            RoutingConfig.configureRoutingMode(graphHopper, routingMode);
+            graphHopper.importOrLoad();
+            GraphHopperRouter router = new GraphHopperRouter(
+                    graphHopper,
+                    TravelTimeCache.open(tempDir.resolve(routingMode.name() + ".bin")),
+                    new SimpleMeterRegistry());
+
+            long[] fromCenter = router.travelTimesMillis(center, others);
+            for (int i = 0; i < others.size(); i++) {
+                assertThat(fromCenter[i])
+                        .as(routingMode.name())
+                        .isEqualTo(routeTimeMillis(graphHopper, center, others.get(i)));
+            }
+            if (expected == null) {
+                expected = fromCenter;
+            } else {
+                assertThat(fromCenter).as(routingMode.name()).containsExactly(expected);
+            }
+            graphHopper.close();
+        }
+    }
+
+    @Test
+    void path_should_match_graphhopper_route(@TempDir Path tempDir) {
+        GraphHopper graphHopper = graphHopper(tempDir.resolve("graphhopper"), GraphStorage.RAM);
+        graphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+        graphHopper.importOrLoad();
+        Coordinates from = Coordinates.of(53.035, 12.065);
+        Coordinates to = Coordinates.of(53.022, 12.041);
+        GHRequest request = new GHRequest(
+                from.latitude().doubleValue(),
+                from.longitude().doubleValue(),
+                to.latitude().doubleValue(),
+                to.longitude().doubleValue()).setProfile(Constants.GRAPHHOPPER_PROFILE);
+        // Paths aren't simplified by the router.
+        request.putHint(Parameters.Routing.WAY_POINT_MAX_DISTANCE, 0);
+        PointList expectedPoints = graphHopper.route(request).getBest().getPoints();
+
+        List<Coordinates> path = router(graphHopper).getPath(from, to);
+
+        assertThat(path).hasSize(expectedPoints.size());
+        for (int i = 0; i < path.size(); i++) {
+            assertThat(path.get(i)).isEqualTo(Coordinates.of(expectedPoints.getLat(i), expectedPoints.getLon(i)));
+        }
+    }
+
+    @Test
+    void snaps_should_be_cached_until_forgotten(@TempDir Path tempDir) {
+        GraphHopper graphHopper = graphHopper(tempDir.resolve("graphhopper"), GraphStorage.RAM);
+        graphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+        graphHopper.importOrLoad();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GraphHopperRouter router = new GraphHopperRouter(
+                graphHopper,
+                TravelTimeCache.open(tempDir.resolve("travel-times.bin")),
+                meterRegistry);
+        Coordinates from = Coordinates.of(53.035, 12.065);
+        Coordinates to = Coordinates.of(53.022, 12.041);
+
+        long[] travelTimes = router.travelTimesMillis(from, List.of(to));
+        assertThat(cacheGets(meterRegistry, GraphHopperRouter.SNAP_CACHE, "miss")).isEqualTo(2);
+
+        // Reused snaps give the same results as fresh ones.
+        List<Coordinates> path = router.getPath(from, to);
+        assertThat(router.travelTimesMillis(List.of(from), to)).containsExactly(travelTimes);
+        assertThat(router.getPath(from, to)).isEqualTo(path);
+        assertThat(cacheGets(meterRegistry, GraphHopperRouter.SNAP_CACHE, "hit")).isEqualTo(6);
+        assertThat(cacheGets(meterRegistry, GraphHopperRouter.SNAP_CACHE, "miss")).isEqualTo(2);
+
+        router.forget(to);
+        router.getPath(from, to);
+        assertThat(cacheGets(meterRegistry, GraphHopperRouter.SNAP_CACHE, "miss")).isEqualTo(3);
+    }
+
+    @Test
+    void locations_far_from_roads_should_not_be_available(@TempDir Path tempDir) {
+        GraphHopper graphHopper = graphHopper(tempDir.resolve("graphhopper"), GraphStorage.RAM);
+        graphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+        graphHopper.importOrLoad();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GraphHopperRouter router = new GraphHopperRouter(
+                graphHopper,
+                TravelTimeCache.open(tempDir.resolve("travel-times.bin")),
+                meterRegistry,
+                Optional.empty(),
+                1000);
+
+        assertThat(router.isLocationAvailable(Coordinates.of(53.035, 12.065))).isTrue();
+        // A few kilometers outside the extract.
+        assertThat(router.isLocationAvailable(Coordinates.of(53.0, 11.98))).isFalse();
+        // Only the snap of the available location is kept.
+        assertThat(meterRegistry.get("cache.size").tag("cache", GraphHopperRouter.SNAP_CACHE).gauge().value())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void memory_mapped_graph_should_give_the_same_routes(@TempDir Path tempDir) {
+        Path graphDir = tempDir.resolve("graphhopper");
+        Coordinates from = Coordinates.of(53.035, 12.065);
+        Coordinates to = Coordinates.of(53.022, 12.041);
+        GraphHopper ramGraphHopper = graphHopper(graphDir, GraphStorage.RAM);
+        ramGraphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+        ramGraphHopper.importOrLoad();
+        List<Coordinates> expectedPath = router(ramGraphHopper).getPath(from, to);
+        ramGraphHopper.close();
+
+        for (GraphStorage graphStorage : List.of(GraphStorage.MMAP, GraphStorage.MMAP_RO)) {
+            GraphHopper graphHopper = graphHopper(graphDir, graphStorage);
+            graphHopper.importOrLoad();
+            assertThat(router(graphHopper).getPath(from, to)).as(graphStorage.name()).isEqualTo(expectedPath);
+            graphHopper.close();
+        }
+    }
+
+    private static GraphHopper graphHopper(Path graphDir, GraphStorage graphStorage) {
+        GraphHopper graphHopper = new GraphHopper();
+        RoutingConfig.configureGraphStorage(graphHopper, graphDir, graphStorage);
+        graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
+        RoutingConfig.configureRoutingMode(graphHopper, RoutingMode.CH);
+        return graphHopper;
+    }
+
+    /**
+     * Travel time of a full GraphHopper route, including geometry and instructions.
+     */
+    private static long routeTimeMillis(GraphHopper graphHopper, Coordinates from, Coordinates to) {
+        GHRequest request = new GHRequest(
+                from.latitude().doubleValue(),
+                from.longitude().doubleValue(),
+                to.latitude().doubleValue(),
+                to.longitude().doubleValue()).setProfile(Constants.GRAPHHOPPER_PROFILE);
+        return graphHopper.route(request).getBest().getTime();
+    }
+
+    private static GraphHopperRouter router(GraphHopper graphHopper) {
+        return new GraphHopperRouter(graphHopper, TravelTimeCache.inMemory(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void reloading_known_locations_should_hit_the_travel_time_cache(@TempDir Path tempDir) {
+        GraphHopper graphHopper = new GraphHopper();
+        graphHopper.setGraphHopperLocation(tempDir.resolve("graphhopper").toString());
+        graphHopper.setOSMFile(GraphHopperIntegrationTest.class.getResource(OSM_PBF).getFile());
+        graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
+        graphHopper.getCHPreparationHandler().setCHProfiles(new CHProfile(Constants.GRAPHHOPPER_PROFILE));
+        graphHopper.importOrLoad();
+        Path cacheFile = tempDir.resolve("travel-times.bin");
+        Coordinates from = Coordinates.of(53.035, 12.065);
+        List<Coordinates> to = List.of(Coordinates.of(53.022, 12.041), Coordinates.of(53.045, 12.095));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TravelTimeCache travelTimeCache = TravelTimeCache.open(cacheFile);
+        long[] calculated = new GraphHopperRouter(graphHopper, travelTimeCache, meterRegistry).travelTimesMillis(from, to);
+        travelTimeCache.close();
+        assertThat(cacheGets(meterRegistry, GraphHopperRouter.TRAVEL_TIME_CACHE, "miss")).isEqualTo(2);
+        assertThat(cacheGets(meterRegistry, GraphHopperRouter.TRAVEL_TIME_CACHE, "hit")).isZero();
+
+        // Simulates restarting the application.
+        SimpleMeterRegistry newMeterRegistry = new SimpleMeterRegistry();
+        GraphHopperRouter router = new GraphHopperRouter(graphHopper, TravelTimeCache.open(cacheFile), newMeterRegistry);
+        assertThat(router.travelTimesMillis(from, to)).containsExactly(calculated);
+        assertThat(cacheGets(newMeterRegistry, GraphHopperRouter.TRAVEL_TIME_CACHE, "hit")).isEqualTo(2);
+        assertThat(cacheGets(newMeterRegistry, GraphHopperRouter.TRAVEL_TIME_CACHE, "miss")).isZero();
+    }
+
+    private static double cacheGets(MeterRegistry meterRegistry, String cache, String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", cache)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
 }
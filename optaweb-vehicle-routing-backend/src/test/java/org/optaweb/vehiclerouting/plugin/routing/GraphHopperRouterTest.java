@@ -3,97 +3,65 @@ package org.optaweb.vehiclerouting.plugin.routing;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Collections;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.service.distance.RoutingException;
 import org.optaweb.vehiclerouting.service.region.BoundingBox;
 
-import com.graphhopper.GHRequest;
-import com.graphhopper.GHResponse;
 import com.graphhopper.GraphHopper;
-import com.graphhopper.ResponsePath;
+import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.BaseGraph;
-import com.graphhopper.util.PointList;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.Snap;
 import com.graphhopper.util.shapes.BBox;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @ExtendWith(MockitoExtension.class)
 class GraphHopperRouterTest {
 
-    private final PointList pointList = new PointList();
     private final Coordinates from = Coordinates.of(-Double.MIN_VALUE, Double.MIN_VALUE);
     private final Coordinates to = Coordinates.of(Double.MAX_VALUE, -Double.MAX_VALUE);
     @Mock
     private GraphHopper graphHopper;
     @Mock
-    private GHResponse ghResponse;
+    private EncodingManager encodingManager;
     @Mock
-    private ResponsePath pathWrapper;
+    private LocationIndex locationIndex;
     @Mock
     private BaseGraph baseGraph;
+    @TempDir
+    Path tempDir;
 
-    private void whenRouteReturnResponse() {
-        when(graphHopper.route(any(GHRequest.class))).thenReturn(ghResponse);
-    }
-
-    private void whenBestReturnPath() {
-        when(ghResponse.getBest()).thenReturn(pathWrapper);
+    private GraphHopperRouter router() {
+        TravelTimeCache travelTimeCache = TravelTimeCache.open(tempDir.resolve("travel-times.bin"));
+        return new GraphHopperRouter(graphHopper, travelTimeCache, new SimpleMeterRegistry());
     }
 
     @Test
-    void travel_time_should_return_graphhopper_time() {
-        // arrange
-        whenRouteReturnResponse();
-        whenBestReturnPath();
-        long travelTimeMillis = 135 * 60 * 60 * 1000;
-        when(pathWrapper.getTime()).thenReturn(travelTimeMillis);
-
-        // act & assert
-        assertThat(new GraphHopperRouter(graphHopper).travelTimeMillis(from, to)).isEqualTo(travelTimeMillis);
-    }
+    void travel_time_should_fail_when_there_is_no_road_nearby() {
+        when(graphHopper.getEncodingManager()).thenReturn(encodingManager);
+        when(graphHopper.getLocationIndex()).thenReturn(locationIndex);
+        // A snap without a closest node is invalid.
+        when(locationIndex.findClosest(anyDouble(), anyDouble(), any())).thenReturn(new Snap(0, 0));
+        GraphHopperRouter graphHopperRouter = router();
 
-    @Test
-    void getDistance_should_throw_exception_when_no_route_exists() {
-        // arrange
-        whenRouteReturnResponse();
-        when(ghResponse.hasErrors()).thenReturn(true);
-        when(ghResponse.getErrors()).thenReturn(Collections.singletonList(new RuntimeException()));
-        GraphHopperRouter graphHopperRouter = new GraphHopperRouter(graphHopper);
-
-        // act & assert
         assertThatThrownBy(() -> graphHopperRouter.travelTimeMillis(from, to))
-                .isNotInstanceOf(NullPointerException.class)
-                .isInstanceOf(RuntimeException.class)
-                .hasMessageContaining("No route");
-    }
-
-    @Test
-    void getRoute_should_return_graphhopper_route() {
-        // arrange
-        whenRouteReturnResponse();
-        whenBestReturnPath();
-        when(pathWrapper.getPoints()).thenReturn(pointList);
-
-        Coordinates coordinates1 = Coordinates.of(1, 1);
-        Coordinates coordinates2 = Coordinates.of(Math.E, Math.PI);
-        Coordinates coordinates3 = Coordinates.of(0.1, 1.0 / 3.0);
-
-        pointList.add(coordinates1.latitude().doubleValue(), coordinates1.longitude().doubleValue());
-        pointList.add(coordinates2.latitude().doubleValue(), coordinates2.longitude().doubleValue());
-        pointList.add(coordinates3.latitude().doubleValue(), coordinates3.longitude().doubleValue());
-
-        // act & assert
-        List<Coordinates> route = new GraphHopperRouter(graphHopper).getPath(from, to);
-        assertThat(route).containsExactly(
-                coordinates1,
-                coordinates2,
-                coordinates3);
+                .isInstanceOf(RoutingException.class)
+                .hasMessageContaining("Cannot find a road");
+        verify(graphHopper, never()).route(any());
     }
 
     @Test
@@ -106,9 +74,24 @@ class GraphHopperRouterTest {
         BBox bbox = new BBox(minLon_X, maxLon_X, minLat_Y, maxLat_Y);
         when(baseGraph.getBounds()).thenReturn(bbox);
 
-        BoundingBox boundingBox = new GraphHopperRouter(graphHopper).getBounds();
+        BoundingBox boundingBox = router().getBounds();
 
         assertThat(boundingBox.getSouthWest()).isEqualTo(Coordinates.of(minLat_Y, minLon_X));
         assertThat(boundingBox.getNorthEast()).isEqualTo(Coordinates.of(maxLat_Y, maxLon_X));
     }
+
+    @Test
+    void should_limit_bounds_to_crop_area() {
+        when(graphHopper.getBaseGraph()).thenReturn(baseGraph);
+        // Graph imported with the buffer around the crop area.
+        when(baseGraph.getBounds()).thenReturn(new BBox(4.2, 4.6, 50.7, 51.0));
+        Optional<CropArea> cropArea = CropArea.parse(Optional.of("50.75,4.25,50.95,4.5"), Optional.empty(), 5);
+        TravelTimeCache travelTimeCache = TravelTimeCache.open(tempDir.resolve("travel-times.bin"));
+
+        BoundingBox boundingBox = new GraphHopperRouter(
+                graphHopper, travelTimeCache, new SimpleMeterRegistry(), cropArea, 1000).getBounds();
+
+        assertThat(boundingBox.getSouthWest()).isEqualTo(Coordinates.of(50.75, 4.25));
+        assertThat(boundingBox.getNorthEast()).isEqualTo(Coordinates.of(50.95, 4.5));
+    }
 }
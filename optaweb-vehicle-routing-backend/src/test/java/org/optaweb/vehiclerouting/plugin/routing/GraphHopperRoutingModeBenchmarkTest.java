@@ -0,0 +1,138 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+import org.optaweb.vehiclerouting.service.distance.RoutingException;
+import org.optaweb.vehiclerouting.util.junit.Benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares preparation time, graph size and query throughput of the GraphHopper routing modes on the test OSM extract.
+ * <p>
+ * Run with {@code -Dbenchmark=true}. The number of locations can be changed with {@code -Dbenchmark.locations=N}.
+ * Point-to-point queries are full routes including geometry ({@link GraphHopperRouter#getPath}). Matrix fill
+ * calculates travel times between all pairs of locations ({@link GraphHopperRouter#travelTimesMillis}), which is what
+ * adding locations to the distance matrix does.
+ */
+class GraphHopperRoutingModeBenchmarkTest {
+
+    private static final String OSM_PBF = "planet_12.032,53.0171_12.1024,53.0491.osm.pbf";
+    private static final int LOCATIONS = Integer.getInteger("benchmark.locations", 200);
+
+    @TempDir
+    Path tempDir;
+
+    @Benchmark
+    void flexible() throws IOException {
+        run(RoutingMode.FLEXIBLE);
+    }
+
+    @Benchmark
+    void ch() throws IOException {
+        run(RoutingMode.CH);
+    }
+
+    @Benchmark
+    void lm() throws IOException {
+        run(RoutingMode.LM);
+    }
+
+    @Benchmark
+    void ch_and_lm() throws IOException {
+        run(RoutingMode.CH_AND_LM);
+    }
+
+    private void run(RoutingMode routingMode) throws IOException {
+        Path graphDir = tempDir.resolve("graphhopper");
+        long importStart = System.nanoTime();
+        GraphHopper graphHopper = new GraphHopper();
+        graphHopper.setGraphHopperLocation(graphDir.toString());
+        graphHopper.setOSMFile(GraphHopperRoutingModeBenchmarkTest.class.getResource(OSM_PBF).getFile());
+        graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
+        RoutingConfig.configureRoutingMode(graphHopper, routingMode);
+        graphHopper.importOrLoad();
+        long importNanos = System.nanoTime() - importStart;
+        GraphHopperRouter router = new GraphHopperRouter(
+                graphHopper,
+                // A fresh cache, so that all travel times are calculated.
+                TravelTimeCache.open(tempDir.resolve("travel-times.bin")),
+                new SimpleMeterRegistry());
+        List<Coordinates> locations = locations(router);
+
+        long checksum = 0;
+        long pathStart = System.nanoTime();
+        for (int i = 0; i < locations.size(); i++) {
+            checksum += router.getPath(locations.get(i), locations.get((i + 1) % locations.size())).size();
+        }
+        long pathNanos = System.nanoTime() - pathStart;
+
+        long matrixStart = System.nanoTime();
+        for (int i = 1; i < locations.size(); i++) {
+            List<Coordinates> previous = locations.subList(0, i);
+            for (long millis : router.travelTimesMillis(locations.get(i), previous)) {
+                checksum += millis;
+            }
+            for (long millis : router.travelTimesMillis(previous, locations.get(i))) {
+                checksum += millis;
+            }
+        }
+        long matrixNanos = System.nanoTime() - matrixStart;
+        long pairs = (long) locations.size() * (locations.size() - 1);
+
+        System.out.printf(
+                "%s mode, %d locations: import and preparation %d ms, graph %d kB,"
+                        + " %.0f paths/s, matrix fill %d ms (%.0f travel times/s)%n",
+                routingMode,
+                locations.size(),
+                importNanos / 1_000_000,
+                directorySize(graphDir) / 1024,
+                locations.size() * 1e9 / pathNanos,
+                matrixNanos / 1_000_000,
+                pairs * 1e9 / matrixNanos);
+        assertThat(checksum).isPositive();
+        graphHopper.close();
+    }
+
+    /**
+     * Random locations in the extract that can be reached by car.
+     */
+    private static List<Coordinates> locations(GraphHopperRouter router) {
+        Random random = new Random(37);
+        Coordinates center = Coordinates.of(53.035, 12.065);
+        List<Coordinates> locations = new ArrayList<>(LOCATIONS);
+        while (locations.size() < LOCATIONS) {
+            Coordinates candidate = Coordinates.of(
+                    53.0171 + random.nextDouble() * (53.0491 - 53.0171),
+                    12.032 + random.nextDouble() * (12.1024 - 12.032));
+            try {
+                router.travelTimeMillis(center, candidate);
+                router.travelTimeMillis(candidate, center);
+                locations.add(candidate);
+            } catch (RoutingException e) {
+                // Not reachable from the center, try another one.
+            }
+        }
+        return locations;
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+import org.optaweb.vehiclerouting.service.distance.RoutingException;
+import org.optaweb.vehiclerouting.util.junit.Benchmark;
+
+import com.graphhopper.GHRequest;
+import com.graphhopper.GraphHopper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares the latency and allocation of a travel time query done as a full GraphHopper route (geometry,
+ * instructions, path details) with the time-only query of {@link GraphHopperRouter#travelTimeMillis}.
+ * <p>
+ * Run with {@code -Dbenchmark=true}. The number of locations can be changed with {@code -Dbenchmark.locations=N}.
+ * Every pair of locations is queried once, so that the travel time cache doesn't hide the query cost.
+ */
+class GraphHopperTravelTimeBenchmarkTest {
+
+    private static final String OSM_PBF = "planet_12.032,53.0171_12.1024,53.0491.osm.pbf";
+    private static final int LOCATIONS = Integer.getInteger("benchmark.locations", 100);
+
+    @TempDir
+    Path tempDir;
+
+    @Benchmark
+    void full_route_vs_time_only() {
+        GraphHopper graphHopper = new GraphHopper();
+        RoutingConfig.configureGraphStorage(graphHopper, tempDir.resolve("graphhopper"), GraphStorage.RAM);
+        graphHopper.setOSMFile(GraphHopperTravelTimeBenchmarkTest.class.getResource(OSM_PBF).getFile());
+        RoutingConfig.configureProfiles(graphHopper);
+        RoutingConfig.configureRoutingMode(graphHopper, RoutingMode.CH);
+        graphHopper.importOrLoad();
+        List<Coordinates> locations = locations(graphHopper);
+
+        // The first round warms up the JIT.
+        for (int round = 0; round < 2; round++) {
+            GraphHopperRouter router = new GraphHopperRouter(
+                    graphHopper,
+                    TravelTimeCache.open(tempDir.resolve("travel-times-" + round + ".bin")),
+                    new SimpleMeterRegistry());
+            run("full route", locations, (from, to) -> routeTimeMillis(graphHopper, from, to));
+            run("time only", locations, router::travelTimeMillis);
+        }
+        graphHopper.close();
+    }
+
+    private static void run(String name, List<Coordinates> locations, TravelTimeQuery query) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long checksum = 0;
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (Coordinates from : locations) {
+            for (Coordinates to : locations) {
+                checksum += query.travelTimeMillis(from, to);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long queries = (long) locations.size() * locations.size();
+        System.out.printf(
+                "%s, %d queries: %.1f µs/query, %d bytes allocated/query%n",
+                name,
+                queries,
+                nanos / 1000.0 / queries,
+                allocated / queries);
+        // Use the checksum so that the queries aren't eliminated.
+        assertThat(checksum).isPositive();
+    }
+
+    private static long routeTimeMillis(GraphHopper graphHopper, Coordinates from, Coordinates to) {
+        GHRequest request = new GHRequest(
+                from.latitude().doubleValue(),
+                from.longitude().doubleValue(),
+                to.latitude().doubleValue(),
+                to.longitude().doubleValue()).setProfile(Constants.GRAPHHOPPER_PROFILE);
+        return graphHopper.route(request).getBest().getTime();
+    }
+
+    /**
+     * Random locations in the extract that can be reached by car.
+     */
+    private List<Coordinates> locations(GraphHopper graphHopper) {
+        GraphHopperRouter router = new GraphHopperRouter(
+                graphHopper,
+                TravelTimeCache.open(tempDir.resolve("travel-times-locations.bin")),
+                new SimpleMeterRegistry());
+        Random random = new Random(37);
+        Coordinates center = Coordinates.of(53.035, 12.065);
+        List<Coordinates> locations = new ArrayList<>(LOCATIONS);
+        while (locations.size() < LOCATIONS) {
+            Coordinates candidate = Coordinates.of(
+                    53.0171 + random.nextDouble() * (53.0491 - 53.0171),
+                    12.032 + random.nextDouble() * (12.1024 - 12.032));
+            try {
+                router.travelTimeMillis(center, candidate);
+                router.travelTimeMillis(candidate, center);
+                locations.add(candidate);
+            } catch (RoutingException e) {
+                // Not reachable from the center, try another one.
+            }
+        }
+        return locations;
+    }
+
+    @FunctionalInterface
+    private interface TravelTimeQuery {
+
+        long travelTimeMillis(Coordinates from, Coordinates to);
+    }
+}
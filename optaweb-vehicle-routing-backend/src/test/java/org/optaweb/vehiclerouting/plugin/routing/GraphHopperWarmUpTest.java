@@ -0,0 +1,99 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+import org.optaweb.vehiclerouting.service.region.BoundingBox;
+import org.optaweb.vehiclerouting.service.region.RegionService;
+
+import com.graphhopper.GraphHopper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class GraphHopperWarmUpTest {
+
+    private static final String OSM_PBF = "planet_12.032,53.0171_12.1024,53.0491.osm.pbf";
+
+    @Mock
+    private RegionService regionService;
+    @Mock
+    private GraphHopperRouter router;
+
+    @Test
+    void should_be_ready_only_after_warm_up(@TempDir Path tempDir) {
+        GraphHopper graphHopper = new GraphHopper();
+        RoutingConfig.configureGraphStorage(graphHopper, tempDir.resolve("graphhopper"), GraphStorage.MMAP);
+        graphHopper.setOSMFile(GraphHopperWarmUpTest.class.getResource(OSM_PBF).getFile());
+        RoutingConfig.configureProfiles(graphHopper);
+        RoutingConfig.configureRoutingMode(graphHopper, RoutingMode.CH_AND_LM);
+        graphHopper.importOrLoad();
+        when(regionService.boundingBox()).thenReturn(new BoundingBox(
+                Coordinates.of(53.0171, 12.032),
+                Coordinates.of(53.0491, 12.1024)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TravelTimeCache travelTimeCache = TravelTimeCache.open(tempDir.resolve("travel-times.bin"));
+        GraphHopperRouter graphHopperRouter = new GraphHopperRouter(graphHopper, travelTimeCache, meterRegistry);
+        GraphHopperWarmUp warmUp = new GraphHopperWarmUp(
+                graphHopper, () -> graphHopperRouter, regionService, GraphStorage.MMAP, 20, true);
+
+        assertThat(warmUp.call().getStatus()).isEqualTo(HealthCheckResponse.Status.DOWN);
+
+        warmUp.warmUp();
+
+        HealthCheckResponse response = warmUp.call();
+        assertThat(response.getStatus()).isEqualTo(HealthCheckResponse.Status.UP);
+        assertThat(response.getData()).hasValueSatisfying(data -> {
+            assertThat(data).containsEntry("queries", 20L);
+            assertThat((long) data.get("touchedEdges")).isPositive();
+            assertThat((long) data.get("touchedShortcuts")).isPositive();
+            assertThat((long) data.get("touchedLandmarkBytes")).isPositive();
+        });
+        // Routed through the router given to the warm-up.
+        assertThat(travelTimeCache.size()).isPositive();
+        assertThat(meterRegistry.get("cache.size").tag("cache", GraphHopperRouter.SNAP_CACHE).gauge().value())
+                .isPositive();
+        graphHopper.close();
+        travelTimeCache.close();
+    }
+
+    @Test
+    void disabled_warm_up_should_be_ready_immediately(@Mock GraphHopper graphHopper) {
+        GraphHopperWarmUp warmUp = warmUp(graphHopper, 0, false);
+        assertThat(warmUp.call().getStatus()).isEqualTo(HealthCheckResponse.Status.UP);
+        verifyNoInteractions(graphHopper, router, regionService);
+    }
+
+    @Test
+    void failed_warm_up_should_not_keep_the_application_unready(@Mock GraphHopper graphHopper) {
+        when(regionService.boundingBox()).thenThrow(new IllegalStateException("dummy"));
+        GraphHopperWarmUp warmUp = warmUp(graphHopper, 10, false);
+
+        warmUp.warmUp();
+
+        assertThat(warmUp.call().getStatus()).isEqualTo(HealthCheckResponse.Status.UP);
+    }
+
+    @Test
+    void should_reject_negative_queries(@Mock GraphHopper graphHopper) {
+        assertThatIllegalArgumentException().isThrownBy(() -> warmUp(graphHopper, -1, false));
+    }
+
+    private GraphHopperWarmUp warmUp(GraphHopper graphHopper, int queries, boolean touchGraph) {
+        return new GraphHopperWarmUp(
+                graphHopper, () -> router, regionService, GraphStorage.RAM, queries, touchGraph);
+    }
+}
@@ -0,0 +1,127 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+
+import com.graphhopper.config.Profile;
+
+class GraphKeyTest {
+
+    private static final String SETTINGS = "car:car:fastest";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void key_should_survive_write_and_read() throws Exception {
+        Path osmFile = osmFile("planet");
+        GraphKey graphKey = GraphKey.of(osmFile, SETTINGS, RoutingMode.CH);
+        assertThat(graphKey.osmSha256()).hasSize(64).matches("[0-9a-f]+");
+
+        assertThat(GraphKey.read(tempDir)).isEmpty();
+        graphKey.write(tempDir);
+        assertThat(GraphKey.read(tempDir)).contains(graphKey);
+        assertThat(GraphKey.read(tempDir).get().staleReason(osmFile, SETTINGS)).isEmpty();
+    }
+
+    @Test
+    void graph_should_be_stale_when_settings_change() throws Exception {
+        Path osmFile = osmFile("planet");
+        GraphKey graphKey = GraphKey.of(osmFile, SETTINGS, RoutingMode.CH);
+
+        assertThat(graphKey.staleReason(osmFile, "car:car:shortest")).hasValueSatisfying(
+                reason -> assertThat(reason).contains("car:car:fastest", "car:car:shortest"));
+    }
+
+    @Test
+    void graph_should_be_stale_when_osm_file_content_changes() throws Exception {
+        Path osmFile = osmFile("planet");
+        GraphKey graphKey = GraphKey.of(osmFile, SETTINGS, RoutingMode.CH);
+
+        Files.write(osmFile, "planet v2".getBytes(StandardCharsets.UTF_8));
+        assertThat(graphKey.staleReason(osmFile, SETTINGS)).hasValueSatisfying(
+                reason -> assertThat(reason).contains("different version"));
+    }
+
+    @Test
+    void graph_should_not_be_stale_when_only_osm_file_modification_time_changes() throws Exception {
+        Path osmFile = osmFile("planet");
+        GraphKey graphKey = GraphKey.of(osmFile, SETTINGS, RoutingMode.CH);
+
+        Files.setLastModifiedTime(osmFile, FileTime.fromMillis(0));
+        assertThat(graphKey.staleReason(osmFile, SETTINGS)).isEmpty();
+    }
+
+    @Test
+    void graph_should_not_be_stale_without_osm_file() throws Exception {
+        Path osmFile = osmFile("planet");
+        GraphKey graphKey = GraphKey.of(osmFile, SETTINGS, RoutingMode.CH);
+
+        Files.delete(osmFile);
+        assertThat(graphKey.staleReason(osmFile, SETTINGS)).isEmpty();
+    }
+
+    @Test
+    void key_should_record_routing_mode() throws Exception {
+        Path osmFile = osmFile("planet");
+        GraphKey graphKey = GraphKey.of(osmFile, SETTINGS, RoutingMode.CH);
+        assertThat(graphKey.isPreparedFor(RoutingMode.CH)).isTrue();
+        assertThat(graphKey.isPreparedFor(RoutingMode.CH_AND_LM)).isFalse();
+
+        GraphKey prepared = graphKey.withRoutingMode(RoutingMode.LM);
+        prepared.write(tempDir);
+        assertThat(GraphKey.read(tempDir)).contains(prepared);
+        assertThat(prepared).isNotEqualTo(graphKey);
+        assertThat(prepared.isPreparedFor(RoutingMode.LM)).isTrue();
+        // A different routing mode doesn't make the graph stale.
+        assertThat(prepared.staleReason(osmFile, SETTINGS)).isEmpty();
+    }
+
+    @Test
+    void key_without_routing_mode_should_not_be_prepared_for_any_mode() throws Exception {
+        Files.write(tempDir.resolve(GraphKey.FILE_NAME), List.of(
+                "osm.sha256=abc",
+                "osm.size=1",
+                "osm.last-modified=2",
+                "settings=" + SETTINGS));
+        GraphKey graphKey = GraphKey.read(tempDir).orElseThrow();
+        for (RoutingMode routingMode : RoutingMode.values()) {
+            assertThat(graphKey.isPreparedFor(routingMode)).isFalse();
+        }
+    }
+
+    @Test
+    void corrupted_key_should_fail_to_read() throws Exception {
+        Files.write(tempDir.resolve(GraphKey.FILE_NAME), List.of("osm.sha256=abc"));
+        assertThatExceptionOfType(RoutingEngineException.class).isThrownBy(() -> GraphKey.read(tempDir));
+    }
+
+    @Test
+    void settings_should_describe_profiles_and_crop_area() {
+        List<Profile> profiles = List.of(
+                new Profile("car").setVehicle("car").setWeighting("fastest"),
+                new Profile("bike").setVehicle("bike").setWeighting("shortest"));
+        assertThat(GraphKey.settings(profiles, Optional.empty())).isEqualTo("car:car:fastest,bike:bike:shortest");
+
+        Optional<CropArea> cropArea = CropArea.parse(Optional.of("50,4,51,5"), Optional.empty(), 5);
+        assertThat(GraphKey.settings(profiles, cropArea))
+                .isEqualTo("car:car:fastest,bike:bike:shortest;" + cropArea.get().settings());
+    }
+
+    private Path osmFile(String content) throws Exception {
+        Path osmFile = tempDir.resolve("planet.osm.pbf");
+        Files.write(osmFile, content.getBytes(StandardCharsets.UTF_8));
+        return osmFile;
+    }
+}
@@ -0,0 +1,104 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+import org.optaweb.vehiclerouting.util.junit.Benchmark;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.Profile;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares startup time and heap usage of loading an imported graph with each graph storage.
+ * <p>
+ * Run with {@code -Dbenchmark=true}. The test OSM extract is tiny, so use {@code -Dbenchmark.osm-file=/path/to.osm.pbf}
+ * to get meaningful numbers for a real region.
+ */
+class GraphStorageBenchmarkTest {
+
+    private static final String OSM_PBF = "planet_12.032,53.0171_12.1024,53.0491.osm.pbf";
+
+    @TempDir
+    static Path tempDir;
+
+    @Benchmark
+    void ram() {
+        run(GraphStorage.RAM);
+    }
+
+    @Benchmark
+    void mmap() {
+        run(GraphStorage.MMAP);
+    }
+
+    @Benchmark
+    void mmap_ro() {
+        run(GraphStorage.MMAP_RO);
+    }
+
+    private static void run(GraphStorage graphStorage) {
+        Path graphDir = importedGraph();
+        long heapBefore = usedHeap();
+        long loadStart = System.nanoTime();
+        GraphHopper graphHopper = graphHopper(graphDir, graphStorage);
+        graphHopper.importOrLoad();
+        long loadNanos = System.nanoTime() - loadStart;
+        long heapAfter = usedHeap();
+
+        GraphHopperRouter router = new GraphHopperRouter(
+                graphHopper,
+                TravelTimeCache.open(tempDir.resolve(graphStorage + "-travel-times.bin")),
+                new SimpleMeterRegistry());
+        long queryStart = System.nanoTime();
+        long millis = router.travelTimeMillis(Coordinates.of(53.035, 12.065), Coordinates.of(53.022, 12.041));
+        long queryNanos = System.nanoTime() - queryStart;
+
+        System.out.printf(
+                "%s storage: load %d ms, heap %d MB, first query %d ms%n",
+                graphStorage,
+                loadNanos / 1_000_000,
+                (heapAfter - heapBefore) / 1024 / 1024,
+                queryNanos / 1_000_000);
+        assertThat(millis).isPositive();
+        graphHopper.close();
+    }
+
+    /**
+     * Import the graph once for all storages. The import itself isn't measured.
+     */
+    private static synchronized Path importedGraph() {
+        Path graphDir = tempDir.resolve("graphhopper");
+        if (!graphDir.toFile().exists()) {
+            GraphHopper graphHopper = graphHopper(graphDir, GraphStorage.RAM);
+            graphHopper.setOSMFile(System.getProperty(
+                    "benchmark.osm-file",
+                    GraphStorageBenchmarkTest.class.getResource(OSM_PBF).getFile()));
+            graphHopper.importOrLoad();
+            graphHopper.close();
+        }
+        return graphDir;
+    }
+
+    private static GraphHopper graphHopper(Path graphDir, GraphStorage graphStorage) {
+        GraphHopper graphHopper = new GraphHopper();
+        RoutingConfig.configureGraphStorage(graphHopper, graphDir, graphStorage);
+        graphHopper.setProfiles(new Profile(Constants.GRAPHHOPPER_PROFILE).setVehicle("car").setWeighting("fastest"));
+        RoutingConfig.configureRoutingMode(graphHopper, RoutingMode.CH);
+        return graphHopper;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,97 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.service.distance.RoutingException;
+import org.optaweb.vehiclerouting.service.region.BoundingBox;
+import org.optaweb.vehiclerouting.service.route.Router;
+
+class MatrixFileRouterTest {
+
+    private final AirDistanceRouter airDistanceRouter = new AirDistanceRouter(60, 1.3);
+    private final List<Coordinates> points = List.of(
+            Coordinates.of(50.85, 4.35),
+            Coordinates.of(51.22, 4.40),
+            Coordinates.of(50.63, 5.57));
+    private final BoundingBox bounds = new BoundingBox(Coordinates.of(49.5, 2.5), Coordinates.of(51.5, 6.4));
+    // Path with a midpoint so that paths aren't just the two points.
+    private final Router router = (from, to) -> List.of(
+            from,
+            Coordinates.of(
+                    (from.latitude().doubleValue() + to.latitude().doubleValue()) / 2,
+                    (from.longitude().doubleValue() + to.longitude().doubleValue()) / 2),
+            to);
+
+    @Test
+    void should_read_travel_times_calculated_by_exporter(@TempDir Path tempDir) {
+        Path file = tempDir.resolve("test.matrix");
+        MatrixFile.write(file, points, bounds, airDistanceRouter, null);
+        MatrixFileRouter matrixFileRouter = new MatrixFileRouter(MatrixFile.open(file));
+
+        for (Coordinates from : points) {
+            for (Coordinates to : points) {
+                assertThat(matrixFileRouter.travelTimeMillis(from, to))
+                        .isEqualTo(airDistanceRouter.travelTimeMillis(from, to));
+            }
+            assertThat(matrixFileRouter.travelTimesMillis(from, points))
+                    .containsExactly(airDistanceRouter.travelTimesMillis(from, points));
+            assertThat(matrixFileRouter.travelTimesMillis(points, from))
+                    .containsExactly(airDistanceRouter.travelTimesMillis(points, from));
+        }
+        assertThat(matrixFileRouter.getBounds().getSouthWest()).isEqualTo(bounds.getSouthWest());
+        assertThat(matrixFileRouter.getBounds().getNorthEast()).isEqualTo(bounds.getNorthEast());
+        // Straight line without paths.
+        assertThat(matrixFileRouter.getPath(points.get(0), points.get(2))).containsExactly(points.get(0), points.get(2));
+    }
+
+    @Test
+    void should_read_paths_calculated_by_exporter(@TempDir Path tempDir) {
+        Path file = tempDir.resolve("test.matrix");
+        MatrixFile.write(file, points, bounds, airDistanceRouter, router);
+        MatrixFileRouter matrixFileRouter = new MatrixFileRouter(MatrixFile.open(file));
+
+        for (Coordinates from : points) {
+            for (Coordinates to : points) {
+                assertThat(matrixFileRouter.getPath(from, to)).isEqualTo(router.getPath(from, to));
+            }
+        }
+        assertThat(matrixFileRouter.travelTimeMillis(points.get(1), points.get(2)))
+                .isEqualTo(airDistanceRouter.travelTimeMillis(points.get(1), points.get(2)));
+    }
+
+    @Test
+    void unknown_coordinates_should_not_be_routable(@TempDir Path tempDir) {
+        Path file = tempDir.resolve("test.matrix");
+        MatrixFile.write(file, points, bounds, airDistanceRouter, null);
+        MatrixFileRouter matrixFileRouter = new MatrixFileRouter(MatrixFile.open(file));
+
+        assertThatExceptionOfType(RoutingException.class)
+                .isThrownBy(() -> matrixFileRouter.travelTimeMillis(points.get(0), Coordinates.of(50, 4)))
+                .withMessageContaining("isn't one of the points");
+        assertThat(matrixFileRouter.isLocationAvailable(Coordinates.of(50, 4))).isFalse();
+        assertThat(matrixFileRouter.isLocationAvailable(points.get(1))).isTrue();
+    }
+
+    @Test
+    void should_reject_file_that_is_not_a_matrix_file(@TempDir Path tempDir) throws Exception {
+        Path file = tempDir.resolve("test.matrix");
+        Files.write(file, new byte[128]);
+        assertThatExceptionOfType(RoutingEngineException.class).isThrownBy(() -> MatrixFile.open(file));
+    }
+
+    @Test
+    void exporter_should_read_points_from_csv(@TempDir Path tempDir) throws Exception {
+        Path csvFile = tempDir.resolve("points.csv");
+        Files.write(csvFile, List.of("# latitude,longitude", "50.85,4.35", "", " 51.22 , 4.40 "));
+        assertThat(MatrixFileExporter.readPoints(csvFile))
+                .containsExactly(Coordinates.of(50.85, 4.35), Coordinates.of(51.22, 4.40));
+    }
+}
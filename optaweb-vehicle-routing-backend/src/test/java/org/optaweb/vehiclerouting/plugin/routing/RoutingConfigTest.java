@@ -1,14 +1,30 @@
 package org.optaweb.vehiclerouting.plugin.routing;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.when;
 
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mockito;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphImport;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.GraphStorage;
+import org.optaweb.vehiclerouting.plugin.routing.RoutingProperties.RoutingMode;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.config.CHProfile;
+import com.graphhopper.config.LMProfile;
 
 class RoutingConfigTest {
 
+    private static final String OSM_PBF = "planet_12.032,53.0171_12.1024,53.0491.osm.pbf";
+
     @Test
     void should_throw_exception_when_url_is_malformed() {
         Path osmFile = Mockito.mock(Path.class);
@@ -17,4 +33,81 @@ class RoutingConfigTest {
                 .isThrownBy(() -> RoutingConfig.downloadOsmFile(malformedUrl, osmFile))
                 .withMessageContaining("malformed");
     }
+
+    @Test
+    void routing_mode_should_select_prepared_profiles() {
+        assertPreparedProfiles(RoutingMode.FLEXIBLE, false, false);
+        assertPreparedProfiles(RoutingMode.CH, true, false);
+        assertPreparedProfiles(RoutingMode.LM, false, true);
+        assertPreparedProfiles(RoutingMode.CH_AND_LM, true, true);
+    }
+
+    @Test
+    void producer_should_import_graph_and_load_it_again(@TempDir Path tempDir) throws Exception {
+        Path osmDir = Paths.get(RoutingConfigTest.class.getResource(OSM_PBF).toURI()).getParent();
+        RoutingProperties routingProperties = routingProperties(osmDir, tempDir, GraphImport.STARTUP);
+
+        GraphHopper imported = new RoutingConfig(routingProperties).graphHopper();
+        Path graphDir = RoutingConfig.graphDir(tempDir, OSM_PBF);
+        assertThat(imported.getGraphHopperLocation()).isEqualTo(graphDir.toString());
+        assertThat(imported.getCHGraphs()).containsOnlyKeys(Constants.GRAPHHOPPER_PROFILE);
+        assertThat(GraphKey.read(graphDir)).isPresent();
+        int nodes = imported.getBaseGraph().getNodes();
+        imported.close();
+
+        when(routingProperties.graphImport()).thenReturn(GraphImport.OFFLINE);
+        GraphHopper loaded = new RoutingConfig(routingProperties).graphHopper();
+        assertThat(loaded.getBaseGraph().getNodes()).isEqualTo(nodes);
+        loaded.close();
+    }
+
+    @Test
+    void offline_import_should_refuse_graph_prepared_for_another_routing_mode(@TempDir Path tempDir) throws Exception {
+        Path osmDir = Paths.get(RoutingConfigTest.class.getResource(OSM_PBF).toURI()).getParent();
+        RoutingProperties routingProperties = routingProperties(osmDir, tempDir, GraphImport.STARTUP);
+        new RoutingConfig(routingProperties).graphHopper().close();
+        Path graphDir = RoutingConfig.graphDir(tempDir, OSM_PBF);
+
+        when(routingProperties.mode()).thenReturn(RoutingMode.LM);
+        when(routingProperties.graphImport()).thenReturn(GraphImport.OFFLINE);
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> new RoutingConfig(routingProperties).graphHopper())
+                .withMessageContaining("LM routing mode");
+        assertThat(GraphKey.read(graphDir).get().isPreparedFor(RoutingMode.CH)).isTrue();
+
+        // Prepared on startup when the graph can be written.
+        when(routingProperties.graphImport()).thenReturn(GraphImport.STARTUP);
+        GraphHopper prepared = new RoutingConfig(routingProperties).graphHopper();
+        assertThat(prepared.getLandmarks()).containsOnlyKeys(Constants.GRAPHHOPPER_PROFILE);
+        prepared.close();
+        assertThat(GraphKey.read(graphDir).get().isPreparedFor(RoutingMode.LM)).isTrue();
+    }
+
+    private static RoutingProperties routingProperties(Path osmDir, Path ghDir, GraphImport graphImport) {
+        RoutingProperties.Crop crop = Mockito.mock(RoutingProperties.Crop.class);
+        when(crop.boundingBox()).thenReturn(Optional.empty());
+        when(crop.polygon()).thenReturn(Optional.empty());
+        when(crop.bufferKm()).thenReturn(5.0);
+        RoutingProperties routingProperties = Mockito.mock(RoutingProperties.class);
+        when(routingProperties.osmDir()).thenReturn(osmDir.toString());
+        when(routingProperties.osmFile()).thenReturn(OSM_PBF);
+        when(routingProperties.osmDownloadUrl()).thenReturn(Optional.empty());
+        when(routingProperties.ghDir()).thenReturn(ghDir.toString());
+        when(routingProperties.mode()).thenReturn(RoutingMode.CH);
+        when(routingProperties.graphStorage()).thenReturn(GraphStorage.RAM);
+        when(routingProperties.graphImport()).thenReturn(graphImport);
+        when(routingProperties.crop()).thenReturn(crop);
+        return routingProperties;
+    }
+
+    private static void assertPreparedProfiles(RoutingMode routingMode, boolean ch, boolean lm) {
+        GraphHopper graphHopper = new GraphHopper();
+        RoutingConfig.configureRoutingMode(graphHopper, routingMode);
+        assertThat(graphHopper.getCHPreparationHandler().getCHProfiles())
+                .extracting(CHProfile::getProfile)
+                .isEqualTo(ch ? singletonList(Constants.GRAPHHOPPER_PROFILE) : emptyList());
+        assertThat(graphHopper.getLMPreparationHandler().getLMProfiles())
+                .extracting(LMProfile::getProfile)
+                .isEqualTo(lm ? singletonList(Constants.GRAPHHOPPER_PROFILE) : emptyList());
+    }
 }
@@ -0,0 +1,120 @@
+package org.optaweb.vehiclerouting.plugin.routing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TravelTimeCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void should_return_cached_travel_time() {
+        TravelTimeCache cache = TravelTimeCache.open(tempDir.resolve("cache.bin"));
+        long a = TravelTimeCache.key(50.85, 4.35);
+        long b = TravelTimeCache.key(51.22, 4.40);
+
+        assertThat(cache.get(a, b)).isEqualTo(TravelTimeCache.MISS);
+        cache.put(a, b, 2_400_000);
+        cache.put(b, a, 0);
+
+        assertThat(cache.get(a, b)).isEqualTo(2_400_000);
+        assertThat(cache.get(b, a)).isZero();
+        assertThat(cache.get(a, a)).isEqualTo(TravelTimeCache.MISS);
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.put(a, b, 2_500_000);
+        assertThat(cache.get(a, b)).isEqualTo(2_500_000);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void cached_travel_times_should_survive_reopening() {
+        Path file = tempDir.resolve("cache.bin");
+        TravelTimeCache cache = TravelTimeCache.open(file);
+        long a = TravelTimeCache.key(-33.87, 151.21);
+        long b = TravelTimeCache.key(-37.81, 144.96);
+        cache.put(a, b, 31_000_000);
+        cache.close();
+
+        TravelTimeCache reopened = TravelTimeCache.open(file);
+        assertThat(reopened.size()).isEqualTo(1);
+        assertThat(reopened.get(a, b)).isEqualTo(31_000_000);
+    }
+
+    @Test
+    void should_grow_when_half_full() {
+        Path file = tempDir.resolve("cache.bin");
+        TravelTimeCache cache = TravelTimeCache.open(file);
+        int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            cache.put(TravelTimeCache.key(i * 1e-4, 0), TravelTimeCache.key(0, i * 1e-4), i);
+        }
+        assertThat(cache.size()).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(cache.get(TravelTimeCache.key(i * 1e-4, 0), TravelTimeCache.key(0, i * 1e-4))).isEqualTo(i);
+        }
+        cache.close();
+
+        TravelTimeCache reopened = TravelTimeCache.open(file);
+        assertThat(reopened.size()).isEqualTo(count);
+        assertThat(reopened.get(TravelTimeCache.key(9.9999, 0), TravelTimeCache.key(0, 9.9999))).isEqualTo(count - 1);
+    }
+
+    @Test
+    void in_memory_cache_should_grow_when_half_full() {
+        TravelTimeCache cache = TravelTimeCache.inMemory();
+        int count = 100_000;
+        for (int i = 0; i < count; i++) {
+            cache.put(TravelTimeCache.key(i * 1e-4, 0), TravelTimeCache.key(0, i * 1e-4), i);
+        }
+        assertThat(cache.size()).isEqualTo(count);
+        assertThat(cache.get(TravelTimeCache.key(9.9999, 0), TravelTimeCache.key(0, 9.9999))).isEqualTo(count - 1);
+    }
+
+    @Test
+    void open_file_should_not_be_opened_again_until_closed() {
+        Path file = tempDir.resolve("cache.bin");
+        TravelTimeCache cache = TravelTimeCache.open(file);
+
+        assertThatExceptionOfType(RoutingEngineException.class)
+                .isThrownBy(() -> TravelTimeCache.open(file))
+                .withMessageContaining("used by another process");
+
+        cache.close();
+        TravelTimeCache.open(file).close();
+    }
+
+    @Test
+    void invalid_file_should_be_replaced_with_empty_cache() throws IOException {
+        Path file = tempDir.resolve("cache.bin");
+        Files.write(file, new byte[1000]);
+
+        TravelTimeCache cache = TravelTimeCache.open(file);
+
+        assertThat(cache.size()).isZero();
+        cache.put(1, 2, 3);
+        assertThat(cache.get(1, 2)).isEqualTo(3);
+    }
+
+    @Test
+    void keys_should_differ_for_points_10_cm_apart() {
+        assertThat(TravelTimeCache.key(50.000001, 4.0)).isNotEqualTo(TravelTimeCache.key(50.0, 4.0));
+        assertThat(TravelTimeCache.key(50.0, -4.000001)).isNotEqualTo(TravelTimeCache.key(50.0, -4.0));
+        assertThat(TravelTimeCache.key(-90, -180)).isNotEqualTo(TravelTimeCache.key(90, 180));
+    }
+
+    @Test
+    void negative_travel_time_should_be_rejected() {
+        TravelTimeCache cache = TravelTimeCache.open(tempDir.resolve("cache.bin"));
+        assertThatIllegalArgumentException().isThrownBy(() -> cache.put(1, 2, -1));
+    }
+}
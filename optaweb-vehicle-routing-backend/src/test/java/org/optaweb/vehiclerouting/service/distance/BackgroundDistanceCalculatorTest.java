@@ -0,0 +1,84 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+@ExtendWith(MockitoExtension.class)
+class BackgroundDistanceCalculatorTest {
+
+    private final Coordinates location = Coordinates.of(0, 0);
+    private final Coordinates other = Coordinates.of(0, 1);
+
+    @Mock
+    private DistanceCalculator distanceCalculator;
+    private BackgroundDistanceCalculator backgroundDistanceCalculator;
+
+    @AfterEach
+    void shutdown() {
+        if (backgroundDistanceCalculator != null) {
+            backgroundDistanceCalculator.shutdown();
+        }
+    }
+
+    @Test
+    void should_not_allow_non_positive_speed() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new BackgroundDistanceCalculator(distanceCalculator, true, 1, 0));
+    }
+
+    @Test
+    void estimate_should_be_air_distance_at_given_speed() {
+        backgroundDistanceCalculator = new BackgroundDistanceCalculator(distanceCalculator, false, 1, 36);
+
+        // 111.195 km at 36 km/h (100 ms/m)
+        assertThat(backgroundDistanceCalculator.estimateMillis(location, other)).isBetween(11_119_400L, 11_119_600L);
+        verifyNoInteractions(distanceCalculator);
+    }
+
+    @Test
+    void calculate_should_fail_when_disabled() {
+        backgroundDistanceCalculator = new BackgroundDistanceCalculator(distanceCalculator, false, 1, 40);
+
+        assertThat(backgroundDistanceCalculator.isEnabled()).isFalse();
+        assertThatIllegalStateException()
+                .isThrownBy(() -> backgroundDistanceCalculator.calculate(location, List.of(other)));
+    }
+
+    @Test
+    void calculate_should_return_travel_times_in_both_directions() throws ExecutionException, InterruptedException {
+        backgroundDistanceCalculator = new BackgroundDistanceCalculator(distanceCalculator, true, 1, 40);
+        when(distanceCalculator.travelTimesMillis(location, List.of(other))).thenReturn(new long[] { 12 });
+        when(distanceCalculator.travelTimesMillis(List.of(other), location)).thenReturn(new long[] { 21 });
+
+        BackgroundDistanceCalculator.TravelTimes travelTimes =
+                backgroundDistanceCalculator.calculate(location, List.of(other)).get();
+
+        assertThat(backgroundDistanceCalculator.isEnabled()).isTrue();
+        assertThat(travelTimes.toOthers()).containsExactly(12);
+        assertThat(travelTimes.fromOthers()).containsExactly(21);
+    }
+
+    @Test
+    void calculate_should_complete_exceptionally_when_routing_fails() {
+        backgroundDistanceCalculator = new BackgroundDistanceCalculator(distanceCalculator, true, 1, 40);
+        when(distanceCalculator.travelTimesMillis(location, List.of(other))).thenThrow(new RoutingException("x"));
+
+        assertThatExceptionOfType(ExecutionException.class)
+                .isThrownBy(() -> backgroundDistanceCalculator.calculate(location, List.of(other)).get())
+                .withCauseInstanceOf(RoutingException.class);
+    }
+}
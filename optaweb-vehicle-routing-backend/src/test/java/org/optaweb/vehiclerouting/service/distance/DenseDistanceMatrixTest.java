@@ -0,0 +1,312 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrixRow;
+
+@ExtendWith(MockitoExtension.class)
+class DenseDistanceMatrixTest {
+
+    @Mock
+    private DistanceCalculator distanceCalculator;
+    @InjectMocks
+    private DenseDistanceMatrix distanceMatrix;
+
+    @Test
+    void should_calculate_distance_map() {
+        DenseDistanceMatrix distanceMatrix = new DenseDistanceMatrix(new MockDistanceCalculator());
+
+        Location l0 = location(100, 0);
+        Location l1 = location(111, 1);
+        Location l9neg = location(321, -9);
+
+        DistanceMatrixRow matrixRow0 = distanceMatrix.addLocation(l0);
+
+        // distance to self
+        assertThat(matrixRow0.distanceTo(l0.id())).isEqualTo(Distance.ZERO);
+        assertThat(distanceMatrix.distance(l0, l0)).isEqualTo(Distance.ZERO);
+        // distance to not yet registered location
+        assertThatIllegalArgumentException().isThrownBy(() -> matrixRow0.distanceTo(l1.id()));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l0, l1));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l1, l0));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l1, l1));
+
+        DistanceMatrixRow matrixRow1 = distanceMatrix.addLocation(l1);
+        // distance to self
+        assertThat(matrixRow1.distanceTo(l1.id())).isEqualTo(Distance.ZERO);
+        assertThat(distanceMatrix.distance(l1, l1)).isEqualTo(Distance.ZERO);
+
+        // distance 0 <-> 1
+        assertThat(matrixRow1.distanceTo(l0.id())).isEqualTo(Distance.ofMillis(1));
+        assertThat(distanceMatrix.distance(l0, l1)).isEqualTo(Distance.ofMillis(1));
+        assertThat(matrixRow0.distanceTo(l1.id())).isEqualTo(Distance.ofMillis(1));
+        assertThat(distanceMatrix.distance(l1, l0)).isEqualTo(Distance.ofMillis(1));
+
+        DistanceMatrixRow matrixRow9 = distanceMatrix.addLocation(l9neg);
+
+        // distances -9 -> {0, 1}
+        assertThat(matrixRow9.distanceTo(l0.id())).isEqualTo(Distance.ofMillis(9));
+        assertThat(distanceMatrix.distance(l9neg, l0)).isEqualTo(Distance.ofMillis(9));
+        assertThat(matrixRow9.distanceTo(l1.id())).isEqualTo(Distance.ofMillis(10));
+        assertThat(distanceMatrix.distance(l9neg, l1)).isEqualTo(Distance.ofMillis(10));
+        // distances {0, 1} -> -9
+        assertThat(matrixRow0.distanceTo(l9neg.id())).isEqualTo(Distance.ofMillis(9));
+        assertThat(distanceMatrix.distance(l0, l9neg)).isEqualTo(Distance.ofMillis(9));
+        assertThat(matrixRow1.distanceTo(l9neg.id())).isEqualTo(Distance.ofMillis(10));
+        assertThat(distanceMatrix.distance(l1, l9neg)).isEqualTo(Distance.ofMillis(10));
+
+        // clear the map
+        assertThat(distanceMatrix.dimension()).isEqualTo(3);
+        distanceMatrix.clear();
+        assertThat(distanceMatrix.dimension()).isZero();
+        Location l500 = location(500, 500);
+        DistanceMatrixRow matrixRow500 = distanceMatrix.addLocation(l500);
+        assertThatIllegalArgumentException().isThrownBy(() -> matrixRow500.distanceTo(l0.id()));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l500, l0));
+        assertThatIllegalArgumentException().isThrownBy(() -> matrixRow9.distanceTo(l500.id()));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l9neg, l500));
+    }
+
+    @Test
+    void should_grow_rows_and_columns() {
+        DenseDistanceMatrix distanceMatrix = new DenseDistanceMatrix(new MockDistanceCalculator());
+        int count = 100;
+        DistanceMatrixRow firstRow = distanceMatrix.addLocation(location(0, 0));
+        for (int i = 1; i < count; i++) {
+            distanceMatrix.addLocation(location(i, i));
+        }
+        assertThat(distanceMatrix.dimension()).isEqualTo(count);
+        assertThat(firstRow.distanceTo(count - 1)).isEqualTo(Distance.ofMillis(count - 1));
+        assertThat(distanceMatrix.distance(location(count - 1, count - 1), location(0, 0)))
+                .isEqualTo(Distance.ofMillis(count - 1));
+    }
+
+    @Test
+    void should_calculate_distance_only_once() {
+        Location l1 = location(100, -1);
+        Location l2 = location(111, 20);
+        long dist12 = 12;
+        long dist21 = 21;
+        when(distanceCalculator.travelTimesMillis(List.of(l1.coordinates()), l2.coordinates()))
+                .thenReturn(new long[] { dist12 });
+        when(distanceCalculator.travelTimesMillis(l2.coordinates(), List.of(l1.coordinates())))
+                .thenReturn(new long[] { dist21 });
+
+        // No calculation for the first location.
+        distanceMatrix.addLocation(l1);
+        verifyNoInteractions(distanceCalculator);
+
+        // Calculation happens for the first time.
+        distanceMatrix.addLocation(l2);
+        verify(distanceCalculator).travelTimesMillis(List.of(l1.coordinates()), l2.coordinates());
+        verify(distanceCalculator).travelTimesMillis(l2.coordinates(), List.of(l1.coordinates()));
+
+        // No calculation if the matrix is already populated.
+        DistanceMatrixRow row21 = distanceMatrix.addLocation(l2);
+        assertThat(row21.distanceTo(l1.id())).isEqualTo(Distance.ofMillis(dist21));
+
+        DistanceMatrixRow row12 = distanceMatrix.addLocation(l1);
+        assertThat(row12.distanceTo(l2.id())).isEqualTo(Distance.ofMillis(dist12));
+
+        verifyNoMoreInteractions(distanceCalculator);
+    }
+
+    @Test
+    void should_not_change_matrix_when_distance_calculation_fails() {
+        // arrange
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        when(distanceCalculator.travelTimesMillis(l2.coordinates(), List.of(l1.coordinates())))
+                .thenThrow(new RoutingException("dummy"));
+
+        distanceMatrix.addLocation(l1);
+        assertThatExceptionOfType(RoutingException.class).isThrownBy(() -> distanceMatrix.addLocation(l2));
+        assertThat(distanceMatrix.dimension()).isEqualTo(1);
+
+        // act & assert
+        distanceMatrix.removeLocation(l1);
+        assertThat(distanceMatrix.dimension()).isZero();
+
+        distanceMatrix.addLocation(l2);
+        assertThat(distanceMatrix.dimension()).isEqualTo(1);
+    }
+
+    @Test
+    void removed_location_column_should_stay_readable() {
+        DenseDistanceMatrix distanceMatrix = new DenseDistanceMatrix(new MockDistanceCalculator());
+        Location l1 = location(1, 1);
+        Location l5 = location(5, 5);
+        DistanceMatrixRow row1 = distanceMatrix.addLocation(l1);
+        distanceMatrix.addLocation(l5);
+
+        distanceMatrix.removeLocation(l5);
+
+        assertThat(distanceMatrix.dimension()).isEqualTo(1);
+        // The solver may still ask for the distance before it processes the removal.
+        assertThat(row1.distanceTo(l5.id())).isEqualTo(Distance.ofMillis(4));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l5, l1));
+    }
+
+    @Test
+    void removed_columns_should_be_reclaimed_in_a_new_row_version() {
+        DenseDistanceMatrix distanceMatrix = new DenseDistanceMatrix(new MockDistanceCalculator());
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        Location l5 = location(5, 5);
+        DenseDistanceMatrix.Row row1 = (DenseDistanceMatrix.Row) distanceMatrix.addLocation(l1);
+        distanceMatrix.addLocation(l5);
+        DenseDistanceMatrix.Row row2 = (DenseDistanceMatrix.Row) distanceMatrix.addLocation(l2);
+        long version = row1.version();
+
+        distanceMatrix.removeLocation(l5);
+        assertThat(distanceMatrix.columns()).isEqualTo(3);
+
+        distanceMatrix.reclaimRemovedColumns();
+
+        assertThat(distanceMatrix.columns()).isEqualTo(2);
+        assertThat(row1.version()).isGreaterThan(version);
+        assertThatIllegalArgumentException().isThrownBy(() -> row1.distanceTo(l5.id()));
+        assertThat(row1.distanceTo(l2.id())).isEqualTo(Distance.ofMillis(1));
+        assertThat(row2.distanceTo(l1.id())).isEqualTo(Distance.ofMillis(1));
+        assertThat(row2.distanceTo(l2.id())).isEqualTo(Distance.ZERO);
+        assertThat(distanceMatrix.distance(l2, l1)).isEqualTo(Distance.ofMillis(1));
+
+        // New columns are written into the new version.
+        Location l9 = location(9, 9);
+        distanceMatrix.addLocation(l9);
+        assertThat(row1.distanceTo(l9.id())).isEqualTo(Distance.ofMillis(8));
+        assertThat(distanceMatrix.distance(l9, l2)).isEqualTo(Distance.ofMillis(7));
+    }
+
+    @Test
+    void columns_should_not_be_reclaimed_until_enough_locations_are_removed() {
+        DenseDistanceMatrix distanceMatrix = new DenseDistanceMatrix(new MockDistanceCalculator());
+        int count = DistanceMatrixImpl.RECLAIM_RATIO * 2 + 2;
+        for (int i = 0; i < count; i++) {
+            distanceMatrix.addLocation(location(i, i));
+        }
+
+        distanceMatrix.removeLocation(location(0, 0));
+        distanceMatrix.reclaimRemovedColumns();
+        assertThat(distanceMatrix.columns()).isEqualTo(count);
+
+        distanceMatrix.removeLocation(location(1, 1));
+        distanceMatrix.reclaimRemovedColumns();
+        assertThat(distanceMatrix.columns()).isEqualTo(count - 2);
+    }
+
+    @Test
+    void get_distance_after_put() {
+        Location from = location(1, 1);
+        Location to = location(2, 2);
+        Distance distance = Distance.ofMillis(2000);
+        distanceMatrix.put(from, to, distance);
+        assertThat(distanceMatrix.distance(from, to)).isEqualTo(distance);
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(to, from));
+        verifyNoInteractions(distanceCalculator);
+    }
+
+    @Test
+    void should_not_calculate_distances_that_were_put() {
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        distanceMatrix.put(l1, l2, Distance.ofMillis(12));
+        distanceMatrix.put(l2, l1, Distance.ofMillis(21));
+
+        DistanceMatrixRow row1 = distanceMatrix.addLocation(l1);
+        DistanceMatrixRow row2 = distanceMatrix.addLocation(l2);
+
+        assertThat(row1.distanceTo(l2.id())).isEqualTo(Distance.ofMillis(12));
+        assertThat(row2.distanceTo(l1.id())).isEqualTo(Distance.ofMillis(21));
+        verifyNoInteractions(distanceCalculator);
+    }
+
+    @Test
+    void update_should_replace_distance_of_existing_locations() {
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        distanceMatrix.put(l1, l2, Distance.ofMillis(12));
+        distanceMatrix.put(l2, l1, Distance.ofMillis(21));
+
+        distanceMatrix.update(l1, l2, Distance.ofMillis(120));
+        assertThat(distanceMatrix.distance(l1, l2)).isEqualTo(Distance.ofMillis(120));
+
+        distanceMatrix.removeLocation(l1);
+        distanceMatrix.update(l1, l2, Distance.ofMillis(1));
+        distanceMatrix.update(l2, l1, Distance.ofMillis(1));
+        assertThat(distanceMatrix.dimension()).isEqualTo(1);
+        assertThat(distanceMatrix.distance(l2, l1)).isEqualTo(Distance.ofMillis(21));
+        verify(distanceCalculator).forget(l1.coordinates());
+        verifyNoMoreInteractions(distanceCalculator);
+    }
+
+    @Test
+    void compact_cells_should_match_long_distances() {
+        // Spread travel times over the whole range that fits in an int.
+        DistanceCalculator calculator = (from, to) -> Distance.MAX_INT_MILLIS
+                - Math.abs(from.longitude().longValue() * 7919 - to.longitude().longValue() * 104729) % 1_000_000_007L;
+        DenseDistanceMatrix compactMatrix = new DenseDistanceMatrix(calculator);
+        DistanceMatrixImpl longMatrix = new DistanceMatrixImpl(calculator);
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Location location = location(i, i);
+            locations.add(location);
+            compactMatrix.addLocation(location);
+            longMatrix.addLocation(location);
+        }
+
+        for (Location from : locations) {
+            for (Location to : locations) {
+                assertThat(compactMatrix.distance(from, to)).isEqualTo(longMatrix.distance(from, to));
+            }
+        }
+        Location last = locations.get(locations.size() - 1);
+        compactMatrix.put(last, locations.get(0), Distance.ofMillis(Distance.MAX_INT_MILLIS));
+        assertThat(compactMatrix.distance(last, locations.get(0)).millis()).isEqualTo(Distance.MAX_INT_MILLIS);
+    }
+
+    @Test
+    void should_reject_travel_time_that_does_not_fit_without_changing_matrix() {
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        when(distanceCalculator.travelTimesMillis(l2.coordinates(), List.of(l1.coordinates())))
+                .thenReturn(new long[] { Distance.MAX_INT_MILLIS + 1 });
+        distanceMatrix.addLocation(l1);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.addLocation(l2));
+        assertThat(distanceMatrix.dimension()).isEqualTo(1);
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> distanceMatrix.put(l1, l2, Distance.ofMillis(Distance.MAX_INT_MILLIS + 1)));
+    }
+
+    static Location location(long id, int longitude) {
+        return new Location(id, new Coordinates(BigDecimal.ZERO, BigDecimal.valueOf(longitude)));
+    }
+
+    static class MockDistanceCalculator implements DistanceCalculator {
+
+        @Override
+        public long travelTimeMillis(Coordinates from, Coordinates to) {
+            // imagine 1D space (all locations on equator)
+            return (long) Math.abs(to.longitude().doubleValue() - from.longitude().doubleValue());
+        }
+    }
+}
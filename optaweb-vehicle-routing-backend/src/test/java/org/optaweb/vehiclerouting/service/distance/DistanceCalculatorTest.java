@@ -0,0 +1,34 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+class DistanceCalculatorTest {
+
+    private final DistanceCalculator distanceCalculator = (from, to) -> (long) (to.longitude().doubleValue() * 10
+            - from.longitude().doubleValue());
+
+    @Test
+    void one_to_many_should_return_travel_times_in_the_order_of_destinations() {
+        Coordinates from = Coordinates.of(0, 1);
+        List<Coordinates> to = List.of(Coordinates.of(0, 3), Coordinates.of(0, 2), Coordinates.of(0, 5));
+        assertThat(distanceCalculator.travelTimesMillis(from, to)).containsExactly(29, 19, 49);
+    }
+
+    @Test
+    void many_to_one_should_return_travel_times_in_the_order_of_origins() {
+        List<Coordinates> from = List.of(Coordinates.of(0, 3), Coordinates.of(0, 2), Coordinates.of(0, 5));
+        Coordinates to = Coordinates.of(0, 1);
+        assertThat(distanceCalculator.travelTimesMillis(from, to)).containsExactly(7, 8, 5);
+    }
+
+    @Test
+    void no_destinations_should_give_no_travel_times() {
+        assertThat(distanceCalculator.travelTimesMillis(Coordinates.of(0, 0), List.of())).isEmpty();
+        assertThat(distanceCalculator.travelTimesMillis(List.of(), Coordinates.of(0, 0))).isEmpty();
+    }
+}
@@ -0,0 +1,89 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrix;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrixRow;
+import org.optaweb.vehiclerouting.util.junit.Benchmark;
+
+/**
+ * Compares heap footprint and lookup throughput of the distance matrix implementations.
+ * <p>
+ * Run with {@code -Dbenchmark=true}. The number of locations can be changed with {@code -Dbenchmark.locations=N}.
+ * Make sure the heap is big enough for the map-based matrix, which needs roughly 200 bytes per cell.
+ */
+class DistanceMatrixBenchmarkTest {
+
+    private static final int LOCATIONS = Integer.getInteger("benchmark.locations", 1000);
+    private static final int LOOKUP_ROUNDS = 5;
+
+    @Benchmark
+    void map_matrix() {
+        run("map", DistanceMatrixImpl::new);
+    }
+
+    @Benchmark
+    void dense_matrix() {
+        run("dense", DenseDistanceMatrix::new);
+    }
+
+    @Benchmark
+    void sparse_matrix() {
+        run("sparse", calculator -> new SparseDistanceMatrix(calculator, 40, 1000));
+    }
+
+    private static void run(String name, Function<DistanceCalculator, DistanceMatrix> matrixFactory) {
+        List<Location> locations = new ArrayList<>(LOCATIONS);
+        for (int i = 0; i < LOCATIONS; i++) {
+            locations.add(DenseDistanceMatrixTest.location(i, i));
+        }
+
+        long heapBefore = usedHeap();
+        long fillStart = System.nanoTime();
+        DistanceMatrix matrix = matrixFactory.apply(new DenseDistanceMatrixTest.MockDistanceCalculator());
+        List<DistanceMatrixRow> rows = new ArrayList<>(LOCATIONS);
+        for (Location location : locations) {
+            rows.add(matrix.addLocation(location));
+        }
+        long fillNanos = System.nanoTime() - fillStart;
+        long heapAfter = usedHeap();
+
+        long checksum = 0;
+        long lookupStart = System.nanoTime();
+        for (int round = 0; round < LOOKUP_ROUNDS; round++) {
+            for (DistanceMatrixRow row : rows) {
+                for (int to = 0; to < LOCATIONS; to++) {
+                    checksum += row.distanceTo(to).millis();
+                }
+            }
+        }
+        long lookupNanos = System.nanoTime() - lookupStart;
+        long lookups = (long) LOOKUP_ROUNDS * LOCATIONS * LOCATIONS;
+
+        System.out.printf(
+                "%s matrix, %d locations: fill %d ms, heap %d MB (%d bytes/cell), %.1f M lookups/s%n",
+                name,
+                LOCATIONS,
+                fillNanos / 1_000_000,
+                (heapAfter - heapBefore) / 1024 / 1024,
+                (heapAfter - heapBefore) / ((long) LOCATIONS * LOCATIONS),
+                lookups * 1000.0 / lookupNanos);
+        // Keep the matrix reachable until the heap has been measured and use the checksum so that lookups aren't
+        // eliminated.
+        assertThat(rows).hasSize(LOCATIONS);
+        assertThat(checksum).isPositive();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -9,6 +9,10 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -89,8 +93,10 @@ class DistanceMatrixImplTest {
         Location l2 = location(111, 20);
         long dist12 = 12;
         long dist21 = 21;
-        when(distanceCalculator.travelTimeMillis(l1.coordinates(), l2.coordinates())).thenReturn(dist12);
-        when(distanceCalculator.travelTimeMillis(l2.coordinates(), l1.coordinates())).thenReturn(dist21);
+        when(distanceCalculator.travelTimesMillis(List.of(l1.coordinates()), l2.coordinates()))
+                .thenReturn(new long[] { dist12 });
+        when(distanceCalculator.travelTimesMillis(l2.coordinates(), List.of(l1.coordinates())))
+                .thenReturn(new long[] { dist21 });
 
         // No calculation for the first location.
         distanceMatrix.addLocation(l1);
@@ -98,8 +104,8 @@ class DistanceMatrixImplTest {
 
         // Calculation happens for the first time.
         distanceMatrix.addLocation(l2);
-        verify(distanceCalculator).travelTimeMillis(l1.coordinates(), l2.coordinates());
-        verify(distanceCalculator).travelTimeMillis(l2.coordinates(), l1.coordinates());
+        verify(distanceCalculator).travelTimesMillis(List.of(l1.coordinates()), l2.coordinates());
+        verify(distanceCalculator).travelTimesMillis(l2.coordinates(), List.of(l1.coordinates()));
 
         // No calculation if the matrix is already populated.
         DistanceMatrixRow row21 = distanceMatrix.addLocation(l2);
@@ -116,7 +122,8 @@ class DistanceMatrixImplTest {
         // arrange
         Location l1 = location(1, 1);
         Location l2 = location(2, 2);
-        when(distanceCalculator.travelTimeMillis(l1.coordinates(), l2.coordinates())).thenThrow(new RoutingException("dummy"));
+        when(distanceCalculator.travelTimesMillis(l2.coordinates(), List.of(l1.coordinates())))
+                .thenThrow(new RoutingException("dummy"));
 
         distanceMatrix.addLocation(l1);
         assertThatExceptionOfType(RoutingException.class).isThrownBy(() -> distanceMatrix.addLocation(l2));
@@ -130,6 +137,89 @@ class DistanceMatrixImplTest {
         assertThat(distanceMatrix.dimension()).isEqualTo(1);
     }
 
+    @Test
+    void removed_columns_should_be_reclaimed_in_a_new_row_version() {
+        DistanceMatrixImpl distanceMatrix = new DistanceMatrixImpl(new MockDistanceCalculator());
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        Location l5 = location(5, 5);
+        DistanceMatrixImpl.Row row1 = (DistanceMatrixImpl.Row) distanceMatrix.addLocation(l1);
+        distanceMatrix.addLocation(l2);
+        distanceMatrix.addLocation(l5);
+        long version = row1.version();
+
+        distanceMatrix.removeLocation(l5);
+        assertThat(distanceMatrix.dimension()).isEqualTo(2);
+        assertThat(distanceMatrix.removedColumns()).isEqualTo(1);
+        // The solver may still ask for the distance before it processes the removal.
+        assertThat(row1.distanceTo(l5.id())).isEqualTo(Distance.ofMillis(4));
+
+        distanceMatrix.reclaimRemovedColumns();
+
+        assertThat(distanceMatrix.removedColumns()).isZero();
+        assertThat(row1.version()).isGreaterThan(version);
+        assertThatIllegalArgumentException().isThrownBy(() -> row1.distanceTo(l5.id()));
+        assertThat(row1.distanceTo(l2.id())).isEqualTo(Distance.ofMillis(1));
+        assertThat(distanceMatrix.distance(l2, l1)).isEqualTo(Distance.ofMillis(1));
+
+        // New columns are appended to the new version.
+        Location l9 = location(9, 9);
+        distanceMatrix.addLocation(l9);
+        assertThat(row1.distanceTo(l9.id())).isEqualTo(Distance.ofMillis(8));
+    }
+
+    @Test
+    void columns_should_not_be_reclaimed_until_enough_locations_are_removed() {
+        DistanceMatrixImpl distanceMatrix = new DistanceMatrixImpl(new MockDistanceCalculator());
+        int count = DistanceMatrixImpl.RECLAIM_RATIO * 2 + 2;
+        for (int i = 0; i < count; i++) {
+            distanceMatrix.addLocation(location(i, i));
+        }
+
+        distanceMatrix.removeLocation(location(0, 0));
+        distanceMatrix.reclaimRemovedColumns();
+        assertThat(distanceMatrix.removedColumns()).isEqualTo(1);
+
+        distanceMatrix.removeLocation(location(1, 1));
+        distanceMatrix.reclaimRemovedColumns();
+        assertThat(distanceMatrix.removedColumns()).isZero();
+    }
+
+    @Test
+    void locations_added_and_removed_while_routing_should_be_reconciled() throws Exception {
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        Location l3 = location(3, 3);
+        Location l4 = location(4, 4);
+        AtomicReference<DistanceMatrixImpl> matrixReference = new AtomicReference<>();
+        DistanceMatrixImpl distanceMatrix = new DistanceMatrixImpl(new MockDistanceCalculator() {
+            @Override
+            public long[] travelTimesMillis(Coordinates from, List<Coordinates> to) {
+                if (from.equals(l3.coordinates()) && to.contains(l1.coordinates())) {
+                    // Another thread changes the matrix while l3 is routed. It would time out if the lock was held.
+                    CompletableFuture.runAsync(() -> {
+                        matrixReference.get().removeLocation(l1);
+                        matrixReference.get().addLocation(l4);
+                    }).join();
+                }
+                return super.travelTimesMillis(from, to);
+            }
+        });
+        matrixReference.set(distanceMatrix);
+        distanceMatrix.addLocation(l1);
+        distanceMatrix.addLocation(l2);
+
+        DistanceMatrixRow row3 = CompletableFuture.supplyAsync(() -> distanceMatrix.addLocation(l3))
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(distanceMatrix.dimension()).isEqualTo(3);
+        assertThat(row3.distanceTo(l2.id())).isEqualTo(Distance.ofMillis(1));
+        assertThat(row3.distanceTo(l4.id())).isEqualTo(Distance.ofMillis(1));
+        assertThatIllegalArgumentException().isThrownBy(() -> row3.distanceTo(l1.id()));
+        assertThat(distanceMatrix.distance(l2, l3)).isEqualTo(Distance.ofMillis(1));
+        assertThat(distanceMatrix.distance(l4, l3)).isEqualTo(Distance.ofMillis(1));
+    }
+
     @Test
     void get_distance_after_put() {
         Location from = location(1, 1);
@@ -140,6 +230,25 @@ class DistanceMatrixImplTest {
         verifyNoInteractions(distanceCalculator);
     }
 
+    @Test
+    void update_should_replace_distance_of_existing_locations() {
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        distanceMatrix.put(l1, l2, Distance.ofMillis(12));
+        distanceMatrix.put(l2, l1, Distance.ofMillis(21));
+
+        distanceMatrix.update(l1, l2, Distance.ofMillis(120));
+        assertThat(distanceMatrix.distance(l1, l2)).isEqualTo(Distance.ofMillis(120));
+
+        distanceMatrix.removeLocation(l1);
+        distanceMatrix.update(l1, l2, Distance.ofMillis(1));
+        distanceMatrix.update(l2, l1, Distance.ofMillis(1));
+        assertThat(distanceMatrix.dimension()).isEqualTo(1);
+        assertThat(distanceMatrix.distance(l2, l1)).isEqualTo(Distance.ofMillis(21));
+        verify(distanceCalculator).forget(l1.coordinates());
+        verifyNoMoreInteractions(distanceCalculator);
+    }
+
     private static Location location(long id, int longitude) {
         return new Location(id, new Coordinates(BigDecimal.ZERO, BigDecimal.valueOf(longitude)));
     }
@@ -0,0 +1,38 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+class GreatCircleDistanceTest {
+
+    @Test
+    void distance_of_one_degree_on_equator() {
+        assertThat(GreatCircleDistance.meters(Coordinates.of(0, 0), Coordinates.of(0, 1)))
+                .isCloseTo(GreatCircleDistance.METERS_PER_DEGREE, within(1e-6))
+                .isCloseTo(111_195, within(1.0));
+    }
+
+    @Test
+    void distance_should_be_symmetric_and_zero_for_the_same_point() {
+        Coordinates brussels = Coordinates.of(50.85, 4.35);
+        Coordinates paris = Coordinates.of(48.86, 2.35);
+
+        assertThat(GreatCircleDistance.meters(brussels, paris))
+                .isCloseTo(264_000, within(1000.0))
+                .isEqualTo(GreatCircleDistance.meters(paris, brussels));
+        assertThat(GreatCircleDistance.meters(brussels, brussels)).isZero();
+    }
+
+    @Test
+    void haversine_should_grow_with_distance() {
+        double latitude = Math.toRadians(50);
+        double cosLatitude = Math.cos(latitude);
+        double near = GreatCircleDistance.haversine(latitude, cosLatitude, 0, latitude, cosLatitude, 0.01);
+        double far = GreatCircleDistance.haversine(latitude, cosLatitude, 0, latitude, cosLatitude, 0.02);
+
+        assertThat(near).isPositive().isLessThan(far);
+    }
+}
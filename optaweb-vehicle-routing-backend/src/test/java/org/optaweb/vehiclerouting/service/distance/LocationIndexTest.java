@@ -0,0 +1,45 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import org.junit.jupiter.api.Test;
+
+class LocationIndexTest {
+
+    @Test
+    void should_assign_consecutive_indexes() {
+        LocationIndex index = new LocationIndex();
+        assertThat(index.add(1000)).isZero();
+        assertThat(index.add(-5)).isEqualTo(1);
+        assertThat(index.add(Long.MAX_VALUE)).isEqualTo(2);
+        assertThat(index.size()).isEqualTo(3);
+
+        assertThat(index.indexOf(1000)).isZero();
+        assertThat(index.indexOf(-5)).isEqualTo(1);
+        assertThat(index.indexOf(Long.MAX_VALUE)).isEqualTo(2);
+        assertThat(index.indexOf(0)).isEqualTo(LocationIndex.NOT_FOUND);
+    }
+
+    @Test
+    void should_not_assign_two_indexes_to_one_location() {
+        LocationIndex index = new LocationIndex();
+        index.add(1);
+        assertThatIllegalArgumentException().isThrownBy(() -> index.add(1));
+    }
+
+    @Test
+    void should_grow() {
+        LocationIndex index = new LocationIndex();
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            // sparse IDs that collide when hashed poorly
+            index.add(i * 1024L);
+        }
+        assertThat(index.size()).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(index.indexOf(i * 1024L)).isEqualTo(i);
+        }
+        assertThat(index.indexOf(1)).isEqualTo(LocationIndex.NOT_FOUND);
+    }
+}
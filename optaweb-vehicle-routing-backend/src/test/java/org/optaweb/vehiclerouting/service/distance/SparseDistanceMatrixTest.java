@@ -0,0 +1,259 @@
+package org.optaweb.vehiclerouting.service.distance;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Distance;
+import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.location.DistanceMatrixRow;
+
+class SparseDistanceMatrixTest {
+
+    private static final double MILLIS_PER_METER = 150;
+
+    private final AirDistanceCalculator calculator = new AirDistanceCalculator();
+
+    @Test
+    void should_not_allow_less_than_one_neighbour() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new SparseDistanceMatrix(calculator, 0, 10));
+    }
+
+    @Test
+    void should_calculate_all_distances_below_threshold() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 10);
+        List<Location> locations = locations(4);
+        locations.forEach(distanceMatrix::addLocation);
+
+        // 0 + 2 * 1 + 2 * 2 + 2 * 3
+        assertThat(calculator.calculated).isEqualTo(12);
+        assertThat(distanceMatrix.isSparse()).isTrue();
+        assertThat(distanceMatrix.dimension()).isEqualTo(4);
+        for (Location from : locations) {
+            for (Location to : locations) {
+                assertThat(distanceMatrix.isCalculated(from, to)).isTrue();
+                assertThat(distanceMatrix.distance(from, to).millis())
+                        .isEqualTo(calculator.travelTimeMillis(from.coordinates(), to.coordinates()));
+            }
+        }
+    }
+
+    @Test
+    void should_calculate_distances_to_nearest_neighbours_above_threshold() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 2, 3);
+        List<Location> locations = locations(6);
+        List<DistanceMatrixRow> rows = new ArrayList<>();
+        locations.forEach(location -> rows.add(distanceMatrix.addLocation(location)));
+
+        // The first 3 locations are calculated fully, each of the other 3 only to its 2 nearest neighbours.
+        assertThat(calculator.calculated).isEqualTo(2 * 3 + 3 * 2 * 2);
+        Location l3 = locations.get(3);
+        Location l5 = locations.get(5);
+        assertThat(distanceMatrix.isCalculated(l5, l3)).isTrue();
+        assertThat(distanceMatrix.isCalculated(l3, l5)).isTrue();
+        assertThat(distanceMatrix.isCalculated(l5, locations.get(0))).isFalse();
+        assertThat(distanceMatrix.isCalculated(locations.get(0), l5)).isFalse();
+
+        // Estimated from air distance and the rate of calculated distances.
+        long exact = calculator.travelTimeMillis(l5.coordinates(), locations.get(0).coordinates());
+        assertThat(rows.get(5).distanceTo(locations.get(0).id()).millis()).isCloseTo(exact, within(10L));
+        assertThat(distanceMatrix.distance(l5, locations.get(0))).isEqualTo(rows.get(5).distanceTo(0));
+    }
+
+    @Test
+    void estimates_should_not_change_when_more_distances_are_calculated() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 2);
+        List<Location> locations = locations(4);
+        for (int i = 0; i < 3; i++) {
+            distanceMatrix.addLocation(locations.get(i));
+        }
+        Distance estimate = distanceMatrix.distance(locations.get(2), locations.get(0));
+        assertThat(distanceMatrix.isCalculated(locations.get(2), locations.get(0))).isFalse();
+
+        calculator.millisPerMeter = 10 * MILLIS_PER_METER;
+        distanceMatrix.addLocation(locations.get(3));
+
+        assertThat(distanceMatrix.distance(locations.get(2), locations.get(0))).isEqualTo(estimate);
+    }
+
+    @Test
+    void new_locations_should_use_recalibrated_rate() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 2);
+        List<Location> locations = locations(5);
+        for (int i = 0; i < 3; i++) {
+            distanceMatrix.addLocation(locations.get(i));
+        }
+        Distance oldEstimate = distanceMatrix.distance(locations.get(2), locations.get(0));
+
+        calculator.millisPerMeter = 10 * MILLIS_PER_METER;
+        distanceMatrix.addLocation(locations.get(3));
+        distanceMatrix.addLocation(locations.get(4));
+
+        // Calibrated on the distances calculated by both rates.
+        Distance newEstimate = distanceMatrix.distance(locations.get(4), locations.get(2));
+        assertThat(distanceMatrix.isCalculated(locations.get(4), locations.get(2))).isFalse();
+        assertThat(newEstimate.millis()).isGreaterThan(oldEstimate.millis());
+        assertThat(distanceMatrix.distance(locations.get(2), locations.get(0))).isEqualTo(oldEstimate);
+    }
+
+    @Test
+    void should_use_default_rate_when_nothing_has_been_calculated() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 0);
+        Location l0 = location(0, 0);
+        Location l1 = location(1, 1);
+        distanceMatrix.put(l0, l0, Distance.ZERO);
+        distanceMatrix.put(l1, l1, Distance.ZERO);
+
+        assertThat(distanceMatrix.distance(l0, l1).millis()).isEqualTo(
+                Math.round(GreatCircleDistance.meters(l0.coordinates(), l1.coordinates())
+                        * SparseDistanceMatrix.DEFAULT_MILLIS_PER_METER));
+    }
+
+    @Test
+    void should_fail_for_unknown_locations() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 0);
+        Location l0 = location(0, 0);
+        Location l1 = location(1, 1);
+        DistanceMatrixRow row0 = distanceMatrix.addLocation(l0);
+
+        assertThatIllegalArgumentException().isThrownBy(() -> row0.distanceTo(l1.id()));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l0, l1));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l1, l0));
+        assertThat(distanceMatrix.isCalculated(l1, l0)).isFalse();
+    }
+
+    @Test
+    void put_should_restore_calculated_distances() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 0);
+        Location l0 = location(0, 0);
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        distanceMatrix.put(l0, l1, Distance.ofMillis(100));
+        distanceMatrix.put(l1, l0, Distance.ofMillis(200));
+        distanceMatrix.put(l2, l1, Distance.ofMillis(300));
+        distanceMatrix.put(l1, l2, Distance.ofMillis(400));
+
+        assertThat(distanceMatrix.dimension()).isEqualTo(3);
+        assertThat(distanceMatrix.distance(l0, l1)).isEqualTo(Distance.ofMillis(100));
+        assertThat(distanceMatrix.distance(l1, l0)).isEqualTo(Distance.ofMillis(200));
+        assertThat(distanceMatrix.isCalculated(l0, l2)).isFalse();
+        assertThat(distanceMatrix.distance(l0, l2).millis()).isPositive();
+        assertThat(distanceMatrix.distance(l0, l0)).isEqualTo(Distance.ZERO);
+        // Adding a location that has been put returns its row without calculating anything.
+        assertThat(distanceMatrix.addLocation(l1).distanceTo(l2.id())).isEqualTo(Distance.ofMillis(400));
+        assertThat(calculator.calculated).isZero();
+    }
+
+    @Test
+    void update_should_replace_estimates_of_existing_locations() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 0);
+        Location l0 = location(0, 0);
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        distanceMatrix.addLocation(l0);
+        distanceMatrix.addLocation(l1);
+        distanceMatrix.addLocation(l2);
+        assertThat(distanceMatrix.isCalculated(l2, l0)).isFalse();
+
+        distanceMatrix.update(l2, l0, Distance.ofMillis(1));
+        assertThat(distanceMatrix.isCalculated(l2, l0)).isTrue();
+        assertThat(distanceMatrix.distance(l2, l0)).isEqualTo(Distance.ofMillis(1));
+
+        distanceMatrix.removeLocation(l0);
+        distanceMatrix.update(l0, l1, Distance.ofMillis(1));
+        distanceMatrix.update(l1, l0, Distance.ofMillis(1));
+        assertThat(distanceMatrix.dimension()).isEqualTo(2);
+        assertThat(distanceMatrix.distance(l1, l0)).isNotEqualTo(Distance.ofMillis(1));
+    }
+
+    @Test
+    void removed_location_should_not_be_a_neighbour() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 0);
+        Location l0 = location(0, 0);
+        Location l1 = location(1, 1);
+        Location l2 = location(2, 2);
+        distanceMatrix.addLocation(l0);
+        distanceMatrix.addLocation(l1);
+        distanceMatrix.removeLocation(l1);
+        distanceMatrix.reclaimRemovedColumns();
+        assertThat(distanceMatrix.dimension()).isEqualTo(1);
+
+        distanceMatrix.addLocation(l2);
+
+        assertThat(distanceMatrix.isCalculated(l2, l0)).isTrue();
+        assertThat(distanceMatrix.isCalculated(l0, l1)).isFalse();
+        assertThat(distanceMatrix.dimension()).isEqualTo(2);
+    }
+
+    @Test
+    void reclaim_should_compact_removed_locations() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 2);
+        List<Location> locations = locations(5);
+        List<DistanceMatrixRow> rows = new ArrayList<>();
+        locations.forEach(location -> rows.add(distanceMatrix.addLocation(location)));
+        Location l0 = locations.get(0);
+        Location l3 = locations.get(3);
+        Location l4 = locations.get(4);
+        Distance calculated = distanceMatrix.distance(l4, l3);
+        Distance estimated = distanceMatrix.distance(l4, l0);
+        assertThat(distanceMatrix.isCalculated(l4, l3)).isTrue();
+        assertThat(distanceMatrix.isCalculated(l4, l0)).isFalse();
+
+        distanceMatrix.removeLocation(locations.get(1));
+        distanceMatrix.removeLocation(locations.get(2));
+        distanceMatrix.reclaimRemovedColumns();
+
+        assertThat(distanceMatrix.dimension()).isEqualTo(3);
+        assertThat(distanceMatrix.distance(l4, l3)).isEqualTo(calculated);
+        assertThat(distanceMatrix.distance(l4, l0)).isEqualTo(estimated);
+        assertThat(rows.get(4).distanceTo(l0.id())).isEqualTo(estimated);
+        assertThat(distanceMatrix.distance(l0, l0)).isEqualTo(Distance.ZERO);
+        assertThatIllegalArgumentException().isThrownBy(() -> rows.get(4).distanceTo(locations.get(1).id()));
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l0, locations.get(2)));
+
+        // A removed location can come back with new distances.
+        distanceMatrix.addLocation(locations.get(2));
+        assertThat(distanceMatrix.dimension()).isEqualTo(4);
+        assertThat(distanceMatrix.isCalculated(locations.get(2), l3)).isTrue();
+    }
+
+    @Test
+    void clear() {
+        SparseDistanceMatrix distanceMatrix = new SparseDistanceMatrix(calculator, 1, 0);
+        Location l0 = location(0, 0);
+        distanceMatrix.addLocation(l0);
+        distanceMatrix.clear();
+
+        assertThat(distanceMatrix.dimension()).isZero();
+        assertThatIllegalArgumentException().isThrownBy(() -> distanceMatrix.distance(l0, l0));
+    }
+
+    private static List<Location> locations(int count) {
+        List<Location> locations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            locations.add(location(i, i));
+        }
+        return locations;
+    }
+
+    private static Location location(long id, int hundredthsOfDegree) {
+        return new Location(id, Coordinates.of(0, hundredthsOfDegree / 100.0));
+    }
+
+    private static class AirDistanceCalculator implements DistanceCalculator {
+
+        private double millisPerMeter = MILLIS_PER_METER;
+        private int calculated;
+
+        @Override
+        public long travelTimeMillis(Coordinates from, Coordinates to) {
+            calculated++;
+            return Math.round(GreatCircleDistance.meters(from, to) * millisPerMeter);
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.optaweb.vehiclerouting.domain.Coordinates;
 import org.optaweb.vehiclerouting.domain.Distance;
 import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.distance.DistanceCalculator;
 
 import io.quarkus.test.junit.QuarkusTest;
 import io.quarkus.test.junit.mockito.InjectMock;
@@ -21,6 +22,8 @@ class LocationServiceIntegrationTest {
 
     @InjectMock
     DistanceMatrix distanceMatrix;
+    @InjectMock
+    DistanceCalculator distanceCalculator;
     @Inject
     LocationService locationService;
 
@@ -28,11 +31,13 @@ class LocationServiceIntegrationTest {
     void location_service_should_be_transactional() {
         when(distanceMatrix.addLocation(any())).thenReturn(locationId -> Distance.ZERO);
         when(distanceMatrix.distance(any(), any())).thenReturn(Distance.ZERO);
+        when(distanceCalculator.isLocationAvailable(any())).thenReturn(true);
         locationService.addLocation(new Location(1000, Coordinates.of(-1, 12)));
         locationService.createLocation(Coordinates.of(12, -1), "location 1");
         Optional<Location> location = locationService.createLocation(Coordinates.of(32, -5), "location 2");
         assertThat(location).isNotEmpty();
-        locationService.populateDistanceMatrix();
+        locationService.populateDistanceMatrix(loaded -> {
+        });
         locationService.removeLocation(location.get().id());
         locationService.removeAll();
     }
@@ -1,9 +1,12 @@
 package org.optaweb.vehiclerouting.service.location;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 import static org.assertj.core.api.Assertions.assertThatNullPointerException;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -11,9 +14,13 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import javax.enterprise.event.Event;
 
@@ -25,8 +32,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.optaweb.vehiclerouting.domain.Coordinates;
 import org.optaweb.vehiclerouting.domain.Distance;
 import org.optaweb.vehiclerouting.domain.Location;
+import org.optaweb.vehiclerouting.service.distance.BackgroundDistanceCalculator;
+import org.optaweb.vehiclerouting.service.distance.BackgroundDistanceCalculator.TravelTimes;
+import org.optaweb.vehiclerouting.service.distance.DistanceCalculator;
 import org.optaweb.vehiclerouting.service.distance.DistanceRepository;
 import org.optaweb.vehiclerouting.service.error.ErrorEvent;
+import org.optaweb.vehiclerouting.service.route.Router;
 
 @ExtendWith(MockitoExtension.class)
 class LocationServiceTest {
@@ -40,6 +51,12 @@ class LocationServiceTest {
     @Mock
     private DistanceMatrix distanceMatrix;
     @Mock
+    private BackgroundDistanceCalculator backgroundDistanceCalculator;
+    @Mock
+    private DistanceCalculator distanceCalculator;
+    @Mock
+    private Router router;
+    @Mock
     private Event<ErrorEvent> errorEvent;
     @InjectMocks
     private LocationService locationService;
@@ -60,6 +77,7 @@ class LocationServiceTest {
         when(repository.locations()).thenReturn(Arrays.asList(existingLocation));
         String description = "new location";
         when(repository.createLocation(coordinates, description)).thenReturn(location);
+        when(distanceCalculator.isLocationAvailable(coordinates)).thenReturn(true);
         when(distanceMatrix.addLocation(any())).thenReturn(matrixRow);
         when(distanceMatrix.distance(any(), any())).thenReturn(distance);
         when(matrixRow.distanceTo(anyLong())).thenReturn(distance);
@@ -68,11 +86,133 @@ class LocationServiceTest {
 
         verify(repository).createLocation(coordinates, description);
         verify(distanceMatrix).addLocation(location);
-        verify(distanceRepository).saveDistance(existingLocation, location, distance);
-        verify(distanceRepository).saveDistance(location, existingLocation, distance);
+        verify(distanceRepository).saveDistances(
+                location,
+                Map.of(existingLocation, distance),
+                Map.of(existingLocation, distance));
         verify(planner).addLocation(location, matrixRow);
     }
 
+    @Test
+    void createLocation_should_reject_unavailable_location_before_storing_it() {
+        when(distanceCalculator.isLocationAvailable(coordinates)).thenReturn(false);
+
+        assertThat(locationService.createLocation(coordinates, "off-road")).isEmpty();
+
+        verify(errorEvent).fire(any(ErrorEvent.class));
+        verifyNoInteractions(repository, distanceMatrix, distanceRepository, planner, backgroundDistanceCalculator);
+    }
+
+    @Test
+    void createLocation_should_only_save_calculated_distances_of_sparse_matrix(@Mock DistanceMatrixRow matrixRow) {
+        Distance distance = Distance.ofMillis(123);
+        Location near = new Location(2, coordinates);
+        Location far = new Location(3, coordinates);
+        when(repository.locations()).thenReturn(Arrays.asList(near, far));
+        when(repository.createLocation(coordinates, "")).thenReturn(location);
+        when(distanceCalculator.isLocationAvailable(coordinates)).thenReturn(true);
+        when(distanceMatrix.addLocation(any())).thenReturn(matrixRow);
+        when(distanceMatrix.isSparse()).thenReturn(true);
+        when(distanceMatrix.isCalculated(any(), any())).thenReturn(false);
+        when(distanceMatrix.isCalculated(location, near)).thenReturn(true);
+        when(distanceMatrix.isCalculated(near, location)).thenReturn(true);
+        when(distanceMatrix.distance(near, location)).thenReturn(distance);
+        when(matrixRow.distanceTo(near.id())).thenReturn(distance);
+
+        assertThat(locationService.createLocation(coordinates, "")).contains(location);
+
+        verify(distanceRepository).saveDistances(location, Map.of(near, distance), Map.of(near, distance));
+    }
+
+    @Test
+    void createLocation_should_add_location_with_estimates_and_refine_them_in_background(
+            @Mock DistanceMatrixRow matrixRow) {
+        Location existingLocation = new Location(2, coordinates);
+        when(repository.createLocation(coordinates, "")).thenReturn(location);
+        when(distanceCalculator.isLocationAvailable(coordinates)).thenReturn(true);
+        when(repository.locations()).thenReturn(Arrays.asList(existingLocation, location));
+        when(distanceMatrix.addLocation(location)).thenReturn(matrixRow);
+        CompletableFuture<TravelTimes> refinement = startRefinement(List.of(coordinates));
+        runRefinementsImmediately();
+
+        assertThat(locationService.createLocation(coordinates, "")).contains(location);
+
+        verify(distanceMatrix).put(location, location, Distance.ZERO);
+        verify(distanceMatrix).put(location, existingLocation, Distance.ofMillis(100));
+        verify(distanceMatrix).put(existingLocation, location, Distance.ofMillis(100));
+        verify(planner).addLocation(location, matrixRow);
+        verifyNoInteractions(distanceRepository);
+
+        refinement.complete(new TravelTimes(new long[] { 12 }, new long[] { 21 }));
+
+        verify(distanceMatrix).update(location, existingLocation, Distance.ofMillis(12));
+        verify(distanceMatrix).update(existingLocation, location, Distance.ofMillis(21));
+        verify(distanceRepository).saveDistances(
+                location,
+                Map.of(existingLocation, Distance.ofMillis(12)),
+                Map.of(existingLocation, Distance.ofMillis(21)));
+    }
+
+    @Test
+    void refinement_should_be_dropped_when_location_is_removed() {
+        Location depot = new Location(1, coordinates);
+        Location visit = new Location(2, coordinates);
+        when(repository.createLocation(coordinates, "")).thenReturn(visit);
+        when(distanceCalculator.isLocationAvailable(coordinates)).thenReturn(true);
+        when(repository.locations()).thenReturn(Arrays.asList(depot, visit));
+        when(repository.find(visit.id())).thenReturn(Optional.of(visit));
+        CompletableFuture<TravelTimes> refinement = startRefinement(List.of(coordinates));
+
+        locationService.createLocation(coordinates, "");
+        locationService.removeLocation(visit.id());
+
+        assertThat(refinement).isCancelled();
+        verify(planner, never()).refineDistances(any(), any());
+        verify(distanceRepository, never()).saveDistances(any(), any(), any());
+        verifyNoInteractions(errorEvent);
+    }
+
+    @Test
+    void refinement_should_skip_locations_removed_in_the_meantime() {
+        Location depot = new Location(1, coordinates);
+        Location visit = new Location(2, coordinates);
+        Location newVisit = new Location(3, coordinates);
+        when(repository.createLocation(coordinates, "")).thenReturn(newVisit);
+        when(distanceCalculator.isLocationAvailable(coordinates)).thenReturn(true);
+        when(repository.locations()).thenReturn(Arrays.asList(depot, visit, newVisit));
+        when(repository.find(visit.id())).thenReturn(Optional.of(visit));
+        CompletableFuture<TravelTimes> refinement = startRefinement(List.of(coordinates, coordinates));
+        runRefinementsImmediately();
+
+        locationService.createLocation(coordinates, "");
+        locationService.removeLocation(visit.id());
+        refinement.complete(new TravelTimes(new long[] { 12, 13 }, new long[] { 21, 31 }));
+
+        verify(distanceMatrix).update(newVisit, depot, Distance.ofMillis(12));
+        verify(distanceMatrix).update(depot, newVisit, Distance.ofMillis(21));
+        verify(distanceMatrix, never()).update(any(), eq(visit), any());
+        verify(distanceMatrix, never()).update(eq(visit), any(), any());
+        verify(distanceRepository).saveDistances(
+                newVisit,
+                Map.of(depot, Distance.ofMillis(12)),
+                Map.of(depot, Distance.ofMillis(21)));
+    }
+
+    private CompletableFuture<TravelTimes> startRefinement(List<Coordinates> others) {
+        when(backgroundDistanceCalculator.isEnabled()).thenReturn(true);
+        when(backgroundDistanceCalculator.estimateMillis(coordinates, coordinates)).thenReturn(100L);
+        CompletableFuture<TravelTimes> refinement = new CompletableFuture<>();
+        when(backgroundDistanceCalculator.calculate(coordinates, others)).thenReturn(refinement);
+        return refinement;
+    }
+
+    private void runRefinementsImmediately() {
+        doAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(planner).refineDistances(any(), any());
+    }
+
     @Test
     void addLocation_should_validate_arguments() {
         assertThatNullPointerException().isThrownBy(() -> locationService.addLocation(null));
@@ -127,6 +267,7 @@ class LocationServiceTest {
 
         verifyNoInteractions(planner);
         verifyNoInteractions(distanceMatrix);
+        verifyNoInteractions(router);
         verify(repository, never()).removeLocation(anyLong());
         verify(distanceRepository, never()).deleteDistances(any(Location.class));
         verify(errorEvent).fire(any(ErrorEvent.class));
@@ -143,23 +284,28 @@ class LocationServiceTest {
 
         verify(planner).removeLocation(visit);
         verify(distanceMatrix).removeLocation(visit);
+        verify(planner).updateDistanceMatrix(any(Runnable.class));
         verify(repository).removeLocation(visit.id());
         verify(distanceRepository).deleteDistances(visit);
+        verify(router).forget(visit.coordinates());
         verifyNoInteractions(errorEvent);
     }
 
     @Test
     void clear() {
+        when(repository.locations()).thenReturn(Collections.singletonList(location));
         locationService.removeAll();
         verify(planner).removeAllLocations();
         verify(repository).removeAll();
         verify(distanceRepository).deleteAll();
         verify(distanceMatrix).clear();
+        verify(router).forget(location.coordinates());
     }
 
     @Test
     void should_not_optimize_and_roll_back_if_distance_calculation_fails() {
         when(repository.createLocation(coordinates, "")).thenReturn(location);
+        when(distanceCalculator.isLocationAvailable(coordinates)).thenReturn(true);
         doThrow(new RuntimeException("test exception")).when(distanceMatrix).addLocation(location);
 
         assertThat(locationService.createLocation(coordinates, "")).isEmpty();
@@ -176,12 +322,93 @@ class LocationServiceTest {
         Location depot = new Location(1, coordinates);
         Location visit1 = new Location(2, coordinates);
         Location visit2 = new Location(3, coordinates);
-        when(repository.locations()).thenReturn(Arrays.asList(depot, visit1, visit2));
-        when(distanceRepository.getDistance(any(Location.class), any(Location.class))).thenReturn(Optional.of(Distance.ZERO));
+        List<Location> locations = Arrays.asList(depot, visit1, visit2);
+        when(repository.locations()).thenReturn(locations);
+        doAnswer(invocation -> {
+            DistanceRepository.DistanceConsumer consumer = invocation.getArgument(1);
+            for (Location from : locations) {
+                for (Location to : locations) {
+                    if (!from.equals(to)) {
+                        consumer.accept(from, to, Distance.ZERO);
+                    }
+                }
+            }
+            return null;
+        }).when(distanceRepository).loadDistances(eq(locations), any());
+
+        List<Long> progress = new ArrayList<>();
+        locationService.populateDistanceMatrix(progress::add);
 
-        locationService.populateDistanceMatrix();
-
-        verify(distanceRepository, times(6)).getDistance(any(Location.class), any(Location.class));
         verify(distanceMatrix, times(6)).put(any(Location.class), any(Location.class), any(Distance.class));
+        assertThat(progress).containsExactly(6L);
+    }
+
+    @Test
+    void populate_matrix_should_fail_when_distances_are_missing() {
+        Location depot = new Location(1, coordinates);
+        Location visit = new Location(2, coordinates);
+        when(repository.locations()).thenReturn(Arrays.asList(depot, visit));
+        doAnswer(invocation -> {
+            DistanceRepository.DistanceConsumer consumer = invocation.getArgument(1);
+            consumer.accept(depot, visit, Distance.ZERO);
+            return null;
+        }).when(distanceRepository).loadDistances(any(), any());
+
+        assertThatIllegalStateException().isThrownBy(() -> locationService.populateDistanceMatrix(loaded -> {
+        }));
+    }
+
+    @Test
+    void populate_matrix_should_estimate_and_refine_distances_of_unrefined_locations() {
+        Location depot = new Location(1, coordinates);
+        Location unrefined = new Location(2, coordinates);
+        Location refined = new Location(3, coordinates);
+        when(repository.locations()).thenReturn(Arrays.asList(depot, unrefined, refined));
+        // The refinement of the newest location has saved its distances to both older locations.
+        doAnswer(invocation -> {
+            DistanceRepository.DistanceConsumer consumer = invocation.getArgument(1);
+            consumer.accept(depot, refined, Distance.ZERO);
+            consumer.accept(refined, depot, Distance.ZERO);
+            consumer.accept(unrefined, refined, Distance.ZERO);
+            consumer.accept(refined, unrefined, Distance.ZERO);
+            return null;
+        }).when(distanceRepository).loadDistances(any(), any());
+        CompletableFuture<TravelTimes> refinement = startRefinement(List.of(coordinates));
+        runRefinementsImmediately();
+
+        locationService.populateDistanceMatrix(loaded -> {
+        });
+
+        verify(distanceMatrix).put(unrefined, depot, Distance.ofMillis(100));
+        verify(distanceMatrix).put(depot, unrefined, Distance.ofMillis(100));
+        verify(distanceMatrix, never()).put(unrefined, refined, Distance.ofMillis(100));
+
+        refinement.complete(new TravelTimes(new long[] { 21 }, new long[] { 12 }));
+
+        verify(distanceMatrix).update(unrefined, depot, Distance.ofMillis(21));
+        verify(distanceMatrix).update(depot, unrefined, Distance.ofMillis(12));
+        verify(distanceRepository).saveDistances(
+                unrefined,
+                Map.of(depot, Distance.ofMillis(21)),
+                Map.of(depot, Distance.ofMillis(12)));
+    }
+
+    @Test
+    void populate_sparse_matrix_should_not_require_all_distances() {
+        Location depot = new Location(1, coordinates);
+        Location visit = new Location(2, coordinates);
+        when(repository.locations()).thenReturn(Arrays.asList(depot, visit));
+        when(distanceMatrix.isSparse()).thenReturn(true);
+        doAnswer(invocation -> {
+            DistanceRepository.DistanceConsumer consumer = invocation.getArgument(1);
+            consumer.accept(depot, visit, Distance.ZERO);
+            return null;
+        }).when(distanceRepository).loadDistances(any(), any());
+
+        List<Long> progress = new ArrayList<>();
+        locationService.populateDistanceMatrix(progress::add);
+
+        verify(distanceMatrix).put(depot, visit, Distance.ZERO);
+        assertThat(progress).containsExactly(1L);
     }
 }
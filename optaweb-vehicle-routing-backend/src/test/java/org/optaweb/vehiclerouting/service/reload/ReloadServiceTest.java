@@ -1,26 +1,34 @@
 package org.optaweb.vehiclerouting.service.reload;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.optaweb.vehiclerouting.domain.Coordinates;
 import org.optaweb.vehiclerouting.domain.Location;
 import org.optaweb.vehiclerouting.domain.Vehicle;
 import org.optaweb.vehiclerouting.domain.VehicleFactory;
+import org.optaweb.vehiclerouting.service.distance.DistanceRepository;
 import org.optaweb.vehiclerouting.service.location.LocationRepository;
 import org.optaweb.vehiclerouting.service.location.LocationService;
 import org.optaweb.vehiclerouting.service.vehicle.VehicleRepository;
 import org.optaweb.vehiclerouting.service.vehicle.VehicleService;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.quarkus.runtime.StartupEvent;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +42,10 @@ class ReloadServiceTest {
     private LocationRepository locationRepository;
     @Mock
     private LocationService locationService;
+    @Mock
+    private DistanceRepository distanceRepository;
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
     @InjectMocks
     private ReloadService reloadService;
 
@@ -49,6 +61,7 @@ class ReloadServiceTest {
     void should_reload_on_startup() {
         when(vehicleRepository.vehicles()).thenReturn(persistedVehicles);
         when(locationRepository.locations()).thenReturn(persistedLocations);
+        when(distanceRepository.countDistances()).thenReturn(5L);
 
         reloadService.reload(event);
 
@@ -56,6 +69,22 @@ class ReloadServiceTest {
         verify(vehicleService, times(persistedVehicles.size())).addVehicle(vehicle);
         verify(locationRepository).locations();
         verify(locationService, times(persistedLocations.size())).addLocation(location);
-        verify(locationService).populateDistanceMatrix();
+        verify(locationService).populateDistanceMatrix(any());
+        assertThat(meterRegistry.get("optaweb.reload.duration").timer().count()).isOne();
+        assertThat(meterRegistry.get("optaweb.reload.distances.expected").gauge().value()).isEqualTo(5);
+    }
+
+    @Test
+    void should_report_reload_progress() {
+        when(locationRepository.locations()).thenReturn(persistedLocations);
+        doAnswer(invocation -> {
+            LongConsumer progress = invocation.getArgument(0);
+            progress.accept(4);
+            return null;
+        }).when(locationService).populateDistanceMatrix(any());
+
+        reloadService.reload(event);
+
+        assertThat(meterRegistry.get("optaweb.reload.distances.loaded").gauge().value()).isEqualTo(4);
     }
 }
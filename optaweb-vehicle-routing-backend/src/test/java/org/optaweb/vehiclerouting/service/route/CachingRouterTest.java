@@ -0,0 +1,172 @@
+package org.optaweb.vehiclerouting.service.route;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+import org.optaweb.vehiclerouting.domain.Location;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class CachingRouterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Location location1 = new Location(1, Coordinates.of(1, 1));
+    private final Location location2 = new Location(2, Coordinates.of(2, 2));
+    private final Location location3 = new Location(3, Coordinates.of(3, 3));
+    private final List<Coordinates> path12 = path(location1, location2);
+    private final List<Coordinates> path21 = path(location2, location1);
+    private final List<Coordinates> path23 = path(location2, location3);
+    @Mock
+    private Router router;
+
+    @Test
+    void should_calculate_path_once() {
+        when(router.getPath(location1.coordinates(), location2.coordinates())).thenReturn(path12);
+        CachingRouter cachingRouter = new CachingRouter(router, 0, 10, 100, meterRegistry);
+
+        assertThat(cachingRouter.getPath(location1.coordinates(), location2.coordinates())).isEqualTo(path12);
+        assertThat(cachingRouter.getPath(location1.coordinates(), location2.coordinates())).isEqualTo(path12);
+
+        verify(router).getPath(location1.coordinates(), location2.coordinates());
+        assertThat(gets("hit")).isOne();
+        assertThat(gets("miss")).isOne();
+        assertThat(meterRegistry.get("cache.size").gauge().value()).isOne();
+    }
+
+    @Test
+    void should_evict_least_recently_used_path_when_there_are_too_many_paths() {
+        when(router.getPath(location1.coordinates(), location2.coordinates())).thenReturn(path12);
+        when(router.getPath(location2.coordinates(), location1.coordinates())).thenReturn(path21);
+        when(router.getPath(location2.coordinates(), location3.coordinates())).thenReturn(path23);
+        CachingRouter cachingRouter = new CachingRouter(router, 0, 2, 100, meterRegistry);
+
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        cachingRouter.getPath(location2.coordinates(), location1.coordinates());
+        // Makes 2->1 the least recently used.
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        cachingRouter.getPath(location2.coordinates(), location3.coordinates());
+        assertThat(cachingRouter.size()).isEqualTo(2);
+
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        cachingRouter.getPath(location2.coordinates(), location1.coordinates());
+        verify(router).getPath(location1.coordinates(), location2.coordinates());
+        verify(router, times(2)).getPath(location2.coordinates(), location1.coordinates());
+        assertThat(meterRegistry.get("cache.evictions").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.evicted").counter().count())
+                .isEqualTo(4.0 * CachingRouter.BYTES_PER_POINT);
+    }
+
+    @Test
+    void should_evict_paths_when_there_are_too_many_points() {
+        when(router.getPath(location1.coordinates(), location2.coordinates())).thenReturn(path12);
+        when(router.getPath(location2.coordinates(), location3.coordinates())).thenReturn(path23);
+        CachingRouter cachingRouter = new CachingRouter(router, 0, 10, 3, meterRegistry);
+
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        cachingRouter.getPath(location2.coordinates(), location3.coordinates());
+
+        assertThat(cachingRouter.size()).isOne();
+        assertThat(cachingRouter.points()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.evictions").counter().count()).isOne();
+    }
+
+    @Test
+    void should_not_cache_path_longer_than_point_limit() {
+        when(router.getPath(location1.coordinates(), location2.coordinates())).thenReturn(path12);
+        CachingRouter cachingRouter = new CachingRouter(router, 0, 10, 1, meterRegistry);
+
+        assertThat(cachingRouter.getPath(location1.coordinates(), location2.coordinates())).isEqualTo(path12);
+
+        assertThat(cachingRouter.size()).isZero();
+        assertThat(cachingRouter.points()).isZero();
+    }
+
+    @Test
+    void should_not_cache_when_disabled() {
+        when(router.getPath(location1.coordinates(), location2.coordinates())).thenReturn(path12);
+        CachingRouter cachingRouter = new CachingRouter(router, 0, 0, 100, meterRegistry);
+
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+
+        verify(router, times(2)).getPath(location1.coordinates(), location2.coordinates());
+        assertThat(cachingRouter.size()).isZero();
+    }
+
+    @Test
+    void should_forget_paths_from_and_to_removed_location() {
+        when(router.getPath(location1.coordinates(), location2.coordinates())).thenReturn(path12);
+        when(router.getPath(location2.coordinates(), location1.coordinates())).thenReturn(path21);
+        when(router.getPath(location2.coordinates(), location3.coordinates())).thenReturn(path23);
+        CachingRouter cachingRouter = new CachingRouter(router, 0, 10, 100, meterRegistry);
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        cachingRouter.getPath(location2.coordinates(), location1.coordinates());
+        cachingRouter.getPath(location2.coordinates(), location3.coordinates());
+
+        cachingRouter.forget(location1.coordinates());
+
+        verify(router).forget(location1.coordinates());
+        assertThat(cachingRouter.size()).isOne();
+        assertThat(cachingRouter.points()).isEqualTo(2);
+        // Forgetting isn't an eviction.
+        assertThat(meterRegistry.get("cache.evictions").counter().count()).isZero();
+        cachingRouter.getPath(location2.coordinates(), location3.coordinates());
+        verify(router).getPath(location2.coordinates(), location3.coordinates());
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        verify(router, times(2)).getPath(location1.coordinates(), location2.coordinates());
+    }
+
+    @Test
+    void forgetting_should_not_miss_paths_left_by_evicted_ones() {
+        when(router.getPath(location1.coordinates(), location2.coordinates())).thenReturn(path12);
+        when(router.getPath(location2.coordinates(), location3.coordinates())).thenReturn(path23);
+        CachingRouter cachingRouter = new CachingRouter(router, 0, 1, 100, meterRegistry);
+        cachingRouter.getPath(location1.coordinates(), location2.coordinates());
+        // Evicts 1->2.
+        cachingRouter.getPath(location2.coordinates(), location3.coordinates());
+
+        cachingRouter.forget(location2.coordinates());
+
+        assertThat(cachingRouter.size()).isZero();
+        assertThat(cachingRouter.points()).isZero();
+    }
+
+    @Test
+    void should_cache_simplified_path() {
+        Coordinates middle = Coordinates.of(1.5, 1.5);
+        when(router.getPath(location1.coordinates(), location2.coordinates()))
+                .thenReturn(asList(location1.coordinates(), middle, location2.coordinates()));
+        CachingRouter cachingRouter = new CachingRouter(router, 1, 10, 100, meterRegistry);
+
+        assertThat(cachingRouter.getPath(location1.coordinates(), location2.coordinates())).isEqualTo(path12);
+        assertThat(cachingRouter.points()).isEqualTo(2);
+    }
+
+    @Test
+    void should_reject_negative_bounds() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new CachingRouter(router, 0, -1, 100, meterRegistry));
+        assertThatIllegalArgumentException().isThrownBy(() -> new CachingRouter(router, 0, 10, -1, meterRegistry));
+        assertThatIllegalArgumentException().isThrownBy(() -> new CachingRouter(router, -1, 10, 100, meterRegistry));
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).counter().count();
+    }
+
+    private static List<Coordinates> path(Location from, Location to) {
+        return asList(from.coordinates(), to.coordinates());
+    }
+}
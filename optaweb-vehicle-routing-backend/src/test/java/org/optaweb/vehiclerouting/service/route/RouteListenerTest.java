@@ -3,6 +3,7 @@ package org.optaweb.vehiclerouting.service.route;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -12,14 +13,18 @@ import static org.mockito.Mockito.when;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.enterprise.event.Event;
 
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.optaweb.vehiclerouting.domain.Coordinates;
@@ -45,9 +50,18 @@ class RouteListenerTest {
     private Event<RoutingPlan> routingPlanEvent;
     @Captor
     private ArgumentCaptor<RoutingPlan> routeArgumentCaptor;
-    @InjectMocks
     private RouteListener routeListener;
 
+    @BeforeEach
+    void setUp() {
+        routeListener = new RouteListener(router, vehicleRepository, locationRepository, routingPlanEvent, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        routeListener.shutdown();
+    }
+
     @Test
     void new_listener_should_return_empty_best_route() {
         assertThat(routeListener.getBestRoutingPlan().isEmpty()).isTrue();
@@ -116,13 +130,13 @@ class RouteListenerTest {
         final Coordinates checkpoint2 = Coordinates.of(21, 21);
         List<Coordinates> path1 = Arrays.asList(depotCoordinates, checkpoint1, checkpoint2, visitCoordinates);
         List<Coordinates> path2 = Arrays.asList(visitCoordinates, checkpoint2, checkpoint1, depotCoordinates);
-        when(router.getPath(depotCoordinates, visitCoordinates)).thenReturn(path1);
-        when(router.getPath(visitCoordinates, depotCoordinates)).thenReturn(path2);
 
         final long vehicleId = -5;
         final Vehicle vehicle = VehicleFactory.testVehicle(vehicleId);
         final Location depot = new Location(1, depotCoordinates);
         final Location visit = new Location(2, visitCoordinates);
+        when(router.getPath(depot.coordinates(), visit.coordinates())).thenReturn(path1);
+        when(router.getPath(visit.coordinates(), depot.coordinates())).thenReturn(path2);
         final Distance distance = Distance.ofMillis(11);
         when(vehicleRepository.find(vehicleId)).thenReturn(Optional.of(vehicle));
         when(locationRepository.find(depot.id())).thenReturn(Optional.of(depot));
@@ -213,6 +227,99 @@ class RouteListenerTest {
         assertThat(routeListener.getBestRoutingPlan().isEmpty()).isTrue();
     }
 
+    @Test
+    void should_reuse_paths_of_legs_that_did_not_change_since_previous_plan() {
+        final Vehicle vehicle = VehicleFactory.testVehicle(3);
+        final Location depot = new Location(1, Coordinates.of(1.0, 2.0));
+        final Location visit1 = new Location(2, Coordinates.of(-1.0, -2.0));
+        final Location visit2 = new Location(3, Coordinates.of(-3.0, -4.0));
+        final List<Coordinates> depotToVisit1 = Arrays.asList(depot.coordinates(), visit1.coordinates());
+        final List<Coordinates> visit1ToDepot = Arrays.asList(visit1.coordinates(), depot.coordinates());
+        final List<Coordinates> visit1ToVisit2 = Arrays.asList(visit1.coordinates(), visit2.coordinates());
+        final List<Coordinates> visit2ToDepot = Arrays.asList(visit2.coordinates(), depot.coordinates());
+        when(vehicleRepository.find(vehicle.id())).thenReturn(Optional.of(vehicle));
+        when(locationRepository.find(depot.id())).thenReturn(Optional.of(depot));
+        when(locationRepository.find(visit1.id())).thenReturn(Optional.of(visit1));
+        when(locationRepository.find(visit2.id())).thenReturn(Optional.of(visit2));
+        when(router.getPath(depot.coordinates(), visit1.coordinates())).thenReturn(depotToVisit1);
+        when(router.getPath(visit1.coordinates(), depot.coordinates())).thenReturn(visit1ToDepot);
+        when(router.getPath(visit1.coordinates(), visit2.coordinates())).thenReturn(visit1ToVisit2);
+        when(router.getPath(visit2.coordinates(), depot.coordinates())).thenReturn(visit2ToDepot);
+
+        routeListener.onApplicationEvent(new RouteChangedEvent(
+                this,
+                Distance.ofMillis(1),
+                singletonList(vehicle.id()),
+                depot.id(),
+                Arrays.asList(visit1.id(), visit2.id()),
+                singletonList(new ShallowRoute(vehicle.id(), depot.id(), singletonList(visit1.id())))));
+        routeListener.onApplicationEvent(new RouteChangedEvent(
+                this,
+                Distance.ofMillis(1),
+                singletonList(vehicle.id()),
+                depot.id(),
+                Arrays.asList(visit1.id(), visit2.id()),
+                singletonList(new ShallowRoute(vehicle.id(), depot.id(), Arrays.asList(visit1.id(), visit2.id())))));
+
+        // Only the new legs are routed.
+        verify(router).getPath(depot.coordinates(), visit1.coordinates());
+        verify(router).getPath(visit1.coordinates(), depot.coordinates());
+        verify(router).getPath(visit1.coordinates(), visit2.coordinates());
+        verify(router).getPath(visit2.coordinates(), depot.coordinates());
+        RouteWithTrack routeWithTrack = routeListener.getBestRoutingPlan().routes().get(0);
+        assertThat(routeWithTrack.track()).containsExactly(depotToVisit1, visit1ToVisit2, visit2ToDepot);
+    }
+
+    @Test
+    void should_discard_plan_superseded_while_its_paths_were_being_calculated() throws Exception {
+        routeListener.shutdown();
+        routeListener = new RouteListener(router, vehicleRepository, locationRepository, routingPlanEvent, 1);
+        final Vehicle vehicle = VehicleFactory.testVehicle(3);
+        final Location depot = new Location(1, Coordinates.of(1.0, 2.0));
+        final Location visit = new Location(2, Coordinates.of(-1.0, -2.0));
+        when(vehicleRepository.find(vehicle.id())).thenReturn(Optional.of(vehicle));
+        when(locationRepository.find(depot.id())).thenReturn(Optional.of(depot));
+        when(locationRepository.find(visit.id())).thenReturn(Optional.of(visit));
+        CountDownLatch routingStarted = new CountDownLatch(1);
+        CountDownLatch newerPlanPublished = new CountDownLatch(1);
+        when(router.getPath(depot.coordinates(), visit.coordinates())).thenAnswer(invocation -> {
+            routingStarted.countDown();
+            newerPlanPublished.await();
+            return Arrays.asList(depot.coordinates(), visit.coordinates());
+        });
+
+        CompletableFuture<Void> olderPlan = CompletableFuture.runAsync(() -> routeListener.onApplicationEvent(
+                new RouteChangedEvent(
+                        this,
+                        Distance.ofMillis(10),
+                        singletonList(vehicle.id()),
+                        depot.id(),
+                        singletonList(visit.id()),
+                        singletonList(new ShallowRoute(vehicle.id(), depot.id(), singletonList(visit.id()))))));
+        assertThat(routingStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        routeListener.onApplicationEvent(new RouteChangedEvent(
+                this,
+                Distance.ZERO,
+                singletonList(vehicle.id()),
+                depot.id(),
+                emptyList(),
+                singletonList(new ShallowRoute(vehicle.id(), depot.id(), emptyList()))));
+        newerPlanPublished.countDown();
+        olderPlan.get(10, TimeUnit.SECONDS);
+
+        // The remaining leg of the older plan is never routed and the older plan isn't published.
+        verify(router, never()).getPath(visit.coordinates(), depot.coordinates());
+        RoutingPlan routingPlan = verifyAndCaptureConsumedPlan();
+        assertThat(routingPlan.visits()).isEmpty();
+        assertThat(routeListener.getBestRoutingPlan()).isEqualTo(routingPlan);
+    }
+
+    @Test
+    void should_reject_negative_number_of_track_threads() {
+        assertThatIllegalArgumentException().isThrownBy(
+                () -> new RouteListener(router, vehicleRepository, locationRepository, routingPlanEvent, -1));
+    }
+
     private RoutingPlan verifyAndCaptureConsumedPlan() {
         verify(routingPlanEvent).fire(routeArgumentCaptor.capture());
         return routeArgumentCaptor.getValue();
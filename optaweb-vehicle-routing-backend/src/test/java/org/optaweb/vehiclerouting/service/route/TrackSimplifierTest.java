@@ -0,0 +1,65 @@
+package org.optaweb.vehiclerouting.service.route;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.optaweb.vehiclerouting.domain.Coordinates;
+
+class TrackSimplifierTest {
+
+    // About 11 m.
+    private static final double STEP = 0.0001;
+
+    @Test
+    void should_remove_points_on_straight_line() {
+        List<Coordinates> path = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            path.add(Coordinates.of(50 + i * STEP, 4 + i * STEP));
+        }
+        assertThat(TrackSimplifier.simplify(path, 1)).containsExactly(path.get(0), path.get(100));
+    }
+
+    @Test
+    void should_keep_corners() {
+        Coordinates start = Coordinates.of(50, 4);
+        Coordinates corner = Coordinates.of(50, 4 + 10 * STEP);
+        Coordinates end = Coordinates.of(50 + 10 * STEP, 4 + 10 * STEP);
+        List<Coordinates> path = asList(
+                start,
+                Coordinates.of(50, 4 + 5 * STEP),
+                corner,
+                Coordinates.of(50 + 5 * STEP, 4 + 10 * STEP),
+                end);
+        assertThat(TrackSimplifier.simplify(path, 5)).containsExactly(start, corner, end);
+    }
+
+    @Test
+    void should_keep_deviations_above_tolerance() {
+        Coordinates start = Coordinates.of(50, 4);
+        // About 11 m off the line between start and end.
+        Coordinates bump = Coordinates.of(50 + STEP, 4 + 5 * STEP);
+        Coordinates end = Coordinates.of(50, 4 + 10 * STEP);
+        List<Coordinates> path = asList(start, bump, end);
+        assertThat(TrackSimplifier.simplify(path, 5)).containsExactly(start, bump, end);
+        assertThat(TrackSimplifier.simplify(path, 20)).containsExactly(start, end);
+    }
+
+    @Test
+    void zero_tolerance_should_keep_all_points() {
+        List<Coordinates> path = asList(
+                Coordinates.of(50, 4),
+                Coordinates.of(50, 4 + STEP),
+                Coordinates.of(50, 4 + 2 * STEP));
+        assertThat(TrackSimplifier.simplify(path, 0)).isEqualTo(path);
+    }
+
+    @Test
+    void should_reject_negative_tolerance() {
+        assertThatIllegalArgumentException().isThrownBy(() -> TrackSimplifier.simplify(asList(), -1));
+    }
+}
@@ -0,0 +1,27 @@
+package org.optaweb.vehiclerouting.util.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Marks a benchmark. Benchmarks are slow and their results are only meaningful on a quiet machine, so they are skipped
+ * unless the {@code benchmark} system property is set, for example:
+ *
+ * <pre>
+ * mvn test -Dbenchmark=true -Dtest=DistanceMatrixBenchmarkTest
+ * </pre>
+ */
+@Target({ ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+@Test
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public @interface Benchmark {
+
+}